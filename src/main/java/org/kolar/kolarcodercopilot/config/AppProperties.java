@@ -4,7 +4,10 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 应用配置类
@@ -17,6 +20,17 @@ public class AppProperties {
     private Security security = new Security();
     private Tools tools = new Tools();
     private Browser browser = new Browser();
+    private Execution execution = new Execution();
+    private Session session = new Session();
+    private TaskStore taskStore = new TaskStore();
+    private Journal journal = new Journal();
+    private Sse sse = new Sse();
+    private Streaming streaming = new Streaming();
+    private EventBus eventBus = new EventBus();
+    private Metrics metrics = new Metrics();
+    private FlightRecorder flightRecorder = new FlightRecorder();
+    private Tracing tracing = new Tracing();
+    private Tokens tokens = new Tokens();
 
     public WorkSpace getWorkspace() {
         return workspace;
@@ -50,6 +64,94 @@ public class AppProperties {
         this.browser = browser;
     }
 
+    public Execution getExecution() {
+        return execution;
+    }
+
+    public void setExecution(Execution execution) {
+        this.execution = execution;
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    public void setSession(Session session) {
+        this.session = session;
+    }
+
+    public TaskStore getTaskStore() {
+        return taskStore;
+    }
+
+    public void setTaskStore(TaskStore taskStore) {
+        this.taskStore = taskStore;
+    }
+
+    public Journal getJournal() {
+        return journal;
+    }
+
+    public void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    public Sse getSse() {
+        return sse;
+    }
+
+    public void setSse(Sse sse) {
+        this.sse = sse;
+    }
+
+    public Streaming getStreaming() {
+        return streaming;
+    }
+
+    public void setStreaming(Streaming streaming) {
+        this.streaming = streaming;
+    }
+
+    public EventBus getEventBus() {
+        return eventBus;
+    }
+
+    public void setEventBus(EventBus eventBus) {
+        this.eventBus = eventBus;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public FlightRecorder getFlightRecorder() {
+        return flightRecorder;
+    }
+
+    public void setFlightRecorder(FlightRecorder flightRecorder) {
+        this.flightRecorder = flightRecorder;
+    }
+
+    public Tracing getTracing() {
+        return tracing;
+    }
+
+    public void setTracing(Tracing tracing) {
+        this.tracing = tracing;
+    }
+
+    public Tokens getTokens() {
+        return tokens;
+    }
+
+    public void setTokens(Tokens tokens) {
+        this.tokens = tokens;
+    }
+
     /**
      * 工作空间配置 TODO (未看)
      */
@@ -88,7 +190,10 @@ public class AppProperties {
      * 工具配置
      */
     public static class Tools {
+        private List<String> disabled = new ArrayList<>(); // 启动时禁用的工具名, 运行时可通过 /api/tools/toggle 修改
 
+        public List<String> getDisabled() { return disabled; }
+        public void setDisabled(List<String> disabled) { this.disabled = disabled; }
     }
     /**
      * 浏览器配置
@@ -97,6 +202,370 @@ public class AppProperties {
 
     }
 
+    /**
+     * 任务执行配置
+     * 任务 / 对话轮次 / 工具调用 所使用的线程模型
+     */
+    public static class Execution {
+        private ExecutionMode mode = ExecutionMode.PLATFORM;
+        private int platformPoolSize = 64; // 平台线程池大小, 仅 PLATFORM 模式生效
+        private int platformQueueCapacity = 1024; // 平台线程池的等待队列上限, 线程与队列都满时拒绝新任务
+        private int modelConnectTimeoutSeconds = 10; // 模型 HTTP 连接超时
+        private int modelReadTimeoutSeconds = 60;    // 模型 HTTP 读取超时 (非流式轮次的超时由此保证)
+
+        public ExecutionMode getMode() { return mode; }
+        public void setMode(ExecutionMode mode) { this.mode = mode; }
+
+        public int getPlatformPoolSize() { return platformPoolSize; }
+        public void setPlatformPoolSize(int platformPoolSize) { this.platformPoolSize = platformPoolSize; }
+
+        public int getPlatformQueueCapacity() { return platformQueueCapacity; }
+        public void setPlatformQueueCapacity(int platformQueueCapacity) { this.platformQueueCapacity = platformQueueCapacity; }
+
+        public int getModelConnectTimeoutSeconds() { return modelConnectTimeoutSeconds; }
+        public void setModelConnectTimeoutSeconds(int modelConnectTimeoutSeconds) { this.modelConnectTimeoutSeconds = modelConnectTimeoutSeconds; }
+
+        public int getModelReadTimeoutSeconds() { return modelReadTimeoutSeconds; }
+        public void setModelReadTimeoutSeconds(int modelReadTimeoutSeconds) { this.modelReadTimeoutSeconds = modelReadTimeoutSeconds; }
+    }
+
+    /**
+     * 会话历史配置
+     * 内存热数据层按 LRU/TTL 淘汰, 冷会话落盘到压缩的追加写文件
+     */
+    public static class Session {
+        private int maxHotSessions = 1000;          // 内存中最多保留的会话数
+        private long idleTtlMinutes = 30;           // 会话空闲多久后移出内存
+        private int maxMessagesPerSession = 200;    // 单会话消息上限, 超出后压缩
+        private int compactToMessages = 100;        // 压缩后保留的最近消息数
+        private long retentionDays = 30;            // 冷会话文件的保留时间 (按最后写入时间)
+        private long sweepIntervalSeconds = 60;     // 空闲会话移出与过期文件清理的周期
+        private String storageDirectory = Paths.get(System.getProperty("user.dir"), "data", "sessions").toString();
+
+        public int getMaxHotSessions() { return maxHotSessions; }
+        public void setMaxHotSessions(int maxHotSessions) { this.maxHotSessions = maxHotSessions; }
+
+        public long getIdleTtlMinutes() { return idleTtlMinutes; }
+        public void setIdleTtlMinutes(long idleTtlMinutes) { this.idleTtlMinutes = idleTtlMinutes; }
+
+        public int getMaxMessagesPerSession() { return maxMessagesPerSession; }
+        public void setMaxMessagesPerSession(int maxMessagesPerSession) { this.maxMessagesPerSession = maxMessagesPerSession; }
+
+        public int getCompactToMessages() { return compactToMessages; }
+        public void setCompactToMessages(int compactToMessages) { this.compactToMessages = compactToMessages; }
+
+        public long getRetentionDays() { return retentionDays; }
+        public void setRetentionDays(long retentionDays) { this.retentionDays = retentionDays; }
+
+        public long getSweepIntervalSeconds() { return sweepIntervalSeconds; }
+        public void setSweepIntervalSeconds(long sweepIntervalSeconds) { this.sweepIntervalSeconds = sweepIntervalSeconds; }
+
+        public String getStorageDirectory() { return storageDirectory; }
+        public void setStorageDirectory(String storageDirectory) { this.storageDirectory = Paths.get(storageDirectory).toString(); }
+    }
+
+    /**
+     * 任务状态存储配置
+     * 已结束任务在内存中保留一段时间后落盘, 磁盘结果在保留期内仍可查询
+     */
+    public static class TaskStore {
+        private int maxLiveTasks = 500;              // 内存中最多保留的任务数
+        private long finishedTtlMinutes = 10;        // 已结束任务在内存中的保留时间
+        private long retentionHours = 24;            // 落盘结果的保留时间
+        private long sweepIntervalSeconds = 60;      // 巡检间隔 (TTL 落盘与过期文件清理)
+        private String storageDirectory = Paths.get(System.getProperty("user.dir"), "data", "tasks").toString();
+
+        public int getMaxLiveTasks() { return maxLiveTasks; }
+        public void setMaxLiveTasks(int maxLiveTasks) { this.maxLiveTasks = maxLiveTasks; }
+
+        public long getFinishedTtlMinutes() { return finishedTtlMinutes; }
+        public void setFinishedTtlMinutes(long finishedTtlMinutes) { this.finishedTtlMinutes = finishedTtlMinutes; }
+
+        public long getRetentionHours() { return retentionHours; }
+        public void setRetentionHours(long retentionHours) { this.retentionHours = retentionHours; }
+
+        public long getSweepIntervalSeconds() { return sweepIntervalSeconds; }
+        public void setSweepIntervalSeconds(long sweepIntervalSeconds) { this.sweepIntervalSeconds = sweepIntervalSeconds; }
+
+        public String getStorageDirectory() { return storageDirectory; }
+        public void setStorageDirectory(String storageDirectory) { this.storageDirectory = Paths.get(storageDirectory).toString(); }
+    }
+
+    /**
+     * 任务日志配置
+     * 追加写、按段滚动的预写日志, 组提交后统一 fsync
+     */
+    public static class Journal {
+        private boolean enabled = true;
+        private String directory = Paths.get(System.getProperty("user.dir"), "data", "journal").toString();
+        private long segmentMaxBytes = 16 * 1024 * 1024;  // 单个段文件上限 16MB
+        private int groupCommitMaxBatch = 256;             // 单次组提交的最大记录数
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public String getDirectory() { return directory; }
+        public void setDirectory(String directory) { this.directory = Paths.get(directory).toString(); }
+
+        public long getSegmentMaxBytes() { return segmentMaxBytes; }
+        public void setSegmentMaxBytes(long segmentMaxBytes) { this.segmentMaxBytes = segmentMaxBytes; }
+
+        public int getGroupCommitMaxBatch() { return groupCommitMaxBatch; }
+        public void setGroupCommitMaxBatch(int groupCommitMaxBatch) { this.groupCommitMaxBatch = groupCommitMaxBatch; }
+    }
+
+    /**
+     * SSE推送配置
+     */
+    public static class Sse {
+        private int bufferCapacity = 256;  // 每个连接的待发送事件上限
+        private SlowConsumerPolicy slowConsumerPolicy = SlowConsumerPolicy.DROP_OLDEST;
+        private int replayMaxEventsPerTask = 256;    // 单任务回放日志条数上限
+        private int replayMaxTotalEvents = 10000;    // 全部任务回放日志条数上限
+        private int replayIdleTtlMinutes = 30;       // 任务无新事件超过该时间后丢弃回放日志
+        private int batchWindowMillis = 50;          // 批量发送窗口, 0 表示逐条立即发送
+        private int batchMaxEvents = 32;             // 单批事件数上限, 达到后不等窗口到期立即发送
+        private int heartbeatIntervalSeconds = 15;   // 心跳与连接巡检间隔
+        private int idleTimeoutMinutes = 30;         // 连接无事件超过该时间后回收
+        private int completeGraceMillis = 2000;      // 任务完成后延迟关闭连接, 让前端处理完最后的事件
+        private int writerThreads = 2;               // SSE写任务线程数, 与任务执行器隔离
+
+        public int getBufferCapacity() { return bufferCapacity; }
+        public void setBufferCapacity(int bufferCapacity) { this.bufferCapacity = bufferCapacity; }
+
+        public SlowConsumerPolicy getSlowConsumerPolicy() { return slowConsumerPolicy; }
+        public void setSlowConsumerPolicy(SlowConsumerPolicy slowConsumerPolicy) { this.slowConsumerPolicy = slowConsumerPolicy; }
+
+        public int getReplayMaxEventsPerTask() { return replayMaxEventsPerTask; }
+        public void setReplayMaxEventsPerTask(int replayMaxEventsPerTask) { this.replayMaxEventsPerTask = replayMaxEventsPerTask; }
+
+        public int getReplayMaxTotalEvents() { return replayMaxTotalEvents; }
+        public void setReplayMaxTotalEvents(int replayMaxTotalEvents) { this.replayMaxTotalEvents = replayMaxTotalEvents; }
+
+        public int getReplayIdleTtlMinutes() { return replayIdleTtlMinutes; }
+        public void setReplayIdleTtlMinutes(int replayIdleTtlMinutes) { this.replayIdleTtlMinutes = replayIdleTtlMinutes; }
+
+        public int getBatchWindowMillis() { return batchWindowMillis; }
+        public void setBatchWindowMillis(int batchWindowMillis) { this.batchWindowMillis = batchWindowMillis; }
+
+        public int getBatchMaxEvents() { return batchMaxEvents; }
+        public void setBatchMaxEvents(int batchMaxEvents) { this.batchMaxEvents = batchMaxEvents; }
+
+        public int getHeartbeatIntervalSeconds() { return heartbeatIntervalSeconds; }
+        public void setHeartbeatIntervalSeconds(int heartbeatIntervalSeconds) { this.heartbeatIntervalSeconds = heartbeatIntervalSeconds; }
+
+        public int getIdleTimeoutMinutes() { return idleTimeoutMinutes; }
+        public void setIdleTimeoutMinutes(int idleTimeoutMinutes) { this.idleTimeoutMinutes = idleTimeoutMinutes; }
+
+        public int getCompleteGraceMillis() { return completeGraceMillis; }
+        public void setCompleteGraceMillis(int completeGraceMillis) { this.completeGraceMillis = completeGraceMillis; }
+
+        public int getWriterThreads() { return writerThreads; }
+        public void setWriterThreads(int writerThreads) { this.writerThreads = writerThreads; }
+    }
+
+    /**
+     * 对话流式输出配置
+     */
+    public static class Streaming {
+        private boolean enabled = true;         // 对话轮次使用流式调用, 增量文本推送到任务SSE
+        private int flushIntervalMillis = 50;   // 增量文本合并推送的间隔
+        private int maxBufferedChars = 256;     // 累积字符数达到后不等间隔立即推送
+        private int prefetch = 32;              // /api/chat/stream 向模型流每批请求的元素数 (有界需求)
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public int getFlushIntervalMillis() { return flushIntervalMillis; }
+        public void setFlushIntervalMillis(int flushIntervalMillis) { this.flushIntervalMillis = flushIntervalMillis; }
+
+        public int getMaxBufferedChars() { return maxBufferedChars; }
+        public void setMaxBufferedChars(int maxBufferedChars) { this.maxBufferedChars = maxBufferedChars; }
+
+        public int getPrefetch() { return prefetch; }
+        public void setPrefetch(int prefetch) { this.prefetch = prefetch; }
+    }
+
+    /**
+     * 事件总线配置 (多实例部署时跨节点分发SSE事件)
+     */
+    public static class EventBus {
+        private EventBusMode mode = EventBusMode.IN_PROCESS;
+        private String brokerHost = "localhost";
+        private int brokerPort = 7070;
+        private boolean embeddedBroker = false;  // 本节点同时运行内嵌代理 (开发/测试或单代理部署)
+        private int queueCapacity = 10000;       // 待发往代理的事件上限 (含断开期间的积压)
+        private int publishTimeoutMillis = 5000; // 发送队列满时发布方的最长等待, 超时抛出异常
+        private int reconnectDelayMillis = 2000;
+
+        public EventBusMode getMode() { return mode; }
+        public void setMode(EventBusMode mode) { this.mode = mode; }
+
+        public String getBrokerHost() { return brokerHost; }
+        public void setBrokerHost(String brokerHost) { this.brokerHost = brokerHost; }
+
+        public int getBrokerPort() { return brokerPort; }
+        public void setBrokerPort(int brokerPort) { this.brokerPort = brokerPort; }
+
+        public boolean isEmbeddedBroker() { return embeddedBroker; }
+        public void setEmbeddedBroker(boolean embeddedBroker) { this.embeddedBroker = embeddedBroker; }
+
+        public int getQueueCapacity() { return queueCapacity; }
+        public void setQueueCapacity(int queueCapacity) { this.queueCapacity = queueCapacity; }
+
+        public int getPublishTimeoutMillis() { return publishTimeoutMillis; }
+        public void setPublishTimeoutMillis(int publishTimeoutMillis) { this.publishTimeoutMillis = publishTimeoutMillis; }
+
+        public int getReconnectDelayMillis() { return reconnectDelayMillis; }
+        public void setReconnectDelayMillis(int reconnectDelayMillis) { this.reconnectDelayMillis = reconnectDelayMillis; }
+    }
+
+    /**
+     * 指标配置
+     */
+    public static class Metrics {
+        private int windowSeconds = 60;  // 滑动窗口长度
+        private int windowSlots = 12;    // 窗口槽位数, 窗口按槽位粒度滑动
+        private List<Integer> stageWindowsSeconds = List.of(60, 300, 900); // 阶段耗时分位数的统计窗口
+        private long slowRequestThresholdMillis = 2000;  // 超过该耗时的请求总是记录日志 (SSE长连接除外)
+        private long requestLogSampleMillis = 10_000;    // 其他请求每个路由在该间隔内只记录一条日志
+
+        public int getWindowSeconds() { return windowSeconds; }
+        public void setWindowSeconds(int windowSeconds) { this.windowSeconds = windowSeconds; }
+
+        public int getWindowSlots() { return windowSlots; }
+        public void setWindowSlots(int windowSlots) { this.windowSlots = windowSlots; }
+
+        public List<Integer> getStageWindowsSeconds() { return stageWindowsSeconds; }
+        public void setStageWindowsSeconds(List<Integer> stageWindowsSeconds) { this.stageWindowsSeconds = stageWindowsSeconds; }
+
+        public long getSlowRequestThresholdMillis() { return slowRequestThresholdMillis; }
+        public void setSlowRequestThresholdMillis(long slowRequestThresholdMillis) { this.slowRequestThresholdMillis = slowRequestThresholdMillis; }
+
+        public long getRequestLogSampleMillis() { return requestLogSampleMillis; }
+        public void setRequestLogSampleMillis(long requestLogSampleMillis) { this.requestLogSampleMillis = requestLogSampleMillis; }
+    }
+
+    /**
+     * JFR 录制配置 (/api/jfr)
+     */
+    public static class FlightRecorder {
+        private boolean startOnBoot = false;
+        private String settings = "default";      // JFR 预置配置: default / profile
+        private int maxAgeMinutes = 30;
+        private int maxSizeMb = 256;
+        private String directory = Paths.get(System.getProperty("user.dir"), "data", "jfr").toString();
+        private long eventThresholdMillis = 0;     // 自定义事件的记录阈值
+        private long sseSendThresholdMillis = 1;   // SSE发送事件频繁, 只记录较慢的写入
+
+        public boolean isStartOnBoot() { return startOnBoot; }
+        public void setStartOnBoot(boolean startOnBoot) { this.startOnBoot = startOnBoot; }
+
+        public String getSettings() { return settings; }
+        public void setSettings(String settings) { this.settings = settings; }
+
+        public int getMaxAgeMinutes() { return maxAgeMinutes; }
+        public void setMaxAgeMinutes(int maxAgeMinutes) { this.maxAgeMinutes = maxAgeMinutes; }
+
+        public int getMaxSizeMb() { return maxSizeMb; }
+        public void setMaxSizeMb(int maxSizeMb) { this.maxSizeMb = maxSizeMb; }
+
+        public String getDirectory() { return directory; }
+        public void setDirectory(String directory) { this.directory = Paths.get(directory).toString(); }
+
+        public long getEventThresholdMillis() { return eventThresholdMillis; }
+        public void setEventThresholdMillis(long eventThresholdMillis) { this.eventThresholdMillis = eventThresholdMillis; }
+
+        public long getSseSendThresholdMillis() { return sseSendThresholdMillis; }
+        public void setSseSendThresholdMillis(long sseSendThresholdMillis) { this.sseSendThresholdMillis = sseSendThresholdMillis; }
+    }
+
+    /**
+     * 追踪配置 (span 以 OTLP/JSON 写入本地滚动文件)
+     */
+    public static class Tracing {
+        private boolean enabled = false;           // 默认关闭, 需要时显式开启
+        private double sampleRatio = 0.01;         // 头部采样比例, 按 traceId 决定整条 trace 是否记录
+        private String serviceName = "kolar-coder-copilot";
+        private String directory = Paths.get(System.getProperty("user.dir"), "data", "traces").toString();
+        private long maxFileBytes = 32 * 1024 * 1024; // 单个文件上限, 超出后滚动
+        private int maxFiles = 10;                 // 保留的文件数
+        private int queueCapacity = 8192;          // 待导出 span 上限, 超出后丢弃
+        private int batchSize = 512;
+        private int flushIntervalMillis = 1000;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public double getSampleRatio() { return sampleRatio; }
+        public void setSampleRatio(double sampleRatio) { this.sampleRatio = sampleRatio; }
+
+        public String getServiceName() { return serviceName; }
+        public void setServiceName(String serviceName) { this.serviceName = serviceName; }
+
+        public String getDirectory() { return directory; }
+        public void setDirectory(String directory) { this.directory = Paths.get(directory).toString(); }
+
+        public long getMaxFileBytes() { return maxFileBytes; }
+        public void setMaxFileBytes(long maxFileBytes) { this.maxFileBytes = maxFileBytes; }
+
+        public int getMaxFiles() { return maxFiles; }
+        public void setMaxFiles(int maxFiles) { this.maxFiles = maxFiles; }
+
+        public int getQueueCapacity() { return queueCapacity; }
+        public void setQueueCapacity(int queueCapacity) { this.queueCapacity = queueCapacity; }
+
+        public int getBatchSize() { return batchSize; }
+        public void setBatchSize(int batchSize) { this.batchSize = batchSize; }
+
+        public int getFlushIntervalMillis() { return flushIntervalMillis; }
+        public void setFlushIntervalMillis(int flushIntervalMillis) { this.flushIntervalMillis = flushIntervalMillis; }
+    }
+
+    /**
+     * Token 用量统计与会话预算
+     */
+    public static class Tokens {
+        private int maxTrackedKeys = 1000;          // 内存中保留的任务/无预算会话统计数, 超出后淘汰最久未使用的
+        private double charsPerToken = 4.0;         // 模型未返回用量时的估算比例 (CJK 字符按 1 token 计)
+        private long sessionBudget = 0;             // 每个会话的默认 token 预算, 0 表示不限制
+        private Map<String, Long> sessionBudgets = new HashMap<>(); // 指定会话的预算, 覆盖默认值
+
+        public int getMaxTrackedKeys() { return maxTrackedKeys; }
+        public void setMaxTrackedKeys(int maxTrackedKeys) { this.maxTrackedKeys = maxTrackedKeys; }
+
+        public double getCharsPerToken() { return charsPerToken; }
+        public void setCharsPerToken(double charsPerToken) { this.charsPerToken = charsPerToken; }
+
+        public long getSessionBudget() { return sessionBudget; }
+        public void setSessionBudget(long sessionBudget) { this.sessionBudget = sessionBudget; }
+
+        public Map<String, Long> getSessionBudgets() { return sessionBudgets; }
+        public void setSessionBudgets(Map<String, Long> sessionBudgets) { this.sessionBudgets = sessionBudgets; }
+    }
+
+    public enum EventBusMode {
+        IN_PROCESS, // 单实例, 进程内直接分发
+        TCP         // 经事件代理广播到所有节点
+    }
+
+    /**
+     * 慢消费者策略 (连接缓冲区满时)
+     */
+    public enum SlowConsumerPolicy {
+        DROP_OLDEST, // 丢弃最早的待发送事件
+        COALESCE,    // 合并同类进度事件, 无可合并时丢弃最早事件
+        DISCONNECT   // 断开连接
+    }
+
+    /**
+     * 线程模型
+     */
+    public enum ExecutionMode {
+        PLATFORM, // 固定大小的平台线程池
+        VIRTUAL   // 每个任务一个虚拟线程 (需要 JDK 21+, 否则回退到平台线程)
+    }
+
     /**
      * 审批模式
      */
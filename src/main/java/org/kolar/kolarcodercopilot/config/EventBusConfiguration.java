@@ -0,0 +1,37 @@
+package org.kolar.kolarcodercopilot.config;
+
+import org.kolar.kolarcodercopilot.service.EmbeddedEventBroker;
+import org.kolar.kolarcodercopilot.service.EventBus;
+import org.kolar.kolarcodercopilot.service.InProcessEventBus;
+import org.kolar.kolarcodercopilot.service.TcpEventBus;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 事件总线配置
+ * 通过 app.event-bus.mode 选择进程内总线或经TCP事件代理的跨节点总线
+ */
+@Configuration
+public class EventBusConfiguration {
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "app.event-bus", name = "embedded-broker", havingValue = "true")
+    public EmbeddedEventBroker embeddedEventBroker(AppProperties appProperties) {
+        return new EmbeddedEventBroker(appProperties.getEventBus());
+    }
+
+    @Bean(destroyMethod = "close")
+    public EventBus eventBus(AppProperties appProperties, ObjectProvider<EmbeddedEventBroker> embeddedBroker) {
+        AppProperties.EventBus config = appProperties.getEventBus();
+        if (config.getMode() == AppProperties.EventBusMode.TCP) {
+            // 内嵌代理先于总线启动, 避免首次连接失败
+            embeddedBroker.getIfAvailable();
+            TcpEventBus eventBus = new TcpEventBus(config);
+            eventBus.start();
+            return eventBus;
+        }
+        return new InProcessEventBus();
+    }
+}
@@ -0,0 +1,153 @@
+package org.kolar.kolarcodercopilot.config;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.kolar.kolarcodercopilot.service.RequestMetricsRegistry;
+import org.kolar.kolarcodercopilot.service.Tracer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * 请求指标过滤器 (取代对每个 @PostMapping 的 AOP 日志)
+ * 每个请求记录进行中数量与耗时直方图 (按路由模板), 只记录慢请求与按路由采样的请求日志;
+ * 异步请求 (SSE / 流式响应) 在异步完成时记录, 耗时为连接的整个生命周期
+ * 同时作为 HandlerInterceptor 注册: 路由匹配后计入该路由的进行中请求
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class RequestMetricsFilter extends OncePerRequestFilter implements HandlerInterceptor {
+    private static final Logger logger = LoggerFactory.getLogger(RequestMetricsFilter.class);
+
+    private static final String STARTED_ATTRIBUTE = RequestMetricsFilter.class.getName() + ".started";
+    private static final String ROUTE_ATTRIBUTE = RequestMetricsFilter.class.getName() + ".route";
+
+    private final RequestMetricsRegistry registry;
+    private final Tracer tracer;
+    private final long slowThresholdMillis;
+    private final SampledLogger requestLog;
+
+    public RequestMetricsFilter(RequestMetricsRegistry registry, Tracer tracer, AppProperties appProperties) {
+        this.registry = registry;
+        this.tracer = tracer;
+        AppProperties.Metrics config = appProperties.getMetrics();
+        this.slowThresholdMillis = config.getSlowRequestThresholdMillis();
+        this.requestLog = SampledLogger.of("http", logger, config.getRequestLogSampleMillis(), 1);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long startNanos = System.nanoTime();
+        registry.requestStarted();
+        request.setAttribute(STARTED_ATTRIBUTE, Boolean.TRUE);
+        Tracer.Span span = tracer.start(request.getMethod(), Tracer.SpanKind.SERVER)
+                .attribute("http.request.method", request.getMethod())
+                .attribute("url.path", request.getRequestURI());
+        boolean failed = false;
+        try {
+            chain.doFilter(request, response);
+        } catch (IOException | ServletException | RuntimeException e) {
+            failed = true;
+            span.error(e);
+            throw e;
+        } finally {
+            String route = routeOf(request);
+            // 异步请求的 span 只覆盖处理器分派, 连接生命周期由指标记录
+            span.name(route).attribute("http.route", route).attribute("async", request.isAsyncStarted());
+            span.close();
+            if (!failed && request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new CompletionListener(request, startNanos));
+            } else {
+                complete(request, failed ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : response.getStatus(),
+                        response.getContentType(), startNanos);
+            }
+        }
+    }
+
+    /**
+     * 路由匹配后调用 (异步再分派时也会调用, 只计一次)
+     */
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getAttribute(STARTED_ATTRIBUTE) != null && request.getAttribute(ROUTE_ATTRIBUTE) == null) {
+            request.setAttribute(ROUTE_ATTRIBUTE, registry.routeStarted(routeOf(request)));
+        }
+        return true;
+    }
+
+    private void complete(HttpServletRequest request, int status, String contentType, long startNanos) {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        registry.requestCompleted((RequestMetricsRegistry.RouteMetrics) request.getAttribute(ROUTE_ATTRIBUTE),
+                elapsedNanos, status);
+
+        long elapsedMillis = elapsedNanos / 1_000_000;
+        String route = routeOf(request);
+        boolean eventStream = contentType != null && contentType.startsWith(MediaType.TEXT_EVENT_STREAM_VALUE);
+        if (!eventStream && elapsedMillis >= slowThresholdMillis) {
+            logger.warn("🐢 慢请求: {} | 状态: {} | 耗时: {}ms", route, status, elapsedMillis);
+        } else {
+            requestLog.info(route, "🌐 请求完成: {} | 状态: {} | 耗时: {}ms", route, status, elapsedMillis);
+        }
+    }
+
+    /**
+     * 路由模板 (如 GET /api/logs/stream/{taskId}), 未匹配到处理器时为 UNMATCHED
+     */
+    private static String routeOf(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (pattern == null) {
+            return request.getMethod() + " " + RequestMetricsRegistry.UNMATCHED_ROUTE;
+        }
+        return request.getMethod() + " " + pattern;
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return true;
+    }
+
+    /**
+     * 异步请求结束 (完成/超时/出错后都会触发 onComplete)
+     */
+    private class CompletionListener implements AsyncListener {
+        private final HttpServletRequest request;
+        private final long startNanos;
+
+        CompletionListener(HttpServletRequest request, long startNanos) {
+            this.request = request;
+            this.startNanos = startNanos;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            HttpServletResponse response = (HttpServletResponse) event.getSuppliedResponse();
+            complete(request, response.getStatus(), response.getContentType(), startNanos);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
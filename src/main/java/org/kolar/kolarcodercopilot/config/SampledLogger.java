@@ -0,0 +1,101 @@
+package org.kolar.kolarcodercopilot.config;
+
+import org.slf4j.Logger;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 热路径采样日志
+ * 每个 key 每个时间窗口最多输出 maxPerWindow 行, 其余只计数, 下次输出时附带被抑制的行数;
+ * 每个 key 的总次数作为计数器对外提供, 取代逐事件的 INFO 日志
+ */
+public final class SampledLogger {
+    private static final List<SampledLogger> registry = new CopyOnWriteArrayList<>();
+
+    private final String name;
+    private final Logger logger;
+    private final long windowNanos;
+    private final int maxPerWindow;
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+
+    private SampledLogger(String name, Logger logger, long windowMillis, int maxPerWindow) {
+        this.name = name;
+        this.logger = logger;
+        this.windowNanos = windowMillis * 1_000_000L;
+        this.maxPerWindow = maxPerWindow;
+    }
+
+    /**
+     * 创建并登记采样日志
+     * @param name 计数器前缀
+     */
+    public static SampledLogger of(String name, Logger logger, long windowMillis, int maxPerWindow) {
+        SampledLogger sampledLogger = new SampledLogger(name, logger, windowMillis, maxPerWindow);
+        registry.add(sampledLogger);
+        return sampledLogger;
+    }
+
+    public void info(String key, String format, Object... args) {
+        Window window = windows.computeIfAbsent(key, k -> new Window());
+        window.total.increment();
+        if (!logger.isInfoEnabled()) {
+            return;
+        }
+        if (!window.tryAcquire()) {
+            window.suppressed.incrementAndGet();
+            return;
+        }
+        long suppressed = window.suppressed.getAndSet(0);
+        if (suppressed > 0) {
+            Object[] withSuppressed = Arrays.copyOf(args, args.length + 1);
+            withSuppressed[args.length] = suppressed;
+            logger.info(format + " (已抑制相同日志 {} 条)", withSuppressed);
+        } else {
+            logger.info(format, args);
+        }
+    }
+
+    /**
+     * 只计数不输出
+     */
+    public void count(String key) {
+        windows.computeIfAbsent(key, k -> new Window()).total.increment();
+    }
+
+    /**
+     * 所有采样日志的计数 name.key -> 次数
+     */
+    public static Map<String, Long> snapshotCounters() {
+        Map<String, Long> counters = new TreeMap<>();
+        for (SampledLogger sampledLogger : registry) {
+            for (Map.Entry<String, Window> entry : sampledLogger.windows.entrySet()) {
+                counters.merge(sampledLogger.name + "." + entry.getKey(), entry.getValue().total.sum(), Long::sum);
+            }
+        }
+        return counters;
+    }
+
+    private final class Window {
+        private final LongAdder total = new LongAdder();
+        private final AtomicLong suppressed = new AtomicLong();
+        private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+        private final AtomicInteger emitted = new AtomicInteger();
+
+        boolean tryAcquire() {
+            long now = System.nanoTime();
+            long start = windowStart.get();
+            if (now - start >= windowNanos && windowStart.compareAndSet(start, now)) {
+                emitted.set(0);
+            }
+            return emitted.incrementAndGet() <= maxPerWindow;
+        }
+    }
+}
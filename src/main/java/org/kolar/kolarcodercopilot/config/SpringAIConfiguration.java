@@ -2,13 +2,16 @@ package org.kolar.kolarcodercopilot.config;
 
 import org.kolar.kolarcodercopilot.schema.SchemaValidator;
 import org.kolar.kolarcodercopilot.tools.BaseTool;
-import org.kolar.kolarcodercopilot.tools.SmartEditTool;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.web.client.RestClientCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
 import java.util.List;
 
 /**
@@ -24,8 +27,8 @@ public class SpringAIConfiguration {
     private ChatClient chatClient;
 
     @Bean
-    public ChatClient chatClient(ChatModel chatModel,
-                                 SmartEditTool smartEditTool) {
+    public ChatClient chatClient(ChatModel chatModel) {
+        // 工具不再固定在 ChatClient 上: 由 BuiltinToolRegistrar 注册到工具注册表, 每次模型调用使用当前启用的工具
         // 临时简化依赖用于测试AOP功能
         // 动态获取工作目录路径
         String workspaceDir = appProperties.getWorkspace().getRootDirectory();
@@ -84,11 +87,25 @@ public class SpringAIConfiguration {
                         
                         Remember: Your goal is to deliver COMPLETE solutions through continuous execution!
                         """)
-                .defaultTools(fileOperationTools, smartEditTool, analyzeProjectTool, projectScaffoldTool)
                 .build();
     }
 
 
+    /**
+     * 模型 HTTP 调用超时
+     * 非流式轮次直接在任务线程上同步调用模型, 卡住的调用由读取超时结束并释放线程
+     */
+    @Bean
+    public RestClientCustomizer modelHttpTimeoutCustomizer() {
+        AppProperties.Execution execution = appProperties.getExecution();
+        HttpClient httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(execution.getModelConnectTimeoutSeconds()))
+                .build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(Duration.ofSeconds(execution.getModelReadTimeoutSeconds()));
+        return builder -> builder.requestFactory(requestFactory);
+    }
+
     /**
      * 为所有工具注入Schema验证器
      */
@@ -0,0 +1,71 @@
+package org.kolar.kolarcodercopilot.config;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SSE推送执行器
+ * 承载连接写任务 / 批量窗口 / 心跳巡检 / 增量文本刷新等推送侧的短任务, 与 {@link TaskExecutors} 隔离:
+ * 任务线程池被阻塞的模型调用与工具占满时, 事件仍能按时发送, 心跳与连接回收不会被延误
+ * 写任务线程数较小 (app.sse.writer-threads), 计时由单个调度线程完成, 到期后转交写任务线程运行
+ */
+@Component
+public class SseExecutors {
+    private static final Logger logger = LoggerFactory.getLogger(SseExecutors.class);
+
+    private final ExecutorService writer;
+    private final ScheduledExecutorService timer =
+            Executors.newSingleThreadScheduledExecutor(new TaskExecutors.NamedThreadFactory("copilot-sse-timer-"));
+
+    public SseExecutors(AppProperties appProperties) {
+        int threads = Math.max(1, appProperties.getSse().getWriterThreads());
+        this.writer = Executors.newFixedThreadPool(threads, new TaskExecutors.NamedThreadFactory("copilot-sse-"));
+        logger.info("📡 SSE推送执行器已初始化: writerThreads={}", threads);
+    }
+
+    /**
+     * 写任务线程, 用于连接的发送任务
+     */
+    public Executor getWriter() {
+        return writer;
+    }
+
+    /**
+     * 延迟执行 携带当前任务上下文
+     */
+    public ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit) {
+        Runnable wrapped = TaskContextHolder.wrap(task);
+        return timer.schedule(() -> writer.execute(wrapped), delay, unit);
+    }
+
+    /**
+     * 周期执行
+     */
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long initialDelay, long period, TimeUnit unit) {
+        Runnable wrapped = TaskContextHolder.wrap(task);
+        return timer.scheduleAtFixedRate(() -> writer.execute(wrapped), initialDelay, period, unit);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(5, TimeUnit.SECONDS)) {
+                writer.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            writer.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
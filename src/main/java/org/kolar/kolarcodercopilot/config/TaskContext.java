@@ -0,0 +1,72 @@
+package org.kolar.kolarcodercopilot.config;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 任务上下文快照 (不可变)
+ * 携带 taskId / traceId / spanId / 截止时间, 跨线程传递时只传递引用, 不做任何拷贝
+ */
+public final class TaskContext {
+
+    public static final TaskContext EMPTY = new TaskContext(null, null, null, 0L);
+
+    private final String taskId;
+    private final String traceId;
+    private final String spanId;
+    private final long deadlineMillis; // 0 表示无截止时间
+
+    private TaskContext(String taskId, String traceId, String spanId, long deadlineMillis) {
+        this.taskId = taskId;
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.deadlineMillis = deadlineMillis;
+    }
+
+    /**
+     * 为新任务创建上下文 生成新的traceId
+     */
+    public static TaskContext forTask(String taskId) {
+        return new TaskContext(taskId, newTraceId(), null, 0L);
+    }
+
+    public TaskContext withSpanId(String spanId) {
+        return new TaskContext(taskId, traceId, spanId, deadlineMillis);
+    }
+
+    public TaskContext withDeadline(long deadlineMillis) {
+        return new TaskContext(taskId, traceId, spanId, deadlineMillis);
+    }
+
+    public TaskContext withTimeout(long timeoutMillis) {
+        return withDeadline(System.currentTimeMillis() + timeoutMillis);
+    }
+
+    public String getTaskId() { return taskId; }
+    public String getTraceId() { return traceId; }
+    public String getSpanId() { return spanId; }
+    public long getDeadlineMillis() { return deadlineMillis; }
+
+    public boolean hasDeadline() { return deadlineMillis > 0; }
+
+    /**
+     * 距离截止时间的剩余毫秒数, 无截止时间时返回 Long.MAX_VALUE
+     */
+    public long remainingMillis() {
+        return hasDeadline() ? deadlineMillis - System.currentTimeMillis() : Long.MAX_VALUE;
+    }
+
+    public boolean isExpired() {
+        return hasDeadline() && System.currentTimeMillis() >= deadlineMillis;
+    }
+
+    private static String newTraceId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return String.format("%016x%016x", random.nextLong(), random.nextLong());
+    }
+
+    @Override
+    public String toString() {
+        return "TaskContext{taskId='" + taskId + "', traceId='" + traceId + "', spanId='" + spanId
+                + "', deadlineMillis=" + deadlineMillis + "}";
+    }
+}
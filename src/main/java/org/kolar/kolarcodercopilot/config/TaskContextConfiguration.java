@@ -0,0 +1,31 @@
+package org.kolar.kolarcodercopilot.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * 任务上下文传播配置
+ * 注册 Reactor 调度钩子, 使 publishOn / subscribeOn 切换线程后仍能读取到任务上下文
+ * 钩子只复制发起调度的线程上的上下文, 来自 netty 线程的信号需经 Reactor Context 传递 (见 TaskContextHolder)
+ */
+@Configuration
+public class TaskContextConfiguration {
+    private static final Logger logger = LoggerFactory.getLogger(TaskContextConfiguration.class);
+
+    private static final String SCHEDULE_HOOK_KEY = "copilot-task-context";
+
+    @PostConstruct
+    public void registerReactorHook() {
+        Schedulers.onScheduleHook(SCHEDULE_HOOK_KEY, TaskContextHolder::wrap);
+        logger.info("🔗 已注册Reactor任务上下文传播钩子");
+    }
+
+    @PreDestroy
+    public void resetReactorHook() {
+        Schedulers.resetOnScheduleHook(SCHEDULE_HOOK_KEY);
+    }
+}
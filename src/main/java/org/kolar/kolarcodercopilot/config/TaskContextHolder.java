@@ -1,25 +1,198 @@
 package org.kolar.kolarcodercopilot.config;
 
+import reactor.core.publisher.Signal;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
 /**
  *  任务上下文管理 供AOP切面使用
+ *  线程上只保存一个不可变的 TaskContext 引用, 快照/恢复都是一次引用读写
+ *  跨越 Executor / CompletableFuture 边界时通过 wrap 传递;
+ *  Reactor 管道的信号可能来自 netty 线程 (线程上没有任务上下文), 通过 Reactor Context 传递:
+ *  订阅方 contextWrite(toReactorContext()), 信号处理方 doOnEach(withReactorContext(...));
+ *  流式调用中模型请求的工具在 boundedElastic 线程上执行, 通过 ToolContext 传递:
+ *  请求方 .toolContext(toToolContext()), 工具分发器执行前 fromToolContext(...) 绑定
  */
 public class TaskContextHolder {
-    private static final ThreadLocal<String> taskIdHolder = new ThreadLocal<>();
+    private static final ThreadLocal<TaskContext> contextHolder = new ThreadLocal<>();
+
     /**
-     * 设置当前任务Id
+     * Reactor Context 中存放任务上下文的键
      */
-    public static void setCurrentTaskId(String taskId) { taskIdHolder.set(taskId); }
+    public static final Class<TaskContext> REACTOR_CONTEXT_KEY = TaskContext.class;
+
+    /**
+     * ToolContext 中存放任务上下文的键
+     */
+    public static final String TOOL_CONTEXT_KEY = "copilot.taskContext";
+
+    /**
+     * 设置当前任务Id (开启新的trace)
+     */
+    public static void setCurrentTaskId(String taskId) { contextHolder.set(TaskContext.forTask(taskId)); }
     /**
      * 获取当前任务Id
      */
-    public static String getCurrentTaskId() { return taskIdHolder.get(); }
+    public static String getCurrentTaskId() {
+        TaskContext context = contextHolder.get();
+        return context != null ? context.getTaskId() : null;
+    }
     /**
      * 清除当前任务
      */
-    public static void clearCurrentTaskId() { taskIdHolder.remove(); }
+    public static void clearCurrentTaskId() { contextHolder.remove(); }
     /**
      * 检查当前任务Id是否存在
      */
-    public static boolean hasCurrentTaskId() { return taskIdHolder.get() != null; }
+    public static boolean hasCurrentTaskId() { return getCurrentTaskId() != null; }
+
+    /**
+     * 当前线程的任务上下文, 不存在时返回 TaskContext.EMPTY
+     */
+    public static TaskContext current() {
+        TaskContext context = contextHolder.get();
+        return context != null ? context : TaskContext.EMPTY;
+    }
+
+    /**
+     * 绑定上下文到当前线程, 返回之前绑定的上下文 (用于 restore)
+     */
+    public static TaskContext attach(TaskContext context) {
+        TaskContext previous = contextHolder.get();
+        if (context == null || context == TaskContext.EMPTY) {
+            contextHolder.remove();
+        } else {
+            contextHolder.set(context);
+        }
+        return previous;
+    }
+
+    /**
+     * 恢复 attach 之前的上下文
+     */
+    public static void restore(TaskContext previous) {
+        if (previous == null) {
+            contextHolder.remove();
+        } else {
+            contextHolder.set(previous);
+        }
+    }
+
+    /**
+     * 捕获当前上下文, 在执行线程上恢复, 执行完毕后还原该线程原有的值
+     */
+    public static Runnable wrap(Runnable task) {
+        TaskContext captured = contextHolder.get();
+        if (captured == null) {
+            return task;
+        }
+        return () -> {
+            TaskContext previous = attach(captured);
+            try {
+                task.run();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    public static <T> Supplier<T> wrap(Supplier<T> supplier) {
+        TaskContext captured = contextHolder.get();
+        if (captured == null) {
+            return supplier;
+        }
+        return () -> {
+            TaskContext previous = attach(captured);
+            try {
+                return supplier.get();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    public static <T> Callable<T> wrap(Callable<T> callable) {
+        TaskContext captured = contextHolder.get();
+        if (captured == null) {
+            return callable;
+        }
+        return () -> {
+            TaskContext previous = attach(captured);
+            try {
+                return callable.call();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    /**
+     * 包装 Executor, 每次提交时捕获提交线程的上下文
+     * 可直接传给 CompletableFuture.supplyAsync(supplier, executor)
+     */
+    public static Executor wrap(Executor executor) {
+        return command -> executor.execute(wrap(command));
+    }
+
+    /**
+     * 把当前上下文写入 Reactor Context, 用法: flux.contextWrite(TaskContextHolder.toReactorContext())
+     */
+    public static Function<Context, Context> toReactorContext() {
+        TaskContext captured = contextHolder.get();
+        return reactorContext -> captured == null ? reactorContext : reactorContext.put(REACTOR_CONTEXT_KEY, captured);
+    }
+
+    /**
+     * 从 Reactor Context 读取任务上下文
+     */
+    public static TaskContext fromReactorContext(ContextView reactorContext) {
+        return reactorContext.getOrDefault(REACTOR_CONTEXT_KEY, TaskContext.EMPTY);
+    }
+
+    /**
+     * 当前上下文作为 ToolContext 的内容, 用法: chatClient.prompt().toolContext(TaskContextHolder.toToolContext())
+     */
+    public static Map<String, Object> toToolContext() {
+        TaskContext captured = contextHolder.get();
+        return captured == null ? Map.of() : Map.of(TOOL_CONTEXT_KEY, captured);
+    }
+
+    /**
+     * 从 ToolContext 的内容读取任务上下文
+     */
+    public static TaskContext fromToolContext(Map<String, Object> toolContext) {
+        Object context = toolContext != null ? toolContext.get(TOOL_CONTEXT_KEY) : null;
+        return context instanceof TaskContext ? (TaskContext) context : TaskContext.EMPTY;
+    }
+
+    /**
+     * 处理 onNext 信号时绑定 Reactor Context 中的任务上下文, 用法: flux.doOnEach(TaskContextHolder.withReactorContext(handler))
+     * Reactor Context 中没有任务上下文时保留当前线程的值
+     */
+    public static <T> Consumer<Signal<T>> withReactorContext(Consumer<T> handler) {
+        return signal -> {
+            if (!signal.isOnNext()) {
+                return;
+            }
+            TaskContext context = fromReactorContext(signal.getContextView());
+            if (context == TaskContext.EMPTY) {
+                handler.accept(signal.get());
+                return;
+            }
+            TaskContext previous = attach(context);
+            try {
+                handler.accept(signal.get());
+            } finally {
+                restore(previous);
+            }
+        };
+    }
 
 }
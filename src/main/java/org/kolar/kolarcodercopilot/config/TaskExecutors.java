@@ -0,0 +1,158 @@
+package org.kolar.kolarcodercopilot.config;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 任务执行器
+ * 统一承载 任务 / 对话轮次 / 工具调用 的异步执行, SSE推送与计时使用独立的 {@link SseExecutors}
+ * 通过 app.execution.mode 选择平台线程池或虚拟线程
+ * 延迟任务由单个调度线程计时, 到期后转交执行器运行
+ * 平台线程池的等待队列有界 (app.execution.platform-queue-capacity), 线程与队列都满时拒绝提交
+ * ({@link RejectedExecutionException}), 由提交方把任务标记为失败, 而不是无限堆积等待中的任务
+ * 注意: 运行在本执行器上的任务不要再提交子任务并阻塞等待其结果 (平台线程池满载时会互相等待直到超时),
+ * 轮次与工具调用直接在任务线程上同步执行
+ */
+@Component
+public class TaskExecutors {
+    private static final Logger logger = LoggerFactory.getLogger(TaskExecutors.class);
+
+    private final ExecutorService executor;
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("copilot-scheduler-"));
+    private final boolean virtual;
+
+    public TaskExecutors(AppProperties appProperties) {
+        AppProperties.Execution execution = appProperties.getExecution();
+
+        ExecutorService virtualExecutor = null;
+        if (execution.getMode() == AppProperties.ExecutionMode.VIRTUAL) {
+            virtualExecutor = createVirtualExecutor();
+            if (virtualExecutor == null) {
+                logger.warn("⚠️ 当前JDK不支持虚拟线程({}), 回退到平台线程池", Runtime.version());
+            }
+        }
+
+        this.virtual = virtualExecutor != null;
+        this.executor = virtual ? virtualExecutor : createPlatformExecutor(execution);
+        logger.info("🧵 任务执行器已初始化: mode={}", virtual ? "VIRTUAL"
+                : "PLATFORM(" + execution.getPlatformPoolSize() + ", queue=" + execution.getPlatformQueueCapacity() + ")");
+    }
+
+    /**
+     * 异步执行 携带当前任务上下文
+     */
+    public CompletableFuture<Void> runAsync(Runnable task) {
+        return CompletableFuture.runAsync(TaskContextHolder.wrap(task), executor);
+    }
+
+    /**
+     * 异步执行并返回结果 携带当前任务上下文
+     */
+    public <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier) {
+        return CompletableFuture.supplyAsync(TaskContextHolder.wrap(supplier), executor);
+    }
+
+    /**
+     * 延迟执行 携带当前任务上下文, 调度线程只负责计时
+     */
+    public ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit) {
+        Runnable wrapped = TaskContextHolder.wrap(task);
+        return scheduler.schedule(() -> executeScheduled(wrapped), delay, unit);
+    }
+
+    /**
+     * 周期执行, 调度线程只负责计时
+     */
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long initialDelay, long period, TimeUnit unit) {
+        Runnable wrapped = TaskContextHolder.wrap(task);
+        return scheduler.scheduleAtFixedRate(() -> executeScheduled(wrapped), initialDelay, period, unit);
+    }
+
+    /**
+     * 到期任务转交执行器; 执行器满载时跳过本次 (异常抛回调度线程会终止周期任务)
+     */
+    private void executeScheduled(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            logger.warn("⚠️ 任务执行器已满, 跳过本次定时任务");
+        }
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 固定大小的平台线程池, 等待队列有界, 满载时拒绝提交
+     */
+    private static ExecutorService createPlatformExecutor(AppProperties.Execution execution) {
+        int poolSize = execution.getPlatformPoolSize();
+        return new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, execution.getPlatformQueueCapacity())),
+                new NamedThreadFactory("copilot-task-"), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 项目以JDK 17编译, 虚拟线程执行器通过反射获取, 运行在JDK 21+时生效
+     */
+    private static ExecutorService createVirtualExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    static class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
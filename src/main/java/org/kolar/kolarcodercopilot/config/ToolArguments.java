@@ -0,0 +1,81 @@
+package org.kolar.kolarcodercopilot.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import org.springframework.ai.chat.model.ToolContext;
+
+import java.util.List;
+
+/**
+ * 工具调用参数的解析
+ * 参数按调用顺序转换为 JSON 数组 (日志与任务日志记录), 并从中提取操作的文件/目录
+ */
+final class ToolArguments {
+    static final int MAX_PARAMETERS_CHARS = 4000;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    // 参数对象中表示操作目标的字段
+    private static final List<String> PATH_FIELDS = List.of("filePath", "path", "projectPath", "directoryPath", "targetPath");
+
+    private ToolArguments() {}
+
+    /**
+     * 参数转换为 JSON 数组; ToolContext 只记录占位符, 无法序列化的参数记录为字符串
+     */
+    static ArrayNode toJson(Object[] args) {
+        ArrayNode arguments = objectMapper.createArrayNode();
+        if (args == null) {
+            return arguments;
+        }
+        for (Object arg : args) {
+            if (arg instanceof ToolContext) {
+                arguments.add("<toolContext>");
+                continue;
+            }
+            try {
+                arguments.add(objectMapper.valueToTree(arg));
+            } catch (IllegalArgumentException e) {
+                arguments.add(TextNode.valueOf(String.valueOf(arg)));
+            }
+        }
+        return arguments;
+    }
+
+    /**
+     * 参数的 JSON 文本, 超出上限时截断
+     */
+    static String format(ArrayNode arguments) {
+        if (arguments.isEmpty()) {
+            return null;
+        }
+        String json = arguments.toString();
+        return json.length() > MAX_PARAMETERS_CHARS ? json.substring(0, MAX_PARAMETERS_CHARS) + "...(truncated)" : json;
+    }
+
+    /**
+     * 提取操作的文件/目录: 路径形式的字符串参数, 或参数对象中的路径字段
+     */
+    static String extractPath(ArrayNode arguments) {
+        for (JsonNode argument : arguments) {
+            if (argument.isTextual() && looksLikePath(argument.asText())) {
+                return argument.asText();
+            }
+            if (argument.isObject()) {
+                for (String field : PATH_FIELDS) {
+                    JsonNode value = argument.get(field);
+                    if (value != null && value.isTextual() && !value.asText().isBlank()) {
+                        return value.asText();
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean looksLikePath(String value) {
+        return value.length() <= 1024 && value.indexOf('\n') < 0
+                && (value.indexOf('/') >= 0 || value.indexOf('\\') >= 0);
+    }
+}
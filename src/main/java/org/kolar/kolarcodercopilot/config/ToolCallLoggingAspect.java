@@ -1,9 +1,16 @@
 package org.kolar.kolarcodercopilot.config;
 
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
+import org.kolar.kolarcodercopilot.model.TaskStage;
+import org.kolar.kolarcodercopilot.service.FlightEvents;
 import org.kolar.kolarcodercopilot.service.LogStreamService;
+import org.kolar.kolarcodercopilot.service.StageMetrics;
+import org.kolar.kolarcodercopilot.service.TaskJournal;
+import org.kolar.kolarcodercopilot.service.ToolMetricsRegistry;
+import org.kolar.kolarcodercopilot.service.Tracer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,16 +27,43 @@ public class ToolCallLoggingAspect {
     @Autowired
     private LogStreamService  logStreamService;  // 实时日志流推送
 
+    @Autowired
+    private TaskJournal taskJournal;  // 任务日志 记录工具副作用用于崩溃恢复
+
+    @Autowired
+    private ToolMetricsRegistry toolMetricsRegistry;  // 工具调用计数与耗时直方图
+
+    @Autowired
+    private StageMetrics stageMetrics;  // 任务时间线中的工具调用阶段
+
+    @Autowired
+    private Tracer tracer;  // 工具调用 span, 父 span 为当前模型调用
+
+
+    /**
+     * 工具方法调用 (由切面或工具分发器执行)
+     */
+    @FunctionalInterface
+    public interface ToolInvocation {
+        Object proceed() throws Throwable;
+    }
 
     @Around("@annotation(org.springframework.ai.tool.annotation.Tool)")
     public Object interceptToolAnnotation(ProceedingJoinPoint joinPoint) throws Throwable {
-        Object[] args = joinPoint.getArgs();
-        String methodName = joinPoint.getSignature().getName();
-        String className = joinPoint.getSignature().getDeclaringTypeName();
+        return aroundToolCall(joinPoint.getSignature().getDeclaringTypeName(), joinPoint.getSignature().getName(),
+                joinPoint.getArgs(), joinPoint::proceed);
+    }
 
+    /**
+     * 工具调用的日志/推送/指标/追踪
+     * ToolDispatcher 直接调用未代理的工具对象, 经此方法保留与切面相同的处理
+     */
+    public Object aroundToolCall(String className, String methodName, Object[] args,
+                                 ToolInvocation invocation) throws Throwable {
         // 详细的参数解析
-        String parametersInfo = formatMethodParameters(args);
-        String fileInfo = extractFileInfoFromMethodArgs(methodName, args);
+        ArrayNode arguments = ToolArguments.toJson(args);
+        String parametersInfo = formatMethodParameters(arguments);
+        String fileInfo = extractFileInfoFromMethodArgs(methodName, arguments);
 
         logger.debug("🚀 [Spring AI @Tool] 执行工具: {}.{} | 参数: {} | 文件/目录: {}",
                 className, methodName, parametersInfo, fileInfo);
@@ -37,7 +71,7 @@ public class ToolCallLoggingAspect {
         String taskId = getCurrentTaskId();
 
         // 推动工具执行概要事件
-        if (taskId == null) {
+        if (taskId != null) {
             String summary = generateExecutionSummary(methodName, fileInfo, args);
             String reason = generateExecutionReason(methodName, fileInfo, args);
             logStreamService.pushToolExecuteSummary(taskId, methodName, fileInfo, summary, reason);
@@ -50,17 +84,29 @@ public class ToolCallLoggingAspect {
             logStreamService.pushToolStart(taskId, methodName, fileInfo, startMessage);
         }
 
+        Tracer.Span toolSpan = tracer.start("tool " + methodName)
+                .attribute("tool.name", methodName)
+                .attribute("tool.target", fileInfo);
         long startTime = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        boolean success = false;
+        Object toolResult = null;
+        FlightEvents.ToolCallEvent toolEvent = new FlightEvents.ToolCallEvent();
+        toolEvent.begin();
         try{
             // 放行！ 让原方法执行
             // 这里是放行信号 ，走SmartEditTool的真正逻辑
-            Object proceedResult = joinPoint.proceed();
+            Object proceedResult = invocation.proceed();
+            success = true;
+            toolResult = proceedResult;
             long executionTime = System.currentTimeMillis() - startTime;
             logger.debug("✅ [Spring AI @Tool] 工具执行成功: {}.{} | 耗时: {}ms | 文件/目录: {} | 参数: {}",
                     className, methodName, executionTime, fileInfo, parametersInfo);
 
             // 推送工具执行成功事件
             if(taskId != null){
+                // 记录实际参数, 恢复时告知模型哪些调用已经生效
+                taskJournal.toolEffect(taskId, methodName, parametersInfo);
                 String successMessage = generateSuccessMessage(methodName, fileInfo, proceedResult, executionTime);
                 logStreamService.pushToolExecuteSuccess(taskId, methodName, fileInfo, proceedResult, successMessage, executionTime);
             }
@@ -69,6 +115,7 @@ public class ToolCallLoggingAspect {
         }catch (Exception e){
             long executionTime = System.currentTimeMillis() - startTime;
 
+            toolSpan.error(e);
             logger.error("❌ [Spring AI @Tool] 工具执行失败: {}.{} | 耗时: {}ms | 文件/目录: {} | 参数: {} | 错误: {}",
                     className, methodName, executionTime, fileInfo, parametersInfo, e.getMessage());
 
@@ -78,6 +125,19 @@ public class ToolCallLoggingAspect {
                 logStreamService.pushToolError(taskId, methodName, fileInfo, errorMessage, executionTime);
             }
             throw e;
+        } finally {
+            toolSpan.close();
+            toolMetricsRegistry.record(methodName, System.nanoTime() - startNanos, success);
+            stageMetrics.record(taskId, TaskStage.TOOL_CALL, startNanos, methodName);
+            toolEvent.end();
+            if (toolEvent.shouldCommit()) {
+                toolEvent.taskId = taskId;
+                toolEvent.toolName = methodName;
+                toolEvent.target = fileInfo;
+                toolEvent.resultChars = toolResult != null ? String.valueOf(toolResult).length() : 0;
+                toolEvent.success = success;
+                toolEvent.commit();
+            }
         }
     }
 
@@ -113,12 +173,12 @@ public class ToolCallLoggingAspect {
      *  从方法参数中直接提取文件信息
      * ！！！ 智能参数解析引擎 ！！！
      */
-    private String extractFileInfoFromMethodArgs(String methodName, Object[] args) {
-        return null;
+    private String extractFileInfoFromMethodArgs(String methodName, ArrayNode arguments) {
+        return ToolArguments.extractPath(arguments);
     }
 
-    private String formatMethodParameters(Object[] args) {
-        return null;
+    private String formatMethodParameters(ArrayNode arguments) {
+        return ToolArguments.format(arguments);
     }
 
     /**
@@ -0,0 +1,24 @@
+package org.kolar.kolarcodercopilot.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Spring MVC 配置
+ */
+@Configuration
+public class WebMvcConfiguration implements WebMvcConfigurer {
+
+    private final RequestMetricsFilter requestMetricsFilter;
+
+    public WebMvcConfiguration(RequestMetricsFilter requestMetricsFilter) {
+        this.requestMetricsFilter = requestMetricsFilter;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // 路由匹配后计入该路由的进行中请求
+        registry.addInterceptor(requestMetricsFilter);
+    }
+}
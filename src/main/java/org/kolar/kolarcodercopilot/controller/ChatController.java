@@ -1,25 +1,34 @@
 package org.kolar.kolarcodercopilot.controller;
 
+import org.kolar.kolarcodercopilot.config.AppProperties;
+import org.kolar.kolarcodercopilot.config.TaskExecutors;
 import org.kolar.kolarcodercopilot.dto.ChatRequestDto;
+import org.kolar.kolarcodercopilot.service.ChatHistoryStore;
 import org.kolar.kolarcodercopilot.service.ContinuousConversationService;
 import org.kolar.kolarcodercopilot.service.ToolExecutionLogger;
+import org.kolar.kolarcodercopilot.tools.ToolRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * 聊天控制器
@@ -33,14 +42,24 @@ public class ChatController {
     private final ChatClient chatClient;
     private final ContinuousConversationService continuousConversationService;
     private final ToolExecutionLogger toolExecutionLogger;
+    private final TaskExecutors taskExecutors;
 
-    // 简单地会话存储 （生产环境建议db / redis）
-    private final List<Message> chatHistory = new ArrayList<>();
+    // 按会话隔离的历史存储 (内存LRU + 磁盘冷数据)
+    private final ChatHistoryStore chatHistoryStore;
+    private final AppProperties.Streaming streamingConfig;
+    private final ToolRegistry toolRegistry;
 
-    public ChatController(ChatClient chatClient, ContinuousConversationService continuousConversationService, ToolExecutionLogger toolExecutionLogger) {
+    public ChatController(ChatClient chatClient, ContinuousConversationService continuousConversationService,
+                          ToolExecutionLogger toolExecutionLogger, TaskExecutors taskExecutors,
+                          ChatHistoryStore chatHistoryStore, AppProperties appProperties,
+                          ToolRegistry toolRegistry) {
         this.chatClient = chatClient;
         this.continuousConversationService = continuousConversationService;
         this.toolExecutionLogger = toolExecutionLogger;
+        this.taskExecutors = taskExecutors;
+        this.chatHistoryStore = chatHistoryStore;
+        this.streamingConfig = appProperties.getStreaming();
+        this.toolRegistry = toolRegistry;
     }
 
     /**
@@ -49,6 +68,9 @@ public class ChatController {
      */
     @PostMapping("/message")
     public Mono<ChatResponseDto> sendMessage(@RequestBody ChatRequestDto request){
+            if (isBlank(request.getSessionId())) {
+                return Mono.error(missingSessionId());
+            }
 
             return Mono.fromCallable(() ->{
                 try {
@@ -57,21 +79,38 @@ public class ChatController {
                     logger.info("🕐 请求时间: {}", java.time.LocalDateTime.now());
 
                     // 同一使用异步模式 让大模型自己决定是否需要工具调用
-                    String taskId = continuousConversationService.startTask(request.getMessage());
+                    String taskId = continuousConversationService.startTask(request.getMessage(), request.getSessionId());
                     logger.info("🆔 任务ID: {}", taskId);
 
                     // 记录任务开始
                     toolExecutionLogger.logToolStatistics(); // 显示当前工具使用统计
                     // 异步执行连续对话
-                    CompletableFuture.runAsync(() ->{
-                        try {
-                            logger.info("🚀 开始异步执行连续对话任务: {}", taskId);
-                            continuousConversationService.executeContinuousConversation(taskId, request.getMessage(), chatHistory);
-                            logger.info("✅ 连续对话任务完成: {}", taskId);
-                        } catch (Exception e) {
-                            logger.error("❌ 异步对话执行错误: {}", e.getMessage(), e);
-                        }
-                    });
+                    try {
+                        taskExecutors.runAsync(() ->{
+                            try {
+                                logger.info("🚀 开始异步执行连续对话任务: {}", taskId);
+                                List<Message> history = chatHistoryStore.getHistory(request.getSessionId());
+                                ContinuousConversationService.ConversationResult result =
+                                        continuousConversationService.executeContinuousConversation(taskId, request.getMessage(), history);
+                                if (result != null) {
+                                    chatHistoryStore.append(request.getSessionId(),
+                                            new UserMessage(request.getMessage()), new AssistantMessage(result.getFullResponse()));
+                                }
+                                logger.info("✅ 连续对话任务完成: {}", taskId);
+                            } catch (Exception e) {
+                                logger.error("❌ 异步对话执行错误: {}", e.getMessage(), e);
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        // 任务执行器满载: 已创建的任务标记为失败, 返回错误响应
+                        logger.warn("⚠️ 任务执行器已满, 拒绝任务: {}", taskId);
+                        continuousConversationService.failTask(taskId, "服务繁忙, 请稍后重试");
+                        ChatResponseDto busyResponse = new ChatResponseDto();
+                        busyResponse.setTaskId(taskId);
+                        busyResponse.setMessage("服务繁忙, 请稍后重试");
+                        busyResponse.setSuccess(false);
+                        return busyResponse;
+                    }
 
                     // 返回异步响应结果
                     ChatResponseDto chatResponseDto = new ChatResponseDto();
@@ -96,46 +135,85 @@ public class ChatController {
     /**
      * 处理简单请求对话
      * 流式响应 SSE
+     * 单一响应式管道: 客户端断开时取消信号传递到上游模型调用, 向上游的需求按 prefetch 分批请求,
+     * 会话历史的读写 (可能落盘) 放在 boundedElastic 上, 不占用模型流的IO线程
      */
     @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<String> streamMessage(@RequestBody ChatRequestDto request){
+    public Flux<ServerSentEvent<String>> streamMessage(@RequestBody ChatRequestDto request){
+        String sessionId = request.getSessionId();
+        if (isBlank(sessionId)) {
+            return Flux.error(missingSessionId());
+        }
         logger.info("🌊 开始流式对话: {}", request.getMessage());
 
-        return Flux.create(sink -> {
-            UserMessage userMessage = new UserMessage(request.getMessage());
-            chatHistory.add(userMessage);
-
-            try {
-                // 使用Spring AI 的流式api
-                Flux<String> contentStream = chatClient.prompt()
-                        .messages(chatHistory)
-                        .stream()
-                        .content();
-                // 订阅流式内容并转发给前端
-                contentStream
-                        .doOnNext(content ->{
-                            logger.debug("📨 流式内容片段: {}" , content);
-                            // 发送SSE格式数据
-                            sink.next("data: " + content + "\n\n");
-                        })
-                        .doOnComplete(() ->{
-                            logger.info("✅ 流式对话完成");
-                            sink.next("data: [complete]\n\n");
-                            sink.complete();
-                        })
-                        .doOnError(error ->{
-                            logger.error("❌ 流式对话错误: {}", error.getMessage());
-                            sink.error(error);
-                        })
-                        .subscribe();
-            } catch (Exception e) {
-               logger.error("❌ 流式对话启动失败: {}", e.getMessage());
-               sink.error(e);
-            }
+        return Mono.fromCallable(() -> {
+                    chatHistoryStore.append(sessionId, new UserMessage(request.getMessage()));
+                    // 只发送当前会话的有界历史
+                    return chatHistoryStore.getHistory(sessionId);
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(history -> {
+                    StringBuilder assistantReply = new StringBuilder();
+                    return chatClient.prompt()
+                            .messages(history)
+                            .toolCallbacks(toolRegistry.getEnabledCallbacks())
+                            .stream()
+                            .content()
+                            .limitRate(Math.max(1, streamingConfig.getPrefetch()))
+                            .doOnNext(content -> {
+                                logger.debug("📨 流式内容片段: {}", content);
+                                assistantReply.append(content);
+                            })
+                            .map(content -> ServerSentEvent.builder(content).build())
+                            .concatWith(Mono.fromCallable(() -> {
+                                        logger.info("✅ 流式对话完成");
+                                        chatHistoryStore.append(sessionId, new AssistantMessage(assistantReply.toString()));
+                                        return ServerSentEvent.builder("[complete]").build();
+                                    })
+                                    .subscribeOn(Schedulers.boundedElastic()))
+                            .doOnCancel(() -> {
+                                logger.info("🛑 客户端断开, 已取消上游流式调用: sessionId={}", sessionId);
+                                // 保留已生成的部分回复, 避免历史中只有用户消息
+                                if (assistantReply.length() > 0) {
+                                    String partialReply = assistantReply.toString();
+                                    Schedulers.boundedElastic().schedule(() ->
+                                            chatHistoryStore.append(sessionId, new AssistantMessage(partialReply)));
+                                }
+                            });
+                })
+                .doOnError(error -> logger.error("❌ 流式对话错误: {}", error.getMessage()));
+    }
+
+
+    /**
+     * 清空会话历史
+     */
+    @PostMapping("/clear")
+    public Mono<ChatResponseDto> clearHistory(@RequestParam String sessionId) {
+        if (isBlank(sessionId)) {
+            return Mono.error(missingSessionId());
+        }
+        return Mono.fromCallable(() -> {
+            chatHistoryStore.clear(sessionId);
+            ChatResponseDto response = new ChatResponseDto();
+            response.setMessage("会话历史已清空");
+            response.setSuccess(true);
+            return response;
         });
     }
 
 
+    /**
+     * 会话由客户端生成并在每个请求中携带; 不再回退到共享的默认会话, 否则所有用户共用同一份历史与 token 预算
+     */
+    private static ResponseStatusException missingSessionId() {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST, "sessionId is required");
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
     public static class ChatResponseDto {
         private String taskId;
         private String message;
@@ -0,0 +1,82 @@
+package org.kolar.kolarcodercopilot.controller;
+
+import org.kolar.kolarcodercopilot.service.FlightRecorderService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * JFR 录制控制器
+ * 生产环境按需开启录制, 录制中包含按任务归因的自定义事件 (对话轮次/模型调用/工具调用/项目扫描/SSE发送)
+ */
+@RestController
+@RequestMapping("/api/jfr")
+public class FlightRecorderController {
+    private static final Logger logger = LoggerFactory.getLogger(FlightRecorderController.class);
+
+    private final FlightRecorderService flightRecorderService;
+
+    public FlightRecorderController(FlightRecorderService flightRecorderService) {
+        this.flightRecorderService = flightRecorderService;
+    }
+
+    @GetMapping("/status")
+    public ResponseEntity<Map<String, Object>> status() {
+        return ResponseEntity.ok(flightRecorderService.status());
+    }
+
+    /**
+     * 开始录制
+     * @param settings default (开销约1%) 或 profile (更详细的采样)
+     */
+    @PostMapping("/start")
+    public ResponseEntity<Map<String, Object>> start(@RequestParam(value = "settings", required = false) String settings,
+                                                     @RequestParam(value = "maxAgeMinutes", required = false) Integer maxAgeMinutes) {
+        try {
+            return ResponseEntity.ok(flightRecorderService.start(settings, maxAgeMinutes));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("开启JFR录制失败: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+
+    /**
+     * 停止录制并写出文件
+     */
+    @PostMapping("/stop")
+    public ResponseEntity<Map<String, Object>> stop() {
+        try {
+            return ResponseEntity.ok(flightRecorderService.stop());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("停止JFR录制失败: {}", e.getMessage());
+            return ResponseEntity.internalServerError().body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+
+    /**
+     * 导出当前录制内容, 录制继续
+     */
+    @PostMapping("/dump")
+    public ResponseEntity<Map<String, Object>> dump() {
+        try {
+            return ResponseEntity.ok(flightRecorderService.dump());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("导出JFR录制失败: {}", e.getMessage());
+            return ResponseEntity.internalServerError().body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package org.kolar.kolarcodercopilot.controller;
+
+import org.kolar.kolarcodercopilot.service.EventEncoding;
+import org.kolar.kolarcodercopilot.service.LogStreamService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Map;
+
+/**
+ * 日志流控制器
+ * 前端通过SSE订阅任务的实时日志
+ * 单任务连接: /stream/{taskId}; 多路复用通道: 建立一次 /channel 后增删任务订阅, 事件通过 taskId 区分
+ * 连接时可通过 encoding=compact 协商紧凑编码, 编码表见 /encoding
+ */
+@RestController
+@RequestMapping("/api/logs")
+public class LogStreamController {
+    private static final Logger logger = LoggerFactory.getLogger(LogStreamController.class);
+
+    private final LogStreamService logStreamService;
+
+    public LogStreamController(LogStreamService logStreamService) {
+        this.logStreamService = logStreamService;
+    }
+
+    /**
+     * 建立任务日志SSE连接
+     * 浏览器自动重连时携带 Last-Event-ID 请求头, 手动重连时可通过 lastEventId 参数传递
+     */
+    @GetMapping(value = "/stream/{taskId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamLogs(@PathVariable String taskId,
+                                 @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+                                 @RequestParam(value = "lastEventId", required = false) String lastEventIdParam,
+                                 @RequestParam(value = "encoding", required = false) String encoding) {
+        String lastEventId = lastEventIdHeader != null ? lastEventIdHeader : lastEventIdParam;
+        return logStreamService.createConnection(taskId, parseEventId(lastEventId), EventEncoding.parse(encoding));
+    }
+
+    /**
+     * 建立多路复用通道 (每个客户端一个连接)
+     */
+    @GetMapping(value = "/channel", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter openChannel(@RequestParam(value = "clientId", required = false) String clientId,
+                                  @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+                                  @RequestParam(value = "lastEventId", required = false) String lastEventIdParam,
+                                  @RequestParam(value = "encoding", required = false) String encoding) {
+        String lastEventId = lastEventIdHeader != null ? lastEventIdHeader : lastEventIdParam;
+        return logStreamService.openChannel(clientId, parseEventId(lastEventId), EventEncoding.parse(encoding));
+    }
+
+    /**
+     * 通道订阅任务, 补发 lastEventId 之后的事件 (为空时补发该任务保留的全部事件)
+     */
+    @PostMapping("/channel/{clientId}/tasks/{taskId}")
+    public ResponseEntity<Void> subscribe(@PathVariable String clientId, @PathVariable String taskId,
+                                          @RequestParam(value = "lastEventId", required = false) String lastEventId) {
+        return logStreamService.subscribe(clientId, taskId, parseEventId(lastEventId))
+                ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * 通道取消订阅任务
+     */
+    @DeleteMapping("/channel/{clientId}/tasks/{taskId}")
+    public ResponseEntity<Void> unsubscribe(@PathVariable String clientId, @PathVariable String taskId) {
+        return logStreamService.unsubscribe(clientId, taskId)
+                ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * 紧凑编码的类型与状态编码表 (下标即编码)
+     */
+    @GetMapping("/encoding")
+    public Map<String, Object> getEncoding() {
+        return logStreamService.getCompactCodeTable();
+    }
+
+    /**
+     * SSE连接缓冲区指标
+     */
+    @GetMapping("/metrics")
+    public Map<String, Object> getMetrics() {
+        return logStreamService.getConnectionMetrics();
+    }
+
+    private static Long parseEventId(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            logger.warn("无效的 Last-Event-ID: {}", value);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.kolar.kolarcodercopilot.controller;
+
+import org.kolar.kolarcodercopilot.service.PrometheusTextWriter;
+import org.kolar.kolarcodercopilot.service.RequestMetricsRegistry;
+import org.kolar.kolarcodercopilot.service.StageMetrics;
+import org.kolar.kolarcodercopilot.service.TokenAccountingService;
+import org.kolar.kolarcodercopilot.service.ToolMetricsRegistry;
+import org.kolar.kolarcodercopilot.service.Tracer;
+import org.kolar.kolarcodercopilot.tools.ToolDispatcher;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 指标控制器
+ * JSON 格式供前端/人工查看, /prometheus 输出 Prometheus 文本格式供抓取
+ */
+@RestController
+@RequestMapping("/api/metrics")
+public class MetricsController {
+
+    private final ToolMetricsRegistry toolMetricsRegistry;
+    private final StageMetrics stageMetrics;
+    private final RequestMetricsRegistry requestMetricsRegistry;
+    private final Tracer tracer;
+    private final TokenAccountingService tokenAccounting;
+    private final ToolDispatcher toolDispatcher;
+
+    public MetricsController(ToolMetricsRegistry toolMetricsRegistry, StageMetrics stageMetrics,
+                             RequestMetricsRegistry requestMetricsRegistry, Tracer tracer,
+                             TokenAccountingService tokenAccounting, ToolDispatcher toolDispatcher) {
+        this.toolMetricsRegistry = toolMetricsRegistry;
+        this.stageMetrics = stageMetrics;
+        this.requestMetricsRegistry = requestMetricsRegistry;
+        this.tracer = tracer;
+        this.tokenAccounting = tokenAccounting;
+        this.toolDispatcher = toolDispatcher;
+    }
+
+    /**
+     * 指标 (JSON)
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> metrics() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("tools", toolMetricsRegistry.getMetrics());
+        result.put("toolDispatch", toolDispatcher.getMetrics());
+        result.put("stages", stageMetrics.getMetrics());
+        result.put("requests", requestMetricsRegistry.getMetrics());
+        result.put("tracing", tracer.getMetrics());
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * 各任务阶段在最近窗口内的 p50/p95/p99 (毫秒)
+     */
+    @GetMapping("/stages")
+    public ResponseEntity<Map<String, Object>> stages() {
+        return ResponseEntity.ok(stageMetrics.getMetrics());
+    }
+
+    /**
+     * token 用量汇总, 以及用量最多的前 N 个任务/会话/来源
+     */
+    @GetMapping("/tokens")
+    public ResponseEntity<Map<String, Object>> tokens(@RequestParam(defaultValue = "10") int top) {
+        return ResponseEntity.ok(tokenAccounting.getTopConsumers(top));
+    }
+
+    /**
+     * 指标 (Prometheus 文本格式)
+     */
+    @GetMapping(value = "/prometheus", produces = PrometheusTextWriter.CONTENT_TYPE)
+    public ResponseEntity<String> prometheus() {
+        PrometheusTextWriter writer = new PrometheusTextWriter();
+        toolMetricsRegistry.writePrometheus(writer);
+        stageMetrics.writePrometheus(writer);
+        requestMetricsRegistry.writePrometheus(writer);
+        tokenAccounting.writePrometheus(writer);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(PrometheusTextWriter.CONTENT_TYPE))
+                .body(writer.toString());
+    }
+}
@@ -0,0 +1,66 @@
+package org.kolar.kolarcodercopilot.controller;
+
+import org.kolar.kolarcodercopilot.model.TaskStatus;
+import org.kolar.kolarcodercopilot.model.TaskTimeline;
+import org.kolar.kolarcodercopilot.service.ContinuousConversationService;
+import org.kolar.kolarcodercopilot.service.TaskStateStore;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * 任务控制器
+ * 查询任务状态与结果
+ */
+@RestController
+@RequestMapping("/api/task")
+public class TaskController {
+
+    private final ContinuousConversationService continuousConversationService;
+    private final TaskStateStore taskStateStore;
+
+    public TaskController(ContinuousConversationService continuousConversationService, TaskStateStore taskStateStore) {
+        this.continuousConversationService = continuousConversationService;
+        this.taskStateStore = taskStateStore;
+    }
+
+    /**
+     * 获取任务状态
+     */
+    @GetMapping("/status/{taskId}")
+    public ResponseEntity<TaskStatus> getTaskStatus(@PathVariable String taskId) {
+        TaskStatus status = continuousConversationService.getTaskStatus(taskId);
+        return status != null ? ResponseEntity.ok(status) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * 获取任务各阶段耗时时间线
+     */
+    @GetMapping("/timeline/{taskId}")
+    public ResponseEntity<TaskTimeline> getTaskTimeline(@PathVariable String taskId) {
+        TaskStatus status = continuousConversationService.getTaskStatus(taskId);
+        return status != null && status.getTimeline() != null
+                ? ResponseEntity.ok(status.getTimeline()) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * 获取任务结果 (已结束任务在保留期内可从磁盘读取)
+     */
+    @GetMapping("/result/{taskId}")
+    public ResponseEntity<ContinuousConversationService.ConversationResult> getTaskResult(@PathVariable String taskId) {
+        ContinuousConversationService.ConversationResult result = continuousConversationService.getConversationResult(taskId);
+        return result != null ? ResponseEntity.ok(result) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * 任务存储指标
+     */
+    @GetMapping("/metrics")
+    public Map<String, Object> getStoreMetrics() {
+        return taskStateStore.getMetrics();
+    }
+}
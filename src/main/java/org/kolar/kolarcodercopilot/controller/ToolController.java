@@ -0,0 +1,60 @@
+package org.kolar.kolarcodercopilot.controller;
+
+import org.kolar.kolarcodercopilot.dto.ToolToggleRequestDto;
+import org.kolar.kolarcodercopilot.tools.ToolRegistry;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 工具控制器
+ * 查询已注册的工具, 运行时启用/禁用工具 (下一次模型调用生效)
+ */
+@RestController
+@RequestMapping("/api/tools")
+public class ToolController {
+
+    private final ToolRegistry toolRegistry;
+
+    public ToolController(ToolRegistry toolRegistry) {
+        this.toolRegistry = toolRegistry;
+    }
+
+    @GetMapping("/all")
+    public List<ToolRegistry.ToolDescriptor> allTools() {
+        return toolRegistry.getDescriptors();
+    }
+
+    @GetMapping("/system")
+    public List<ToolRegistry.ToolDescriptor> systemTools() {
+        return toolRegistry.getDescriptors(ToolRegistry.ToolType.SYSTEM);
+    }
+
+    @GetMapping("/mcp")
+    public List<ToolRegistry.ToolDescriptor> mcpTools() {
+        return toolRegistry.getDescriptors(ToolRegistry.ToolType.MCP);
+    }
+
+    /**
+     * 启用/禁用工具
+     */
+    @PostMapping("/toggle")
+    public ResponseEntity<?> toggle(@RequestBody ToolToggleRequestDto request) {
+        if (request.getToolName() == null || request.getToolName().isBlank()) {
+            return ResponseEntity.badRequest().body(Map.of("message", "toolName is required"));
+        }
+        ToolRegistry.ToolDescriptor descriptor = toolRegistry.setEnabled(request.getToolName(), request.isEnabled());
+        if (descriptor == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("message", "Tool not found: " + request.getToolName()));
+        }
+        return ResponseEntity.ok(descriptor);
+    }
+}
@@ -8,7 +8,7 @@ import lombok.Data;
 @Data
 public class ChatRequestDto {
     private String message;
-    private String sessionId; // 可选 用于会话管理
+    private String sessionId; // 必填 客户端生成的会话id, 用于隔离会话历史与 token 预算
 
     public ChatRequestDto() {
     }
@@ -0,0 +1,36 @@
+package org.kolar.kolarcodercopilot.dto;
+
+/**
+ * 工具启用/禁用请求
+ */
+public class ToolToggleRequestDto {
+    private String toolName;
+    private boolean enabled;
+
+    public ToolToggleRequestDto() {
+    }
+
+    public String getToolName() {
+        return toolName;
+    }
+
+    public void setToolName(String toolName) {
+        this.toolName = toolName;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public String toString() {
+        return "ToolToggleRequestDto{" +
+                "toolName='" + toolName + '\'' +
+                ", enabled=" + enabled +
+                '}';
+    }
+}
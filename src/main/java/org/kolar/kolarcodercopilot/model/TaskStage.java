@@ -0,0 +1,39 @@
+package org.kolar.kolarcodercopilot.model;
+
+/**
+ * 任务执行阶段 (耗时分解)
+ * MODEL_CALL 不含轮次内的 TOOL_CALL, 二者之和为轮次耗时; 智能编辑的各阶段嵌套在 TOOL_CALL 内
+ */
+public enum TaskStage {
+    TASK_ANALYSIS("任务分析"),
+    PLAN_GENERATION("执行计划生成"),
+    MODEL_CALL("模型调用"),
+    CONTINUATION_CHECK("继续判断"),
+    JOURNAL_COMMIT("任务日志提交"),
+    TOOL_CALL("工具调用"),
+    EDIT_ANALYSIS("智能编辑-项目分析"),
+    EDIT_PLAN("智能编辑-计划生成"),
+    EDIT_EXECUTE("智能编辑-计划执行"),
+    SSE_DISPATCH("SSE事件分发", true),
+    TASK_TOTAL("任务总耗时");
+
+    private final String displayName;
+    private final boolean aggregateOnly; // 高频阶段只累计到任务总计, 不逐条记入时间线
+
+    TaskStage(String displayName) {
+        this(displayName, false);
+    }
+
+    TaskStage(String displayName, boolean aggregateOnly) {
+        this.displayName = displayName;
+        this.aggregateOnly = aggregateOnly;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public boolean isAggregateOnly() {
+        return aggregateOnly;
+    }
+}
@@ -37,8 +37,13 @@ public class TaskStatus {
     }
 
     private int totalEstimatedTurns;
+    private TaskTimeline timeline = new TaskTimeline(); // 各阶段耗时
+    private String sessionId;
+    private TokenUsage tokenUsage = new TokenUsage();   // 模型调用的 token 用量
 
-    public TaskStatus(String taskId) {}
+    public TaskStatus(String taskId) {
+        this.taskId = taskId;
+    }
 
     public String getTaskId() {
         return taskId;
@@ -72,4 +77,28 @@ public class TaskStatus {
         this.totalEstimatedTurns = totalEstimatedTurns;
     }
 
+    public TaskTimeline getTimeline() {
+        return timeline;
+    }
+
+    public void setTimeline(TaskTimeline timeline) {
+        this.timeline = timeline;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public TokenUsage getTokenUsage() {
+        return tokenUsage;
+    }
+
+    public void setTokenUsage(TokenUsage tokenUsage) {
+        this.tokenUsage = tokenUsage;
+    }
+
 }
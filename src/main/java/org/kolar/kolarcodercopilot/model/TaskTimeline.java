@@ -0,0 +1,133 @@
+package org.kolar.kolarcodercopilot.model;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 任务时间线
+ * 按发生顺序记录各阶段的开始时间与耗时, 条目数有上限, 超出后只累计各阶段总计
+ */
+public class TaskTimeline {
+    public static final int MAX_ENTRIES = 256;
+
+    private final List<StageTiming> entries = new ArrayList<>();
+    private final Map<TaskStage, StageTotal> totals = new EnumMap<>(TaskStage.class);
+    private int droppedEntries;
+
+    /**
+     * 记录一个阶段 (可从多个线程调用)
+     */
+    public synchronized void add(TaskStage stage, long startedAt, long durationMicros, String detail) {
+        totals.computeIfAbsent(stage, s -> new StageTotal()).add(durationMicros);
+        if (stage.isAggregateOnly()) {
+            return;
+        }
+        if (entries.size() >= MAX_ENTRIES) {
+            droppedEntries++;
+            return;
+        }
+        entries.add(new StageTiming(stage, startedAt, durationMicros / 1000.0, detail));
+    }
+
+    public synchronized List<StageTiming> getEntries() {
+        return new ArrayList<>(entries);
+    }
+
+    public synchronized void setEntries(List<StageTiming> entries) {
+        this.entries.clear();
+        this.entries.addAll(entries);
+    }
+
+    public synchronized Map<TaskStage, StageTotal> getTotals() {
+        Map<TaskStage, StageTotal> copy = new EnumMap<>(TaskStage.class);
+        totals.forEach((stage, total) -> copy.put(stage, total.copy()));
+        return copy;
+    }
+
+    public synchronized void setTotals(Map<TaskStage, StageTotal> totals) {
+        this.totals.clear();
+        this.totals.putAll(totals);
+    }
+
+    /**
+     * 某阶段的累计耗时 (微秒)
+     */
+    public synchronized long getTotalMicros(TaskStage stage) {
+        StageTotal total = totals.get(stage);
+        return total != null ? Math.round(total.totalMillis * 1000) : 0;
+    }
+
+    public synchronized int getDroppedEntries() {
+        return droppedEntries;
+    }
+
+    public synchronized void setDroppedEntries(int droppedEntries) {
+        this.droppedEntries = droppedEntries;
+    }
+
+    /**
+     * 单个阶段的一次执行
+     */
+    public static class StageTiming {
+        private TaskStage stage;
+        private long startedAt;       // 开始时间 (epoch毫秒)
+        private double durationMillis;
+        private String detail;
+
+        public StageTiming() {}
+
+        public StageTiming(TaskStage stage, long startedAt, double durationMillis, String detail) {
+            this.stage = stage;
+            this.startedAt = startedAt;
+            this.durationMillis = durationMillis;
+            this.detail = detail;
+        }
+
+        public TaskStage getStage() { return stage; }
+        public void setStage(TaskStage stage) { this.stage = stage; }
+
+        public long getStartedAt() { return startedAt; }
+        public void setStartedAt(long startedAt) { this.startedAt = startedAt; }
+
+        public double getDurationMillis() { return durationMillis; }
+        public void setDurationMillis(double durationMillis) { this.durationMillis = durationMillis; }
+
+        public String getDetail() { return detail; }
+        public void setDetail(String detail) { this.detail = detail; }
+    }
+
+    /**
+     * 单个阶段在任务内的累计
+     */
+    public static class StageTotal {
+        private long count;
+        private double totalMillis;
+        private double maxMillis;
+
+        void add(long durationMicros) {
+            double millis = durationMicros / 1000.0;
+            count++;
+            totalMillis += millis;
+            maxMillis = Math.max(maxMillis, millis);
+        }
+
+        StageTotal copy() {
+            StageTotal copy = new StageTotal();
+            copy.count = count;
+            copy.totalMillis = totalMillis;
+            copy.maxMillis = maxMillis;
+            return copy;
+        }
+
+        public long getCount() { return count; }
+        public void setCount(long count) { this.count = count; }
+
+        public double getTotalMillis() { return totalMillis; }
+        public void setTotalMillis(double totalMillis) { this.totalMillis = totalMillis; }
+
+        public double getMaxMillis() { return maxMillis; }
+        public void setMaxMillis(double maxMillis) { this.maxMillis = maxMillis; }
+    }
+}
@@ -0,0 +1,60 @@
+package org.kolar.kolarcodercopilot.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Token 用量
+ * 累计模型调用的输入/输出 token 数, 并按来源 (对话轮次或工具名) 细分;
+ * estimatedCalls 为模型未返回用量、按文本长度估算的调用次数
+ */
+@JsonIgnoreProperties(value = "totalTokens", allowGetters = true)
+public class TokenUsage {
+    private long promptTokens;
+    private long completionTokens;
+    private long calls;
+    private long estimatedCalls;
+    private final Map<String, Long> sources = new TreeMap<>();
+
+    /**
+     * 记录一次模型调用 (可从多个线程调用)
+     */
+    public synchronized void add(String source, long prompt, long completion, boolean estimated) {
+        promptTokens += prompt;
+        completionTokens += completion;
+        calls++;
+        if (estimated) {
+            estimatedCalls++;
+        }
+        if (source != null) {
+            sources.merge(source, prompt + completion, Long::sum);
+        }
+    }
+
+    public synchronized long getTotalTokens() {
+        return promptTokens + completionTokens;
+    }
+
+    public synchronized long getPromptTokens() { return promptTokens; }
+    public synchronized void setPromptTokens(long promptTokens) { this.promptTokens = promptTokens; }
+
+    public synchronized long getCompletionTokens() { return completionTokens; }
+    public synchronized void setCompletionTokens(long completionTokens) { this.completionTokens = completionTokens; }
+
+    public synchronized long getCalls() { return calls; }
+    public synchronized void setCalls(long calls) { this.calls = calls; }
+
+    public synchronized long getEstimatedCalls() { return estimatedCalls; }
+    public synchronized void setEstimatedCalls(long estimatedCalls) { this.estimatedCalls = estimatedCalls; }
+
+    public synchronized Map<String, Long> getSources() {
+        return new TreeMap<>(sources);
+    }
+
+    public synchronized void setSources(Map<String, Long> sources) {
+        this.sources.clear();
+        this.sources.putAll(sources);
+    }
+}
@@ -0,0 +1,251 @@
+package org.kolar.kolarcodercopilot.schema;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.regex.Pattern;
+
+/**
+ * 专用参数校验器
+ * 由 ValidatorCompiler 根据 JsonSchema 与参数类型生成, 通过 MethodHandle 直接读取参数对象的属性,
+ * 每次校验不做反射查找, 也不构建 JsonNode 树; 错误信息格式与 networknt 校验器一致
+ */
+public final class CompiledValidator {
+
+    private final Class<?> parameterType;
+    private final List<PropertyCheck> checks;
+
+    CompiledValidator(Class<?> parameterType, List<PropertyCheck> checks) {
+        this.parameterType = parameterType;
+        this.checks = List.copyOf(checks);
+    }
+
+    public Class<?> getParameterType() {
+        return parameterType;
+    }
+
+    public int getPropertyCount() {
+        return checks.size();
+    }
+
+    /**
+     * 校验参数对象
+     * @return 校验通过返回 null, 否则为以 ";" 连接的错误信息
+     */
+    public String validate(Object params) {
+        StringJoiner errors = null;
+        for (PropertyCheck check : checks) {
+            String error = check.validate(params);
+            if (error != null) {
+                if (errors == null) {
+                    errors = new StringJoiner(";");
+                }
+                errors.add(error);
+            }
+        }
+        return errors != null ? errors.toString() : null;
+    }
+
+    /**
+     * JSON 值类型
+     */
+    enum ValueKind {
+        STRING("string"), INTEGER("integer"), NUMBER("number"), BOOLEAN("boolean"), ARRAY("array"), OBJECT("object");
+
+        private final String jsonName;
+
+        ValueKind(String jsonName) {
+            this.jsonName = jsonName;
+        }
+
+        static ValueKind forJsonName(String jsonName) {
+            for (ValueKind kind : values()) {
+                if (kind.jsonName.equals(jsonName)) {
+                    return kind;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Java 值按 Jackson 序列化后的 JSON 类型
+         */
+        static ValueKind of(Object value) {
+            // byte[] 序列化为 base64 字符串, char[] 序列化为字符串
+            if (value instanceof CharSequence || value instanceof Character || value instanceof Enum<?>
+                    || value instanceof byte[] || value instanceof char[]) {
+                return STRING;
+            }
+            if (value instanceof Integer || value instanceof Long || value instanceof Short
+                    || value instanceof Byte || value instanceof BigInteger) {
+                return INTEGER;
+            }
+            if (value instanceof Number) {
+                return NUMBER;
+            }
+            if (value instanceof Boolean) {
+                return BOOLEAN;
+            }
+            if (value instanceof Collection<?> || value.getClass().isArray()) {
+                return ARRAY;
+            }
+            return OBJECT;
+        }
+
+        boolean accepts(ValueKind actual) {
+            return this == actual || (this == NUMBER && actual == INTEGER);
+        }
+    }
+
+    /**
+     * 单个属性的校验 (编译时确定全部约束)
+     * 与 networknt 一致, 各关键字独立检查并报告全部错误: pattern 只作用于字符串, minimum/maximum 只作用于数值
+     */
+    static final class PropertyCheck {
+        private final String path;
+        private final MethodHandle getter;   // (Object)Object
+        private final boolean required;
+        private final boolean nullOmitted;   // null 值序列化时被省略 (视为未提供), 否则为 JSON null
+        private final ValueKind kind;        // null 表示不限类型
+        private final ValueKind itemKind;    // 数组元素类型, null 表示不限
+        private final Pattern pattern;
+        private final Double minimum;
+        private final Double maximum;
+        private final Set<Object> enumValues;
+
+        PropertyCheck(String name, MethodHandle getter, boolean required, boolean nullOmitted, ValueKind kind,
+                      ValueKind itemKind, Pattern pattern, Double minimum, Double maximum, Set<Object> enumValues) {
+            this.path = "$." + name;
+            this.getter = getter;
+            this.required = required;
+            this.nullOmitted = nullOmitted;
+            this.kind = kind;
+            this.itemKind = itemKind;
+            this.pattern = pattern;
+            this.minimum = minimum;
+            this.maximum = maximum;
+            this.enumValues = enumValues;
+        }
+
+        String validate(Object params) {
+            Object value;
+            try {
+                value = getter.invokeExact(params);
+            } catch (Throwable e) {
+                return path + ": could not be read: " + e.getMessage();
+            }
+            if (value == null) {
+                if (nullOmitted) {
+                    return required ? path + ": is missing but it is required" : null;
+                }
+                return validateNull();
+            }
+            String errors = null;
+            ValueKind actual = ValueKind.of(value);
+            if (kind != null && !kind.accepts(actual)) {
+                errors = append(errors, path + ": " + actual.jsonName + " found, " + kind.jsonName + " expected");
+            }
+            if (enumValues != null && !enumValues.contains(normalizeEnumValue(value))) {
+                errors = append(errors, path + ": does not have a value in the enumeration " + enumValues);
+            }
+            if (actual == ValueKind.STRING && pattern != null && !pattern.matcher(value.toString()).find()) {
+                errors = append(errors, path + ": does not match the regex pattern " + pattern.pattern());
+            }
+            if (actual == ValueKind.INTEGER || actual == ValueKind.NUMBER) {
+                double number = ((Number) value).doubleValue();
+                if (minimum != null && number < minimum) {
+                    errors = append(errors, path + ": must have a minimum value of " + formatBound(minimum));
+                }
+                if (maximum != null && number > maximum) {
+                    errors = append(errors, path + ": must have a maximum value of " + formatBound(maximum));
+                }
+            }
+            if (actual == ValueKind.ARRAY && itemKind != null) {
+                errors = append(errors, validateItems(value));
+            }
+            return errors;
+        }
+
+        /**
+         * 属性序列化为 JSON null: required 视为已提供, type 与 enum 仍然检查
+         */
+        private String validateNull() {
+            String errors = null;
+            if (kind != null) {
+                errors = path + ": null found, " + kind.jsonName + " expected";
+            }
+            if (enumValues != null && !enumValues.contains(null)) {
+                errors = append(errors, path + ": does not have a value in the enumeration " + enumValues);
+            }
+            return errors;
+        }
+
+        private String validateItems(Object array) {
+            String errors = null;
+            int index = 0;
+            Iterable<?> items = array instanceof Collection<?> ? (Collection<?>) array : arrayItems(array);
+            for (Object item : items) {
+                // 数组中的 null 元素总是序列化为 JSON null
+                ValueKind actual = item != null ? ValueKind.of(item) : null;
+                if (actual == null || !itemKind.accepts(actual)) {
+                    errors = append(errors, path + "[" + index + "]: " + (actual != null ? actual.jsonName : "null")
+                            + " found, " + itemKind.jsonName + " expected");
+                }
+                index++;
+            }
+            return errors;
+        }
+
+        private static String append(String errors, String error) {
+            if (error == null) {
+                return errors;
+            }
+            return errors == null ? error : errors + ";" + error;
+        }
+
+        private static List<Object> arrayItems(Object array) {
+            int length = Array.getLength(array);
+            Object[] items = new Object[length];
+            for (int i = 0; i < length; i++) {
+                items[i] = Array.get(array, i);
+            }
+            return Arrays.asList(items);
+        }
+
+        private static String formatBound(double bound) {
+            return bound == Math.rint(bound) ? Long.toString((long) bound) : Double.toString(bound);
+        }
+    }
+
+    /**
+     * 枚举值比较时的规范形式: 数值按数值比较, Java 枚举按名称比较
+     */
+    static Object normalizeEnumValue(Object value) {
+        if (value instanceof Number) {
+            try {
+                return new BigDecimal(value.toString()).stripTrailingZeros();
+            } catch (NumberFormatException e) {
+                // NaN / Infinity 等无法表示为 BigDecimal 的值, 不与任何枚举数值相等
+                return value;
+            }
+        }
+        if (value instanceof Enum<?>) {
+            return ((Enum<?>) value).name();
+        }
+        if (value instanceof CharSequence || value instanceof Character) {
+            return value.toString();
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledValidator{" + parameterType.getSimpleName() + ", properties=" + checks.size() + "}";
+    }
+}
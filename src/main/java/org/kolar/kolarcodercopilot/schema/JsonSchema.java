@@ -16,6 +16,9 @@ public class JsonSchema {
     private String pattern;
     private Number minimum;
     private Number maximum;
+    // JSON Schema 关键字为 enum; 构造器会放入空列表, 空列表不输出 (空 enum 会拒绝所有值)
+    @JsonProperty("enum")
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
     private List<Object> enumValues;
 
     @JsonProperty("properties")
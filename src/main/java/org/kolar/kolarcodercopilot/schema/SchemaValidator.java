@@ -12,6 +12,7 @@ import org.springframework.stereotype.Component;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -25,28 +26,62 @@ public class SchemaValidator {
 
     private final ObjectMapper objectMapper;
     private final JsonSchemaFactory schemaFactory;
+    // 编译后的schema, 按 JsonSchema 实例缓存 (工具的参数schema构造后不再修改)
+    private final Map<JsonSchema, com.networknt.schema.JsonSchema> compiledSchemas = new ConcurrentHashMap<>();
+    // 启动时为工具参数类型生成的专用校验器 (只含简单约束的schema)
+    private final Map<JsonSchema, CompiledValidator> specializedValidators = new ConcurrentHashMap<>();
+    private final ValidatorCompiler validatorCompiler;
 
     public SchemaValidator() {
         this.objectMapper = new ObjectMapper();
         this.schemaFactory = com.networknt.schema.JsonSchemaFactory.getInstance(SpecVersion.VersionFlag.V7);
+        this.validatorCompiler = new ValidatorCompiler(objectMapper);
+    }
+
+    /**
+     * 预编译工具参数schema (工具注册时调用)
+     * 简单schema生成专用校验器, 直接读取参数对象; 其余预先编译 networknt schema
+     */
+    public void precompile(JsonSchema schema, Class<?> parameterType) {
+        if (schema == null) {
+            return;
+        }
+        CompiledValidator specialized = validatorCompiler.compile(schema, parameterType);
+        if (specialized != null) {
+            specializedValidators.put(schema, specialized);
+            logger.info("⚡ 已生成专用参数校验器: type={}, properties={}",
+                    parameterType.getSimpleName(), specialized.getPropertyCount());
+        } else {
+            compiledSchemas.computeIfAbsent(schema, this::compile);
+            logger.info("参数schema使用通用校验器: type={}", parameterType != null ? parameterType.getSimpleName() : null);
+        }
     }
 
     /**
      *  validate JSON against schema
      */
     public String validate(JsonSchema schema, Object data) {
+        CompiledValidator specialized = specializedValidators.get(schema);
+        if (specialized != null && data != null && specialized.getParameterType() == data.getClass()) {
+            try {
+                String errors = specialized.validate(data);
+                if (errors != null) {
+                    logger.warn("Schema validation failed: {}", errors);
+                }
+                return errors;
+            } catch (RuntimeException e) {
+                // 专用校验器未覆盖的取值, 交给通用校验器
+                logger.warn("专用参数校验器失败, 改用通用校验器: type={}, error={}",
+                        data.getClass().getSimpleName(), e.getMessage());
+            }
+        }
         try{
-            //  将自定义JsonSchema对象序列化为标准JSONSchema字符串
-            String schemaJson = objectMapper.writeValueAsString(schema);
-            logger.debug("Schema JSON: {}", schemaJson);
+            // 获取编译后的schema, 每个 JsonSchema 实例只编译一次
+            com.networknt.schema.JsonSchema jsonSchema = compiledSchemas.computeIfAbsent(schema, this::compile);
 
-            // 创建Json Schema验证器
-            com.networknt.schema.JsonSchema jsonSchema = schemaFactory.getSchema(schemaJson);
-
-            // 数据转换
-            String dataJson = objectMapper.writeValueAsString(data);
-            JsonNode dataNode = objectMapper.readTree(dataJson);
-            logger.debug("Data JSON: {}", dataJson);
+            // 数据直接转换为树, 不经过字符串
+            JsonNode dataNode = data instanceof JsonNode ? (JsonNode) data : objectMapper.valueToTree(data);
+            logger.debug("Data JSON: {}", dataNode);
 
             // 数据验证 调用第三方库进行验证
             Set<ValidationMessage> errors = jsonSchema.validate(dataNode);
@@ -68,6 +103,15 @@ public class SchemaValidator {
         }
     }
 
+    /**
+     * 将自定义JsonSchema对象转换为标准JSON Schema并编译
+     */
+    private com.networknt.schema.JsonSchema compile(JsonSchema schema) {
+        JsonNode schemaNode = objectMapper.valueToTree(schema);
+        logger.debug("Compiling schema JSON: {}", schemaNode);
+        return schemaFactory.getSchema(schemaNode);
+    }
+
     /**
      * simple schema validator
      * used when schema validator failed
@@ -0,0 +1,215 @@
+package org.kolar.kolarcodercopilot.schema;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * 校验器编译器
+ * 将工具的 JsonSchema 与参数类型编译为 CompiledValidator: 启动时一次性解析约束、编译正则,
+ * 并按 Jackson 的属性命名 (与 valueToTree 一致) 把每个 schema 属性绑定到参数类型的 getter/字段 MethodHandle;
+ * 属性为 null 时按 Jackson 的包含规则判断序列化结果是缺失 (NON_NULL / NON_ABSENT) 还是 JSON null (ALWAYS),
+ * 其他包含规则 (NON_EMPTY 等) 会改变非 null 值的序列化结果, 交给通用校验器;
+ * 只支持扁平对象上的简单约束 (type/required/pattern/minimum/maximum/enum, 元素为简单类型的数组),
+ * 其余 schema 返回 null, 由 networknt 通用校验器处理
+ */
+class ValidatorCompiler {
+    private static final Logger logger = LoggerFactory.getLogger(ValidatorCompiler.class);
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private final ObjectMapper objectMapper;
+    private final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    ValidatorCompiler(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 编译专用校验器
+     * @return 不支持的 schema 或参数类型返回 null
+     */
+    CompiledValidator compile(JsonSchema schema, Class<?> parameterType) {
+        if (schema == null || parameterType == null || !"object".equals(schema.getType())
+                || schema.getProperties() == null || Map.class.isAssignableFrom(parameterType)) {
+            return null;
+        }
+        Map<String, Accessor> accessors = findAccessors(parameterType);
+        Set<String> required = schema.getRequiredFields() != null
+                ? new LinkedHashSet<>(schema.getRequiredFields()) : Set.of();
+
+        List<CompiledValidator.PropertyCheck> checks = new ArrayList<>();
+        for (Map.Entry<String, JsonSchema> entry : schema.getProperties().entrySet()) {
+            String name = entry.getKey();
+            Accessor accessor = accessors.get(name);
+            if (accessor == null) {
+                logger.debug("参数类型缺少 schema 属性, 不生成专用校验器: type={}, property={}", parameterType.getName(), name);
+                return null;
+            }
+            if (accessor.nullOmitted == null) {
+                logger.debug("属性的序列化包含规则不支持, 不生成专用校验器: type={}, property={}", parameterType.getName(), name);
+                return null;
+            }
+            CompiledValidator.PropertyCheck check = compileProperty(name, entry.getValue(), accessor, required.contains(name));
+            if (check == null) {
+                return null;
+            }
+            checks.add(check);
+        }
+        // required 中未在 properties 声明的字段也必须能读取
+        for (String name : required) {
+            if (!schema.getProperties().containsKey(name)) {
+                Accessor accessor = accessors.get(name);
+                MethodHandle getter = accessor != null && accessor.nullOmitted != null ? getter(accessor.member) : null;
+                if (getter == null) {
+                    return null;
+                }
+                checks.add(new CompiledValidator.PropertyCheck(name, getter, true, accessor.nullOmitted,
+                        null, null, null, null, null, null));
+            }
+        }
+        return new CompiledValidator(parameterType, checks);
+    }
+
+    private CompiledValidator.PropertyCheck compileProperty(String name, JsonSchema property, Accessor accessor,
+                                                            boolean required) {
+        // 嵌套对象交给通用校验器
+        if (property.getProperties() != null) {
+            return null;
+        }
+        CompiledValidator.ValueKind kind = null;
+        if (property.getType() != null) {
+            kind = CompiledValidator.ValueKind.forJsonName(property.getType());
+            if (kind == null || kind == CompiledValidator.ValueKind.OBJECT) {
+                return null;
+            }
+        }
+        CompiledValidator.ValueKind itemKind = null;
+        if (property.getItems() != null) {
+            JsonSchema items = property.getItems();
+            if (items.getProperties() != null || items.getItems() != null || items.getPattern() != null
+                    || items.getMinimum() != null || items.getMaximum() != null
+                    || (items.getEnumValues() != null && !items.getEnumValues().isEmpty())) {
+                return null;
+            }
+            if (items.getType() != null) {
+                itemKind = CompiledValidator.ValueKind.forJsonName(items.getType());
+                if (itemKind == null || itemKind == CompiledValidator.ValueKind.OBJECT
+                        || itemKind == CompiledValidator.ValueKind.ARRAY) {
+                    return null;
+                }
+            }
+        }
+        Pattern pattern = null;
+        if (property.getPattern() != null) {
+            try {
+                pattern = Pattern.compile(property.getPattern());
+            } catch (PatternSyntaxException e) {
+                // JSON Schema 使用 ECMA 262 正则, Java 无法编译时交给通用校验器
+                return null;
+            }
+        }
+        Set<Object> enumValues = null;
+        if (property.getEnumValues() != null && !property.getEnumValues().isEmpty()) {
+            enumValues = new LinkedHashSet<>();
+            for (Object value : property.getEnumValues()) {
+                enumValues.add(CompiledValidator.normalizeEnumValue(value));
+            }
+        }
+        MethodHandle getter = getter(accessor.member);
+        if (getter == null) {
+            return null;
+        }
+        return new CompiledValidator.PropertyCheck(name, getter, required, accessor.nullOmitted, kind, itemKind, pattern,
+                property.getMinimum() != null ? property.getMinimum().doubleValue() : null,
+                property.getMaximum() != null ? property.getMaximum().doubleValue() : null,
+                enumValues);
+    }
+
+    /**
+     * 按 Jackson 序列化规则找到每个 JSON 属性对应的 getter 或字段, 以及 null 值是否被省略
+     */
+    private Map<String, Accessor> findAccessors(Class<?> parameterType) {
+        SerializationConfig config = objectMapper.getSerializationConfig();
+        BeanDescription description = config.introspect(objectMapper.constructType(parameterType));
+        JsonInclude.Value classInclusion = description.findPropertyInclusion(config.getDefaultPropertyInclusion(parameterType));
+        Map<String, Accessor> accessors = new HashMap<>();
+        for (BeanPropertyDefinition property : description.findProperties()) {
+            AnnotatedMember accessor = property.getAccessor();
+            if (accessor != null) {
+                JsonInclude.Value inclusion = classInclusion.withOverrides(property.findInclusion());
+                accessors.put(property.getName(), new Accessor(accessor.getMember(), nullOmitted(inclusion.getValueInclusion())));
+            }
+        }
+        return accessors;
+    }
+
+    /**
+     * @return null 值序列化后被省略返回 true, 写为 JSON null 返回 false, 其他包含规则返回 null (不支持)
+     */
+    private static Boolean nullOmitted(JsonInclude.Include include) {
+        if (include == null || include == JsonInclude.Include.ALWAYS || include == JsonInclude.Include.USE_DEFAULTS) {
+            return false;
+        }
+        if (include == JsonInclude.Include.NON_NULL || include == JsonInclude.Include.NON_ABSENT) {
+            return true;
+        }
+        return null;
+    }
+
+    /**
+     * 参数属性的读取方式与 null 的序列化结果
+     */
+    private static final class Accessor {
+        private final Member member;
+        private final Boolean nullOmitted;
+
+        Accessor(Member member, Boolean nullOmitted) {
+            this.member = member;
+            this.nullOmitted = nullOmitted;
+        }
+    }
+
+    /**
+     * 生成 (Object)Object 形式的 getter, 调用方可直接 invokeExact
+     */
+    private MethodHandle getter(Member member) {
+        try {
+            MethodHandle handle;
+            if (member instanceof Method && ((Method) member).getParameterCount() == 0) {
+                ((AccessibleObject) member).setAccessible(true);
+                handle = lookup.unreflect((Method) member);
+            } else if (member instanceof Field) {
+                ((AccessibleObject) member).setAccessible(true);
+                handle = lookup.unreflectGetter((Field) member);
+            } else {
+                return null;
+            }
+            return handle.asType(GETTER_TYPE);
+        } catch (IllegalAccessException | RuntimeException e) {
+            logger.debug("无法访问参数属性, 不生成专用校验器: member={}, error={}", member, e.getMessage());
+            return null;
+        }
+    }
+}
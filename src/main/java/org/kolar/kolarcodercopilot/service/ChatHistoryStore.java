@@ -0,0 +1,459 @@
+package org.kolar.kolarcodercopilot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.kolar.kolarcodercopilot.config.AppProperties;
+import org.kolar.kolarcodercopilot.config.TaskExecutors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 会话历史存储
+ * 热数据层: 有界的内存LRU, 空闲超过TTL或超出容量的会话被移出内存
+ * 冷数据层: 每个会话一个追加写的gzip文件, 每次落盘追加一个gzip成员, 读取时按多成员流顺序解压
+ * 单会话消息数超过上限时压缩为最近N条, 磁盘文件在下次落盘时整体重写
+ * 移出内存的会话在落盘完成前保留在 spilling 中, 期间再次访问直接取回同一对象, 不会读到旧文件;
+ * 定期清理空闲会话, 超过保留期的冷会话文件被删除
+ */
+@Service
+public class ChatHistoryStore {
+    private static final Logger logger = LoggerFactory.getLogger(ChatHistoryStore.class);
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final AppProperties.Session config;
+    private final TaskExecutors taskExecutors;
+    private final Path storageDir;
+    private final long idleTtlMillis;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // 热数据层 access-order 的 LinkedHashMap 即 LRU 顺序, 访问需持有自身锁
+    private final LinkedHashMap<String, SessionHistory> hotSessions = new LinkedHashMap<>(16, 0.75f, true);
+    // 已移出热数据层但尚未落盘的会话, 与 hotSessions 共用同一把锁
+    private final Map<String, SessionHistory> spilling = new HashMap<>();
+    private ScheduledFuture<?> sweepFuture;
+
+    // 会话级磁盘IO锁 (分段), 保证同一会话的落盘与加载互斥
+    private final Object[] ioLocks = new Object[LOCK_STRIPES];
+
+    public ChatHistoryStore(AppProperties appProperties, TaskExecutors taskExecutors) {
+        this.config = appProperties.getSession();
+        this.taskExecutors = taskExecutors;
+        this.storageDir = Paths.get(config.getStorageDirectory());
+        this.idleTtlMillis = config.getIdleTtlMinutes() * 60_000L;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            ioLocks[i] = new Object();
+        }
+    }
+
+    @PostConstruct
+    public void startSweeper() {
+        long interval = Math.max(1, config.getSweepIntervalSeconds());
+        sweepFuture = taskExecutors.scheduleAtFixedRate(this::sweep, interval, interval, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stopSweeper() {
+        if (sweepFuture != null) {
+            sweepFuture.cancel(false);
+        }
+    }
+
+    /**
+     * 获取会话历史快照 (最多 maxMessagesPerSession 条)
+     */
+    public List<Message> getHistory(String sessionId) {
+        return session(normalize(sessionId)).snapshot();
+    }
+
+    /**
+     * 追加消息, 可并发调用
+     */
+    public void append(String sessionId, Message... messages) {
+        String id = normalize(sessionId);
+        for (Message message : messages) {
+            // 会话恰好被移出内存时重新加载后再追加, 避免写入已落盘的旧对象
+            while (!session(id).append(message)) {
+                logger.debug("会话已被移出内存, 重新加载后追加: sessionId={}", id);
+            }
+        }
+    }
+
+    /**
+     * 清空会话 (内存与磁盘)
+     */
+    public void clear(String sessionId) {
+        String id = normalize(sessionId);
+        synchronized (ioLockFor(id)) {
+            SessionHistory removed;
+            SessionHistory removedSpilling;
+            synchronized (hotSessions) {
+                removed = hotSessions.remove(id);
+                removedSpilling = spilling.remove(id);
+            }
+            if (removed != null) {
+                removed.discard();
+            }
+            if (removedSpilling != null) {
+                removedSpilling.discard();
+            }
+            try {
+                Files.deleteIfExists(fileFor(id));
+            } catch (IOException e) {
+                logger.warn("删除会话历史文件失败: sessionId={}, error={}", id, e.getMessage());
+            }
+        }
+        logger.info("🧹 会话历史已清空: sessionId={}", id);
+    }
+
+    public int getHotSessionCount() {
+        synchronized (hotSessions) {
+            return hotSessions.size();
+        }
+    }
+
+    /**
+     * 周期清理: 移出空闲超时的会话 (不依赖有新的访问), 删除超过保留期的冷会话文件
+     */
+    void sweep() {
+        List<SessionHistory> evicted = new ArrayList<>();
+        synchronized (hotSessions) {
+            collectEvictions(evicted);
+        }
+        spill(evicted);
+        deleteExpiredFiles();
+    }
+
+    private void deleteExpiredFiles() {
+        if (config.getRetentionDays() <= 0 || !Files.isDirectory(storageDir)) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - config.getRetentionDays() * 86_400_000L;
+        int deleted = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(storageDir, "*.jsonl.gz")) {
+            for (Path file : files) {
+                // 仍在内存中的会话若文件被删除, 下次落盘时整体重写 (见 SessionHistory.persist)
+                if (Files.getLastModifiedTime(file).toMillis() < cutoff && Files.deleteIfExists(file)) {
+                    deleted++;
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("清理过期会话文件失败: error={}", e.getMessage());
+        }
+        if (deleted > 0) {
+            logger.info("🧹 已删除过期会话文件: count={}, retentionDays={}", deleted, config.getRetentionDays());
+        }
+    }
+
+    /**
+     * 获取热数据层中的会话, 未命中时从磁盘加载
+     */
+    private SessionHistory session(String sessionId) {
+        List<SessionHistory> evicted = new ArrayList<>();
+        SessionHistory history;
+        synchronized (hotSessions) {
+            history = hotSessions.get(sessionId);
+            collectEvictions(evicted);
+        }
+        spill(evicted);
+        if (history != null) {
+            history.touch();
+            return history;
+        }
+
+        synchronized (ioLockFor(sessionId)) {
+            synchronized (hotSessions) {
+                history = hotSessions.get(sessionId);
+                if (history == null) {
+                    // 尚未落盘的会话直接取回 (spill 需持有同一 IO 锁才能落盘, 此时不会并发写入)
+                    history = spilling.remove(sessionId);
+                    if (history != null) {
+                        history.touch();
+                        hotSessions.put(sessionId, history);
+                        collectEvictions(evicted);
+                    }
+                }
+            }
+            if (history == null) {
+                history = load(sessionId);
+                synchronized (hotSessions) {
+                    hotSessions.put(sessionId, history);
+                    collectEvictions(evicted);
+                }
+            }
+        }
+        spill(evicted);
+        history.touch();
+        return history;
+    }
+
+    /**
+     * 从LRU头部移出超出容量或空闲超时的会话, 移入 spilling 等待落盘, 调用方需持有 hotSessions 锁
+     */
+    private void collectEvictions(List<SessionHistory> evicted) {
+        long now = System.currentTimeMillis();
+        Iterator<SessionHistory> iterator = hotSessions.values().iterator();
+        while (iterator.hasNext()) {
+            SessionHistory eldest = iterator.next();
+            boolean overCapacity = hotSessions.size() > config.getMaxHotSessions();
+            boolean expired = now - eldest.lastAccessMillis > idleTtlMillis;
+            if (!overCapacity && !expired) {
+                break;
+            }
+            iterator.remove();
+            spilling.put(eldest.sessionId, eldest);
+            evicted.add(eldest);
+        }
+    }
+
+    /**
+     * 将移出内存的会话写入冷数据层
+     * 持有 IO 锁时才从 spilling 移除并落盘; 已被重新取回或清空的会话跳过
+     */
+    private void spill(List<SessionHistory> evicted) {
+        for (SessionHistory history : evicted) {
+            synchronized (ioLockFor(history.sessionId)) {
+                synchronized (hotSessions) {
+                    if (!spilling.remove(history.sessionId, history)) {
+                        continue;
+                    }
+                }
+                try {
+                    history.persist();
+                } catch (IOException e) {
+                    // 落盘失败时放回热数据层, 下次移出时重试, 不丢弃内存中的消息
+                    history.touch();
+                    synchronized (hotSessions) {
+                        hotSessions.put(history.sessionId, history);
+                    }
+                    logger.error("会话历史落盘失败, 保留在内存中: sessionId={}, error={}", history.sessionId, e.getMessage());
+                }
+            }
+        }
+        evicted.clear();
+    }
+
+    private SessionHistory load(String sessionId) {
+        SessionHistory history = new SessionHistory(sessionId);
+        Path file = fileFor(sessionId);
+        if (!Files.exists(file)) {
+            return history;
+        }
+        List<Message> stored = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                Message message = objectMapper.readValue(line, StoredMessage.class).toMessage();
+                if (message != null) {
+                    stored.add(message);
+                }
+            }
+        } catch (IOException e) {
+            logger.error("读取会话历史失败: sessionId={}, error={}", sessionId, e.getMessage());
+        }
+        history.restore(stored);
+        logger.debug("从磁盘加载会话历史: sessionId={}, messages={}", sessionId, stored.size());
+        return history;
+    }
+
+    private Object ioLockFor(String sessionId) {
+        return ioLocks[(sessionId.hashCode() & 0x7fffffff) % LOCK_STRIPES];
+    }
+
+    private Path fileFor(String sessionId) {
+        String safeName = sessionId.replaceAll("[^a-zA-Z0-9_-]", "_");
+        if (safeName.length() > 64) {
+            safeName = safeName.substring(0, 64);
+        }
+        return storageDir.resolve(safeName + "-" + Integer.toHexString(sessionId.hashCode()) + ".jsonl.gz");
+    }
+
+    /**
+     * 会话id由调用方提供, 缺失时拒绝而不是落到共享会话
+     */
+    private static String normalize(String sessionId) {
+        if (sessionId == null || sessionId.isBlank()) {
+            throw new IllegalArgumentException("sessionId is required");
+        }
+        return sessionId;
+    }
+
+    /**
+     * 单个会话的历史
+     * messages 的前 persistedCount 条已写入磁盘
+     */
+    private class SessionHistory {
+        private final String sessionId;
+        private final List<Message> messages = new ArrayList<>();
+        private int persistedCount;
+        private boolean rewriteRequired; // 压缩后磁盘内容与内存不一致, 下次落盘整体重写
+        private boolean evicted;         // 已移出内存并落盘, 不再接受追加
+        private volatile long lastAccessMillis = System.currentTimeMillis();
+
+        SessionHistory(String sessionId) {
+            this.sessionId = sessionId;
+        }
+
+        void touch() {
+            lastAccessMillis = System.currentTimeMillis();
+        }
+
+        synchronized List<Message> snapshot() {
+            return new ArrayList<>(messages);
+        }
+
+        synchronized boolean append(Message message) {
+            if (evicted) {
+                return false;
+            }
+            messages.add(message);
+            if (messages.size() > config.getMaxMessagesPerSession()) {
+                compact();
+            }
+            return true;
+        }
+
+        synchronized void restore(List<Message> stored) {
+            messages.addAll(stored);
+            persistedCount = messages.size();
+            if (messages.size() > config.getMaxMessagesPerSession()) {
+                compact();
+            }
+        }
+
+        /**
+         * 只保留最近的 compactToMessages 条消息
+         */
+        private void compact() {
+            int removed = messages.size() - Math.min(config.getCompactToMessages(), config.getMaxMessagesPerSession());
+            if (removed <= 0) {
+                return;
+            }
+            messages.subList(0, removed).clear();
+            if (persistedCount > 0) {
+                rewriteRequired = true;
+            }
+            persistedCount = Math.max(0, persistedCount - removed);
+            logger.debug("会话历史已压缩: sessionId={}, removed={}, remaining={}", sessionId, removed, messages.size());
+        }
+
+        synchronized void discard() {
+            evicted = true;
+        }
+
+        /**
+         * 落盘后标记为已移出, 之后的追加由调用方重新加载会话
+         */
+        synchronized void persist() throws IOException {
+            if (!rewriteRequired && persistedCount == messages.size()) {
+                evicted = true;
+                return;
+            }
+            Files.createDirectories(storageDir);
+            Path file = fileFor(sessionId);
+            // 已落盘的部分文件被清理时整体重写, 不能只追加
+            if (rewriteRequired || (persistedCount > 0 && !Files.exists(file))) {
+                Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+                try (OutputStream out = Files.newOutputStream(tmp)) {
+                    writeMember(out, messages);
+                }
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } else {
+                try (OutputStream out = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    writeMember(out, messages.subList(persistedCount, messages.size()));
+                }
+            }
+            persistedCount = messages.size();
+            rewriteRequired = false;
+            evicted = true;
+        }
+
+        /**
+         * 写入一个gzip成员 每行一条消息
+         */
+        private void writeMember(OutputStream out, List<Message> batch) throws IOException {
+            GZIPOutputStream gzip = new GZIPOutputStream(out);
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8));
+            for (Message message : batch) {
+                writer.write(objectMapper.writeValueAsString(StoredMessage.of(message)));
+                writer.newLine();
+            }
+            writer.flush();
+            gzip.finish();
+        }
+    }
+
+    /**
+     * 磁盘上的消息记录 (会话历史与任务日志共用)
+     */
+    public static class StoredMessage {
+        private String role;
+        private String text;
+
+        public StoredMessage() {}
+
+        public StoredMessage(String role, String text) {
+            this.role = role;
+            this.text = text;
+        }
+
+        public static StoredMessage of(Message message) {
+            return new StoredMessage(message.getMessageType().name(), message.getText());
+        }
+
+        /**
+         * 还原为消息对象, 不支持的角色返回 null
+         */
+        public Message toMessage() {
+            if (role == null || text == null) {
+                return null;
+            }
+            switch (role) {
+                case "USER": return new UserMessage(text);
+                case "ASSISTANT": return new AssistantMessage(text);
+                case "SYSTEM": return new SystemMessage(text);
+                default: return null;
+            }
+        }
+
+        public String getRole() { return role; }
+        public void setRole(String role) { this.role = role; }
+
+        public String getText() { return text; }
+        public void setText(String text) { this.text = text; }
+    }
+}
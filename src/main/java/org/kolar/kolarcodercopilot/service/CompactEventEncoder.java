@@ -0,0 +1,78 @@
+package org.kolar.kolarcodercopilot.service;
+
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 紧凑事件编码
+ * 字段: t 类型, k 任务id, m 消息, ts 毫秒时间戳 (事件创建时记录), sn 步骤名, s 状态, d 描述, x 详情, e 执行耗时, u 轮次
+ * 已知的类型与状态编码为整数, 未知值原样输出字符串; 图标由客户端按步骤名自行渲染
+ */
+@Component
+public class CompactEventEncoder {
+
+    // 下标即编码, 只能追加, 不能调整已有顺序
+    private static final List<String> TYPE_CODES = List.of(
+            "CONNECTION_ESTABLISHED", "CHANNEL_ESTABLISHED", "TASK_ANALYSIS_START", "Analysis Step",
+            "TOKEN_DELTA", "TASK_COMPLETE");
+    private static final List<String> STATUS_CODES = List.of(
+            "ANALYZING", "RUNNING", "COMPLETED", "FAILED");
+
+    private final EventSerializer eventSerializer;
+
+    public CompactEventEncoder(EventSerializer eventSerializer) {
+        this.eventSerializer = eventSerializer;
+    }
+
+    public byte[] encode(Object event) throws IOException {
+        if (!(event instanceof LoginEvent)) {
+            return eventSerializer.serialize(event);
+        }
+        LoginEvent base = (LoginEvent) event;
+        Map<String, Object> compact = new LinkedHashMap<>();
+        put(compact, "t", code(TYPE_CODES, base.getType()));
+        put(compact, "k", base.getTaskId());
+        put(compact, "m", base.getMessage());
+        put(compact, "ts", base.getEpochMillis());
+        if (event instanceof AnalysisEvent) {
+            AnalysisEvent analysis = (AnalysisEvent) event;
+            put(compact, "sn", analysis.getStepName());
+            put(compact, "s", code(STATUS_CODES, analysis.getStatus()));
+            put(compact, "d", analysis.getDescription());
+            put(compact, "x", analysis.getDetails());
+            put(compact, "e", analysis.getExecuteTime());
+        }
+        if (event instanceof TokenDeltaEvent) {
+            put(compact, "u", ((TokenDeltaEvent) event).getTurn());
+        }
+        return eventSerializer.serialize(compact);
+    }
+
+    /**
+     * 编码表, 供客户端解码
+     */
+    public Map<String, Object> getCodeTable() {
+        Map<String, Object> table = new LinkedHashMap<>();
+        table.put("types", TYPE_CODES);
+        table.put("statuses", STATUS_CODES);
+        return table;
+    }
+
+    private static Object code(List<String> codes, String value) {
+        if (value == null) {
+            return null;
+        }
+        int index = codes.indexOf(value);
+        return index >= 0 ? (Object) index : value;
+    }
+
+    private static void put(Map<String, Object> map, String key, Object value) {
+        if (value != null) {
+            map.put(key, value);
+        }
+    }
+}
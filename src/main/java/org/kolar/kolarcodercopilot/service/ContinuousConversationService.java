@@ -1,21 +1,33 @@
 package org.kolar.kolarcodercopilot.service;
 
+import org.kolar.kolarcodercopilot.config.AppProperties;
+import org.kolar.kolarcodercopilot.config.TaskContext;
 import org.kolar.kolarcodercopilot.config.TaskContextHolder;
+import org.kolar.kolarcodercopilot.config.TaskExecutors;
+import org.kolar.kolarcodercopilot.model.TaskStage;
 import org.kolar.kolarcodercopilot.model.TaskStatus;
+import org.kolar.kolarcodercopilot.tools.ToolRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.messages.AssistantMessage;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import reactor.core.Exceptions;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * 连续对话服务
@@ -36,78 +48,212 @@ public class ContinuousConversationService {
     private final static long TOTAL_TIMEOUT_MS = 10 * TURN_TIMEOUT_MS; // 总对话超时时间（毫秒） 10分钟
 
     private final TaskSummaryService taskSummaryService;
-
-    //状态容器
-    private final Map<String, TaskStatus> taskStatusMap = new ConcurrentHashMap<>();
-    private final Map<String, ConversationResult>  conversationResultMap = new ConcurrentHashMap<>();
-
-    public ContinuousConversationService(ChatClient chatClient, TaskSummaryService taskSummaryService) {
+    private final TaskExecutors taskExecutors;
+
+    //状态容器 (有界, 已结束任务按TTL落盘)
+    private final TaskStateStore taskStateStore;
+    // 任务预写日志 (崩溃恢复)
+    private final TaskJournal taskJournal;
+    private final AppProperties.Streaming streamingConfig;
+    // 阶段耗时 (任务时间线 + 全局直方图)
+    private final StageMetrics stageMetrics;
+    private final Tracer tracer;
+    // token 用量与会话预算
+    private final TokenAccountingService tokenAccounting;
+    // 当前启用的工具 (每轮读取快照)
+    private final ToolRegistry toolRegistry;
+    // 会话历史 (恢复的任务完成后写回)
+    private final ChatHistoryStore chatHistoryStore;
+
+    public ContinuousConversationService(ChatClient chatClient, TaskSummaryService taskSummaryService,
+                                         TaskExecutors taskExecutors, TaskStateStore taskStateStore,
+                                         TaskJournal taskJournal, AppProperties appProperties,
+                                         StageMetrics stageMetrics, Tracer tracer,
+                                         TokenAccountingService tokenAccounting, ToolRegistry toolRegistry,
+                                         ChatHistoryStore chatHistoryStore) {
         this.chatClient = chatClient;
         this.taskSummaryService = taskSummaryService;
+        this.taskExecutors = taskExecutors;
+        this.taskStateStore = taskStateStore;
+        this.taskJournal = taskJournal;
+        this.streamingConfig = appProperties.getStreaming();
+        this.stageMetrics = stageMetrics;
+        this.tracer = tracer;
+        this.tokenAccounting = tokenAccounting;
+        this.toolRegistry = toolRegistry;
+        this.chatHistoryStore = chatHistoryStore;
     }
 
     public String startTask(String initialMessage){
+        return startTask(initialMessage, null);
+    }
+
+    /**
+     * 创建任务
+     * @param sessionId 所属会话, 用于 token 用量汇总与预算检查
+     */
+    public String startTask(String initialMessage, String sessionId){
        String taskId = UUID.randomUUID().toString();
        TaskStatus status = new TaskStatus(taskId);
+       status.setSessionId(sessionId);
 
        // 估算任务复杂度
+        long analysisStart = System.nanoTime();
         int turns = taskSummaryService.estimateTaskComplexity(initialMessage);
         status.setTotalEstimatedTurns(turns);
+        status.setStatus("RUNNING");
         status.setCurrentAction("任务开始分析");
+        taskStateStore.createTask(status);
+        stageMetrics.record(taskId, TaskStage.TASK_ANALYSIS, analysisStart, "复杂度估算");
 
         return taskId;
     }
 
+    public TaskStatus getTaskStatus(String taskId) {
+        return taskStateStore.getStatus(taskId);
+    }
+
+    public ConversationResult getConversationResult(String taskId) {
+        return taskStateStore.getResult(taskId);
+    }
+
+    /**
+     * 任务未能开始执行 (如任务执行器满载拒绝提交) 时标记为失败, 并通知前端查询任务状态
+     */
+    public void failTask(String taskId, String errorMessage) {
+        TaskStatus taskStatus = taskStateStore.getStatus(taskId);
+        if (taskStatus != null) {
+            taskStatus.setStatus("FAILED");
+            taskStatus.setErrorMessage(errorMessage);
+            taskStatus.setCurrentAction("执行失败");
+        }
+        taskStateStore.markFinished(taskId);
+        taskJournal.taskFinished(taskId, "FAILED");
+        logStreamService.pushTaskComplete(taskId);
+    }
+
     public ConversationResult executeContinuousConversation(String taskId, String initialMessage, List<Message> chatHistory) throws IllegalAccessException {
-        TaskStatus taskStatus = taskStatusMap.get(taskId);
+        TaskStatus taskStatus = taskStateStore.getStatus(taskId);
         if(taskStatus == null){
               throw new IllegalAccessException("task is not found" + taskId);
         }
-        // 设置任务上下文 供AOP切面使用
-        TaskContextHolder.setCurrentTaskId(taskId);
+        // 创建工作副本 (会话历史已由 ChatHistoryStore 限定大小)
+        List<Message> workingHistory = new ArrayList<>(chatHistory);
 
-        long currentStartTime = System.currentTimeMillis();
-        logger.info("start continuous conversstion with message: {}", initialMessage);
+        // 保存用户初始信息
+        UserMessage userMessage = new UserMessage(initialMessage);
+        workingHistory.add(userMessage);
 
-        // 推送任务分析开始事件
-        logStreamService.pushTaskAnalysisStart(taskId, initialMessage);
+        // 写入任务日志, 进程重启后可从最后完成的轮次恢复
+        taskJournal.taskCreated(taskId, taskStatus.getSessionId(), initialMessage, workingHistory);
 
-        // 更新任务状态
-        taskStatus.setCurrentAction("AI 正在分析需求...");
-        taskStatus.setCurrentTurn(0);
+        return runConversation(taskId, initialMessage, taskStatus, workingHistory, new ArrayList<>(), 0, true);
+    }
 
-        // 推送需求理解步骤
-        logStreamService.pushAnalysisStep(taskId, "需求理解",
-                "正在理解和分析用户需求的具体内容", "ANALYZING");
+    /**
+     * 启动后恢复任务日志中未完成的任务, 从最后完成的轮次继续, 不重复已完成的模型调用
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinishedTasks() {
+        List<TaskJournal.RecoveredTask> recoveredTasks = taskJournal.drainRecoveredTasks();
+        for (TaskJournal.RecoveredTask recovered : recoveredTasks) {
+            TaskStatus status = new TaskStatus(recovered.getTaskId());
+            status.setSessionId(recovered.getSessionId());
+            status.setStatus("RUNNING");
+            status.setCurrentTurn(recovered.getCompletedTurns());
+            status.setTotalEstimatedTurns(taskSummaryService.estimateTaskComplexity(recovered.getInitialMessage()));
+            status.setCurrentAction(String.format("任务从第 %d 轮后恢复", recovered.getCompletedTurns()));
+            taskStateStore.createTask(status);
+
+            List<Message> workingHistory = new ArrayList<>(recovered.getHistory());
+            if (!recovered.getPendingToolEffects().isEmpty()) {
+                // 未完成轮次中已产生的工具副作用, 告知模型避免重复执行
+                workingHistory.add(new UserMessage("The service was restarted. These tool calls from the interrupted step "
+                        + "were already applied and must not be repeated:\n- "
+                        + String.join("\n- ", recovered.getPendingToolEffects())));
+            }
+            logger.info("♻️ 恢复未完成任务: taskId={}, sessionId={}, completedTurns={}",
+                    recovered.getTaskId(), recovered.getSessionId(), recovered.getCompletedTurns());
+            try {
+                taskExecutors.runAsync(() -> {
+                    ConversationResult result = runConversation(recovered.getTaskId(), recovered.getInitialMessage(), status,
+                            workingHistory, new ArrayList<>(recovered.getTurnResponses()), recovered.getCompletedTurns(),
+                            recovered.isContinueRequested());
+                    // 与正常完成的任务一致, 结果写回所属会话的历史 (旧日志中的任务可能没有会话)
+                    if (result != null && recovered.getSessionId() != null) {
+                        chatHistoryStore.append(recovered.getSessionId(),
+                                new UserMessage(recovered.getInitialMessage()), new AssistantMessage(result.getFullResponse()));
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                logger.warn("⚠️ 任务执行器已满, 恢复任务失败: taskId={}", recovered.getTaskId());
+                failTask(recovered.getTaskId(), "任务执行器已满, 恢复失败");
+            }
+        }
+    }
 
-        // 推送需求分析完成
-        logStreamService.pushAnalysisStep(taskId,"需求分析",
-                "已完成需求分析，开始制定执行计划", "COMPLETED");
-        // 推送执行计划生成
-        logStreamService.pushAnalysisStep(taskId, "执行计划",
-                "正在生成详细的执行计划和步骤", "ANALYZING");
-        // 创建工作副本
-        List<Message> workingHistory = new ArrayList<>();
-        StringBuilder fullResponse = new StringBuilder();
-        List<String> turnResponses = new ArrayList<>();
+    private ConversationResult runConversation(String taskId, String initialMessage, TaskStatus taskStatus,
+                                               List<Message> workingHistory, List<String> turnResponses,
+                                               int completedTurns, boolean shouldContinue) {
+        // 设置任务上下文 供AOP切面使用 (携带整体截止时间, 随任务执行器/Reactor传播)
+        TaskContext previousContext = TaskContextHolder.attach(TaskContext.forTask(taskId).withTimeout(TOTAL_TIMEOUT_MS));
+        // 任务根 span, 之后的轮次/模型调用/工具调用 span 都挂在其下
+        Tracer.Span taskSpan = tracer.start("task")
+                .attribute("task.id", taskId)
+                .attribute("task.resumed", completedTurns > 0);
 
-        // 保存用户初始信息
-        UserMessage userMessage = new UserMessage(initialMessage);
-        workingHistory.add(userMessage);
+        long currentStartTime = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        logger.info("start continuous conversstion with message: {}", initialMessage);
+
+        boolean resumed = completedTurns > 0;
+        if (!resumed) {
+            // 推送任务分析开始事件
+            logStreamService.pushTaskAnalysisStart(taskId, initialMessage);
+
+            // 更新任务状态
+            taskStatus.setCurrentAction("AI 正在分析需求...");
+            taskStatus.setCurrentTurn(0);
+
+            // 推送需求理解步骤
+            logStreamService.pushAnalysisStep(taskId, "需求理解",
+                    "正在理解和分析用户需求的具体内容", "ANALYZING");
+
+            // 推送需求分析完成
+            logStreamService.pushAnalysisStep(taskId,"需求分析",
+                    "已完成需求分析，开始制定执行计划", "COMPLETED");
+            // 推送执行计划生成
+            logStreamService.pushAnalysisStep(taskId, "执行计划",
+                    "正在生成详细的执行计划和步骤", "ANALYZING");
+        }
+        StringBuilder fullResponse = new StringBuilder(String.join("\n\n", turnResponses));
 
-        int turnCount = 0;
-        boolean shouldContinue = true;
+        int turnCount = completedTurns;
         String stopReason = null;
 
         try{
-            // 模拟执行计划生成时间
-            Thread.sleep(500);
-            // 推送执行计划完成
-            String planSummary = "已生成执行计划: 分析项目结构 -> 创建必要文件 -> 实现核心功能 -> 测试验证";
-            logStreamService.pushExecutionPlanGenerated(taskId, planSummary);
+            if (!resumed) {
+                try (Tracer.Span planSpan = tracer.start("task.plan")) {
+                    long planStart = System.nanoTime();
+                    // 模拟执行计划生成时间
+                    Thread.sleep(500);
+                    // 推送执行计划完成
+                    String planSummary = "已生成执行计划: 分析项目结构 -> 创建必要文件 -> 实现核心功能 -> 测试验证";
+                    logStreamService.pushExecutionPlanGenerated(taskId, planSummary);
+                    stageMetrics.record(taskId, TaskStage.PLAN_GENERATION, planStart);
+                }
+            }
 
             while(shouldContinue && turnCount < MAX_TURNS) {
+                // 会话 token 预算
+                if (tokenAccounting.isOverBudget(taskStatus.getSessionId())) {
+                    logger.warn("🪙 会话 token 预算已用尽, 停止任务: taskId={}, sessionId={}, budget={}",
+                            taskId, taskStatus.getSessionId(), tokenAccounting.getBudget(taskStatus.getSessionId()));
+                    stopReason = "Session token budget exceeded";
+                    break;
+                }
                 turnCount++;
+                int historySizeBeforeTurn = workingHistory.size();
 
                 taskStatus.setCurrentTurn(turnCount);
                 taskStatus.setCurrentAction(String.format("正在进行第 %d 轮对话...", turnCount));
@@ -120,9 +266,20 @@ public class ContinuousConversationService {
                     break;
                 }
 
+                // 预算与超时检查通过后才开始轮次 span 与事件, 由下面的 finally 负责结束
+                Tracer.Span turnSpan = tracer.start("turn").attribute("turn", turnCount);
+                FlightEvents.ConversationTurnEvent turnEvent = new FlightEvents.ConversationTurnEvent();
+                turnEvent.begin();
+                boolean turnSucceeded = false;
+                long turnChars = 0;
                 try{
                     // 开始执行单轮对话
+                    long turnStart = System.nanoTime();
+                    long toolMicrosBefore = stageMetrics.totalMicros(taskId, TaskStage.TOOL_CALL);
                     TurnResult turnResult = executeSingleTurn(workingHistory, turnCount);
+                    // 模型在本轮内请求的工具调用已记为 TOOL_CALL, 模型调用阶段扣除这部分, 避免重复计时
+                    long toolMicros = stageMetrics.totalMicros(taskId, TaskStage.TOOL_CALL) - toolMicrosBefore;
+                    stageMetrics.record(taskId, TaskStage.MODEL_CALL, turnStart, "第 " + turnCount + " 轮", toolMicros);
 
                     if( !turnResult.isSuccess){
                         logger.error("Turn: {} err: {}", turnCount, turnResult.getErrorMessage());
@@ -131,6 +288,7 @@ public class ContinuousConversationService {
                     }
                     // 添加响应到历史
                     String responseText = turnResult.getResponse();
+                    turnChars = responseText != null ? responseText.length() : 0;
                     if(responseText != null && !responseText.trim().isEmpty()){
                         AssistantMessage assistantMessage = new AssistantMessage(responseText);  // AI助手响应消息的封装
                         workingHistory.add(assistantMessage);
@@ -149,7 +307,9 @@ public class ContinuousConversationService {
                     }
                     // 判断是否继续
                     taskStatus.setCurrentAction(String.format("判断第 %d 轮对话是否继续...", turnCount));
+                    long checkStart = System.nanoTime();
                     shouldContinue = ShouldContinueConversation(workingHistory, turnCount, responseText);
+                    stageMetrics.record(taskId, TaskStage.CONTINUATION_CHECK, checkStart, "第 " + turnCount + " 轮");
 
 
                     if(shouldContinue && turnCount < MAX_TURNS) {
@@ -164,6 +324,13 @@ public class ContinuousConversationService {
                         taskStatus.setCurrentAction("对话即将结束...");
                     }
 
+                    // 轮次完成后落日志 (等待组提交刷盘), 崩溃后从此处恢复
+                    long journalStart = System.nanoTime();
+                    taskJournal.turnCompleted(taskId, turnCount, responseText, shouldContinue,
+                            workingHistory.subList(historySizeBeforeTurn, workingHistory.size()));
+                    stageMetrics.record(taskId, TaskStage.JOURNAL_COMMIT, journalStart, "第 " + turnCount + " 轮");
+                    turnSucceeded = true;
+
                 }catch(Exception e){
                     logger.error("Error conversation in turn{} :{}", turnCount, e.getMessage());
                     stopReason = "Exception conversation in turn" + turnCount + ": " + e.getMessage();
@@ -181,6 +348,20 @@ public class ContinuousConversationService {
                     taskStatus.setCurrentAction(String.format("执行出错: {}" , e.getMessage()));
                     taskStatus.setErrorMessage(e.getMessage());
                     break;
+                } finally {
+                    turnEvent.end();
+                    if (turnEvent.shouldCommit()) {
+                        turnEvent.taskId = taskId;
+                        turnEvent.turn = turnCount;
+                        turnEvent.responseChars = turnChars;
+                        turnEvent.success = turnSucceeded;
+                        turnEvent.commit();
+                    }
+                    turnSpan.attribute("response.chars", turnChars);
+                    if (!turnSucceeded) {
+                        turnSpan.error(stopReason);
+                    }
+                    turnSpan.close();
                 }
             }
 
@@ -207,9 +388,16 @@ public class ContinuousConversationService {
                 summry += ", 停止原因: " + stopReason;
             }
             taskStatus.setSummary(summry);
+            stageMetrics.record(taskId, TaskStage.TASK_TOTAL, startNanos, stopReason);
+            taskSpan.attribute("turns", turnCount);
+            if (stopReason != null) {
+                taskSpan.attribute("stop.reason", stopReason);
+            }
 
             // 存储结果
-            conversationResultMap.put(taskId, result);
+            taskStateStore.putResult(taskId, result);
+
+            taskJournal.taskFinished(taskId, taskStatus.getStatus());
 
             // 推送对话完成结果
             logStreamService.pushTaskComplete(taskId);
@@ -220,9 +408,16 @@ public class ContinuousConversationService {
             taskStatus.setStatus("FAILED");
             taskStatus.setErrorMessage(e.getMessage());
             taskStatus.setCurrentAction("执行失败");
+            stageMetrics.record(taskId, TaskStage.TASK_TOTAL, startNanos, "FAILED");
+            taskSpan.error(e);
+            taskStateStore.markFinished(taskId);
+            taskJournal.taskFinished(taskId, "FAILED");
+            // 失败同样通知前端, 由前端查询任务状态展示错误
+            logStreamService.pushTaskComplete(taskId);
         }finally {
+            taskSpan.close();
             // 清理对话上下文
-            TaskContextHolder.clearCurrentTaskId();
+            TaskContextHolder.restore(previousContext);
         }
         return null;
     }
@@ -234,7 +429,133 @@ public class ContinuousConversationService {
      * @return
      * @throws IllegalAccessException
      */
-    public TurnResult executeSingleTurn(List<Message> chatHistory, int turnCount) throws IllegalAccessException {}
+    public TurnResult executeSingleTurn(List<Message> chatHistory, int turnCount) throws IllegalAccessException {
+        logger.debug("executing turn {} with {} messages", turnCount, chatHistory.size());
+        List<Message> turnHistory = new ArrayList<>(chatHistory);
+        String taskId = TaskContextHolder.getCurrentTaskId();
+        boolean streaming = streamingConfig.isEnabled() && taskId != null;
+
+        Tracer.Span modelSpan = tracer.start("model.call", Tracer.SpanKind.CLIENT)
+                .attribute("turn", turnCount)
+                .attribute("model.streaming", streaming)
+                .attribute("prompt.messages", turnHistory.size());
+        FlightEvents.ModelCallEvent modelEvent = new FlightEvents.ModelCallEvent();
+        modelEvent.begin();
+        TurnResult result;
+        try {
+            result = streaming
+                    ? executeStreamingTurn(taskId, turnHistory, turnCount, modelEvent)
+                    : executeBlockingTurn(turnHistory, turnCount);
+            modelSpan.attribute("response.chars", result.getResponse() != null ? result.getResponse().length() : 0);
+            // 失败/超时的轮次同样计入用量: 请求已发出, 按已收到的部分文本 (或模型返回的用量) 记录
+            String completion = result.getResponse() != null ? result.getResponse() : result.getPartialResponse();
+            long tokens = tokenAccounting.record(taskId, TokenAccountingService.CONVERSATION_SOURCE,
+                    result.getUsage(), turnHistory, completion);
+            modelSpan.attribute("tokens", tokens);
+            if (!result.isSuccess()) {
+                modelSpan.error(result.getErrorMessage());
+            }
+        } finally {
+            modelSpan.close();
+        }
+        modelEvent.end();
+        if (modelEvent.shouldCommit()) {
+            modelEvent.taskId = taskId;
+            modelEvent.turn = turnCount;
+            modelEvent.streaming = streaming;
+            modelEvent.promptMessages = turnHistory.size();
+            modelEvent.responseChars = result.getResponse() != null ? result.getResponse().length() : 0;
+            modelEvent.success = result.isSuccess();
+            modelEvent.commit();
+        }
+        return result;
+    }
+
+    /**
+     * 非流式执行单轮对话
+     * 模型调用直接在任务线程上运行, 不再转交执行器等待: 卡住的调用由 HTTP 读取超时结束
+     * (app.execution.model-read-timeout-seconds), 不会在任务线程池中占用第二个线程
+     */
+    private TurnResult executeBlockingTurn(List<Message> turnHistory, int turnCount) {
+        try {
+            ChatResponse response = chatClient.prompt()
+                    .messages(turnHistory)
+                    .toolCallbacks(toolRegistry.getEnabledCallbacks())
+                    .toolContext(TaskContextHolder.toToolContext())
+                    .call()
+                    .chatResponse();
+            String text = response != null && response.getResult() != null
+                    ? response.getResult().getOutput().getText() : null;
+            TurnResult result = new TurnResult(true, text, null);
+            if (response != null) {
+                result.setUsage(response.getMetadata().getUsage());
+            }
+            return result;
+        } catch (RuntimeException e) {
+            logger.warn("Turn {} model call failed: {}", turnCount, e.getMessage());
+            return new TurnResult(false, null, e.getMessage());
+        }
+    }
+
+    /**
+     * 流式执行单轮对话: 增量文本经缓冲合并后推送到任务SSE, 轮次文本由全部增量拼接
+     * 超时为整轮截止时间 (不超过任务剩余时间), 超时后取消模型流
+     */
+    private TurnResult executeStreamingTurn(String taskId, List<Message> turnHistory, int turnCount,
+                                            FlightEvents.ModelCallEvent modelEvent) {
+        long timeoutMs = Math.min(TURN_TIMEOUT_MS, Math.max(TaskContextHolder.current().remainingMillis(), 0));
+        TokenDeltaBuffer tokens = logStreamService.openTokenStream(taskId, turnCount);
+        StringBuilder response = new StringBuilder();
+        // 流式响应的用量通常只在最后一个分片的元数据中
+        AtomicReference<Usage> usage = new AtomicReference<>();
+        try {
+            chatClient.prompt()
+                    .messages(turnHistory)
+                    .toolCallbacks(toolRegistry.getEnabledCallbacks())
+                    // 工具可能在其他线程上执行 (流式调用时为 boundedElastic), 经 ToolContext 携带任务上下文
+                    .toolContext(TaskContextHolder.toToolContext())
+                    .stream()
+                    .chatResponse()
+                    // 分片在 netty 线程上到达, 处理时从 Reactor Context 绑定任务上下文
+                    .doOnEach(TaskContextHolder.withReactorContext(chunk -> {
+                        modelEvent.chunks++;
+                        Usage chunkUsage = chunk.getMetadata().getUsage();
+                        if (chunkUsage != null && chunkUsage.getTotalTokens() != null && chunkUsage.getTotalTokens() > 0) {
+                            usage.set(chunkUsage);
+                        }
+                        String delta = chunk.getResult() != null ? chunk.getResult().getOutput().getText() : null;
+                        if (delta != null && !delta.isEmpty()) {
+                            response.append(delta);
+                            tokens.append(delta);
+                        }
+                    }))
+                    .then()
+                    .timeout(Duration.ofMillis(timeoutMs))
+                    .contextWrite(TaskContextHolder.toReactorContext())
+                    .block();
+            TurnResult result = new TurnResult(true, response.toString(), null);
+            result.setUsage(usage.get());
+            return result;
+        } catch (RuntimeException e) {
+            Throwable cause = Exceptions.unwrap(e);
+            String errorMessage;
+            if (cause instanceof TimeoutException) {
+                errorMessage = "Turn " + turnCount + " timed out after " + timeoutMs + "ms";
+            } else if (cause instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+                errorMessage = "Turn " + turnCount + " interrupted";
+            } else {
+                errorMessage = cause.getMessage();
+            }
+            TurnResult result = new TurnResult(false, null, errorMessage);
+            // 失败前已收到的文本与用量, 用于记录本轮消耗
+            result.setPartialResponse(response.toString());
+            result.setUsage(usage.get());
+            return result;
+        } finally {
+            tokens.flush();
+        }
+    }
 
     /**
      * 连续对话结果
@@ -276,6 +597,8 @@ public class ContinuousConversationService {
         private boolean isSuccess;
         private String response;
         private String errorMessage;
+        private Usage usage; // 模型返回的 token 用量, 未返回时为 null
+        private String partialResponse; // 失败/超时前已收到的流式文本, 仅用于估算用量
 
         public boolean isSuccess() {
             return isSuccess;
@@ -301,6 +624,22 @@ public class ContinuousConversationService {
             this.errorMessage = errorMessage;
         }
 
+        public Usage getUsage() {
+            return usage;
+        }
+
+        public void setUsage(Usage usage) {
+            this.usage = usage;
+        }
+
+        public String getPartialResponse() {
+            return partialResponse;
+        }
+
+        public void setPartialResponse(String partialResponse) {
+            this.partialResponse = partialResponse;
+        }
+
         public TurnResult() {
 
         }
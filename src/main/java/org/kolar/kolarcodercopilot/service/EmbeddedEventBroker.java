@@ -0,0 +1,177 @@
+package org.kolar.kolarcodercopilot.service;
+
+import org.kolar.kolarcodercopilot.config.AppProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 内嵌事件代理
+ * 将任一节点发来的帧按到达顺序广播给所有已连接的节点; 每个节点一个发送队列与写线程, 慢节点只丢弃自己的帧
+ * 用于开发/测试, 或由单个节点承担代理的小规模部署, 可替换为外部消息代理
+ */
+public class EmbeddedEventBroker implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedEventBroker.class);
+
+    private final AppProperties.EventBus config;
+    private final Set<Peer> peers = ConcurrentHashMap.newKeySet();
+    private volatile boolean running;
+    private ServerSocket serverSocket;
+
+    private final LongAdder relayed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    public EmbeddedEventBroker(AppProperties.EventBus config) {
+        this.config = config;
+    }
+
+    public void start() throws IOException {
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(config.getBrokerPort()));
+        running = true;
+        Thread acceptThread = new Thread(this::acceptLoop, "event-broker-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        logger.info("📡 内嵌事件代理已启动: port={}", config.getBrokerPort());
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException ignored) {
+            // 关闭失败无需处理
+        }
+        for (Peer peer : peers) {
+            peer.close();
+        }
+    }
+
+    /**
+     * 实际监听的端口 (配置为 0 时由系统分配)
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("peers", peers.size());
+        metrics.put("relayed", relayed.sum());
+        metrics.put("dropped", dropped.sum());
+        return metrics;
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Peer peer = new Peer(socket);
+                peers.add(peer);
+                peer.start();
+                logger.info("🔌 节点已连接事件代理: remote={}", socket.getRemoteSocketAddress());
+            } catch (IOException e) {
+                if (running) {
+                    logger.warn("⚠️ 事件代理接受连接失败: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void broadcast(byte[] frame) {
+        relayed.increment();
+        for (Peer peer : peers) {
+            if (!peer.outbound.offer(frame)) {
+                dropped.increment();
+            }
+        }
+    }
+
+    /**
+     * 已连接的节点
+     */
+    private class Peer {
+        private final Socket socket;
+        private final BlockingQueue<byte[]> outbound = new ArrayBlockingQueue<>(Math.max(1, config.getQueueCapacity()));
+
+        Peer(Socket socket) {
+            this.socket = socket;
+        }
+
+        void start() {
+            Thread reader = new Thread(this::readLoop, "event-broker-reader");
+            reader.setDaemon(true);
+            reader.start();
+            Thread writer = new Thread(this::writeLoop, "event-broker-writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+
+        private void readLoop() {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+                while (running) {
+                    broadcast(EventFrames.read(in));
+                }
+            } catch (IOException e) {
+                logger.debug("节点连接读取结束: {}", e.getMessage());
+            } finally {
+                close();
+            }
+        }
+
+        private void writeLoop() {
+            try {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                while (running && !socket.isClosed()) {
+                    byte[] frame = outbound.poll(1, TimeUnit.SECONDS);
+                    if (frame == null) {
+                        continue;
+                    }
+                    EventFrames.write(out, frame);
+                    while ((frame = outbound.poll()) != null) {
+                        EventFrames.write(out, frame);
+                    }
+                    out.flush();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                logger.debug("节点连接写入结束: {}", e.getMessage());
+            } finally {
+                close();
+            }
+        }
+
+        void close() {
+            if (peers.remove(this)) {
+                logger.info("🔚 节点已断开事件代理: remote={}", socket.getRemoteSocketAddress());
+            }
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // 关闭失败无需处理
+            }
+        }
+    }
+}
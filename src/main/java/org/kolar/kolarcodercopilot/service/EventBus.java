@@ -0,0 +1,36 @@
+package org.kolar.kolarcodercopilot.service;
+
+import java.util.Map;
+
+/**
+ * 事件总线
+ * 任务所在节点发布事件, 每个节点的订阅者收到后分发给本节点的SSE连接; 同一任务的事件按发布顺序送达
+ * 事件id由发布节点分配并随事件传递, 所有节点按同一id写入回放日志, 重连到任一节点都能按 Last-Event-ID 补齐
+ */
+public interface EventBus extends AutoCloseable {
+
+    /**
+     * 发布任务事件
+     * @param eventId 发布节点分配的事件id, 同一任务内单调递增
+     */
+    void publish(String taskId, long eventId, Object event);
+
+    /**
+     * 订阅所有任务的事件
+     */
+    void subscribe(Listener listener);
+
+    Map<String, Object> getMetrics();
+
+    @Override
+    default void close() {
+    }
+
+    /**
+     * 事件订阅者
+     */
+    @FunctionalInterface
+    interface Listener {
+        void onEvent(String taskId, long eventId, Object event);
+    }
+}
@@ -0,0 +1,17 @@
+package org.kolar.kolarcodercopilot.service;
+
+/**
+ * SSE事件编码
+ * 由客户端建立连接时通过 encoding 参数协商, 默认 JSON
+ */
+public enum EventEncoding {
+    JSON,    // 完整JSON, 字段名与格式化时间字符串 (默认)
+    COMPACT; // 短字段名 + 毫秒时间戳 + 类型/状态编码, 去掉图标
+
+    public static EventEncoding parse(String value) {
+        if (value != null && value.trim().equalsIgnoreCase("compact")) {
+            return COMPACT;
+        }
+        return JSON;
+    }
+}
@@ -0,0 +1,33 @@
+package org.kolar.kolarcodercopilot.service;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * 事件总线的帧格式: [int 长度][UTF-8 JSON]
+ * 代理只按帧转发, 不解析内容
+ */
+final class EventFrames {
+    static final int MAX_FRAME_BYTES = 16 * 1024 * 1024;
+
+    private EventFrames() {}
+
+    static void write(DataOutputStream out, byte[] frame) throws IOException {
+        out.writeInt(frame.length);
+        out.write(frame);
+    }
+
+    /**
+     * 读取一帧, 连接正常关闭时抛出 EOFException
+     */
+    static byte[] read(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_FRAME_BYTES) {
+            throw new IOException("invalid frame length: " + length);
+        }
+        byte[] frame = new byte[length];
+        in.readFully(frame);
+        return frame;
+    }
+}
@@ -0,0 +1,226 @@
+package org.kolar.kolarcodercopilot.service;
+
+import org.kolar.kolarcodercopilot.config.AppProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * SSE事件回放日志
+ * 每个任务保留最近的事件, 晚到或重连的订阅者按 Last-Event-ID 补齐遗漏的事件
+ * 事件id由发布节点分配 (同一任务内单调递增), 各节点保存同一id, 因此 Last-Event-ID 在任一节点上含义相同
+ * 单任务条数与全局总条数都有上限, 超出全局上限时从最久未写入的任务开始淘汰最早的事件
+ */
+@Component
+public class EventReplayLog {
+    private static final Logger logger = LoggerFactory.getLogger(EventReplayLog.class);
+
+    private final AppProperties.Sse config;
+    private final long idleTtlMillis;
+
+    // access-order 的 LinkedHashMap 即按最近写入排序, 访问需持有自身锁
+    private final LinkedHashMap<String, TaskLog> logs = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalEvents;
+    private long evictedEvents;
+
+    public EventReplayLog(AppProperties appProperties) {
+        this.config = appProperties.getSse();
+        this.idleTtlMillis = config.getReplayIdleTtlMinutes() * 60_000L;
+    }
+
+    /**
+     * 按发布节点分配的id记录事件
+     * dispatcher 在任务日志锁内执行, 与 subscribe 互斥, 保证订阅者不会漏掉或重复收到事件
+     * @return id 不大于该任务已记录的最大id (重复投递) 时忽略并返回 false
+     */
+    public boolean append(String taskId, long id, Object event, Runnable dispatcher) {
+        while (true) {
+            TaskLog log = logFor(taskId);
+            synchronized (log) {
+                // 任务日志恰好被淘汰时重新获取, 避免写入已移除的旧对象
+                if (log.removed) {
+                    continue;
+                }
+                if (id <= log.lastId) {
+                    return false;
+                }
+                log.lastId = id;
+                log.entries.addLast(new Entry(id, event));
+                log.lastAppendMillis = System.currentTimeMillis();
+                int trimmed = 0;
+                while (log.entries.size() > config.getReplayMaxEventsPerTask()) {
+                    log.entries.pollFirst();
+                    trimmed++;
+                }
+                dispatcher.run();
+                adjustTotal(1 - trimmed);
+                break;
+            }
+        }
+        enforceTotalLimit();
+        return true;
+    }
+
+    /**
+     * 订阅任务事件: 在任务日志锁内回放 lastEventId 之后的事件并执行注册
+     * @param lastEventId 客户端已收到的最后一个事件id, null 表示从头回放
+     */
+    public void subscribe(String taskId, Long lastEventId, Consumer<List<Entry>> register) {
+        while (true) {
+            TaskLog log = logFor(taskId);
+            synchronized (log) {
+                if (log.removed) {
+                    continue;
+                }
+                List<Entry> missed = new ArrayList<>();
+                for (Entry entry : log.entries) {
+                    if (lastEventId == null || entry.getId() > lastEventId) {
+                        missed.add(entry);
+                    }
+                }
+                register.accept(missed);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 丢弃任务的回放日志
+     */
+    public void remove(String taskId) {
+        TaskLog removed;
+        synchronized (logs) {
+            removed = logs.remove(taskId);
+        }
+        if (removed != null) {
+            synchronized (removed) {
+                removed.removed = true;
+                adjustTotal(-removed.entries.size());
+                removed.entries.clear();
+            }
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        synchronized (logs) {
+            metrics.put("replayTasks", logs.size());
+            metrics.put("replayEvents", totalEvents);
+            metrics.put("replayEvicted", evictedEvents);
+        }
+        metrics.put("replayMaxTotalEvents", config.getReplayMaxTotalEvents());
+        return metrics;
+    }
+
+    private TaskLog logFor(String taskId) {
+        List<TaskLog> expired = new ArrayList<>();
+        TaskLog log;
+        synchronized (logs) {
+            collectExpired(expired);
+            log = logs.computeIfAbsent(taskId, TaskLog::new);
+        }
+        discard(expired);
+        return log;
+    }
+
+    /**
+     * 从头部移出空闲超时的任务日志, 调用方需持有 logs 锁
+     */
+    private void collectExpired(List<TaskLog> expired) {
+        long now = System.currentTimeMillis();
+        Iterator<TaskLog> iterator = logs.values().iterator();
+        while (iterator.hasNext()) {
+            TaskLog eldest = iterator.next();
+            if (now - eldest.lastAppendMillis <= idleTtlMillis) {
+                break;
+            }
+            iterator.remove();
+            expired.add(eldest);
+        }
+    }
+
+    private void discard(List<TaskLog> expired) {
+        for (TaskLog log : expired) {
+            synchronized (log) {
+                log.removed = true;
+                adjustTotal(-log.entries.size());
+                log.entries.clear();
+            }
+            logger.debug("回放日志空闲过期: taskId={}", log.taskId);
+        }
+    }
+
+    /**
+     * 超出全局上限时, 从最久未写入的任务开始淘汰最早的事件
+     */
+    private void enforceTotalLimit() {
+        while (true) {
+            TaskLog victim;
+            synchronized (logs) {
+                if (totalEvents <= config.getReplayMaxTotalEvents() || logs.isEmpty()) {
+                    return;
+                }
+                victim = logs.values().iterator().next();
+            }
+            synchronized (victim) {
+                Entry evicted = victim.entries.pollFirst();
+                if (evicted == null) {
+                    victim.removed = true;
+                    synchronized (logs) {
+                        logs.remove(victim.taskId, victim);
+                    }
+                    continue;
+                }
+                adjustTotal(-1);
+                synchronized (logs) {
+                    evictedEvents++;
+                }
+            }
+        }
+    }
+
+    private void adjustTotal(long delta) {
+        synchronized (logs) {
+            totalEvents += delta;
+        }
+    }
+
+    /**
+     * 单个任务的回放日志
+     */
+    private static class TaskLog {
+        private final String taskId;
+        private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+        private volatile long lastAppendMillis = System.currentTimeMillis();
+        private long lastId; // 已记录的最大事件id, 持有自身锁访问
+        private boolean removed; // 已从 logs 中移除, 持有自身锁访问
+
+        TaskLog(String taskId) {
+            this.taskId = taskId;
+        }
+    }
+
+    /**
+     * 回放日志中的一条事件
+     */
+    public static class Entry {
+        private final long id;
+        private final Object event;
+
+        Entry(long id, Object event) {
+            this.id = id;
+            this.event = event;
+        }
+
+        public long getId() { return id; }
+        public Object getEvent() { return event; }
+    }
+}
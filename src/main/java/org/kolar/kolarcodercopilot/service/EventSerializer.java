@@ -0,0 +1,67 @@
+package org.kolar.kolarcodercopilot.service;
+
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SSE事件序列化器
+ * 预先配置好的共享 ObjectWriter 直接写入池化的可复用字节缓冲, 输出UTF-8字节由SSE原样写出,
+ * 省去中间 String 与再次编码; 缓冲池有界, 虚拟线程下也能复用
+ */
+@Component
+public class EventSerializer {
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+    private static final int MAX_POOLED_BUFFER_SIZE = 64 * 1024; // 超过该大小的缓冲不放回池中
+
+    private final ObjectWriter writer;
+    private final BlockingQueue<ByteArrayBuilder> pool;
+
+    private final LongAdder serializedEvents = new LongAdder();
+    private final LongAdder serializedBytes = new LongAdder();
+
+    public EventSerializer() {
+        ObjectMapper objectMapper = new ObjectMapper()
+                .disable(SerializationFeature.FAIL_ON_EMPTY_BEANS)
+                .disable(SerializationFeature.INDENT_OUTPUT);
+        this.writer = objectMapper.writer();
+        this.pool = new ArrayBlockingQueue<>(Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+    }
+
+    /**
+     * 序列化为UTF-8 JSON字节
+     */
+    public byte[] serialize(Object value) throws IOException {
+        ByteArrayBuilder buffer = pool.poll();
+        if (buffer == null) {
+            buffer = new ByteArrayBuilder(INITIAL_BUFFER_SIZE);
+        }
+        try {
+            writer.writeValue(buffer, value);
+            byte[] bytes = buffer.toByteArray();
+            serializedEvents.increment();
+            serializedBytes.add(bytes.length);
+            return bytes;
+        } finally {
+            if (buffer.size() <= MAX_POOLED_BUFFER_SIZE) {
+                buffer.reset();
+                pool.offer(buffer);
+            }
+        }
+    }
+
+    public long getSerializedEvents() {
+        return serializedEvents.sum();
+    }
+
+    public long getSerializedBytes() {
+        return serializedBytes.sum();
+    }
+}
@@ -0,0 +1,50 @@
+package org.kolar.kolarcodercopilot.service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * 事件时间戳
+ * 格式化的事件时间精度为秒, 同一秒内复用已格式化的字符串, 避免每个事件都格式化 LocalDateTime;
+ * 毫秒时间戳在事件创建时另行记录 (LoginEvent.epochMillis), 编码时直接输出, 不再解析字符串
+ */
+public final class EventTimestamps {
+    private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final ZoneId zone = ZoneId.systemDefault();
+
+    private static volatile Cached cached = new Cached(Long.MIN_VALUE, "");
+
+    private EventTimestamps() {}
+
+    /**
+     * 当前时间 yyyy-MM-dd HH:mm:ss
+     */
+    public static String now() {
+        return format(System.currentTimeMillis());
+    }
+
+    /**
+     * 格式化毫秒时间为 yyyy-MM-dd HH:mm:ss, 与最近一次格式化在同一秒时直接复用
+     */
+    public static String format(long millis) {
+        long second = Math.floorDiv(millis, 1000L);
+        Cached current = cached;
+        if (current.second != second) {
+            current = new Cached(second, formatter.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), zone)));
+            cached = current;
+        }
+        return current.text;
+    }
+
+    private static final class Cached {
+        private final long second;
+        private final String text;
+
+        Cached(long second, String text) {
+            this.second = second;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package org.kolar.kolarcodercopilot.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR 自定义事件
+ * 每个事件带任务id等业务字段, 与同一时间段的CPU采样/分配/锁事件一起可按任务归因;
+ * 没有录制时 shouldCommit() 直接返回 false, 调用方只在其为 true 时填充字段
+ */
+public final class FlightEvents {
+    private static final String CATEGORY = "Kolar Copilot";
+
+    private FlightEvents() {}
+
+    @Name("kolar.copilot.ConversationTurn")
+    @Label("Conversation Turn")
+    @Description("一轮对话 (模型调用 + 继续判断 + 任务日志提交)")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class ConversationTurnEvent extends Event {
+        @Label("Task Id")
+        public String taskId;
+
+        @Label("Turn")
+        public int turn;
+
+        @Label("Response Chars")
+        public long responseChars;
+
+        @Label("Success")
+        public boolean success;
+    }
+
+    @Name("kolar.copilot.ModelCall")
+    @Label("Model Call")
+    @Description("一次模型调用 (流式调用时 chunks 为收到的增量片段数, 近似输出token数)")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class ModelCallEvent extends Event {
+        @Label("Task Id")
+        public String taskId;
+
+        @Label("Turn")
+        public int turn;
+
+        @Label("Streaming")
+        public boolean streaming;
+
+        @Label("Prompt Messages")
+        public int promptMessages;
+
+        @Label("Chunks")
+        public long chunks;
+
+        @Label("Response Chars")
+        public long responseChars;
+
+        @Label("Success")
+        public boolean success;
+    }
+
+    @Name("kolar.copilot.ToolCall")
+    @Label("Tool Call")
+    @Category(CATEGORY)
+    public static class ToolCallEvent extends Event {
+        @Label("Task Id")
+        public String taskId;
+
+        @Label("Tool Name")
+        public String toolName;
+
+        @Label("Target")
+        @Description("文件/目录等工具参数")
+        public String target;
+
+        @Label("Result Chars")
+        public long resultChars;
+
+        @Label("Success")
+        public boolean success;
+    }
+
+    @Name("kolar.copilot.ProjectScan")
+    @Label("Project Scan")
+    @Category(CATEGORY)
+    public static class ProjectScanEvent extends Event {
+        @Label("Task Id")
+        public String taskId;
+
+        @Label("Project Root")
+        public String projectRoot;
+
+        @Label("Dependencies")
+        public int dependencies;
+
+        @Label("Config Files")
+        public int configFiles;
+
+        @Label("Source Lines")
+        public long totalLines;
+
+        @Label("Success")
+        public boolean success;
+    }
+
+    @Name("kolar.copilot.SseSend")
+    @Label("SSE Send")
+    @Description("一次SSE写入与flush (一批事件)")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class SseSendEvent extends Event {
+        @Label("Connection Id")
+        @Description("任务id或多路复用通道的客户端id")
+        public String connectionId;
+
+        @Label("Events")
+        public int events;
+
+        @Label("Bytes")
+        @DataAmount
+        public long bytes;
+    }
+}
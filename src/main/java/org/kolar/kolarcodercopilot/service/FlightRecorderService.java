@@ -0,0 +1,163 @@
+package org.kolar.kolarcodercopilot.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.kolar.kolarcodercopilot.config.AppProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * JFR 录制控制
+ * 运行时通过接口开始/停止录制或导出当前录制, 录制同时启用 FlightEvents 中的自定义事件,
+ * 录制文件写入配置目录
+ */
+@Service
+public class FlightRecorderService {
+    private static final Logger logger = LoggerFactory.getLogger(FlightRecorderService.class);
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final AppProperties.FlightRecorder config;
+    private final Path directory;
+
+    // 当前录制, 访问需持有 this 锁
+    private Recording recording;
+
+    public FlightRecorderService(AppProperties appProperties) {
+        this.config = appProperties.getFlightRecorder();
+        this.directory = Paths.get(config.getDirectory());
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!config.isStartOnBoot()) {
+            return;
+        }
+        try {
+            start(null, null);
+        } catch (IOException | ParseException | IllegalStateException e) {
+            logger.warn("启动时开启JFR录制失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 开始录制
+     * @param settings JFR 预置配置名 (default / profile), 为空时使用配置值
+     * @param maxAgeMinutes 录制保留时长, 为空时使用配置值
+     */
+    public synchronized Map<String, Object> start(String settings, Integer maxAgeMinutes) throws IOException, ParseException {
+        if (!FlightRecorder.isAvailable()) {
+            throw new IllegalStateException("当前JVM不支持JFR");
+        }
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            throw new IllegalStateException("JFR录制已在进行中: " + recording.getName());
+        }
+        String settingsName = settings == null || settings.isBlank() ? config.getSettings() : settings;
+        Recording newRecording = new Recording(Configuration.getConfiguration(settingsName));
+        newRecording.setName("copilot-" + LocalDateTime.now().format(FILE_TIME));
+        newRecording.setToDisk(true);
+        newRecording.setMaxAge(Duration.ofMinutes(maxAgeMinutes != null ? maxAgeMinutes : config.getMaxAgeMinutes()));
+        newRecording.setMaxSize(config.getMaxSizeMb() * 1024L * 1024L);
+
+        Duration threshold = Duration.ofMillis(config.getEventThresholdMillis());
+        newRecording.enable(FlightEvents.ConversationTurnEvent.class).withThreshold(threshold);
+        newRecording.enable(FlightEvents.ModelCallEvent.class).withThreshold(threshold);
+        newRecording.enable(FlightEvents.ToolCallEvent.class).withThreshold(threshold).withStackTrace();
+        newRecording.enable(FlightEvents.ProjectScanEvent.class).withThreshold(threshold).withStackTrace();
+        newRecording.enable(FlightEvents.SseSendEvent.class)
+                .withThreshold(Duration.ofMillis(config.getSseSendThresholdMillis()));
+
+        if (recording != null) {
+            recording.close();
+        }
+        newRecording.start();
+        recording = newRecording;
+        logger.info("🎬 JFR录制已开始: name={}, settings={}", newRecording.getName(), settingsName);
+        return status();
+    }
+
+    /**
+     * 停止录制并写出文件
+     */
+    public synchronized Map<String, Object> stop() throws IOException {
+        if (recording == null || recording.getState() != RecordingState.RUNNING) {
+            throw new IllegalStateException("没有进行中的JFR录制");
+        }
+        Path file = dumpTo(recording);
+        recording.stop();
+        recording.close();
+        recording = null;
+        logger.info("⏹️ JFR录制已停止: file={}", file);
+        Map<String, Object> result = status();
+        result.put("file", file.toString());
+        return result;
+    }
+
+    /**
+     * 导出当前录制内容, 录制继续进行
+     */
+    public synchronized Map<String, Object> dump() throws IOException {
+        if (recording == null || recording.getState() != RecordingState.RUNNING) {
+            throw new IllegalStateException("没有进行中的JFR录制");
+        }
+        Path file = dumpTo(recording);
+        logger.info("💾 JFR录制已导出: file={}", file);
+        Map<String, Object> result = status();
+        result.put("file", file.toString());
+        return result;
+    }
+
+    public synchronized Map<String, Object> status() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("available", FlightRecorder.isAvailable());
+        result.put("recording", recording != null && recording.getState() == RecordingState.RUNNING);
+        if (recording != null) {
+            result.put("name", recording.getName());
+            result.put("state", recording.getState().name());
+            result.put("startTime", recording.getStartTime() != null ? recording.getStartTime().toString() : null);
+            result.put("maxAgeMinutes", recording.getMaxAge() != null ? recording.getMaxAge().toMinutes() : null);
+            result.put("sizeBytes", recording.getSize());
+        }
+        result.put("directory", directory.toString());
+        return result;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (recording == null) {
+            return;
+        }
+        try {
+            if (recording.getState() == RecordingState.RUNNING) {
+                logger.info("JFR录制随应用关闭导出: file={}", dumpTo(recording));
+            }
+        } catch (IOException e) {
+            logger.warn("关闭时导出JFR录制失败: {}", e.getMessage());
+        } finally {
+            recording.close();
+            recording = null;
+        }
+    }
+
+    private Path dumpTo(Recording target) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve(target.getName() + "-" + LocalDateTime.now().format(FILE_TIME) + ".jfr");
+        target.dump(file);
+        return file;
+    }
+}
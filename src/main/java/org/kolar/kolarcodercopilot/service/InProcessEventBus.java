@@ -0,0 +1,37 @@
+package org.kolar.kolarcodercopilot.service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 进程内事件总线 (单实例部署)
+ * 在发布线程上直接回调订阅者
+ */
+public class InProcessEventBus implements EventBus {
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final LongAdder published = new LongAdder();
+
+    @Override
+    public void publish(String taskId, long eventId, Object event) {
+        published.increment();
+        for (Listener listener : listeners) {
+            listener.onEvent(taskId, eventId, event);
+        }
+    }
+
+    @Override
+    public void subscribe(Listener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("mode", "IN_PROCESS");
+        metrics.put("published", published.sum());
+        return metrics;
+    }
+}
@@ -0,0 +1,134 @@
+package org.kolar.kolarcodercopilot.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁延迟直方图 (HDR风格的对数-线性分桶)
+ * 单位为微秒, 128 以内逐值分桶, 之后每个2的幂区间分 64 个桶, 相对误差不超过 1/64;
+ * 记录只做一次原子自增, 多线程并发记录无需加锁, 分位数在快照上计算
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_COUNT = 128;
+    private static final int HALF_SUB_BUCKET_COUNT = SUB_BUCKET_COUNT / 2;
+    private static final int SUB_BUCKET_BITS = 7;
+
+    // 最大可记录值约 71 分钟 (2^32 微秒), 超出的按最大值记录
+    public static final long MAX_TRACKABLE_MICROS = (1L << 32) - 1;
+    private static final int BUCKET_COUNT = indexFor(MAX_TRACKABLE_MICROS) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder totalMicros = new LongAdder();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /**
+     * 记录一次耗时
+     */
+    public void record(long micros) {
+        long value = Math.min(Math.max(micros, 0), MAX_TRACKABLE_MICROS);
+        counts.incrementAndGet(indexFor(value));
+        totalMicros.add(value);
+        long max = maxMicros.get();
+        while (value > max && !maxMicros.compareAndSet(max, value)) {
+            max = maxMicros.get();
+        }
+    }
+
+    public void recordNanos(long nanos) {
+        record(nanos / 1_000);
+    }
+
+    /**
+     * 清空 (滑动窗口复用槽位时调用, 与并发记录之间不保证原子)
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalMicros.reset();
+        maxMicros.set(0);
+    }
+
+    public Snapshot snapshot() {
+        Snapshot snapshot = new Snapshot();
+        snapshot.add(this);
+        return snapshot;
+    }
+
+    static int indexFor(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        int subBucket = (int) (value >>> shift);
+        return SUB_BUCKET_COUNT + (shift - 1) * HALF_SUB_BUCKET_COUNT + (subBucket - HALF_SUB_BUCKET_COUNT);
+    }
+
+    /**
+     * 桶内的最大值 (与 HDR 的 highestEquivalentValue 一致, 分位数偏保守)
+     */
+    static long highestValueAt(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int offset = index - SUB_BUCKET_COUNT;
+        int shift = offset / HALF_SUB_BUCKET_COUNT + 1;
+        long subBucket = offset % HALF_SUB_BUCKET_COUNT + HALF_SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * 直方图快照, 可合并多个直方图 (滑动窗口的各个槽位)
+     */
+    public static class Snapshot {
+        private final long[] counts = new long[BUCKET_COUNT];
+        private long count;
+        private long totalMicros;
+        private long maxMicros;
+
+        void add(LatencyHistogram histogram) {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                long c = histogram.counts.get(i);
+                counts[i] += c;
+                count += c;
+            }
+            totalMicros += histogram.totalMicros.sum();
+            maxMicros = Math.max(maxMicros, histogram.maxMicros.get());
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalMicros() {
+            return totalMicros;
+        }
+
+        public long getMaxMicros() {
+            return maxMicros;
+        }
+
+        public long getMeanMicros() {
+            return count == 0 ? 0 : totalMicros / count;
+        }
+
+        /**
+         * 分位数 (0-100), 无数据时返回 0
+         */
+        public long percentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(count * Math.min(percentile, 100.0) / 100.0));
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValueAt(i), maxMicros);
+                }
+            }
+            return maxMicros;
+        }
+    }
+}
@@ -1,76 +1,390 @@
 package org.kolar.kolarcodercopilot.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.kolar.kolarcodercopilot.config.AppProperties;
+import org.kolar.kolarcodercopilot.config.SampledLogger;
+import org.kolar.kolarcodercopilot.config.SseExecutors;
+import org.kolar.kolarcodercopilot.model.TaskStage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * SSE日志推送服务
  * 负责将AOP日志实时推送到前端
+ * 推送方只把事件放入连接的有界缓冲区, 序列化与网络写入由连接的写任务异步完成
+ * 所有事件先写入回放日志, 连接建立前推送的事件与重连期间遗漏的事件在订阅时补发
+ * 除按任务建立的连接外, 客户端可建立一个多路复用通道, 在同一连接上订阅/取消订阅多个任务
+ * SSE推送执行器 (与任务执行器隔离) 定期巡检所有连接: 空闲连接发送心跳注释, 已断开或长时间无事件的连接被回收
+ * 事件经事件总线发布, 每个节点从总线接收后分发给本节点的连接, 多实例部署时连接无需落在任务所在节点
  */
 @Service
 public class LogStreamService {
 
     private static final Logger logger = LoggerFactory.getLogger(LogStreamService.class);
-    private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
-    // 活跃的SSE连接 taskId -> SseEmitter
-    private final Map<String, SseEmitter> activeConnections = new ConcurrentHashMap<>();
+    // 活跃的SSE连接 taskId -> SseConnection
+    private final Map<String, SseConnection> activeConnections = new ConcurrentHashMap<>();
+
+    // 多路复用通道 clientId -> ClientChannel
+    private final Map<String, ClientChannel> channels = new ConcurrentHashMap<>();
+
+    // 任务订阅 taskId -> (clientId -> 通道连接)
+    private final Map<String, Map<String, SseConnection>> taskSubscribers = new ConcurrentHashMap<>();
+
+    // 连接回收统计 关闭原因 -> 次数
+    private final Map<String, AtomicLong> reapedConnections = new ConcurrentHashMap<>();
+    private volatile int idleConnections;
+    private ScheduledFuture<?> sweepFuture;
+
+    private final SseExecutors sseExecutors;
+    private final AppProperties.Sse sseConfig;
+    private final AppProperties.Streaming streamingConfig;
+    private final EventReplayLog replayLog;
+    private final CompactEventEncoder compactEventEncoder;
+    // JSON 序列化器 (共享, 池化缓冲)
+    private final EventSerializer eventSerializer;
+    private final EventBus eventBus;
+    private final StageMetrics stageMetrics;
+
+    // 发布事件的id时钟: 取微秒时间戳与上一个id加一中的较大值, 本节点单调递增, 重启或任务换节点后也不回退
+    private final AtomicLong eventClock = new AtomicLong();
+    // 按任务分段的发布锁: 同一任务的 id 分配与发布原子完成, 并发推送时总线上的顺序与 id 顺序一致
+    private final Object[] publishLocks = new Object[64];
+
+    public LogStreamService(SseExecutors sseExecutors, AppProperties appProperties, EventReplayLog replayLog,
+                            CompactEventEncoder compactEventEncoder, EventSerializer eventSerializer,
+                            EventBus eventBus, StageMetrics stageMetrics) {
+        this.sseExecutors = sseExecutors;
+        this.sseConfig = appProperties.getSse();
+        this.streamingConfig = appProperties.getStreaming();
+        this.replayLog = replayLog;
+        this.compactEventEncoder = compactEventEncoder;
+        this.eventSerializer = eventSerializer;
+        this.eventBus = eventBus;
+        this.stageMetrics = stageMetrics;
+        for (int i = 0; i < publishLocks.length; i++) {
+            publishLocks[i] = new Object();
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        eventBus.subscribe(this::dispatchLocal);
+        long interval = Math.max(1, sseConfig.getHeartbeatIntervalSeconds());
+        sweepFuture = sseExecutors.scheduleAtFixedRate(this::sweepConnections, interval, interval, TimeUnit.SECONDS);
+    }
 
-    // JSON 序列化器
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    @PreDestroy
+    public void stop() {
+        if (sweepFuture != null) {
+            sweepFuture.cancel(false);
+        }
+    }
 
     /**
      * 创建SSE连接
      */
     public SseEmitter createConnection(String taskId) {
-        logger.info("🔗 建立SSE连接: taskId={}", taskId);
+        return createConnection(taskId, null);
+    }
 
-        SseEmitter emitter = new SseEmitter(0L); //无超时
+    /**
+     * 创建SSE连接, 并补发 lastEventId 之后的事件
+     * @param lastEventId 客户端已收到的最后一个事件id, null 表示补发该任务保留的全部事件
+     */
+    public SseEmitter createConnection(String taskId, Long lastEventId) {
+        return createConnection(taskId, lastEventId, EventEncoding.JSON);
+    }
+
+    /**
+     * 创建SSE连接, 使用协商的事件编码
+     */
+    public SseEmitter createConnection(String taskId, Long lastEventId, EventEncoding encoding) {
+        logger.info("🔗 建立SSE连接: taskId={}, lastEventId={}, encoding={}", taskId, lastEventId, encoding);
+
+        SseEmitter emitter = newEmitter();
+        SseConnection connection = new SseConnection(taskId, emitter, sseConfig, encoderFor(encoding), sseExecutors,
+                closed -> {
+                    activeConnections.remove(taskId, closed);
+                    recordClosed(closed);
+                });
         // 连接处理
         emitter.onCompletion(() -> {
             logger.info("✅ SSE连接完成: taskId={}", taskId);
-            activeConnections.remove(taskId);
+            activeConnections.remove(taskId, connection);
         });
         emitter.onTimeout(() -> {
             logger.warn("⏰ SSE连接超时: taskId={}", taskId);
-            activeConnections.remove(taskId);
+            activeConnections.remove(taskId, connection);
         });
         emitter.onError((e) -> {
             logger.error("❌ SSE连接错误: taskId={}, error={}", taskId, e.getMessage());
-            activeConnections.remove(taskId);
+            activeConnections.remove(taskId, connection);
+        });
+        // 发送连接成功消息 (不进入回放日志)
+        connection.offer(0L, LoginEvent.createConnectionEvent(taskId));
+        // 在回放日志锁内补发遗漏事件并保存连接, 与 sendLogEvent 互斥, 不会漏发或重发
+        replayLog.subscribe(taskId, lastEventId, missed -> {
+            for (EventReplayLog.Entry entry : missed) {
+                connection.offer(entry.getId(), entry.getEvent());
+            }
+            // 同一任务重复连接时关闭旧连接
+            SseConnection previous = activeConnections.put(taskId, connection);
+            if (previous != null) {
+                previous.complete();
+            }
+            if (!missed.isEmpty()) {
+                logger.info("🔁 补发遗漏事件: taskId={}, count={}", taskId, missed.size());
+            }
         });
-        // 保存连接
-        activeConnections.put(taskId, emitter);
-        // 发送连接成功消息
-       // ?  sendLogEvent(taskId, activeConnections.get(taskId));
-        sendLogEvent(taskId, LoginEvent.createConnectionEvent(taskId));
 
         return emitter;
     }
 
     /**
-     * 关闭SSE连接
+     * 关闭SSE连接 (已缓冲的事件发送完后关闭)
      * @param taskId
      */
     public void closeConnection(String taskId) {
-        SseEmitter emitter = activeConnections.remove(taskId);
-       if(emitter != null) {
-           try {
-               emitter.complete();
-               logger.info("🔚 关闭SSE连接: taskId={}",  taskId);
-           }catch (Exception e) {
-               logger.info("关闭SSE连接失败: taskId={}",  taskId);
-           }
-       }
+        SseConnection connection = activeConnections.remove(taskId);
+        if (connection != null) {
+            connection.complete();
+            logger.info("🔚 关闭SSE连接: taskId={}", taskId);
+        }
+        // 任务结束, 通道保持连接, 只移除该任务的订阅
+        Map<String, SseConnection> subscribers = taskSubscribers.remove(taskId);
+        if (subscribers != null) {
+            for (String clientId : subscribers.keySet()) {
+                ClientChannel channel = channels.get(clientId);
+                if (channel != null) {
+                    channel.taskIds.remove(taskId);
+                }
+            }
+        }
+    }
+
+    /**
+     * 建立多路复用通道
+     * 同一 clientId 重连时沿用原有订阅, 并按 lastEventId 补发各任务遗漏的事件 (事件id按发布时间递增)
+     * @param clientId 客户端标识, 为空时由服务端生成并通过 CHANNEL_ESTABLISHED 事件返回
+     */
+    public SseEmitter openChannel(String clientId, Long lastEventId, EventEncoding encoding) {
+        String id = clientId == null || clientId.isBlank() ? UUID.randomUUID().toString() : clientId;
+        logger.info("🔗 建立多路复用通道: clientId={}, lastEventId={}, encoding={}", id, lastEventId, encoding);
+
+        SseEmitter emitter = newEmitter();
+        ClientChannel channel = channels.computeIfAbsent(id, ClientChannel::new);
+        SseConnection connection = new SseConnection("channel:" + id, emitter, sseConfig, encoderFor(encoding), sseExecutors,
+                closed -> {
+                    detachChannel(channel, closed);
+                    recordClosed(closed);
+                });
+        emitter.onCompletion(() -> detachChannel(channel, connection));
+        emitter.onTimeout(() -> detachChannel(channel, connection));
+        emitter.onError((e) -> {
+            logger.error("❌ 通道连接错误: clientId={}, error={}", id, e.getMessage());
+            detachChannel(channel, connection);
+        });
+
+        SseConnection previous;
+        synchronized (channel) {
+            previous = channel.connection;
+            channel.connection = connection;
+        }
+        if (previous != null) {
+            previous.complete();
+        }
+        connection.offer(0L, LoginEvent.createChannelEvent(id));
+        for (String taskId : channel.taskIds) {
+            attach(id, taskId, connection, lastEventId);
+        }
+        return emitter;
+    }
+
+    /**
+     * 创建无超时的 SseEmitter, 测试中替换为记录写入内容的实现
+     */
+    SseEmitter newEmitter() {
+        return new SseEmitter(0L);
+    }
+
+    private SseConnection.Encoder encoderFor(EventEncoding encoding) {
+        return encoding == EventEncoding.COMPACT ? compactEventEncoder::encode : eventSerializer::serialize;
+    }
+
+    /**
+     * 紧凑编码的编码表
+     */
+    public Map<String, Object> getCompactCodeTable() {
+        return compactEventEncoder.getCodeTable();
+    }
+
+    /**
+     * 通道订阅任务
+     * @return 通道不存在或已断开时返回 false
+     */
+    public boolean subscribe(String clientId, String taskId, Long lastEventId) {
+        ClientChannel channel = channels.get(clientId);
+        SseConnection connection = channel != null ? channel.connection : null;
+        if (connection == null) {
+            return false;
+        }
+        channel.taskIds.add(taskId);
+        attach(clientId, taskId, connection, lastEventId);
+        logger.info("➕ 通道订阅任务: clientId={}, taskId={}", clientId, taskId);
+        return true;
+    }
+
+    /**
+     * 通道取消订阅任务
+     */
+    public boolean unsubscribe(String clientId, String taskId) {
+        ClientChannel channel = channels.get(clientId);
+        if (channel == null || !channel.taskIds.remove(taskId)) {
+            return false;
+        }
+        taskSubscribers.computeIfPresent(taskId, (key, subscribers) -> {
+            subscribers.remove(clientId);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+        logger.info("➖ 通道取消订阅: clientId={}, taskId={}", clientId, taskId);
+        return true;
+    }
+
+    /**
+     * 在回放日志锁内补发遗漏事件并登记订阅, 与 sendLogEvent 互斥
+     */
+    private void attach(String clientId, String taskId, SseConnection connection, Long lastEventId) {
+        replayLog.subscribe(taskId, lastEventId, missed -> {
+            for (EventReplayLog.Entry entry : missed) {
+                connection.offer(entry.getId(), entry.getEvent());
+            }
+            taskSubscribers.compute(taskId, (key, subscribers) -> {
+                Map<String, SseConnection> result = subscribers != null ? subscribers : new ConcurrentHashMap<>();
+                result.put(clientId, connection);
+                return result;
+            });
+        });
+    }
+
+    /**
+     * 通道连接断开: 移除任务订阅中的该连接, 订阅的任务列表保留给同一 clientId 重连使用
+     */
+    private void detachChannel(ClientChannel channel, SseConnection connection) {
+        synchronized (channel) {
+            if (channel.connection != connection) {
+                return;
+            }
+            channel.connection = null;
+        }
+        for (String taskId : channel.taskIds) {
+            taskSubscribers.computeIfPresent(taskId, (key, subscribers) -> {
+                subscribers.remove(channel.clientId, connection);
+                return subscribers.isEmpty() ? null : subscribers;
+            });
+        }
+        if (channel.taskIds.isEmpty()) {
+            channels.remove(channel.clientId, channel);
+        }
+        logger.info("🔚 多路复用通道断开: clientId={}", channel.clientId);
+    }
+
+    /**
+     * 连接巡检: 回收已关闭与空闲超时的连接, 向一个心跳周期内无写入的连接发送心跳
+     */
+    private void sweepConnections() {
+        long now = System.currentTimeMillis();
+        long heartbeatMillis = sseConfig.getHeartbeatIntervalSeconds() * 1000L;
+        long idleTimeoutMillis = sseConfig.getIdleTimeoutMinutes() * 60_000L;
+        int idle = 0;
+
+        List<SseConnection> connections = new ArrayList<>(activeConnections.values());
+        for (ClientChannel channel : channels.values()) {
+            SseConnection connection = channel.connection;
+            if (connection != null) {
+                connections.add(connection);
+            }
+        }
+        for (SseConnection connection : connections) {
+            if (connection.isClosed()) {
+                // 关闭回调未能移除的连接
+                activeConnections.remove(connection.getTaskId(), connection);
+                continue;
+            }
+            long idleMillis = now - connection.getLastEventMillis();
+            if (idleMillis > idleTimeoutMillis) {
+                logger.info("🧹 回收空闲SSE连接: taskId={}, idleMillis={}", connection.getTaskId(), idleMillis);
+                connection.close("idle", new IOException("idle timeout"));
+                continue;
+            }
+            if (idleMillis >= heartbeatMillis) {
+                idle++;
+            }
+            if (now - connection.getLastWriteMillis() >= heartbeatMillis) {
+                connection.heartbeat();
+            }
+        }
+        idleConnections = idle;
+    }
+
+    private void recordClosed(SseConnection connection) {
+        String reason = connection.getCloseReason();
+        if (reason != null && !"completed".equals(reason)) {
+            reapedConnections.computeIfAbsent(reason, key -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    /**
+     * 各连接的缓冲区指标
+     */
+    public Map<String, Object> getConnectionMetrics() {
+        List<Map<String, Object>> connections = new ArrayList<>();
+        long totalDepth = 0;
+        for (SseConnection connection : activeConnections.values()) {
+            Map<String, Object> metrics = connection.getMetrics();
+            totalDepth += connection.getQueueDepth();
+            connections.add(metrics);
+        }
+        Map<String, Object> reaped = new LinkedHashMap<>();
+        long totalReaped = 0;
+        for (Map.Entry<String, AtomicLong> entry : reapedConnections.entrySet()) {
+            reaped.put(entry.getKey(), entry.getValue().get());
+            totalReaped += entry.getValue().get();
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("activeConnections", connections.size());
+        result.put("idleConnections", idleConnections);
+        result.put("reapedConnections", totalReaped);
+        result.put("reapedByReason", reaped);
+        result.put("totalQueueDepth", totalDepth);
+        result.put("bufferCapacity", sseConfig.getBufferCapacity());
+        result.put("slowConsumerPolicy", sseConfig.getSlowConsumerPolicy().name());
+        result.put("batchWindowMillis", sseConfig.getBatchWindowMillis());
+        result.put("channels", channels.size());
+        result.put("taskSubscriptions", taskSubscribers.values().stream().mapToInt(Map::size).sum());
+        result.putAll(replayLog.getMetrics());
+        result.put("lastEventId", eventClock.get());
+        result.put("serializedEvents", eventSerializer.getSerializedEvents());
+        result.put("serializedBytes", eventSerializer.getSerializedBytes());
+        result.put("logCounters", SampledLogger.snapshotCounters());
+        result.put("eventBus", eventBus.getMetrics());
+        result.put("connections", connections);
+        return result;
     }
 
 
@@ -85,7 +399,7 @@ public class LogStreamService {
         analysisEvent.setTaskId(taskId);
         analysisEvent.setMessage(description);
         analysisEvent.setStatus(status);
-        analysisEvent.setTimestamp(LocalDateTime.now().format(formatter));
+        analysisEvent.stampNow();
         analysisEvent.setIcon(getAnalysisIcon(stepName));
 
         sendLogEvent(taskId, analysisEvent);
@@ -94,30 +408,62 @@ public class LogStreamService {
 
     /**
      * SSE 发送日志事件到前端
+     * 在发布时分配事件id, 随事件经总线传给所有节点
      */
     public void sendLogEvent(String taskId, Object analysisEvent) {
-        SseEmitter emitter = activeConnections.get(taskId);
-        if (emitter != null) {
-            try {
-                String jsonData = objectMapper.writeValueAsString(analysisEvent);
-                logger.info("📤 准备推送日志事件: taskId={}, type={}, jsonData={}", taskId,
-                        analysisEvent instanceof LoginEvent ? ((LoginEvent)analysisEvent).getType() : "unknown",
-                        jsonData);
-
-                emitter.send(SseEmitter.event()
-                        .name("log")
-                        .data(jsonData));
-
-                logger.info("✅ 日志事件推送成功: taskId={}", taskId);
-            } catch (IOException e) {
-                logger.error("推送日志失败:  taskId={}, error={}", taskId, e.getMessage());
-                activeConnections.remove(taskId);
-            }
-        } else {
-            logger.warn("⚠️ 未找到SSE连接: taskId={}, 无法推送事件", taskId);
+        synchronized (publishLocks[Math.floorMod(taskId.hashCode(), publishLocks.length)]) {
+            long now = System.currentTimeMillis() * 1000;
+            long eventId = eventClock.updateAndGet(previous -> Math.max(previous + 1, now));
+            eventBus.publish(taskId, eventId, analysisEvent);
         }
     }
 
+    /**
+     * 从事件总线收到事件: 按发布节点分配的id写入本节点回放日志并分发给本节点的连接
+     */
+    private void dispatchLocal(String taskId, long eventId, Object analysisEvent) {
+        long dispatchStart = System.nanoTime();
+        replayLog.append(taskId, eventId, analysisEvent, () -> {
+            // 只入队, 不阻塞调用方 (对话轮次 / AOP切面)
+            SseConnection connection = activeConnections.get(taskId);
+            if (connection != null) {
+                connection.offer(eventId, analysisEvent);
+            }
+            Map<String, SseConnection> subscribers = taskSubscribers.get(taskId);
+            if (subscribers != null) {
+                for (SseConnection subscriber : subscribers.values()) {
+                    subscriber.offer(eventId, analysisEvent);
+                }
+            }
+            if (connection == null && subscribers == null) {
+                logger.debug("暂无SSE连接, 事件保留在回放日志: taskId={}, eventId={}", taskId, eventId);
+            }
+        });
+        stageMetrics.record(taskId, TaskStage.SSE_DISPATCH, dispatchStart);
+    }
+
+    /**
+     * 创建单轮对话的增量文本缓冲
+     */
+    public TokenDeltaBuffer openTokenStream(String taskId, int turn) {
+        return new TokenDeltaBuffer(this, sseExecutors, taskId, turn,
+                streamingConfig.getFlushIntervalMillis(), Math.max(1, streamingConfig.getMaxBufferedChars()));
+    }
+
+    /**
+     * 推送对话增量文本
+     */
+    public void pushTokenDelta(String taskId, int turn, String delta) {
+        TokenDeltaEvent event = new TokenDeltaEvent();
+        event.setType("TOKEN_DELTA");
+        event.setTaskId(taskId);
+        event.setTurn(turn);
+        event.setMessage(delta);
+        event.stampNow();
+
+        sendLogEvent(taskId, event);
+    }
+
     /**
      * 推送任务分析过程
      * @param taskId
@@ -131,7 +477,7 @@ public class LogStreamService {
         event.setDescription("开始分析用户需求: " + (userMessage.length() > 50 ? userMessage.substring(0, 50) + "..." : userMessage));
         event.setStatus("ANALYZING");
         event.setMessage("AI正在分析您的需求...");
-        event.setTimestamp(LocalDateTime.now().format(formatter));
+        event.stampNow();
         event.setIcon("🧠");
 
         sendLogEvent(taskId, event);
@@ -147,19 +493,12 @@ public class LogStreamService {
         event.setType("TASK_COMPLETE");
         event.setTaskId(taskId);
         event.setMessage("对话任务处理完成");
-        event.setTimestamp(LocalDateTime.now().format(formatter));
+        event.stampNow();
 
         sendLogEvent(taskId, event);
 
-        // 延迟关闭连接
-        new Thread(() ->{
-            try {
-                Thread.sleep(2000);  // 等待2秒让前端处理完事件
-                closeConnection(taskId);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-        });
+        // 延迟关闭连接, 由SSE推送执行器计时, 让前端处理完事件
+        sseExecutors.schedule(() -> closeConnection(taskId), sseConfig.getCompleteGraceMillis(), TimeUnit.MILLISECONDS);
     }
 
     /**
@@ -198,4 +537,18 @@ public class LogStreamService {
 
     public void pushToolError(String taskId, String methodName, String fileInfo, String errorMessage, long executionTime) {
     }
+
+    /**
+     * 多路复用通道
+     * connection 为当前连接 (断开后为 null), taskIds 为订阅的任务
+     */
+    private static class ClientChannel {
+        private final String clientId;
+        private final Set<String> taskIds = ConcurrentHashMap.newKeySet();
+        private volatile SseConnection connection;
+
+        ClientChannel(String clientId) {
+            this.clientId = clientId;
+        }
+    }
 }
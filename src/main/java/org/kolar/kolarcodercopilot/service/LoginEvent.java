@@ -2,9 +2,6 @@ package org.kolar.kolarcodercopilot.service;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-
 /**
  * 日志事件基类
  */
@@ -14,8 +11,7 @@ public class LoginEvent {
     private String taskId;
     private String message;
     private String timestamp;
-
-    private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private Long epochMillis; // 创建时间 (毫秒), 紧凑编码直接输出
 
     // Constructors
     public LoginEvent() {}
@@ -30,7 +26,18 @@ public class LoginEvent {
         event.setType("CONNECTION_ESTABLISHED");
         event.setTaskId(taskId);
         event.setMessage("SSE连接已建立");
-        event.setTimestamp(LocalDateTime.now().format(formatter));
+        event.stampNow();
+        return event;
+    }
+
+    /**
+     * 多路复用通道建立事件, message 为通道的 clientId
+     */
+    public static Object createChannelEvent(String clientId) {
+        LoginEvent event = new LoginEvent();
+        event.setType("CHANNEL_ESTABLISHED");
+        event.setMessage(clientId);
+        event.stampNow();
         return event;
     }
 
@@ -67,6 +74,23 @@ public class LoginEvent {
         this.timestamp = timestamp;
     }
 
+    public Long getEpochMillis() {
+        return epochMillis;
+    }
+
+    public void setEpochMillis(Long epochMillis) {
+        this.epochMillis = epochMillis;
+    }
+
+    /**
+     * 以当前时间作为事件创建时间: 毫秒时间戳与格式化的秒级时间戳取自同一时刻
+     */
+    public void stampNow() {
+        long millis = System.currentTimeMillis();
+        this.epochMillis = millis;
+        this.timestamp = EventTimestamps.format(millis);
+    }
+
 
     @Override
     public String toString() {
@@ -75,6 +99,7 @@ public class LoginEvent {
                 ", taskId='" + taskId + '\'' +
                 ", message='" + message + '\'' +
                 ", timestamp='" + timestamp + '\'' +
+                ", epochMillis=" + epochMillis +
                 '}';
     }
 }
@@ -1,5 +1,6 @@
 package org.kolar.kolarcodercopilot.service;
 
+import org.kolar.kolarcodercopilot.config.TaskContextHolder;
 import org.kolar.kolarcodercopilot.model.ProjectContext;
 import org.kolar.kolarcodercopilot.model.ProjectStructure;
 import org.kolar.kolarcodercopilot.model.ProjectType;
@@ -31,6 +32,9 @@ public class ProjectContextAnalyzer {
     @Autowired
     public ProjectDiscoveryService projectDiscoveryService;
 
+    @Autowired
+    private Tracer tracer;
+
     /**
      * 分析项目并生成完整上下文
      * @param projectRoot 项目根目录
@@ -40,6 +44,10 @@ public class ProjectContextAnalyzer {
         logger.info("Starting comprehensive project analysis for: {}", projectRoot);
 
         ProjectContext context = new ProjectContext(projectRoot);
+        FlightEvents.ProjectScanEvent scanEvent = new FlightEvents.ProjectScanEvent();
+        scanEvent.begin();
+        Tracer.Span span = tracer.start("project.scan").attribute("project.root", String.valueOf(projectRoot));
+        boolean success = false;
 
         try {
             // 1. 检测项目类型
@@ -79,13 +87,33 @@ public class ProjectContextAnalyzer {
             logger.debug("Generated context summary with {} characters", summary.length());
 
             logger.info("Project analysis completed successfully for: {}", projectRoot);
+            success = true;
             return context;
 
         } catch (Exception e) {
             logger.error("Error during project analysis for: " + projectRoot, e);
+            span.error(e);
             // 返回部分分析结果
             return context;
+        } finally {
+            span.close();
+            commitScanEvent(scanEvent, projectRoot, context, success);
+        }
+    }
+
+    private void commitScanEvent(FlightEvents.ProjectScanEvent scanEvent, Path projectRoot,
+                                 ProjectContext context, boolean success) {
+        scanEvent.end();
+        if (!scanEvent.shouldCommit()) {
+            return;
         }
+        scanEvent.taskId = TaskContextHolder.getCurrentTaskId();
+        scanEvent.projectRoot = String.valueOf(projectRoot);
+        scanEvent.dependencies = context.getDependencies() != null ? context.getDependencies().size() : 0;
+        scanEvent.configFiles = context.getConfigFiles() != null ? context.getConfigFiles().size() : 0;
+        scanEvent.totalLines = context.getCodeStatistics() != null ? context.getCodeStatistics().getTotalLines() : 0;
+        scanEvent.success = success;
+        scanEvent.commit();
     }
 
     /**
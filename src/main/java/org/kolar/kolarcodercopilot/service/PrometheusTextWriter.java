@@ -0,0 +1,96 @@
+package org.kolar.kolarcodercopilot.service;
+
+/**
+ * Prometheus 文本格式 (0.0.4) 输出
+ */
+public class PrometheusTextWriter {
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final double[] DEFAULT_QUANTILES = {0.5, 0.9, 0.99};
+
+    private final StringBuilder out = new StringBuilder(4096);
+
+    /**
+     * 输出指标的 HELP 与 TYPE 行, 同名指标只需输出一次
+     */
+    public PrometheusTextWriter header(String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        return this;
+    }
+
+    /**
+     * 输出一个样本
+     * @param labels 依次为标签名与标签值
+     */
+    public PrometheusTextWriter sample(String name, double value, String... labels) {
+        out.append(name);
+        if (labels.length > 0) {
+            out.append('{');
+            for (int i = 0; i + 1 < labels.length; i += 2) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                out.append(labels[i]).append("=\"");
+                escape(labels[i + 1]);
+                out.append('"');
+            }
+            out.append('}');
+        }
+        out.append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+        return this;
+    }
+
+    /**
+     * 输出直方图快照的分位数, 总和与次数 (summary 类型, 单位秒)
+     */
+    public PrometheusTextWriter summary(String name, LatencyHistogram.Snapshot snapshot, String... labels) {
+        return summary(name, snapshot, DEFAULT_QUANTILES, labels);
+    }
+
+    public PrometheusTextWriter summary(String name, LatencyHistogram.Snapshot snapshot, double[] quantiles, String... labels) {
+        for (double quantile : quantiles) {
+            sample(name, toSeconds(snapshot.percentile(quantile * 100)), withLabel(labels, "quantile", Double.toString(quantile)));
+        }
+        sample(name + "_sum", toSeconds(snapshot.getTotalMicros()), labels);
+        sample(name + "_count", snapshot.getCount(), labels);
+        return this;
+    }
+
+    public static double toSeconds(long micros) {
+        return micros / 1_000_000.0;
+    }
+
+    private static String[] withLabel(String[] labels, String name, String value) {
+        String[] result = new String[labels.length + 2];
+        System.arraycopy(labels, 0, result, 0, labels.length);
+        result[labels.length] = name;
+        result[labels.length + 1] = value;
+        return result;
+    }
+
+    private void escape(String value) {
+        if (value == null) {
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> out.append("\\\\");
+                case '"' -> out.append("\\\"");
+                case '\n' -> out.append("\\n");
+                default -> out.append(c);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+}
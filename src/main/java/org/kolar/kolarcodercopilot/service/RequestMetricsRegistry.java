@@ -0,0 +1,142 @@
+package org.kolar.kolarcodercopilot.service;
+
+import org.kolar.kolarcodercopilot.config.AppProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HTTP 请求指标注册表
+ * 按路由模板 (如 GET /api/logs/stream/{taskId}) 统计请求数, 状态码分类, 进行中请求数与耗时直方图,
+ * 路由取模板而不是实际路径, 指标数量不随 taskId 增长; 记录路径无锁
+ */
+@Component
+public class RequestMetricsRegistry {
+    public static final String UNMATCHED_ROUTE = "UNMATCHED";
+
+    private final Map<String, RouteMetrics> routes = new ConcurrentHashMap<>();
+    private final AtomicLong inFlight = new AtomicLong();
+    private final int windowSeconds;
+    private final int windowSlots;
+
+    public RequestMetricsRegistry(AppProperties appProperties) {
+        this.windowSeconds = appProperties.getMetrics().getWindowSeconds();
+        this.windowSlots = appProperties.getMetrics().getWindowSlots();
+    }
+
+    /**
+     * 请求进入 (路由尚未确定)
+     */
+    public void requestStarted() {
+        inFlight.incrementAndGet();
+    }
+
+    /**
+     * 路由已确定, 计入该路由的进行中请求
+     */
+    public RouteMetrics routeStarted(String route) {
+        RouteMetrics metrics = route(route);
+        metrics.inFlight.incrementAndGet();
+        return metrics;
+    }
+
+    /**
+     * 请求结束
+     * @param routeMetrics routeStarted 返回的对象, 未匹配到路由时为 null
+     */
+    public void requestCompleted(RouteMetrics routeMetrics, long elapsedNanos, int status) {
+        inFlight.decrementAndGet();
+        RouteMetrics metrics = routeMetrics;
+        if (metrics != null) {
+            metrics.inFlight.decrementAndGet();
+        } else {
+            metrics = route(UNMATCHED_ROUTE);
+        }
+        long micros = elapsedNanos / 1_000;
+        metrics.requests.increment();
+        if (status >= 500) {
+            metrics.serverErrors.increment();
+        } else if (status >= 400) {
+            metrics.clientErrors.increment();
+        }
+        metrics.cumulative.record(micros);
+        metrics.window.record(micros);
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("inFlight", inFlight.get());
+        result.put("windowSeconds", windowSeconds);
+        Map<String, Object> byRoute = new TreeMap<>();
+        routes.forEach((route, metrics) -> byRoute.put(route, metrics.toMap()));
+        result.put("routes", byRoute);
+        return result;
+    }
+
+    public void writePrometheus(PrometheusTextWriter writer) {
+        Map<String, RouteMetrics> sorted = new TreeMap<>(routes);
+        String window = windowSeconds + "s";
+
+        writer.header("copilot_http_in_flight_requests", "gauge", "HTTP requests in progress");
+        writer.sample("copilot_http_in_flight_requests", inFlight.get());
+        sorted.forEach((route, m) -> writer.sample("copilot_http_in_flight_requests", m.inFlight.get(), "route", route));
+
+        writer.header("copilot_http_requests_total", "counter", "HTTP requests by status class");
+        sorted.forEach((route, m) -> {
+            long errors = m.clientErrors.sum() + m.serverErrors.sum();
+            writer.sample("copilot_http_requests_total", m.requests.sum() - errors, "route", route, "status", "ok");
+            writer.sample("copilot_http_requests_total", m.clientErrors.sum(), "route", route, "status", "4xx");
+            writer.sample("copilot_http_requests_total", m.serverErrors.sum(), "route", route, "status", "5xx");
+        });
+
+        writer.header("copilot_http_request_duration_seconds", "summary", "HTTP request duration since start");
+        sorted.forEach((route, m) -> writer.summary("copilot_http_request_duration_seconds",
+                m.cumulative.snapshot(), "route", route));
+
+        writer.header("copilot_http_window_request_duration_seconds", "summary", "HTTP request duration over the sliding window");
+        sorted.forEach((route, m) -> writer.summary("copilot_http_window_request_duration_seconds",
+                m.window.snapshot(), "route", route, "window", window));
+    }
+
+    private RouteMetrics route(String route) {
+        return routes.computeIfAbsent(route, r -> new RouteMetrics());
+    }
+
+    /**
+     * 单个路由的指标
+     */
+    public class RouteMetrics {
+        private final AtomicLong inFlight = new AtomicLong();
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder clientErrors = new LongAdder();
+        private final LongAdder serverErrors = new LongAdder();
+        private final LatencyHistogram cumulative = new LatencyHistogram();
+        private final SlidingWindowHistogram window = new SlidingWindowHistogram(windowSeconds, windowSlots);
+
+        Map<String, Object> toMap() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("inFlight", inFlight.get());
+            result.put("requests", requests.sum());
+            result.put("clientErrors", clientErrors.sum());
+            result.put("serverErrors", serverErrors.sum());
+            result.put("latencyMillis", latencyMillis(cumulative.snapshot()));
+            result.put("windowLatencyMillis", latencyMillis(window.snapshot()));
+            return result;
+        }
+
+        private Map<String, Object> latencyMillis(LatencyHistogram.Snapshot snapshot) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("count", snapshot.getCount());
+            result.put("p50", snapshot.percentile(50) / 1000.0);
+            result.put("p90", snapshot.percentile(90) / 1000.0);
+            result.put("p99", snapshot.percentile(99) / 1000.0);
+            result.put("max", snapshot.getMaxMicros() / 1000.0);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.kolar.kolarcodercopilot.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 滑动时间窗口直方图
+ * 窗口分为若干等长槽位组成环, 记录写入当前时间所在槽位, 槽位过期后由下一次记录清空复用;
+ * 快照合并窗口内仍有效的槽位, 窗口粒度为一个槽位长度
+ */
+public class SlidingWindowHistogram {
+    private final Slot[] slots;
+    private final long slotMillis;
+
+    public SlidingWindowHistogram(int windowSeconds, int slotCount) {
+        int count = Math.max(1, slotCount);
+        this.slots = new Slot[count];
+        for (int i = 0; i < count; i++) {
+            slots[i] = new Slot();
+        }
+        this.slotMillis = Math.max(1, windowSeconds * 1000L / count);
+    }
+
+    public void record(long micros) {
+        long epoch = System.currentTimeMillis() / slotMillis;
+        Slot slot = slots[(int) (epoch % slots.length)];
+        if (slot.epoch.get() != epoch) {
+            synchronized (slot) {
+                if (slot.epoch.get() != epoch) {
+                    slot.histogram.reset();
+                    slot.epoch.set(epoch);
+                }
+            }
+        }
+        slot.histogram.record(micros);
+    }
+
+    public LatencyHistogram.Snapshot snapshot() {
+        long current = System.currentTimeMillis() / slotMillis;
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram.Snapshot();
+        for (Slot slot : slots) {
+            if (current - slot.epoch.get() < slots.length) {
+                snapshot.add(slot.histogram);
+            }
+        }
+        return snapshot;
+    }
+
+    public long getWindowSeconds() {
+        return slotMillis * slots.length / 1000;
+    }
+
+    private static class Slot {
+        private final AtomicLong epoch = new AtomicLong(Long.MIN_VALUE);
+        private final LatencyHistogram histogram = new LatencyHistogram();
+    }
+}
@@ -0,0 +1,259 @@
+package org.kolar.kolarcodercopilot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.kolar.kolarcodercopilot.config.AppProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * span 本地文件导出
+ * 结束的 span 放入有界队列 (满时丢弃并计数, 不阻塞业务线程), 由导出线程按批写入;
+ * 每批一行, 格式与 OpenTelemetry Collector file exporter 的 OTLP/JSON 一致 (ExportTraceServiceRequest),
+ * 文件超过大小上限后滚动, 只保留最近的若干个文件
+ */
+@Component
+public class SpanExporter {
+    private static final Logger logger = LoggerFactory.getLogger(SpanExporter.class);
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final String FILE_PREFIX = "traces-";
+    private static final String FILE_SUFFIX = ".jsonl";
+
+    private final AppProperties.Tracing config;
+    private final Path directory;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final BlockingQueue<Tracer.Span> queue;
+
+    private final AtomicLong exportedSpans = new AtomicLong();
+    private final AtomicLong droppedSpans = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread exporterThread;
+    private volatile Path currentFile;
+    // 以下仅导出线程访问
+    private OutputStream out;
+    private long currentFileBytes;
+    private int fileSequence;
+
+    public SpanExporter(AppProperties appProperties) {
+        this.config = appProperties.getTracing();
+        this.directory = Paths.get(config.getDirectory());
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, config.getQueueCapacity()));
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!config.isEnabled()) {
+            logger.info("追踪未启用");
+            return;
+        }
+        running = true;
+        exporterThread = new Thread(this::exportLoop, "span-exporter");
+        exporterThread.setDaemon(true);
+        exporterThread.start();
+        logger.info("🧭 追踪导出已启动: dir={}, sampleRatio={}", directory, config.getSampleRatio());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (exporterThread == null) {
+            return;
+        }
+        running = false;
+        try {
+            exporterThread.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeFile();
+    }
+
+    /**
+     * 提交结束的 span, 队列满时丢弃
+     */
+    void export(Tracer.Span span) {
+        if (!running || !queue.offer(span)) {
+            droppedSpans.incrementAndGet();
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", config.isEnabled());
+        metrics.put("sampleRatio", config.getSampleRatio());
+        metrics.put("exportedSpans", exportedSpans.get());
+        metrics.put("droppedSpans", droppedSpans.get());
+        metrics.put("batches", batches.get());
+        metrics.put("queueDepth", queue.size());
+        metrics.put("currentFile", currentFile != null ? currentFile.toString() : null);
+        return metrics;
+    }
+
+    /**
+     * 导出线程: 最多等待一个刷新间隔凑满一批, 写入后 flush
+     */
+    private void exportLoop() {
+        List<Tracer.Span> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                Tracer.Span first = queue.poll(config.getFlushIntervalMillis(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, config.getBatchSize() - 1);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (IOException e) {
+                logger.warn("span 写入失败, 丢弃本批: spans={}, error={}", batch.size(), e.getMessage());
+                droppedSpans.addAndGet(batch.size());
+                closeFile();
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeBatch(List<Tracer.Span> batch) throws IOException {
+        byte[] line = objectMapper.writeValueAsBytes(toOtlp(batch));
+        if (out == null || currentFileBytes >= config.getMaxFileBytes()) {
+            rollFile();
+        }
+        out.write(line);
+        out.write('\n');
+        out.flush();
+        currentFileBytes += line.length + 1;
+        exportedSpans.addAndGet(batch.size());
+        batches.incrementAndGet();
+    }
+
+    private ObjectNode toOtlp(List<Tracer.Span> batch) {
+        ObjectNode request = objectMapper.createObjectNode();
+        ObjectNode resourceSpans = request.putArray("resourceSpans").addObject();
+        ArrayNode resourceAttributes = resourceSpans.putObject("resource").putArray("attributes");
+        addAttribute(resourceAttributes, "service.name", config.getServiceName());
+        ObjectNode scopeSpans = resourceSpans.putArray("scopeSpans").addObject();
+        scopeSpans.putObject("scope").put("name", "kolar-coder-copilot");
+        ArrayNode spans = scopeSpans.putArray("spans");
+        for (Tracer.Span span : batch) {
+            ObjectNode node = spans.addObject();
+            node.put("traceId", span.getTraceId());
+            node.put("spanId", span.getSpanId());
+            if (span.getParentSpanId() != null) {
+                node.put("parentSpanId", span.getParentSpanId());
+            }
+            node.put("name", span.getName());
+            node.put("kind", span.getKind().getOtlpValue());
+            // OTLP/JSON 中 64 位整数以字符串表示
+            node.put("startTimeUnixNano", Long.toString(span.getStartEpochNanos()));
+            node.put("endTimeUnixNano", Long.toString(span.getEndEpochNanos()));
+            if (span.getAttributes() != null) {
+                ArrayNode attributes = node.putArray("attributes");
+                span.getAttributes().forEach((key, value) -> addAttribute(attributes, key, value));
+            }
+            ObjectNode status = node.putObject("status");
+            if (span.isError()) {
+                status.put("code", 2);
+                if (span.getErrorMessage() != null) {
+                    status.put("message", span.getErrorMessage());
+                }
+            } else {
+                status.put("code", 1);
+            }
+        }
+        return request;
+    }
+
+    private static void addAttribute(ArrayNode attributes, String key, Object value) {
+        ObjectNode attribute = attributes.addObject();
+        attribute.put("key", key);
+        ObjectNode anyValue = attribute.putObject("value");
+        if (value instanceof Boolean) {
+            anyValue.put("boolValue", (Boolean) value);
+        } else if (value instanceof Integer || value instanceof Long) {
+            anyValue.put("intValue", value.toString());
+        } else if (value instanceof Number) {
+            anyValue.put("doubleValue", ((Number) value).doubleValue());
+        } else {
+            anyValue.put("stringValue", String.valueOf(value));
+        }
+    }
+
+    private void rollFile() throws IOException {
+        closeFile();
+        Files.createDirectories(directory);
+        currentFile = directory.resolve(FILE_PREFIX + LocalDateTime.now().format(FILE_TIME)
+                + String.format("-%04d", ++fileSequence) + FILE_SUFFIX);
+        out = Files.newOutputStream(currentFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        currentFileBytes = Files.size(currentFile);
+        deleteOldFiles();
+    }
+
+    private void deleteOldFiles() {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            logger.debug("列出追踪文件失败: {}", e.getMessage());
+            return;
+        }
+        // 当前文件总是保留, 其余按修改时间保留最近的 maxFiles - 1 个 (同一秒内滚动的文件按名称排序)
+        files.remove(currentFile);
+        int keep = Math.max(0, config.getMaxFiles() - 1);
+        if (files.size() <= keep) {
+            return;
+        }
+        files.sort((a, b) -> {
+            try {
+                int byTime = Files.getLastModifiedTime(a).compareTo(Files.getLastModifiedTime(b));
+                return byTime != 0 ? byTime : a.compareTo(b);
+            } catch (IOException e) {
+                return a.compareTo(b);
+            }
+        });
+        for (Path file : files.subList(0, files.size() - keep)) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.debug("删除旧追踪文件失败: file={}, error={}", file, e.getMessage());
+            }
+        }
+    }
+
+    private void closeFile() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            logger.debug("关闭追踪文件失败: {}", e.getMessage());
+        }
+        out = null;
+    }
+}
@@ -0,0 +1,441 @@
+package org.kolar.kolarcodercopilot.service;
+
+import org.kolar.kolarcodercopilot.config.AppProperties;
+import org.kolar.kolarcodercopilot.config.SampledLogger;
+import org.kolar.kolarcodercopilot.config.SseExecutors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 单个SSE连接
+ * 生产者只把事件放入有界环形缓冲区, 由该连接唯一的写任务按顺序序列化并发送,
+ * 慢速浏览器不会阻塞对话轮次或AOP切面; 缓冲区满时按慢消费者策略处理
+ * 写任务按时间窗口批量发送: 窗口内的事件合并为一次写入与flush, 同批内被后续状态取代的进度事件只发最新一条,
+ * 任务完成等时延敏感事件立即发送
+ * 心跳注释同样由写任务发送, 写入失败即判定连接已断开
+ */
+public class SseConnection {
+    private static final Logger logger = LoggerFactory.getLogger(SseConnection.class);
+    // 推送成功日志按秒采样, 逐事件只计数
+    private static final SampledLogger pushLog = SampledLogger.of("sse", logger, 1000, 1);
+
+    // 可合并的进度类事件: 同一步骤只保留最新一条
+    private static final Set<String> COALESCIBLE_TYPES = Set.of("Analysis Step", "STATUS_UPDATE", "TOOL_PROGRESS");
+
+    // 时延敏感事件: 不等待批量窗口
+    private static final Set<String> IMMEDIATE_TYPES = Set.of("TASK_COMPLETE", "CONNECTION_ESTABLISHED", "CHANNEL_ESTABLISHED");
+
+    private final String taskId;
+    private final SseEmitter emitter;
+    private final int capacity;
+    private final AppProperties.SlowConsumerPolicy policy;
+    private final long batchWindowMillis;
+    private final int batchMaxEvents;
+    private final Encoder encoder;
+    private final SseExecutors sseExecutors;
+    private final Consumer<SseConnection> onClosed;
+
+    private final ArrayDeque<Pending> buffer;
+    private final AtomicBoolean writerScheduled = new AtomicBoolean();
+    private final AtomicBoolean windowArmed = new AtomicBoolean();
+    private volatile boolean closed;
+    private volatile boolean completeRequested; // 发送完缓冲区后正常关闭
+    private volatile String closeReason;         // completed / error / slow-consumer / idle
+    private final AtomicBoolean heartbeatDue = new AtomicBoolean();
+    private volatile long lastEventMillis = System.currentTimeMillis(); // 最近一次发送事件
+    private volatile long lastWriteMillis = System.currentTimeMillis(); // 最近一次写入 (事件或心跳)
+
+    // 指标
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong frames = new AtomicLong();
+    private volatile int maxDepth;
+
+    public SseConnection(String taskId, SseEmitter emitter, AppProperties.Sse config,
+                         Encoder encoder, SseExecutors sseExecutors, Consumer<SseConnection> onClosed) {
+        this.taskId = taskId;
+        this.emitter = emitter;
+        this.capacity = Math.max(1, config.getBufferCapacity());
+        this.policy = config.getSlowConsumerPolicy();
+        this.batchWindowMillis = Math.max(0, config.getBatchWindowMillis());
+        this.batchMaxEvents = Math.max(1, config.getBatchMaxEvents());
+        this.encoder = encoder;
+        this.sseExecutors = sseExecutors;
+        this.onClosed = onClosed;
+        this.buffer = new ArrayDeque<>(capacity);
+    }
+
+    /**
+     * 放入事件, 从不阻塞调用方
+     * @param eventId 回放日志中的事件id, 作为SSE的id字段发送; 小于等于0表示不带id
+     * @return 连接已关闭或因慢消费者被断开时返回 false
+     */
+    public boolean offer(long eventId, Object event) {
+        if (closed) {
+            return false;
+        }
+        boolean disconnect = false;
+        int depth = 0;
+        synchronized (buffer) {
+            if (buffer.size() >= capacity) {
+                switch (policy) {
+                    case DISCONNECT:
+                        disconnect = true;
+                        break;
+                    case COALESCE:
+                        if (!coalesce(event)) {
+                            buffer.pollFirst();
+                            dropped.incrementAndGet();
+                        }
+                        break;
+                    default:
+                        buffer.pollFirst();
+                        dropped.incrementAndGet();
+                        break;
+                }
+            }
+            if (!disconnect) {
+                buffer.addLast(new Pending(eventId, event));
+                depth = buffer.size();
+                maxDepth = Math.max(maxDepth, depth);
+            }
+        }
+        if (disconnect) {
+            logger.warn("🐢 SSE消费过慢, 断开连接: taskId={}, depth={}", taskId, capacity);
+            close("slow-consumer", new IOException("slow consumer"));
+            return false;
+        }
+        if (batchWindowMillis == 0 || depth >= batchMaxEvents || isImmediate(event)) {
+            scheduleWriter();
+        } else {
+            armWindow();
+        }
+        return true;
+    }
+
+    private static boolean isImmediate(Object event) {
+        return event instanceof LoginEvent && IMMEDIATE_TYPES.contains(((LoginEvent) event).getType());
+    }
+
+    /**
+     * 启动批量窗口, 窗口到期后发送期间积累的事件
+     */
+    private void armWindow() {
+        if (windowArmed.compareAndSet(false, true)) {
+            sseExecutors.schedule(() -> {
+                windowArmed.set(false);
+                scheduleWriter();
+            }, batchWindowMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 移除缓冲区中与新事件同类的旧进度事件, 调用方需持有 buffer 锁
+     */
+    private boolean coalesce(Object event) {
+        String key = coalesceKey(event);
+        if (key == null) {
+            return false;
+        }
+        Iterator<Pending> iterator = buffer.iterator();
+        while (iterator.hasNext()) {
+            if (key.equals(coalesceKey(iterator.next().event))) {
+                iterator.remove();
+                coalesced.incrementAndGet();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String coalesceKey(Object event) {
+        if (!(event instanceof LoginEvent)) {
+            return null;
+        }
+        String type = ((LoginEvent) event).getType();
+        if (type == null || !COALESCIBLE_TYPES.contains(type)) {
+            return null;
+        }
+        return event instanceof AnalysisEvent ? type + ":" + ((AnalysisEvent) event).getStepName() : type;
+    }
+
+    private void scheduleWriter() {
+        if (writerScheduled.compareAndSet(false, true)) {
+            sseExecutors.getWriter().execute(this::drain);
+        }
+    }
+
+    /**
+     * 写任务: 按顺序分批发送缓冲区中的事件, 同一时刻每个连接最多一个写任务
+     */
+    private void drain() {
+        try {
+            List<Pending> batch;
+            while (!closed && !(batch = pollBatch()).isEmpty()) {
+                try {
+                    sendBatch(coalesceBatch(batch));
+                    heartbeatDue.set(false);
+                } catch (IOException | IllegalStateException e) {
+                    logger.error("推送日志失败:  taskId={}, error={}", taskId, e.getMessage());
+                    close("error", e);
+                }
+            }
+            if (!closed && heartbeatDue.getAndSet(false)) {
+                sendHeartbeat();
+            }
+        } finally {
+            writerScheduled.set(false);
+        }
+        // 释放写标记后可能有新事件进入, 重新调度避免遗漏
+        if (!closed && hasPending()) {
+            scheduleWriter();
+        } else if (completeRequested && !closed) {
+            finish();
+        }
+    }
+
+    private void sendHeartbeat() {
+        try {
+            emitter.send(SseEmitter.event().comment("heartbeat"));
+            lastWriteMillis = System.currentTimeMillis();
+        } catch (IOException | IllegalStateException e) {
+            logger.warn("💔 心跳发送失败, 连接已断开: taskId={}, error={}", taskId, e.getMessage());
+            close("error", e);
+        }
+    }
+
+    private synchronized void finish() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        closeReason = "completed";
+        try {
+            emitter.complete();
+        } catch (Exception e) {
+            logger.debug("关闭SSE连接失败: taskId={}", taskId);
+        }
+        onClosed.accept(this);
+    }
+
+    /**
+     * 一次写入与flush发送整批事件, 每个事件仍是独立的SSE事件 (保留id, 前端解析方式不变)
+     */
+    private void sendBatch(List<Pending> batch) throws IOException {
+        FlightEvents.SseSendEvent sendEvent = new FlightEvents.SseSendEvent();
+        sendEvent.begin();
+        long bytes = 0;
+        Set<ResponseBodyEmitter.DataWithMediaType> frame = new LinkedHashSet<>();
+        for (Pending pending : batch) {
+            Object event = pending.event;
+            byte[] jsonData = encoder.encode(event);
+            bytes += jsonData.length;
+            if (logger.isDebugEnabled()) {
+                logger.debug("📤 准备推送日志事件: taskId={}, type={}, jsonData={}", taskId,
+                        event instanceof LoginEvent ? ((LoginEvent) event).getType() : "unknown",
+                        new String(jsonData, StandardCharsets.UTF_8));
+            }
+
+            SseEmitter.SseEventBuilder builder = SseEmitter.event();
+            if (pending.id > 0) {
+                builder.id(String.valueOf(pending.id));
+            }
+            frame.addAll(builder
+                    .name("log")
+                    .data(jsonData, MediaType.APPLICATION_JSON)
+                    .build());
+        }
+        emitter.send(frame);
+        sendEvent.end();
+        if (sendEvent.shouldCommit()) {
+            sendEvent.connectionId = taskId;
+            sendEvent.events = batch.size();
+            sendEvent.bytes = bytes;
+            sendEvent.commit();
+        }
+        sent.addAndGet(batch.size());
+        frames.incrementAndGet();
+        lastEventMillis = lastWriteMillis = System.currentTimeMillis();
+
+        pushLog.info("pushed", "✅ 日志事件推送成功: taskId={}, events={}", taskId, batch.size());
+    }
+
+    /**
+     * 同批内同一进度键的事件只保留最新一条, 位置取最新一条的位置
+     */
+    private List<Pending> coalesceBatch(List<Pending> batch) {
+        if (batch.size() < 2) {
+            return batch;
+        }
+        Map<String, Integer> lastIndex = new HashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            String key = coalesceKey(batch.get(i).event);
+            if (key != null) {
+                lastIndex.put(key, i);
+            }
+        }
+        if (lastIndex.isEmpty()) {
+            return batch;
+        }
+        List<Pending> result = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            String key = coalesceKey(batch.get(i).event);
+            if (key == null || lastIndex.get(key) == i) {
+                result.add(batch.get(i));
+            } else {
+                coalesced.incrementAndGet();
+            }
+        }
+        return result;
+    }
+
+    private List<Pending> pollBatch() {
+        List<Pending> batch = new ArrayList<>();
+        synchronized (buffer) {
+            Pending pending;
+            while (batch.size() < batchMaxEvents && (pending = buffer.pollFirst()) != null) {
+                batch.add(pending);
+            }
+        }
+        return batch;
+    }
+
+    private boolean hasPending() {
+        synchronized (buffer) {
+            return !buffer.isEmpty();
+        }
+    }
+
+    /**
+     * 正常关闭: 等待已缓冲的事件发送完后完成连接
+     */
+    public void complete() {
+        if (closed) {
+            return;
+        }
+        completeRequested = true;
+        // 由写任务在发送完已缓冲的事件后关闭, 保证顺序
+        scheduleWriter();
+    }
+
+    /**
+     * 请求发送心跳注释, 由写任务在无待发送事件时发出
+     */
+    public void heartbeat() {
+        if (closed) {
+            return;
+        }
+        heartbeatDue.set(true);
+        scheduleWriter();
+    }
+
+    /**
+     * 异常关闭: 丢弃未发送事件
+     * @param reason 关闭原因, 计入连接回收统计
+     */
+    public synchronized void close(String reason, Throwable cause) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        closeReason = reason;
+        synchronized (buffer) {
+            dropped.addAndGet(buffer.size());
+            buffer.clear();
+        }
+        try {
+            emitter.completeWithError(cause);
+        } catch (Exception e) {
+            logger.debug("关闭SSE连接失败: taskId={}", taskId);
+        }
+        onClosed.accept(this);
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public String getCloseReason() {
+        return closeReason;
+    }
+
+    public long getLastEventMillis() {
+        return lastEventMillis;
+    }
+
+    public long getLastWriteMillis() {
+        return lastWriteMillis;
+    }
+
+    public String getTaskId() {
+        return taskId;
+    }
+
+    public SseEmitter getEmitter() {
+        return emitter;
+    }
+
+    public int getQueueDepth() {
+        synchronized (buffer) {
+            return buffer.size();
+        }
+    }
+
+    /**
+     * 连接指标
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("taskId", taskId);
+        metrics.put("queueDepth", getQueueDepth());
+        metrics.put("maxQueueDepth", maxDepth);
+        metrics.put("sent", sent.get());
+        metrics.put("frames", frames.get());
+        metrics.put("dropped", dropped.get());
+        metrics.put("coalesced", coalesced.get());
+        metrics.put("policy", policy.name());
+        metrics.put("idleMillis", System.currentTimeMillis() - lastEventMillis);
+        return metrics;
+    }
+
+    /**
+     * 待发送的事件
+     */
+    private static class Pending {
+        private final long id;
+        private final Object event;
+
+        Pending(long id, Object event) {
+            this.id = id;
+            this.event = event;
+        }
+    }
+
+    /**
+     * 事件编码器, 由连接协商的编码决定, 输出UTF-8字节
+     */
+    @FunctionalInterface
+    public interface Encoder {
+        byte[] encode(Object event) throws IOException;
+    }
+}
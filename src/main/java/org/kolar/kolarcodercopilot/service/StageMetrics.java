@@ -0,0 +1,129 @@
+package org.kolar.kolarcodercopilot.service;
+
+import org.kolar.kolarcodercopilot.config.AppProperties;
+import org.kolar.kolarcodercopilot.model.TaskStage;
+import org.kolar.kolarcodercopilot.model.TaskStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 任务阶段耗时统计
+ * 每次记录同时写入任务自身的时间线 (随 TaskStatus 保存) 与全局的阶段直方图,
+ * 全局直方图按配置的多个滑动窗口统计 p50/p95/p99
+ */
+@Component
+public class StageMetrics {
+    private static final double[] QUANTILES = {0.5, 0.95, 0.99};
+
+    private final TaskStateStore taskStateStore;
+    private final Map<TaskStage, StageHistograms> stages = new EnumMap<>(TaskStage.class);
+    private final List<Integer> windowsSeconds;
+
+    public StageMetrics(AppProperties appProperties, TaskStateStore taskStateStore) {
+        this.taskStateStore = taskStateStore;
+        AppProperties.Metrics config = appProperties.getMetrics();
+        this.windowsSeconds = new ArrayList<>(config.getStageWindowsSeconds());
+        // 构造后只读, 并发记录无需同步
+        for (TaskStage stage : TaskStage.values()) {
+            stages.put(stage, new StageHistograms(windowsSeconds, config.getWindowSlots()));
+        }
+    }
+
+    /**
+     * 记录从 startNanos (System.nanoTime) 到现在的阶段耗时
+     * @param taskId 为 null 或任务已不在内存时只记入全局直方图
+     */
+    public void record(String taskId, TaskStage stage, long startNanos, String detail) {
+        record(taskId, stage, startNanos, detail, 0);
+    }
+
+    public void record(String taskId, TaskStage stage, long startNanos) {
+        record(taskId, stage, startNanos, null, 0);
+    }
+
+    /**
+     * 记录阶段耗时, 扣除其中嵌套的其他阶段 (如模型调用期间执行的工具调用), 各阶段耗时互不重叠
+     * @param excludedMicros 需扣除的嵌套耗时 (微秒), 开始时间仍为阶段实际开始的时间
+     */
+    public void record(String taskId, TaskStage stage, long startNanos, String detail, long excludedMicros) {
+        long elapsedMicros = (System.nanoTime() - startNanos) / 1_000;
+        long durationMicros = Math.max(0, elapsedMicros - excludedMicros);
+        stages.get(stage).record(durationMicros);
+        if (taskId == null) {
+            return;
+        }
+        TaskStatus status = taskStateStore.getLiveStatus(taskId);
+        if (status != null) {
+            long startedAt = System.currentTimeMillis() - elapsedMicros / 1_000;
+            status.getTimeline().add(stage, startedAt, durationMicros, detail);
+        }
+    }
+
+    /**
+     * 任务内某阶段迄今的累计耗时 (微秒), 任务不在内存时返回 0
+     */
+    public long totalMicros(String taskId, TaskStage stage) {
+        TaskStatus status = taskId != null ? taskStateStore.getLiveStatus(taskId) : null;
+        return status != null ? status.getTimeline().getTotalMicros(stage) : 0;
+    }
+
+    /**
+     * 各阶段在各窗口内的分位数 (毫秒)
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        stages.forEach((stage, histograms) -> {
+            Map<String, Object> stageMetrics = new LinkedHashMap<>();
+            stageMetrics.put("displayName", stage.getDisplayName());
+            for (int i = 0; i < windowsSeconds.size(); i++) {
+                stageMetrics.put(windowsSeconds.get(i) + "s", percentiles(histograms.windows.get(i).snapshot()));
+            }
+            stageMetrics.put("total", percentiles(histograms.cumulative.snapshot()));
+            result.put(stage.name(), stageMetrics);
+        });
+        return result;
+    }
+
+    public void writePrometheus(PrometheusTextWriter writer) {
+        writer.header("copilot_stage_duration_seconds", "summary", "Task stage duration over sliding windows");
+        stages.forEach((stage, histograms) -> {
+            for (int i = 0; i < windowsSeconds.size(); i++) {
+                writer.summary("copilot_stage_duration_seconds", histograms.windows.get(i).snapshot(), QUANTILES,
+                        "stage", stage.name(), "window", windowsSeconds.get(i) + "s");
+            }
+        });
+    }
+
+    private static Map<String, Object> percentiles(LatencyHistogram.Snapshot snapshot) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("count", snapshot.getCount());
+        result.put("p50", snapshot.percentile(50) / 1000.0);
+        result.put("p95", snapshot.percentile(95) / 1000.0);
+        result.put("p99", snapshot.percentile(99) / 1000.0);
+        result.put("max", snapshot.getMaxMicros() / 1000.0);
+        return result;
+    }
+
+    private static class StageHistograms {
+        private final LatencyHistogram cumulative = new LatencyHistogram();
+        private final List<SlidingWindowHistogram> windows = new ArrayList<>();
+
+        StageHistograms(List<Integer> windowsSeconds, int slots) {
+            for (int seconds : windowsSeconds) {
+                windows.add(new SlidingWindowHistogram(seconds, slots));
+            }
+        }
+
+        void record(long micros) {
+            cumulative.record(micros);
+            for (SlidingWindowHistogram window : windows) {
+                window.record(micros);
+            }
+        }
+    }
+}
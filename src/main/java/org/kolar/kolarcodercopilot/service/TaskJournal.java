@@ -0,0 +1,553 @@
+package org.kolar.kolarcodercopilot.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.kolar.kolarcodercopilot.config.AppProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * 任务预写日志
+ * 记录任务创建 / 每轮完成后的新增消息 / 工具副作用 / 任务结束,
+ * 单个写线程按批写入当前段文件后统一 fsync (组提交), 段文件超过上限后滚动,
+ * 不再被未完成任务引用的旧段会被删除; 启动时重放所有段, 得到未完成任务用于恢复
+ * 段末尾未写完的记录 (进程崩溃) 被忽略; 段中间的损坏记录使重放在此停止,
+ * 该段及之后的段改名为 .corrupt 保留, 恢复的历史不会出现缺口
+ *
+ * 记录格式: [int 长度][int CRC32][JSON]
+ */
+@Service
+public class TaskJournal {
+    private static final Logger logger = LoggerFactory.getLogger(TaskJournal.class);
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CORRUPT_SUFFIX = ".corrupt";
+    private static final int FRAME_HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 64 * 1024 * 1024;
+
+    private final AppProperties.Journal config;
+    private final Path directory;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final BlockingQueue<PendingRecord> queue = new LinkedBlockingQueue<>();
+    // 未完成任务 -> 其首条记录所在段, 用于判断旧段能否删除 (仅写线程访问)
+    private final Map<String, Long> activeTaskSegments = new ConcurrentHashMap<>();
+
+    private volatile boolean running;
+    private Thread writerThread;
+    private FileChannel channel;
+    private long segmentIndex;
+    private long segmentBytes;
+    private List<RecoveredTask> recoveredTasks = Collections.emptyList();
+
+    public TaskJournal(AppProperties appProperties) {
+        this.config = appProperties.getJournal();
+        this.directory = Paths.get(config.getDirectory());
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!config.isEnabled()) {
+            logger.info("任务日志未启用");
+            return;
+        }
+        Files.createDirectories(directory);
+        List<Long> segments = listSegments();
+        recoveredTasks = replay(segments);
+        // 每次启动都写入新段, 上次进程可能残留的半条记录留在旧段中, 重放时会被忽略
+        openSegment(segments.isEmpty() ? 1 : segments.get(segments.size() - 1) + 1);
+        deleteUnreferencedSegments();
+
+        running = true;
+        writerThread = new Thread(this::writeLoop, "task-journal-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        logger.info("📒 任务日志已启动: dir={}, segment={}, 待恢复任务={}", directory, segmentIndex, recoveredTasks.size());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (writerThread == null) {
+            return;
+        }
+        running = false;
+        try {
+            writerThread.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeChannel();
+    }
+
+    /**
+     * 记录任务创建 (等待刷盘)
+     * @param sessionId 所属会话, 恢复后用于写回会话历史与 token 预算
+     */
+    public void taskCreated(String taskId, String sessionId, String initialMessage, List<Message> history) {
+        JournalRecord record = new JournalRecord(RecordType.TASK_CREATED, taskId);
+        record.setSessionId(sessionId);
+        record.setInitialMessage(initialMessage);
+        record.setMessages(toStored(history));
+        awaitDurable(append(record));
+    }
+
+    /**
+     * 记录一轮对话完成: 本轮新增的消息与响应 (等待刷盘)
+     */
+    public void turnCompleted(String taskId, int turn, String response, boolean continueRequested, List<Message> newMessages) {
+        JournalRecord record = new JournalRecord(RecordType.TURN_COMPLETED, taskId);
+        record.setTurn(turn);
+        record.setResponse(response);
+        record.setContinueRequested(continueRequested);
+        record.setMessages(toStored(newMessages));
+        awaitDurable(append(record));
+    }
+
+    /**
+     * 记录工具副作用 (异步, 不阻塞工具调用)
+     */
+    public void toolEffect(String taskId, String toolName, String detail) {
+        JournalRecord record = new JournalRecord(RecordType.TOOL_EFFECT, taskId);
+        record.setToolName(toolName);
+        record.setDetail(detail);
+        append(record);
+    }
+
+    /**
+     * 记录任务结束 (异步)
+     */
+    public void taskFinished(String taskId, String status) {
+        JournalRecord record = new JournalRecord(RecordType.TASK_FINISHED, taskId);
+        record.setStatus(status);
+        append(record);
+    }
+
+    /**
+     * 取出启动时重放得到的未完成任务 (只返回一次)
+     */
+    public synchronized List<RecoveredTask> drainRecoveredTasks() {
+        List<RecoveredTask> tasks = recoveredTasks;
+        recoveredTasks = Collections.emptyList();
+        return tasks;
+    }
+
+    private CompletableFuture<Void> append(JournalRecord record) {
+        if (!running) {
+            return CompletableFuture.completedFuture(null);
+        }
+        PendingRecord pending = new PendingRecord(record);
+        queue.add(pending);
+        return pending.future;
+    }
+
+    private void awaitDurable(CompletableFuture<Void> future) {
+        try {
+            future.get(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // 日志写入失败不影响任务本身, 只是失去崩溃恢复能力
+            logger.error("任务日志写入失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 写线程: 取出当前队列中所有记录, 写入后一次 fsync, 再统一通知等待方
+     */
+    private void writeLoop() {
+        List<PendingRecord> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingRecord first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, config.getGroupCommitMaxBatch() - 1);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeBatch(List<PendingRecord> batch) {
+        try {
+            for (PendingRecord pending : batch) {
+                writeFrame(objectMapper.writeValueAsBytes(pending.record));
+                trackSegment(pending.record);
+            }
+            channel.force(false);
+            batch.forEach(pending -> pending.future.complete(null));
+        } catch (IOException e) {
+            logger.error("任务日志组提交失败: records={}, error={}", batch.size(), e.getMessage());
+            batch.forEach(pending -> pending.future.completeExceptionally(e));
+            return;
+        }
+        if (segmentBytes >= config.getSegmentMaxBytes()) {
+            rollSegment();
+        }
+    }
+
+    private void writeFrame(byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer buffer = ByteBuffer.allocate(8 + payload.length);
+        buffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        while (buffer.hasRemaining()) {
+            segmentBytes += channel.write(buffer);
+        }
+    }
+
+    private void trackSegment(JournalRecord record) {
+        if (record.getType() == RecordType.TASK_CREATED) {
+            activeTaskSegments.putIfAbsent(record.getTaskId(), segmentIndex);
+        } else if (record.getType() == RecordType.TASK_FINISHED) {
+            activeTaskSegments.remove(record.getTaskId());
+        }
+    }
+
+    private void rollSegment() {
+        try {
+            closeChannel();
+            openSegment(segmentIndex + 1);
+            deleteUnreferencedSegments();
+        } catch (IOException e) {
+            logger.error("任务日志段滚动失败: {}", e.getMessage());
+        }
+    }
+
+    private void openSegment(long index) throws IOException {
+        segmentIndex = index;
+        channel = FileChannel.open(segmentPath(index),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentBytes = channel.size();
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.force(true);
+                channel.close();
+            } catch (IOException e) {
+                logger.warn("关闭任务日志段失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 删除早于所有未完成任务首条记录的段
+     */
+    private void deleteUnreferencedSegments() throws IOException {
+        long oldestNeeded = activeTaskSegments.values().stream().mapToLong(Long::longValue).min().orElse(segmentIndex);
+        for (long index : listSegments()) {
+            if (index < oldestNeeded) {
+                Files.deleteIfExists(segmentPath(index));
+                logger.debug("删除任务日志段: {}", index);
+            }
+        }
+    }
+
+    /**
+     * 顺序重放所有段, 返回未结束的任务
+     * 遇到损坏记录时停止, 不再应用之后的任何记录
+     */
+    private List<RecoveredTask> replay(List<Long> segments) {
+        Map<String, RecoveredTask> tasks = new LinkedHashMap<>();
+        for (int i = 0; i < segments.size(); i++) {
+            long index = segments.get(i);
+            long corruptOffset;
+            try {
+                corruptOffset = replaySegment(index, tasks);
+            } catch (IOException e) {
+                logger.error("读取任务日志段失败: segment={}, error={}", index, e.getMessage());
+                corruptOffset = 0;
+            }
+            if (corruptOffset >= 0) {
+                quarantine(segments.subList(i, segments.size()), index, corruptOffset);
+                break;
+            }
+        }
+        tasks.values().forEach(task -> activeTaskSegments.put(task.taskId, task.firstSegment));
+        return new ArrayList<>(tasks.values());
+    }
+
+    /**
+     * 重放单个段
+     * @return 损坏记录在段内的偏移; 段完整或只有末尾未写完的记录时返回 -1
+     */
+    private long replaySegment(long index, Map<String, RecoveredTask> tasks) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segmentPath(index)));
+        int records = 0;
+        while (buffer.hasRemaining()) {
+            int offset = buffer.position();
+            if (buffer.remaining() < FRAME_HEADER_BYTES) {
+                return isTornTail(buffer, offset) ? -1 : offset;
+            }
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > MAX_RECORD_BYTES) {
+                return isTornTail(buffer, offset) ? -1 : offset;
+            }
+            if (length > buffer.remaining()) {
+                // 最后一条记录只写了一部分
+                logger.warn("任务日志段末尾记录不完整, 已忽略: segment={}, offset={}", index, offset);
+                return -1;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) {
+                if (!buffer.hasRemaining()) {
+                    logger.warn("任务日志段末尾记录校验失败 (未写完), 已忽略: segment={}, offset={}", index, offset);
+                    return -1;
+                }
+                return offset;
+            }
+            JournalRecord record;
+            try {
+                record = objectMapper.readValue(payload, JournalRecord.class);
+            } catch (IOException e) {
+                return offset;
+            }
+            apply(tasks, index, record);
+            records++;
+        }
+        logger.debug("重放任务日志段: segment={}, records={}", index, records);
+        return -1;
+    }
+
+    /**
+     * 从 offset 到段末尾全为 0 (预分配但未写入), 视为崩溃时未写完
+     */
+    private static boolean isTornTail(ByteBuffer buffer, int offset) {
+        for (int i = offset; i < buffer.limit(); i++) {
+            if (buffer.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 损坏段及之后的段改名保留, 不再参与重放与删除
+     */
+    private void quarantine(List<Long> segments, long corruptSegment, long offset) {
+        logger.error("❌ 任务日志记录损坏, 重放停止于 segment={}, offset={}; 该段及之后的 {} 个段已改名为 *{} 保留",
+                corruptSegment, offset, segments.size(), CORRUPT_SUFFIX);
+        for (long index : segments) {
+            Path segment = segmentPath(index);
+            try {
+                Files.move(segment, segment.resolveSibling(segment.getFileName() + CORRUPT_SUFFIX),
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                logger.error("任务日志段改名失败: segment={}, error={}", index, e.getMessage());
+            }
+        }
+    }
+
+    private void apply(Map<String, RecoveredTask> tasks, long segment, JournalRecord record) {
+        String taskId = record.getTaskId();
+        switch (record.getType()) {
+            case TASK_CREATED:
+                RecoveredTask task = new RecoveredTask(taskId, record.getSessionId(), record.getInitialMessage(), segment);
+                task.history.addAll(fromStored(record.getMessages()));
+                tasks.put(taskId, task);
+                break;
+            case TURN_COMPLETED:
+                RecoveredTask turnTask = tasks.get(taskId);
+                if (turnTask != null) {
+                    turnTask.history.addAll(fromStored(record.getMessages()));
+                    if (record.getResponse() != null && !record.getResponse().trim().isEmpty()) {
+                        turnTask.turnResponses.add(record.getResponse());
+                    }
+                    turnTask.completedTurns = record.getTurn();
+                    turnTask.continueRequested = record.isContinueRequested();
+                    turnTask.pendingToolEffects.clear();
+                }
+                break;
+            case TOOL_EFFECT:
+                RecoveredTask toolTask = tasks.get(taskId);
+                if (toolTask != null) {
+                    toolTask.pendingToolEffects.add(record.getToolName()
+                            + (record.getDetail() != null ? ": " + record.getDetail() : ""));
+                }
+                break;
+            case TASK_FINISHED:
+                tasks.remove(taskId);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private List<Long> listSegments() throws IOException {
+        List<Long> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    logger.warn("忽略无法识别的任务日志文件: {}", name);
+                }
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private Path segmentPath(long index) {
+        return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    private static List<ChatHistoryStore.StoredMessage> toStored(List<Message> messages) {
+        List<ChatHistoryStore.StoredMessage> stored = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            stored.add(ChatHistoryStore.StoredMessage.of(message));
+        }
+        return stored;
+    }
+
+    private static List<Message> fromStored(List<ChatHistoryStore.StoredMessage> stored) {
+        List<Message> messages = new ArrayList<>();
+        if (stored != null) {
+            for (ChatHistoryStore.StoredMessage message : stored) {
+                Message restored = message.toMessage();
+                if (restored != null) {
+                    messages.add(restored);
+                }
+            }
+        }
+        return messages;
+    }
+
+    private static class PendingRecord {
+        private final JournalRecord record;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        PendingRecord(JournalRecord record) {
+            this.record = record;
+        }
+    }
+
+    public enum RecordType {
+        TASK_CREATED, TURN_COMPLETED, TOOL_EFFECT, TASK_FINISHED
+    }
+
+    /**
+     * 日志记录
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class JournalRecord {
+        private RecordType type;
+        private String taskId;
+        private String sessionId;
+        private long timestamp;
+        private int turn;
+        private String initialMessage;
+        private List<ChatHistoryStore.StoredMessage> messages;
+        private String response;
+        private boolean continueRequested;
+        private String toolName;
+        private String detail;
+        private String status;
+
+        public JournalRecord() {}
+
+        public JournalRecord(RecordType type, String taskId) {
+            this.type = type;
+            this.taskId = taskId;
+            this.timestamp = System.currentTimeMillis();
+        }
+
+        public RecordType getType() { return type; }
+        public void setType(RecordType type) { this.type = type; }
+        public String getTaskId() { return taskId; }
+        public void setTaskId(String taskId) { this.taskId = taskId; }
+        public String getSessionId() { return sessionId; }
+        public void setSessionId(String sessionId) { this.sessionId = sessionId; }
+        public long getTimestamp() { return timestamp; }
+        public void setTimestamp(long timestamp) { this.timestamp = timestamp; }
+        public int getTurn() { return turn; }
+        public void setTurn(int turn) { this.turn = turn; }
+        public String getInitialMessage() { return initialMessage; }
+        public void setInitialMessage(String initialMessage) { this.initialMessage = initialMessage; }
+        public List<ChatHistoryStore.StoredMessage> getMessages() { return messages; }
+        public void setMessages(List<ChatHistoryStore.StoredMessage> messages) { this.messages = messages; }
+        public String getResponse() { return response; }
+        public void setResponse(String response) { this.response = response; }
+        public boolean isContinueRequested() { return continueRequested; }
+        public void setContinueRequested(boolean continueRequested) { this.continueRequested = continueRequested; }
+        public String getToolName() { return toolName; }
+        public void setToolName(String toolName) { this.toolName = toolName; }
+        public String getDetail() { return detail; }
+        public void setDetail(String detail) { this.detail = detail; }
+        public String getStatus() { return status; }
+        public void setStatus(String status) { this.status = status; }
+    }
+
+    /**
+     * 重放得到的未完成任务
+     */
+    public static class RecoveredTask {
+        private final String taskId;
+        private final String sessionId;
+        private final String initialMessage;
+        private final long firstSegment;
+        private final List<Message> history = new ArrayList<>();
+        private final List<String> turnResponses = new ArrayList<>();
+        private final List<String> pendingToolEffects = new ArrayList<>(); // 最后完成轮次之后的工具副作用
+        private int completedTurns;
+        private boolean continueRequested = true;
+
+        RecoveredTask(String taskId, String sessionId, String initialMessage, long firstSegment) {
+            this.taskId = taskId;
+            this.sessionId = sessionId;
+            this.initialMessage = initialMessage;
+            this.firstSegment = firstSegment;
+        }
+
+        public String getTaskId() { return taskId; }
+        public String getSessionId() { return sessionId; }
+        public String getInitialMessage() { return initialMessage; }
+        public List<Message> getHistory() { return history; }
+        public List<String> getTurnResponses() { return turnResponses; }
+        public List<String> getPendingToolEffects() { return pendingToolEffects; }
+        public int getCompletedTurns() { return completedTurns; }
+        public boolean isContinueRequested() { return continueRequested; }
+    }
+}
@@ -0,0 +1,412 @@
+package org.kolar.kolarcodercopilot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.kolar.kolarcodercopilot.config.AppProperties;
+import org.kolar.kolarcodercopilot.config.TaskExecutors;
+import org.kolar.kolarcodercopilot.model.TaskStatus;
+import org.kolar.kolarcodercopilot.model.TaskTimeline;
+import org.kolar.kolarcodercopilot.model.TokenUsage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 任务状态存储
+ * 运行中的任务常驻内存; 已结束任务在内存中保留 finishedTtl 后连同结果落盘,
+ * 内存任务数超过上限时优先淘汰最早结束的任务; 磁盘结果在 retention 内可查询
+ * 已结束任务按结束顺序进入队列, 写入时只检查队首, 淘汰为均摊 O(1);
+ * 定期巡检在空闲时同样完成 TTL 落盘, 并删除超过保留期的磁盘文件
+ */
+@Service
+public class TaskStateStore {
+    private static final Logger logger = LoggerFactory.getLogger(TaskStateStore.class);
+
+    private static final Pattern SAFE_TASK_ID = Pattern.compile("[a-zA-Z0-9-]{1,64}");
+    private final AppProperties.TaskStore config;
+    private final TaskExecutors taskExecutors;
+    private final Path storageDir;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // 已结束任务, 按结束顺序排列, 访问需持有自身锁
+    private final ArrayDeque<Entry> finishOrder = new ArrayDeque<>();
+    private ScheduledFuture<?> sweepFuture;
+
+    // 指标
+    private final AtomicLong retainedBytes = new AtomicLong();
+    private final AtomicLong spilledTasks = new AtomicLong();
+    private final AtomicLong expiredFiles = new AtomicLong();
+
+    public TaskStateStore(AppProperties appProperties, TaskExecutors taskExecutors) {
+        this.config = appProperties.getTaskStore();
+        this.taskExecutors = taskExecutors;
+        this.storageDir = Paths.get(config.getStorageDirectory());
+    }
+
+    @PostConstruct
+    public void startSweeper() {
+        long interval = Math.max(1, config.getSweepIntervalSeconds());
+        sweepFuture = taskExecutors.scheduleAtFixedRate(this::sweep, interval, interval, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stopSweeper() {
+        if (sweepFuture != null) {
+            sweepFuture.cancel(false);
+        }
+    }
+
+    /**
+     * 注册新任务
+     */
+    public void createTask(TaskStatus status) {
+        entries.put(status.getTaskId(), new Entry(status));
+        evictIfNeeded();
+    }
+
+    /**
+     * 获取任务状态, 内存未命中时从磁盘读取
+     */
+    public TaskStatus getStatus(String taskId) {
+        Entry entry = entries.get(taskId);
+        if (entry != null) {
+            return entry.status;
+        }
+        StoredTask stored = readFromDisk(taskId);
+        return stored != null ? stored.toStatus() : null;
+    }
+
+    /**
+     * 获取内存中的任务状态, 不读取磁盘 (用于热路径上的更新)
+     */
+    public TaskStatus getLiveStatus(String taskId) {
+        Entry entry = entries.get(taskId);
+        return entry != null ? entry.status : null;
+    }
+
+    /**
+     * 获取任务结果, 内存未命中时从磁盘读取 (不含完整消息历史)
+     */
+    public ContinuousConversationService.ConversationResult getResult(String taskId) {
+        Entry entry = entries.get(taskId);
+        if (entry != null) {
+            return entry.result;
+        }
+        StoredTask stored = readFromDisk(taskId);
+        return stored != null ? stored.toResult() : null;
+    }
+
+    /**
+     * 保存结果并标记任务结束
+     */
+    public void putResult(String taskId, ContinuousConversationService.ConversationResult result) {
+        Entry entry = entries.get(taskId);
+        if (entry == null) {
+            return;
+        }
+        long bytes = estimateBytes(result);
+        entry.result = result;
+        entry.bytes = bytes;
+        retainedBytes.addAndGet(bytes);
+        finish(entry);
+        evictIfNeeded();
+    }
+
+    /**
+     * 标记任务结束 (无结果, 如执行失败)
+     */
+    public void markFinished(String taskId) {
+        Entry entry = entries.get(taskId);
+        if (entry != null) {
+            finish(entry);
+        }
+        evictIfNeeded();
+    }
+
+    /**
+     * 存储指标
+     */
+    public Map<String, Object> getMetrics() {
+        long running = entries.values().stream().filter(entry -> entry.finishedAt == 0).count();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("liveEntries", entries.size());
+        metrics.put("runningTasks", running);
+        metrics.put("finishedInMemory", entries.size() - running);
+        metrics.put("retainedBytes", retainedBytes.get());
+        metrics.put("spilledTasks", spilledTasks.get());
+        metrics.put("expiredFiles", expiredFiles.get());
+        return metrics;
+    }
+
+    /**
+     * 定期巡检: 空闲时也能完成 TTL 落盘, 并删除超过保留期的磁盘文件
+     */
+    void sweep() {
+        evictIfNeeded();
+        sweepExpiredFiles(System.currentTimeMillis());
+    }
+
+    /**
+     * 首次结束时记录结束时间并进入结束顺序队列
+     */
+    private void finish(Entry entry) {
+        synchronized (finishOrder) {
+            if (entry.finishedAt == 0) {
+                entry.finishedAt = System.currentTimeMillis();
+                finishOrder.addLast(entry);
+            }
+        }
+    }
+
+    /**
+     * 淘汰已结束的任务: 从队首 (最早结束) 开始, 超过TTL或超出容量的落盘, 遇到无需淘汰的任务即停止
+     */
+    private void evictIfNeeded() {
+        long now = System.currentTimeMillis();
+        long ttlMillis = config.getFinishedTtlMinutes() * 60_000L;
+
+        List<Entry> victims = null;
+        synchronized (finishOrder) {
+            int overflow = entries.size() - config.getMaxLiveTasks();
+            Entry eldest;
+            while ((eldest = finishOrder.peekFirst()) != null
+                    && (overflow > 0 || now - eldest.finishedAt > ttlMillis)) {
+                finishOrder.pollFirst();
+                if (victims == null) {
+                    victims = new ArrayList<>();
+                }
+                victims.add(eldest);
+                overflow--;
+            }
+        }
+        if (victims != null) {
+            // 落盘 (磁盘IO) 在锁外进行
+            for (Entry victim : victims) {
+                spill(victim.status.getTaskId(), victim);
+            }
+        }
+    }
+
+    private void spill(String taskId, Entry entry) {
+        if (!entries.remove(taskId, entry)) {
+            return;
+        }
+        retainedBytes.addAndGet(-entry.bytes);
+        if (!SAFE_TASK_ID.matcher(taskId).matches()) {
+            return;
+        }
+        try {
+            Files.createDirectories(storageDir);
+            Path file = fileFor(taskId);
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp))) {
+                objectMapper.writeValue(out, StoredTask.from(entry));
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            spilledTasks.incrementAndGet();
+            logger.debug("任务结果已落盘: taskId={}, bytes={}", taskId, entry.bytes);
+        } catch (IOException e) {
+            logger.error("任务结果落盘失败: taskId={}, error={}", taskId, e.getMessage());
+        }
+    }
+
+    private StoredTask readFromDisk(String taskId) {
+        if (taskId == null || !SAFE_TASK_ID.matcher(taskId).matches()) {
+            return null;
+        }
+        Path file = fileFor(taskId);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            StoredTask stored = objectMapper.readValue(in, StoredTask.class);
+            long retentionMillis = config.getRetentionHours() * 3_600_000L;
+            if (System.currentTimeMillis() - stored.getFinishedAt() > retentionMillis) {
+                return null;
+            }
+            return stored;
+        } catch (IOException e) {
+            logger.warn("读取落盘任务失败: taskId={}, error={}", taskId, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 删除超过保留期的落盘文件
+     */
+    private void sweepExpiredFiles(long now) {
+        if (!Files.isDirectory(storageDir)) {
+            return;
+        }
+        long retentionMillis = config.getRetentionHours() * 3_600_000L;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(storageDir, "*.json.gz")) {
+            for (Path file : files) {
+                if (now - Files.getLastModifiedTime(file).toMillis() > retentionMillis) {
+                    Files.deleteIfExists(file);
+                    expiredFiles.incrementAndGet();
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("清理过期任务文件失败: {}", e.getMessage());
+        }
+    }
+
+    private Path fileFor(String taskId) {
+        return storageDir.resolve(taskId + ".json.gz");
+    }
+
+    /**
+     * 估算结果占用的堆内存 (字符按2字节计)
+     */
+    private static long estimateBytes(ContinuousConversationService.ConversationResult result) {
+        if (result == null) {
+            return 0;
+        }
+        long chars = result.getFullResponse() != null ? result.getFullResponse().length() : 0;
+        if (result.getTurnResponses() != null) {
+            for (String turn : result.getTurnResponses()) {
+                chars += turn != null ? turn.length() : 0;
+            }
+        }
+        if (result.getFinalHistory() != null) {
+            for (Message message : result.getFinalHistory()) {
+                chars += message.getText() != null ? message.getText().length() : 0;
+            }
+        }
+        return chars * 2;
+    }
+
+    private static class Entry {
+        private final TaskStatus status;
+        private volatile ContinuousConversationService.ConversationResult result;
+        private volatile long bytes;
+        private volatile long finishedAt; // 0 表示运行中
+
+        Entry(TaskStatus status) {
+            this.status = status;
+        }
+    }
+
+    /**
+     * 落盘的任务记录 (不含完整消息历史)
+     */
+    public static class StoredTask {
+        private String taskId;
+        private String status;
+        private String summary;
+        private String errorMessage;
+        private long finishedAt;
+        private String fullResponse;
+        private List<String> turnResponses;
+        private int totalTurns;
+        private boolean reachedMaxTurns;
+        private String stopReason;
+        private long totalDurationMs;
+        private boolean hasResult;
+        private TaskTimeline timeline;
+        private String sessionId;
+        private TokenUsage tokenUsage;
+
+        static StoredTask from(Entry entry) {
+            StoredTask stored = new StoredTask();
+            stored.taskId = entry.status.getTaskId();
+            stored.status = entry.status.getStatus();
+            stored.summary = entry.status.getSummary();
+            stored.errorMessage = entry.status.getErrorMessage();
+            stored.finishedAt = entry.finishedAt;
+            stored.timeline = entry.status.getTimeline();
+            stored.sessionId = entry.status.getSessionId();
+            stored.tokenUsage = entry.status.getTokenUsage();
+            ContinuousConversationService.ConversationResult result = entry.result;
+            if (result != null) {
+                stored.hasResult = true;
+                stored.fullResponse = result.getFullResponse();
+                stored.turnResponses = result.getTurnResponses();
+                stored.totalTurns = result.getTotalTurns();
+                stored.reachedMaxTurns = result.isReachedMaxTurns();
+                stored.stopReason = result.getStopReason();
+                stored.totalDurationMs = result.getTotalDurationMs();
+            }
+            return stored;
+        }
+
+        TaskStatus toStatus() {
+            TaskStatus taskStatus = new TaskStatus(taskId);
+            taskStatus.setStatus(status);
+            taskStatus.setSummary(summary);
+            taskStatus.setErrorMessage(errorMessage);
+            taskStatus.setCurrentTurn(totalTurns);
+            if (timeline != null) {
+                taskStatus.setTimeline(timeline);
+            }
+            taskStatus.setSessionId(sessionId);
+            if (tokenUsage != null) {
+                taskStatus.setTokenUsage(tokenUsage);
+            }
+            return taskStatus;
+        }
+
+        ContinuousConversationService.ConversationResult toResult() {
+            if (!hasResult) {
+                return null;
+            }
+            return new ContinuousConversationService.ConversationResult(fullResponse, turnResponses,
+                    List.of(), totalTurns, reachedMaxTurns, stopReason, totalDurationMs);
+        }
+
+        public String getTaskId() { return taskId; }
+        public void setTaskId(String taskId) { this.taskId = taskId; }
+        public String getStatus() { return status; }
+        public void setStatus(String status) { this.status = status; }
+        public String getSummary() { return summary; }
+        public void setSummary(String summary) { this.summary = summary; }
+        public String getErrorMessage() { return errorMessage; }
+        public void setErrorMessage(String errorMessage) { this.errorMessage = errorMessage; }
+        public long getFinishedAt() { return finishedAt; }
+        public void setFinishedAt(long finishedAt) { this.finishedAt = finishedAt; }
+        public String getFullResponse() { return fullResponse; }
+        public void setFullResponse(String fullResponse) { this.fullResponse = fullResponse; }
+        public List<String> getTurnResponses() { return turnResponses; }
+        public void setTurnResponses(List<String> turnResponses) { this.turnResponses = turnResponses; }
+        public int getTotalTurns() { return totalTurns; }
+        public void setTotalTurns(int totalTurns) { this.totalTurns = totalTurns; }
+        public boolean isReachedMaxTurns() { return reachedMaxTurns; }
+        public void setReachedMaxTurns(boolean reachedMaxTurns) { this.reachedMaxTurns = reachedMaxTurns; }
+        public String getStopReason() { return stopReason; }
+        public void setStopReason(String stopReason) { this.stopReason = stopReason; }
+        public long getTotalDurationMs() { return totalDurationMs; }
+        public void setTotalDurationMs(long totalDurationMs) { this.totalDurationMs = totalDurationMs; }
+        public boolean isHasResult() { return hasResult; }
+        public void setHasResult(boolean hasResult) { this.hasResult = hasResult; }
+        public TaskTimeline getTimeline() { return timeline; }
+        public void setTimeline(TaskTimeline timeline) { this.timeline = timeline; }
+        public String getSessionId() { return sessionId; }
+        public void setSessionId(String sessionId) { this.sessionId = sessionId; }
+        public TokenUsage getTokenUsage() { return tokenUsage; }
+        public void setTokenUsage(TokenUsage tokenUsage) { this.tokenUsage = tokenUsage; }
+    }
+}
@@ -0,0 +1,243 @@
+package org.kolar.kolarcodercopilot.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.kolar.kolarcodercopilot.config.AppProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于TCP事件代理的事件总线 (多实例部署)
+ * 发布的事件经单个写线程按顺序发往代理, 代理广播给所有节点 (包括发布者自身), 读线程按到达顺序回调订阅者;
+ * 同一任务只在一个节点上执行, 其事件经同一连接到达代理, 因此在每个节点上保持发布顺序
+ * 所有事件 (包括发给本节点的) 都经代理送达, 不在本地抄近路, 否则会越过队列中同一任务更早的事件;
+ * 与代理断开期间事件留在发送队列中, 重连后按原顺序发出; 队列满时发布方等待, 超时则抛出异常而不是拆分事件流
+ */
+public class TcpEventBus implements EventBus {
+    private static final Logger logger = LoggerFactory.getLogger(TcpEventBus.class);
+
+    // 可还原的事件类型白名单, 其他内容还原为 Map
+    private static final Map<String, Class<?>> EVENT_TYPES = Map.of(
+            LoginEvent.class.getSimpleName(), LoginEvent.class,
+            AnalysisEvent.class.getSimpleName(), AnalysisEvent.class,
+            TokenDeltaEvent.class.getSimpleName(), TokenDeltaEvent.class);
+
+    private final AppProperties.EventBus config;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final BlockingQueue<byte[]> outbound;
+
+    private volatile boolean running;
+    private volatile boolean connected;
+    private volatile Socket socket;
+    private Thread writerThread;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+
+    public TcpEventBus(AppProperties.EventBus config) {
+        this.config = config;
+        this.outbound = new ArrayBlockingQueue<>(Math.max(1, config.getQueueCapacity()));
+    }
+
+    public void start() {
+        running = true;
+        writerThread = new Thread(this::writeLoop, "event-bus-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        logger.info("🛰️ 事件总线已启动: broker={}:{}", config.getBrokerHost(), config.getBrokerPort());
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        closeSocket();
+        if (writerThread != null) {
+            writerThread.interrupt();
+        }
+    }
+
+    @Override
+    public void publish(String taskId, long eventId, Object event) {
+        byte[] frame;
+        try {
+            frame = encode(taskId, eventId, event);
+        } catch (IOException e) {
+            throw new UncheckedIOException("事件序列化失败: taskId=" + taskId, e);
+        }
+        try {
+            if (!outbound.offer(frame, config.getPublishTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                rejected.increment();
+                logger.error("❌ 事件总线发送队列已满: taskId={}, eventId={}, connected={}", taskId, eventId, connected);
+                throw new IllegalStateException("event bus outbound queue full: taskId=" + taskId + ", connected=" + connected);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while publishing event: taskId=" + taskId, e);
+        }
+        published.increment();
+    }
+
+    @Override
+    public void subscribe(Listener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("mode", "TCP");
+        metrics.put("connected", connected);
+        metrics.put("published", published.sum());
+        metrics.put("received", received.sum());
+        metrics.put("rejected", rejected.sum());
+        metrics.put("reconnects", reconnects.sum());
+        metrics.put("outboundQueue", outbound.size());
+        return metrics;
+    }
+
+    /**
+     * 写线程: 维持与代理的连接, 按顺序发送队列中的事件, 队列取空后flush
+     */
+    private void writeLoop() {
+        while (running) {
+            DataOutputStream out;
+            try {
+                out = connect();
+            } catch (IOException e) {
+                logger.warn("⚠️ 连接事件代理失败: {}:{}, error={}", config.getBrokerHost(), config.getBrokerPort(), e.getMessage());
+                if (!sleepBeforeReconnect()) {
+                    return;
+                }
+                continue;
+            }
+            try {
+                // 读线程发现断开时 connected 置为 false, 写线程在空闲时也能及时重连
+                while (running && connected) {
+                    byte[] frame = outbound.poll(1, TimeUnit.SECONDS);
+                    if (frame == null) {
+                        continue;
+                    }
+                    EventFrames.write(out, frame);
+                    while ((frame = outbound.poll()) != null) {
+                        EventFrames.write(out, frame);
+                    }
+                    out.flush();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                logger.warn("⚠️ 事件代理连接断开: error={}", e.getMessage());
+            } finally {
+                closeSocket();
+            }
+            if (!sleepBeforeReconnect()) {
+                return;
+            }
+        }
+    }
+
+    private DataOutputStream connect() throws IOException {
+        Socket newSocket = new Socket();
+        newSocket.setTcpNoDelay(true);
+        newSocket.connect(new InetSocketAddress(config.getBrokerHost(), config.getBrokerPort()), 5_000);
+        socket = newSocket;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(newSocket.getInputStream()));
+        Thread readerThread = new Thread(() -> readLoop(newSocket, in), "event-bus-reader");
+        readerThread.setDaemon(true);
+        readerThread.start();
+        connected = true;
+        reconnects.increment();
+        logger.info("🔌 已连接事件代理: {}:{}", config.getBrokerHost(), config.getBrokerPort());
+        return new DataOutputStream(new BufferedOutputStream(newSocket.getOutputStream()));
+    }
+
+    /**
+     * 读线程: 按到达顺序解码并回调订阅者
+     */
+    private void readLoop(Socket owner, DataInputStream in) {
+        try {
+            while (running) {
+                byte[] frame = EventFrames.read(in);
+                received.increment();
+                try {
+                    JsonNode root = objectMapper.readTree(frame);
+                    String taskId = root.path("taskId").asText(null);
+                    long eventId = root.path("eventId").asLong();
+                    Class<?> type = EVENT_TYPES.getOrDefault(root.path("kind").asText(), Map.class);
+                    deliver(taskId, eventId, objectMapper.treeToValue(root.get("event"), type));
+                } catch (IOException e) {
+                    logger.warn("⚠️ 无法解析事件总线消息: error={}", e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            logger.debug("事件代理读取结束: {}", e.getMessage());
+        } finally {
+            if (socket == owner) {
+                closeSocket();
+            }
+        }
+    }
+
+    private byte[] encode(String taskId, long eventId, Object event) throws IOException {
+        ObjectNode root = objectMapper.createObjectNode();
+        root.put("taskId", taskId);
+        root.put("eventId", eventId);
+        root.put("kind", event.getClass().getSimpleName());
+        root.set("event", objectMapper.valueToTree(event));
+        return objectMapper.writeValueAsBytes(root);
+    }
+
+    private void deliver(String taskId, long eventId, Object event) {
+        for (Listener listener : listeners) {
+            try {
+                listener.onEvent(taskId, eventId, event);
+            } catch (RuntimeException e) {
+                logger.error("事件总线订阅者处理失败: taskId={}, error={}", taskId, e.getMessage());
+            }
+        }
+    }
+
+    private void closeSocket() {
+        connected = false;
+        Socket current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException ignored) {
+                // 关闭失败无需处理
+            }
+        }
+    }
+
+    private boolean sleepBeforeReconnect() {
+        try {
+            TimeUnit.MILLISECONDS.sleep(config.getReconnectDelayMillis());
+            return running;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package org.kolar.kolarcodercopilot.service;
+
+import org.kolar.kolarcodercopilot.config.AppProperties;
+import org.kolar.kolarcodercopilot.model.TaskStatus;
+import org.kolar.kolarcodercopilot.model.TokenUsage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Token 用量统计
+ * 每次模型调用的用量取自 ChatResponse 元数据, 模型未返回时按文本长度估算;
+ * 用量按任务 (随 TaskStatus 保存), 会话与来源 (对话轮次 / 工具名) 汇总,
+ * 任务与会话的汇总在内存中按 LRU 保留 maxTrackedKeys 个; 会话超出预算后由对话服务停止任务
+ * 有预算的会话单独保存, 不参与 LRU 淘汰: 淘汰后重新计数会让已用尽预算的会话重新获得全部额度
+ */
+@Service
+public class TokenAccountingService {
+    private static final Logger logger = LoggerFactory.getLogger(TokenAccountingService.class);
+
+    public static final String CONVERSATION_SOURCE = "conversation";
+    // 不属于任何会话的调用 (如无会话的恢复任务) 单独汇总
+    private static final String DEFAULT_SESSION_ID = "default";
+
+    private final AppProperties.Tokens config;
+    private final TaskStateStore taskStateStore;
+
+    private final Map<String, TokenUsage> sources = new ConcurrentHashMap<>();
+    // 访问顺序的 LRU, 通过 synchronized(this) 保护
+    private final LinkedHashMap<String, TokenUsage> tasks = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, TokenUsage> sessions = new LinkedHashMap<>(16, 0.75f, true);
+    // 有预算的会话, 不淘汰, 同样由 synchronized(this) 保护
+    private final Map<String, TokenUsage> budgetedSessions = new HashMap<>();
+    private final TokenUsage total = new TokenUsage();
+
+    public TokenAccountingService(AppProperties appProperties, TaskStateStore taskStateStore) {
+        this.config = appProperties.getTokens();
+        this.taskStateStore = taskStateStore;
+    }
+
+    /**
+     * 记录一次模型调用
+     * @param taskId     所属任务, 不在任务中时为 null
+     * @param source     来源 (CONVERSATION_SOURCE 或工具名)
+     * @param usage      ChatResponse 元数据中的用量, 可为 null
+     * @param prompt     发送的消息 (仅在需要估算时使用)
+     * @param completion 模型输出文本 (仅在需要估算时使用)
+     * @return 本次调用的 token 数
+     */
+    public long record(String taskId, String source, Usage usage, List<Message> prompt, String completion) {
+        long promptTokens;
+        long completionTokens;
+        boolean estimated = !hasUsage(usage);
+        if (estimated) {
+            promptTokens = 0;
+            for (Message message : prompt) {
+                promptTokens += estimateTokens(message.getText());
+            }
+            completionTokens = estimateTokens(completion);
+        } else {
+            promptTokens = usage.getPromptTokens() != null ? usage.getPromptTokens() : 0;
+            completionTokens = usage.getCompletionTokens() != null ? usage.getCompletionTokens() : 0;
+        }
+
+        TaskStatus status = taskId != null ? taskStateStore.getLiveStatus(taskId) : null;
+        String sessionId = normalize(status != null ? status.getSessionId() : null);
+        if (status != null) {
+            status.getTokenUsage().add(source, promptTokens, completionTokens, estimated);
+        }
+        sources.computeIfAbsent(source, s -> new TokenUsage()).add(null, promptTokens, completionTokens, estimated);
+        total.add(null, promptTokens, completionTokens, estimated);
+        synchronized (this) {
+            if (taskId != null) {
+                TokenUsage taskUsage = tasks.get(taskId);
+                if (taskUsage == null) {
+                    // 与 TaskStatus 共享同一对象, 未注册的任务单独统计
+                    if (status != null) {
+                        taskUsage = status.getTokenUsage();
+                    } else {
+                        taskUsage = new TokenUsage();
+                        taskUsage.add(source, promptTokens, completionTokens, estimated);
+                    }
+                    tasks.put(taskId, taskUsage);
+                } else if (status == null) {
+                    taskUsage.add(source, promptTokens, completionTokens, estimated);
+                }
+            }
+            sessionsFor(sessionId).computeIfAbsent(sessionId, s -> new TokenUsage())
+                    .add(source, promptTokens, completionTokens, estimated);
+            trim(tasks);
+            trim(sessions);
+        }
+        logger.debug("🪙 模型调用用量: taskId={}, session={}, source={}, prompt={}, completion={}, estimated={}",
+                taskId, sessionId, source, promptTokens, completionTokens, estimated);
+        return promptTokens + completionTokens;
+    }
+
+    /**
+     * 会话预算, 0 表示不限制
+     */
+    public long getBudget(String sessionId) {
+        Long budget = config.getSessionBudgets().get(normalize(sessionId));
+        return budget != null ? budget : config.getSessionBudget();
+    }
+
+    /**
+     * 会话已用 token 是否超出预算
+     */
+    public boolean isOverBudget(String sessionId) {
+        long budget = getBudget(sessionId);
+        return budget > 0 && getSessionTokens(sessionId) >= budget;
+    }
+
+    public synchronized long getSessionTokens(String sessionId) {
+        String key = normalize(sessionId);
+        // get 会调整 LRU 顺序, 预算检查视为一次访问
+        TokenUsage usage = sessionsFor(key).get(key);
+        return usage != null ? usage.getTotalTokens() : 0;
+    }
+
+    /**
+     * 会话汇总所在的表: 有预算的会话不参与 LRU 淘汰, 调用方需持有 this 锁
+     */
+    private Map<String, TokenUsage> sessionsFor(String sessionId) {
+        return getBudget(sessionId) > 0 ? budgetedSessions : sessions;
+    }
+
+    /**
+     * 用量汇总与各维度的前 N 名
+     */
+    public Map<String, Object> getTopConsumers(int top) {
+        int limit = Math.max(1, top);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("total", total);
+        List<Map<String, Object>> topTasks;
+        List<Map<String, Object>> topSessions;
+        synchronized (this) {
+            topTasks = topN(tasks, "taskId", limit);
+            Map<String, TokenUsage> allSessions = new HashMap<>(sessions);
+            allSessions.putAll(budgetedSessions);
+            topSessions = topN(allSessions, "sessionId", limit);
+        }
+        for (Map<String, Object> session : topSessions) {
+            long budget = getBudget((String) session.get("sessionId"));
+            if (budget > 0) {
+                session.put("budget", budget);
+            }
+        }
+        result.put("tasks", topTasks);
+        result.put("sessions", topSessions);
+        result.put("sources", topN(sources, "source", limit));
+        return result;
+    }
+
+    public void writePrometheus(PrometheusTextWriter writer) {
+        Map<String, TokenUsage> sorted = new TreeMap<>(sources);
+        writer.header("copilot_model_tokens_total", "counter", "Model tokens by source and direction");
+        sorted.forEach((source, usage) -> {
+            writer.sample("copilot_model_tokens_total", usage.getPromptTokens(), "source", source, "type", "prompt");
+            writer.sample("copilot_model_tokens_total", usage.getCompletionTokens(), "source", source, "type", "completion");
+        });
+        writer.header("copilot_model_calls_total", "counter", "Model calls by source");
+        sorted.forEach((source, usage) -> {
+            writer.sample("copilot_model_calls_total", usage.getCalls() - usage.getEstimatedCalls(),
+                    "source", source, "usage", "reported");
+            writer.sample("copilot_model_calls_total", usage.getEstimatedCalls(), "source", source, "usage", "estimated");
+        });
+    }
+
+    /**
+     * 估算 token 数: CJK 字符按 1 token, 其余字符按 charsPerToken 折算
+     */
+    long estimateTokens(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        long cjk = 0;
+        long other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            // CJK 部首/汉字, 韩文音节, 全角字符
+            if (c >= '\u2E80' && c <= '\u9FFF' || c >= '\uAC00' && c <= '\uD7AF' || c >= '\uFF00' && c <= '\uFFEF') {
+                cjk++;
+            } else {
+                other++;
+            }
+        }
+        return cjk + (long) Math.ceil(other / Math.max(0.1, config.getCharsPerToken()));
+    }
+
+    private static boolean hasUsage(Usage usage) {
+        if (usage == null) {
+            return false;
+        }
+        Integer prompt = usage.getPromptTokens();
+        Integer completion = usage.getCompletionTokens();
+        // EmptyUsage 返回 0, 视为未提供
+        return (prompt != null && prompt > 0) || (completion != null && completion > 0);
+    }
+
+    private static List<Map<String, Object>> topN(Map<String, TokenUsage> usages, String keyName, int limit) {
+        List<Map.Entry<String, TokenUsage>> entries = new ArrayList<>(usages.entrySet());
+        entries.sort(Comparator.comparingLong((Map.Entry<String, TokenUsage> e) -> e.getValue().getTotalTokens()).reversed());
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (Map.Entry<String, TokenUsage> entry : entries.subList(0, Math.min(limit, entries.size()))) {
+            TokenUsage usage = entry.getValue();
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put(keyName, entry.getKey());
+            item.put("totalTokens", usage.getTotalTokens());
+            item.put("promptTokens", usage.getPromptTokens());
+            item.put("completionTokens", usage.getCompletionTokens());
+            item.put("calls", usage.getCalls());
+            item.put("estimatedCalls", usage.getEstimatedCalls());
+            result.add(item);
+        }
+        return result;
+    }
+
+    private void trim(LinkedHashMap<String, TokenUsage> usages) {
+        while (usages.size() > config.getMaxTrackedKeys()) {
+            usages.remove(usages.keySet().iterator().next());
+        }
+    }
+
+    private static String normalize(String sessionId) {
+        return sessionId == null || sessionId.isBlank() ? DEFAULT_SESSION_ID : sessionId;
+    }
+}
@@ -0,0 +1,57 @@
+package org.kolar.kolarcodercopilot.service;
+
+import org.kolar.kolarcodercopilot.config.SseExecutors;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单轮对话的增量文本缓冲
+ * 模型逐token返回的增量先在此累积, 按刷新间隔或字符数上限合并为一个 TOKEN_DELTA 事件推送,
+ * 避免每个token都产生一条SSE事件与回放日志记录
+ */
+public class TokenDeltaBuffer {
+    private final LogStreamService logStreamService;
+    private final SseExecutors sseExecutors;
+    private final String taskId;
+    private final int turn;
+    private final long flushIntervalMillis;
+    private final int maxBufferedChars;
+
+    private final StringBuilder pending = new StringBuilder();
+    private boolean flushArmed;
+
+    TokenDeltaBuffer(LogStreamService logStreamService, SseExecutors sseExecutors, String taskId, int turn,
+                     long flushIntervalMillis, int maxBufferedChars) {
+        this.logStreamService = logStreamService;
+        this.sseExecutors = sseExecutors;
+        this.taskId = taskId;
+        this.turn = turn;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.maxBufferedChars = maxBufferedChars;
+    }
+
+    public synchronized void append(String delta) {
+        if (delta == null || delta.isEmpty()) {
+            return;
+        }
+        pending.append(delta);
+        if (flushIntervalMillis <= 0 || pending.length() >= maxBufferedChars) {
+            flush();
+        } else if (!flushArmed) {
+            flushArmed = true;
+            sseExecutors.schedule(this::flush, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 推送已累积的增量, 轮次结束时调用以发出剩余文本
+     */
+    public synchronized void flush() {
+        flushArmed = false;
+        if (pending.length() == 0) {
+            return;
+        }
+        logStreamService.pushTokenDelta(taskId, turn, pending.toString());
+        pending.setLength(0);
+    }
+}
@@ -0,0 +1,17 @@
+package org.kolar.kolarcodercopilot.service;
+
+/**
+ * 对话增量文本事件
+ * message 为本次推送的增量文本, turn 为所属轮次
+ */
+public class TokenDeltaEvent extends LoginEvent {
+    private int turn;
+
+    public int getTurn() {
+        return turn;
+    }
+
+    public void setTurn(int turn) {
+        this.turn = turn;
+    }
+}
@@ -0,0 +1,145 @@
+package org.kolar.kolarcodercopilot.service;
+
+import org.kolar.kolarcodercopilot.config.AppProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 工具指标注册表
+ * 每个工具的调用次数用 LongAdder 计数, 耗时同时记入累计直方图与滑动窗口直方图,
+ * 记录路径无锁, 由 ToolCallLoggingAspect 在每次 @Tool 调用结束时记录
+ */
+@Component
+public class ToolMetricsRegistry {
+
+    private final Map<String, ToolMetrics> tools = new ConcurrentHashMap<>();
+    private final int windowSeconds;
+    private final int windowSlots;
+
+    public ToolMetricsRegistry(AppProperties appProperties) {
+        this.windowSeconds = appProperties.getMetrics().getWindowSeconds();
+        this.windowSlots = appProperties.getMetrics().getWindowSlots();
+    }
+
+    /**
+     * 记录一次工具调用
+     */
+    public void record(String toolName, long elapsedNanos, boolean success) {
+        ToolMetrics metrics = tools.computeIfAbsent(toolName, name -> new ToolMetrics());
+        long micros = elapsedNanos / 1_000;
+        metrics.calls.increment();
+        (success ? metrics.successes : metrics.failures).increment();
+        metrics.cumulative.record(micros);
+        metrics.window.record(micros);
+    }
+
+    /**
+     * 各工具指标快照, 按工具名排序
+     */
+    public Map<String, ToolSnapshot> snapshot() {
+        Map<String, ToolSnapshot> result = new TreeMap<>();
+        tools.forEach((name, metrics) -> result.put(name, metrics.snapshot()));
+        return result;
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("windowSeconds", windowSeconds);
+        snapshot().forEach((name, snapshot) -> result.put(name, snapshot.toMap()));
+        return result;
+    }
+
+    /**
+     * 输出 Prometheus 文本格式
+     */
+    public void writePrometheus(PrometheusTextWriter writer) {
+        Map<String, ToolSnapshot> snapshots = snapshot();
+        String window = windowSeconds + "s";
+
+        writer.header("copilot_tool_calls_total", "counter", "Tool invocations by outcome");
+        snapshots.forEach((name, s) -> {
+            writer.sample("copilot_tool_calls_total", s.successes, "tool", name, "outcome", "success");
+            writer.sample("copilot_tool_calls_total", s.failures, "tool", name, "outcome", "failure");
+        });
+
+        writer.header("copilot_tool_duration_seconds", "summary", "Tool execution time since start");
+        snapshots.forEach((name, s) -> writer.summary("copilot_tool_duration_seconds", s.cumulative, "tool", name));
+
+        writer.header("copilot_tool_duration_seconds_max", "gauge", "Slowest tool execution since start");
+        snapshots.forEach((name, s) -> writer.sample("copilot_tool_duration_seconds_max",
+                PrometheusTextWriter.toSeconds(s.cumulative.getMaxMicros()), "tool", name));
+
+        writer.header("copilot_tool_window_duration_seconds", "summary", "Tool execution time over the sliding window");
+        snapshots.forEach((name, s) -> writer.summary("copilot_tool_window_duration_seconds", s.window,
+                "tool", name, "window", window));
+
+        writer.header("copilot_tool_window_duration_seconds_max", "gauge", "Slowest tool execution over the sliding window");
+        snapshots.forEach((name, s) -> writer.sample("copilot_tool_window_duration_seconds_max",
+                PrometheusTextWriter.toSeconds(s.window.getMaxMicros()), "tool", name, "window", window));
+    }
+
+    private class ToolMetrics {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder successes = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LatencyHistogram cumulative = new LatencyHistogram();
+        private final SlidingWindowHistogram window = new SlidingWindowHistogram(windowSeconds, windowSlots);
+
+        ToolSnapshot snapshot() {
+            return new ToolSnapshot(calls.sum(), successes.sum(), failures.sum(),
+                    cumulative.snapshot(), window.snapshot());
+        }
+    }
+
+    /**
+     * 单个工具的指标快照
+     */
+    public static class ToolSnapshot {
+        private final long calls;
+        private final long successes;
+        private final long failures;
+        private final LatencyHistogram.Snapshot cumulative;
+        private final LatencyHistogram.Snapshot window;
+
+        ToolSnapshot(long calls, long successes, long failures,
+                     LatencyHistogram.Snapshot cumulative, LatencyHistogram.Snapshot window) {
+            this.calls = calls;
+            this.successes = successes;
+            this.failures = failures;
+            this.cumulative = cumulative;
+            this.window = window;
+        }
+
+        public long getCalls() { return calls; }
+        public long getSuccesses() { return successes; }
+        public long getFailures() { return failures; }
+        public LatencyHistogram.Snapshot getCumulative() { return cumulative; }
+        public LatencyHistogram.Snapshot getWindow() { return window; }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("calls", calls);
+            result.put("successes", successes);
+            result.put("failures", failures);
+            result.put("latencyMillis", latencyMillis(cumulative));
+            result.put("windowLatencyMillis", latencyMillis(window));
+            return result;
+        }
+
+        private static Map<String, Object> latencyMillis(LatencyHistogram.Snapshot snapshot) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("count", snapshot.getCount());
+            result.put("mean", snapshot.getMeanMicros() / 1000.0);
+            result.put("p50", snapshot.percentile(50) / 1000.0);
+            result.put("p90", snapshot.percentile(90) / 1000.0);
+            result.put("p99", snapshot.percentile(99) / 1000.0);
+            result.put("max", snapshot.getMaxMicros() / 1000.0);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package org.kolar.kolarcodercopilot.service;
+
+import org.kolar.kolarcodercopilot.config.AppProperties;
+import org.kolar.kolarcodercopilot.config.TaskContext;
+import org.kolar.kolarcodercopilot.config.TaskContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 轻量级进程内追踪
+ * span 的父子关系通过 TaskContext 的 traceId/spanId 传递: 开始 span 时把自身 spanId 绑定到当前线程,
+ * 任务上下文随任务执行器/Reactor传播, 其他线程上开始的 span 自动以其为父;
+ * 按 traceId 做头部采样 (与 OpenTelemetry TraceIdRatioBased 相同), 同一 trace 的所有 span 采样结果一致,
+ * 未采样的 span 不分配任何对象; 结束的 span 交给 SpanExporter 批量写入本地文件
+ *
+ * 用法: try (Tracer.Span span = tracer.start("name")) { ... } , 必须在开始的线程上关闭
+ */
+@Component
+public class Tracer {
+
+    public enum SpanKind {
+        INTERNAL(1), SERVER(2), CLIENT(3);
+
+        private final int otlpValue;
+
+        SpanKind(int otlpValue) {
+            this.otlpValue = otlpValue;
+        }
+
+        public int getOtlpValue() {
+            return otlpValue;
+        }
+    }
+
+    private final SpanExporter exporter;
+    private final boolean enabled;
+    private final long sampleThreshold;
+
+    public Tracer(AppProperties appProperties, SpanExporter exporter) {
+        AppProperties.Tracing config = appProperties.getTracing();
+        this.exporter = exporter;
+        this.enabled = config.isEnabled() && config.getSampleRatio() > 0;
+        double ratio = config.getSampleRatio();
+        this.sampleThreshold = ratio >= 1.0 ? Long.MAX_VALUE : (long) (ratio * Long.MAX_VALUE);
+    }
+
+    public Span start(String name) {
+        return start(name, SpanKind.INTERNAL);
+    }
+
+    /**
+     * 开始 span, 以当前线程上下文中的 span 为父; 没有上下文时开启新的 trace
+     */
+    public Span start(String name, SpanKind kind) {
+        if (!enabled) {
+            return Span.NOOP;
+        }
+        TaskContext current = TaskContextHolder.current();
+        TaskContext context = current.getTraceId() != null ? current : TaskContext.forTask(current.getTaskId());
+        if (!isSampled(context.getTraceId())) {
+            if (context == current) {
+                return Span.NOOP;
+            }
+            // 新 trace 未采样: 仍需绑定 traceId, 让子 span 得到相同的采样结果
+            return new Span(null, context.getTraceId(), null, null, name, kind, TaskContextHolder.attach(context));
+        }
+        String spanId = newSpanId();
+        TaskContext previous = TaskContextHolder.attach(context.withSpanId(spanId));
+        return new Span(this, context.getTraceId(), spanId, context.getSpanId(), name, kind, previous);
+    }
+
+    public Map<String, Object> getMetrics() {
+        return exporter.getMetrics();
+    }
+
+    private boolean isSampled(String traceId) {
+        if (sampleThreshold == Long.MAX_VALUE) {
+            return true;
+        }
+        long lowBits = Long.parseUnsignedLong(traceId.substring(traceId.length() - 16), 16) & Long.MAX_VALUE;
+        return lowBits < sampleThreshold;
+    }
+
+    private static String newSpanId() {
+        return String.format("%016x", ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * 一个 span
+     * tracer 为 null 表示未采样, 关闭时只还原线程上下文
+     */
+    public static class Span implements AutoCloseable {
+        static final Span NOOP = new Span(null, null, null, null, null, SpanKind.INTERNAL, null) {
+            @Override
+            public void close() {
+            }
+        };
+
+        private final Tracer tracer;
+        private final String traceId;
+        private final String spanId;
+        private final String parentSpanId;
+        private String name;
+        private final SpanKind kind;
+        private final TaskContext previous;
+        private final long startEpochNanos;
+        private final long startNanoTime;
+        private long endEpochNanos;
+        private Map<String, Object> attributes;
+        private String errorMessage;
+        private boolean error;
+        private boolean closed;
+
+        private Span(Tracer tracer, String traceId, String spanId, String parentSpanId, String name,
+                     SpanKind kind, TaskContext previous) {
+            this.tracer = tracer;
+            this.traceId = traceId;
+            this.spanId = spanId;
+            this.parentSpanId = parentSpanId;
+            this.name = name;
+            this.kind = kind;
+            this.previous = previous;
+            if (tracer != null) {
+                Instant now = Instant.now();
+                this.startEpochNanos = now.getEpochSecond() * 1_000_000_000L + now.getNano();
+                this.startNanoTime = System.nanoTime();
+            } else {
+                this.startEpochNanos = 0;
+                this.startNanoTime = 0;
+            }
+        }
+
+        public boolean isRecording() {
+            return tracer != null;
+        }
+
+        /**
+         * 设置属性 (String / Long / Integer / Double / Boolean), 未采样时忽略
+         */
+        public Span attribute(String key, Object value) {
+            if (tracer != null && value != null) {
+                if (attributes == null) {
+                    attributes = new LinkedHashMap<>();
+                }
+                attributes.put(key, value);
+            }
+            return this;
+        }
+
+        /**
+         * 更新名称 (如请求结束后才知道路由模板)
+         */
+        public Span name(String name) {
+            if (tracer != null) {
+                this.name = name;
+            }
+            return this;
+        }
+
+        public Span error(String message) {
+            if (tracer != null) {
+                error = true;
+                errorMessage = message;
+            }
+            return this;
+        }
+
+        public Span error(Throwable throwable) {
+            if (tracer != null) {
+                attribute("exception.type", throwable.getClass().getName());
+            }
+            return error(throwable.getMessage());
+        }
+
+        /**
+         * 结束 span 并还原开始前的线程上下文
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            TaskContextHolder.restore(previous);
+            if (tracer != null) {
+                endEpochNanos = startEpochNanos + (System.nanoTime() - startNanoTime);
+                tracer.exporter.export(this);
+            }
+        }
+
+        public String getTraceId() { return traceId; }
+        public String getSpanId() { return spanId; }
+        public String getParentSpanId() { return parentSpanId; }
+        public String getName() { return name; }
+        public SpanKind getKind() { return kind; }
+        public long getStartEpochNanos() { return startEpochNanos; }
+        public long getEndEpochNanos() { return endEpochNanos; }
+        public Map<String, Object> getAttributes() { return attributes; }
+        public boolean isError() { return error; }
+        public String getErrorMessage() { return errorMessage; }
+    }
+}
@@ -7,6 +7,7 @@ import org.kolar.kolarcodercopilot.schema.JsonSchema;
 import org.kolar.kolarcodercopilot.schema.SchemaValidator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.ResolvableType;
 
 import java.util.concurrent.CompletableFuture;
 
@@ -47,6 +48,15 @@ public abstract class BaseTool<P> {
      */
     public void setSchemaValidator(SchemaValidator schemaValidator) {
         this.schemaValidator = schemaValidator;
+        // 按参数类型预编译schema, 调用时不再编译
+        schemaValidator.precompile(parameterSchema, getParameterType());
+    }
+
+    /**
+     * 参数类型 (泛型参数 P)
+     */
+    public Class<?> getParameterType() {
+        return ResolvableType.forClass(getClass()).as(BaseTool.class).getGeneric(0).resolve();
     }
 
     /**
@@ -60,7 +70,7 @@ public abstract class BaseTool<P> {
             return null;
         }
         try{
-            return schemaValidator.validator(parameterSchema, params);
+            return schemaValidator.validate(parameterSchema, params);
         }catch (Exception e){
             logger.error("Fatal validate err:", e);
             return "Param validation failed: " + e.getMessage();
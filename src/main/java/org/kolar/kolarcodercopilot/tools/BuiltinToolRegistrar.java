@@ -0,0 +1,28 @@
+package org.kolar.kolarcodercopilot.tools;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+
+/**
+ * 内置工具注册
+ * 所有单例创建完成后把内置工具注册到工具注册表, 构建 ChatClient 本身不产生副作用
+ * (SmartEditTool 依赖 ChatClient, 在此处注册也避免了循环依赖)
+ */
+@Component
+public class BuiltinToolRegistrar implements SmartInitializingSingleton {
+
+    private final ToolRegistry toolRegistry;
+    private final ToolDispatcher toolDispatcher;
+    private final SmartEditTool smartEditTool;
+
+    public BuiltinToolRegistrar(ToolRegistry toolRegistry, ToolDispatcher toolDispatcher, SmartEditTool smartEditTool) {
+        this.toolRegistry = toolRegistry;
+        this.toolDispatcher = toolDispatcher;
+        this.smartEditTool = smartEditTool;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        toolRegistry.register(ToolRegistry.ToolType.SYSTEM, "builtin", toolDispatcher.createCallbacks(smartEditTool));
+    }
+}
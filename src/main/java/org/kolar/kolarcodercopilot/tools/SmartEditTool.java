@@ -2,9 +2,14 @@ package org.kolar.kolarcodercopilot.tools;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.kolar.kolarcodercopilot.config.AppProperties;
+import org.kolar.kolarcodercopilot.config.TaskContextHolder;
 import org.kolar.kolarcodercopilot.model.ProjectContext;
+import org.kolar.kolarcodercopilot.model.TaskStage;
 import org.kolar.kolarcodercopilot.schema.JsonSchema;
 import org.kolar.kolarcodercopilot.service.ProjectContextAnalyzer;
+import org.kolar.kolarcodercopilot.service.StageMetrics;
+import org.kolar.kolarcodercopilot.service.TokenAccountingService;
+import org.kolar.kolarcodercopilot.service.Tracer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
@@ -40,6 +45,12 @@ public class SmartEditTool extends BaseTool<SmartEditTool.SmartEditParams>{
     private final AppProperties appProperties;
     @Autowired
     private ChatModel chatModel;
+    @Autowired
+    private StageMetrics stageMetrics;
+    @Autowired
+    private Tracer tracer;
+    @Autowired
+    private TokenAccountingService tokenAccounting;
 
     public SmartEditTool(AppProperties appProperties){
         super(
@@ -115,8 +126,8 @@ public class SmartEditTool extends BaseTool<SmartEditTool.SmartEditParams>{
                 return validation;
             }
 
-            // execute the tool
-            ToolResult result = execute(params).join(); // 异步执行
+            // execute the tool (同步执行: 已运行在调用方线程上, 不再占用任务执行器的第二个线程)
+            ToolResult result = executeEdit(params);
             if(result.isSuccess()){
                 return result.getLlmContent();
             }else {
@@ -132,7 +143,8 @@ public class SmartEditTool extends BaseTool<SmartEditTool.SmartEditParams>{
 
     @Override
     public String validateToolParams(SmartEditParams params){
-        String baseValidation = super.validateToolParams(params);
+        // 按参数schema校验 (专用校验器)
+        String baseValidation = ValidatorToolParams(params);
         if (baseValidation != null) {
             return baseValidation;
         }
@@ -166,35 +178,56 @@ public class SmartEditTool extends BaseTool<SmartEditTool.SmartEditParams>{
 
     @Override
     public CompletableFuture<ToolResult> execute(SmartEditParams params) {
-        // CompleteFuture异步编程 处理AI延迟调用
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                logger.info("Starting smart edit for project:{}", params.getProjectPath());
-                logger.info("Edit description:{}", params.getEditDescription());
-
-                // 1. 分析项目上下文
-                Path projectPath = Paths.get(rootDirectory, params.getProjectPath());
-                ProjectContext context = projectContextAnalyzer.analyzeProject(projectPath);
-
-                // 2. 构建执行计划
-                EditPlan plan = generateEditPlan(params, context);
-                if(params.dryRun || params.getDryRun() != null){
-                    return ToolResult.success("Dry run completed. Edit plan successfully.",
-                            plan.toString()
-                    );
-                }
-                // 3. 执行执行计划
-               EditResult result = excuteEditPlan(plan);
-                logger.info("Smart edit result for project:{}", params.getProjectPath());
-                return ToolResult.success(
-                        result.getSummary(),
-                        result.getDetails()
+        return CompletableFuture.completedFuture(executeEdit(params));
+    }
+
+    /**
+     * 在当前线程上执行编辑 (工具调用线程即任务线程, 任务上下文已绑定)
+     */
+    private ToolResult executeEdit(SmartEditParams params) {
+        try {
+            logger.info("Starting smart edit for project:{}", params.getProjectPath());
+            logger.info("Edit description:{}", params.getEditDescription());
+
+            String taskId = TaskContextHolder.getCurrentTaskId();
+
+            // 1. 分析项目上下文
+            long stageStart = System.nanoTime();
+            Path projectPath = Paths.get(rootDirectory, params.getProjectPath());
+            ProjectContext context;
+            try (Tracer.Span span = tracer.start("smart_edit.analysis").attribute("project.root", params.getProjectPath())) {
+                context = projectContextAnalyzer.analyzeProject(projectPath);
+            }
+            stageMetrics.record(taskId, TaskStage.EDIT_ANALYSIS, stageStart, params.getProjectPath());
+
+            // 2. 构建执行计划
+            stageStart = System.nanoTime();
+            EditPlan plan;
+            try (Tracer.Span span = tracer.start("smart_edit.plan")) {
+                plan = generateEditPlan(params, context);
+            }
+            stageMetrics.record(taskId, TaskStage.EDIT_PLAN, stageStart, params.getProjectPath());
+            if(params.dryRun || params.getDryRun() != null){
+                return ToolResult.success("Dry run completed. Edit plan successfully.",
+                        plan.toString()
                 );
-            }catch (Exception e){
-                logger.error("Error during smart edit execution", e);
-                return ToolResult.error(e.getMessage());
             }
-        });
+            // 3. 执行执行计划
+            stageStart = System.nanoTime();
+            EditResult result;
+            try (Tracer.Span span = tracer.start("smart_edit.execute")) {
+                result = excuteEditPlan(plan);
+            }
+            stageMetrics.record(taskId, TaskStage.EDIT_EXECUTE, stageStart, params.getProjectPath());
+            logger.info("Smart edit result for project:{}", params.getProjectPath());
+            return ToolResult.success(
+                    result.getSummary(),
+                    result.getDetails()
+            );
+        }catch (Exception e){
+            logger.error("Error during smart edit execution", e);
+            return ToolResult.error(e.getMessage());
+        }
     }
 
     /**
@@ -264,6 +297,9 @@ public class SmartEditTool extends BaseTool<SmartEditTool.SmartEditParams>{
                     .call()
                     .chatResponse();
             String aiResponse = response.getResult().getOutput().getText();
+            // 计入当前任务/会话的 token 用量 (来源为工具名)
+            tokenAccounting.record(TaskContextHolder.getCurrentTaskId(), getName(),
+                    response.getMetadata().getUsage(), message, aiResponse);
             steps = parseEditStepFromAI(aiResponse, params);
 
         }catch (Exception e){
@@ -0,0 +1,303 @@
+package org.kolar.kolarcodercopilot.tools;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.kolar.kolarcodercopilot.config.TaskContext;
+import org.kolar.kolarcodercopilot.config.TaskContextHolder;
+import org.kolar.kolarcodercopilot.config.ToolCallLoggingAspect;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.execution.ToolCallResultConverter;
+import org.springframework.ai.tool.execution.ToolExecutionException;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+import org.springframework.ai.tool.support.ToolDefinitions;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 工具分发器
+ * 注册时为每个 @Tool 方法生成回调: 方法句柄预先绑定到未代理的工具对象并展开为 (Object[])Object,
+ * 每个参数预先生成从 JSON 到参数类型的转换器 (简单类型直接取值, 其余使用预建的 ObjectReader),
+ * 结果转换器按注解预先实例化; 调用时不做反射查找, 也不经过 AOP 代理,
+ * 工具调用的日志/推送/指标/追踪仍经 ToolCallLoggingAspect 处理一次;
+ * 流式调用的工具在 boundedElastic 线程上执行, 执行前绑定 ToolContext 中携带的任务上下文
+ */
+@Component
+public class ToolDispatcher {
+    private static final Logger logger = LoggerFactory.getLogger(ToolDispatcher.class);
+
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+    private final ToolCallLoggingAspect toolCallAspect;
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    // 分发开销 (参数解析转换 + 结果转换, 不含工具执行)
+    private final LongAdder dispatches = new LongAdder();
+    private final LongAdder overheadNanos = new LongAdder();
+    private final AtomicLong maxOverheadNanos = new AtomicLong();
+
+    public ToolDispatcher(ToolCallLoggingAspect toolCallAspect) {
+        this.toolCallAspect = toolCallAspect;
+    }
+
+    /**
+     * 为工具对象上的全部 @Tool 方法生成回调
+     */
+    public ToolCallback[] createCallbacks(Object... toolObjects) {
+        List<ToolCallback> callbacks = new ArrayList<>();
+        for (Object toolObject : toolObjects) {
+            Object target = unwrap(toolObject);
+            Class<?> targetClass = AopUtils.getTargetClass(toolObject);
+            for (Method method : ReflectionUtils.getUniqueDeclaredMethods(targetClass, ReflectionUtils.USER_DECLARED_METHODS)) {
+                if (AnnotationUtils.findAnnotation(method, Tool.class) != null) {
+                    callbacks.add(createCallback(target, method));
+                }
+            }
+        }
+        return callbacks.toArray(new ToolCallback[0]);
+    }
+
+    public Map<String, Object> getMetrics() {
+        long count = dispatches.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("dispatches", count);
+        metrics.put("meanOverheadMicros", count > 0 ? overheadNanos.sum() / 1000.0 / count : 0.0);
+        metrics.put("maxOverheadMicros", maxOverheadNanos.get() / 1000.0);
+        return metrics;
+    }
+
+    private ToolCallback createCallback(Object target, Method method) {
+        Tool annotation = AnnotationUtils.findAnnotation(method, Tool.class);
+        ToolDefinition definition = ToolDefinitions.from(method);
+        try {
+            ReflectionUtils.makeAccessible(method);
+            MethodHandle invoker = lookup.unreflect(method)
+                    .bindTo(target)
+                    .asSpreader(Object[].class, method.getParameterCount())
+                    .asType(INVOKER_TYPE);
+            Parameter[] parameters = method.getParameters();
+            ParameterBinding[] bindings = new ParameterBinding[parameters.length];
+            for (int i = 0; i < parameters.length; i++) {
+                bindings[i] = bind(parameters[i]);
+            }
+            ToolCallResultConverter resultConverter = annotation.resultConverter().getDeclaredConstructor().newInstance();
+            logger.info("🔧 注册工具: name={}, method={}.{}, parameters={}", definition.name(),
+                    method.getDeclaringClass().getSimpleName(), method.getName(), bindings.length);
+            return new MethodHandleToolCallback(definition, ToolMetadata.from(method), method, invoker,
+                    bindings, resultConverter);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("无法注册工具方法: " + method, e);
+        }
+    }
+
+    /**
+     * 按参数类型预先生成转换器
+     */
+    private ParameterBinding bind(Parameter parameter) {
+        Class<?> type = parameter.getType();
+        if (ToolContext.class.isAssignableFrom(type)) {
+            return new ParameterBinding(null, null, (node, context) -> context);
+        }
+        Object defaultValue = type.isPrimitive() ? primitiveDefault(type) : null;
+        ArgumentConverter converter;
+        if (type == String.class) {
+            converter = (node, context) -> node.isTextual() ? node.textValue() : node.toString();
+        } else if (type == Boolean.class || type == boolean.class) {
+            converter = (node, context) -> node.isBoolean() ? node.booleanValue() : Boolean.parseBoolean(node.asText());
+        } else if (type == Integer.class || type == int.class) {
+            converter = (node, context) -> node.asInt();
+        } else if (type == Long.class || type == long.class) {
+            converter = (node, context) -> node.asLong();
+        } else if (type == Double.class || type == double.class) {
+            converter = (node, context) -> node.asDouble();
+        } else {
+            ObjectReader reader = objectMapper.readerFor(objectMapper.constructType(parameter.getParameterizedType()));
+            converter = (node, context) -> reader.readValue(node);
+        }
+        return new ParameterBinding(parameter.getName(), defaultValue, converter);
+    }
+
+    private static Object primitiveDefault(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == char.class) {
+            return '\0';
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == float.class) {
+            return 0f;
+        }
+        if (type == double.class) {
+            return 0d;
+        }
+        if (type == byte.class) {
+            return (byte) 0;
+        }
+        if (type == short.class) {
+            return (short) 0;
+        }
+        return 0;
+    }
+
+    /**
+     * 取得代理背后的工具对象 (单例目标)
+     */
+    private static Object unwrap(Object toolObject) {
+        Object current = toolObject;
+        Object target;
+        while ((target = AopProxyUtils.getSingletonTarget(current)) != null) {
+            current = target;
+        }
+        return current;
+    }
+
+    private void recordOverhead(long nanos) {
+        dispatches.increment();
+        overheadNanos.add(nanos);
+        long max;
+        while (nanos > (max = maxOverheadNanos.get()) && !maxOverheadNanos.compareAndSet(max, nanos)) {
+            // 重试
+        }
+    }
+
+    @FunctionalInterface
+    private interface ArgumentConverter {
+        Object convert(JsonNode node, ToolContext context) throws Exception;
+    }
+
+    /**
+     * 单个方法参数: JSON 属性名 (ToolContext 参数为 null) 与转换器
+     */
+    private static final class ParameterBinding {
+        private final String name;
+        private final Object defaultValue;
+        private final ArgumentConverter converter;
+
+        ParameterBinding(String name, Object defaultValue, ArgumentConverter converter) {
+            this.name = name;
+            this.defaultValue = defaultValue;
+            this.converter = converter;
+        }
+
+        Object resolve(JsonNode input, ToolContext context) throws Exception {
+            if (name == null) {
+                return converter.convert(null, context);
+            }
+            JsonNode node = input.get(name);
+            if (node == null || node.isNull()) {
+                return defaultValue;
+            }
+            return converter.convert(node, context);
+        }
+    }
+
+    /**
+     * 预绑定的工具回调
+     */
+    private final class MethodHandleToolCallback implements ToolCallback {
+        private final ToolDefinition definition;
+        private final ToolMetadata metadata;
+        private final String className;
+        private final String methodName;
+        private final Type returnType;
+        private final MethodHandle invoker;   // (Object[])Object
+        private final ParameterBinding[] bindings;
+        private final ToolCallResultConverter resultConverter;
+
+        MethodHandleToolCallback(ToolDefinition definition, ToolMetadata metadata, Method method, MethodHandle invoker,
+                                 ParameterBinding[] bindings, ToolCallResultConverter resultConverter) {
+            this.definition = definition;
+            this.metadata = metadata;
+            this.className = method.getDeclaringClass().getName();
+            this.methodName = method.getName();
+            this.returnType = method.getGenericReturnType();
+            this.invoker = invoker;
+            this.bindings = bindings;
+            this.resultConverter = resultConverter;
+        }
+
+        @Override
+        public ToolDefinition getToolDefinition() {
+            return definition;
+        }
+
+        @Override
+        public ToolMetadata getToolMetadata() {
+            return metadata;
+        }
+
+        @Override
+        public String call(String toolInput) {
+            return call(toolInput, null);
+        }
+
+        @Override
+        public String call(String toolInput, ToolContext toolContext) {
+            long startNanos = System.nanoTime();
+            Object[] args = new Object[bindings.length];
+            try {
+                JsonNode input = toolInput == null || toolInput.isBlank()
+                        ? objectMapper.createObjectNode() : objectMapper.readTree(toolInput);
+                for (int i = 0; i < bindings.length; i++) {
+                    args[i] = bindings[i].resolve(input, toolContext);
+                }
+            } catch (Exception e) {
+                throw new ToolExecutionException(definition, e);
+            }
+            long argumentNanos = System.nanoTime() - startNanos;
+
+            Object result;
+            TaskContext taskContext = toolContext != null
+                    ? TaskContextHolder.fromToolContext(toolContext.getContext()) : TaskContext.EMPTY;
+            TaskContext previous = taskContext != TaskContext.EMPTY ? TaskContextHolder.attach(taskContext) : null;
+            try {
+                result = toolCallAspect.aroundToolCall(className, methodName, args, () -> invoker.invokeExact(args));
+            } catch (RuntimeException e) {
+                throw e instanceof ToolExecutionException ? e : new ToolExecutionException(definition, e);
+            } catch (Throwable e) {
+                throw new ToolExecutionException(definition, e);
+            } finally {
+                if (taskContext != TaskContext.EMPTY) {
+                    TaskContextHolder.restore(previous);
+                }
+            }
+
+            long resultStart = System.nanoTime();
+            String output = resultConverter.convert(result, returnType);
+            recordOverhead(argumentNanos + System.nanoTime() - resultStart);
+            return output;
+        }
+
+        @Override
+        public String toString() {
+            return "MethodHandleToolCallback{" + definition.name() + "}";
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package org.kolar.kolarcodercopilot.tools;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.kolar.kolarcodercopilot.config.AppProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 工具注册表
+ * 持有不可变快照 (全部工具、已启用工具的回调列表、预先解析的工具描述), 注册与启用/禁用时
+ * 复制后以 CAS 原子替换; 每次模型调用只读取当前快照, 无锁, 也不在请求时序列化 schema
+ */
+@Component
+public class ToolRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(ToolRegistry.class);
+
+    public enum ToolType {
+        SYSTEM, // 内置工具
+        MCP     // MCP 服务器提供的工具
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Set<String> disabledOnStartup;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(Snapshot.EMPTY);
+
+    public ToolRegistry(AppProperties appProperties) {
+        this.disabledOnStartup = new HashSet<>(appProperties.getTools().getDisabled());
+    }
+
+    /**
+     * 注册工具 (同名工具替换原有注册, 保留其启用状态)
+     */
+    public void register(ToolType type, String source, ToolCallback... callbacks) {
+        List<ToolEntry> entries = new ArrayList<>();
+        for (ToolCallback callback : callbacks) {
+            entries.add(new ToolEntry(callback, describe(callback.getToolDefinition(), type, source)));
+        }
+        Snapshot updated = snapshot.updateAndGet(current -> {
+            Map<String, ToolEntry> tools = new LinkedHashMap<>(current.tools);
+            for (ToolEntry entry : entries) {
+                ToolEntry previous = tools.get(entry.descriptor.getName());
+                boolean enabled = previous != null ? previous.descriptor.isEnabled()
+                        : !disabledOnStartup.contains(entry.descriptor.getName());
+                tools.put(entry.descriptor.getName(), entry.withEnabled(enabled));
+            }
+            return new Snapshot(tools, current.version + 1);
+        });
+        logger.info("🧰 已注册工具: type={}, source={}, count={}, enabled={}/{}",
+                type, source, entries.size(), updated.enabledCallbacks.size(), updated.tools.size());
+    }
+
+    /**
+     * 启用/禁用工具
+     * @return 更新后的工具描述, 工具不存在时返回 null
+     */
+    public ToolDescriptor setEnabled(String toolName, boolean enabled) {
+        Snapshot updated = snapshot.updateAndGet(current -> {
+            ToolEntry entry = current.tools.get(toolName);
+            if (entry == null || entry.descriptor.isEnabled() == enabled) {
+                return current;
+            }
+            Map<String, ToolEntry> tools = new LinkedHashMap<>(current.tools);
+            tools.put(toolName, entry.withEnabled(enabled));
+            return new Snapshot(tools, current.version + 1);
+        });
+        ToolEntry entry = updated.tools.get(toolName);
+        if (entry == null) {
+            return null;
+        }
+        logger.info("🧰 工具{}: name={}, version={}", enabled ? "已启用" : "已禁用", toolName, updated.version);
+        return entry.descriptor;
+    }
+
+    /**
+     * 当前启用的工具回调 (不可变, 每次模型调用读取)
+     */
+    public List<ToolCallback> getEnabledCallbacks() {
+        return snapshot.get().enabledCallbacks;
+    }
+
+    public List<ToolDescriptor> getDescriptors() {
+        return snapshot.get().descriptors;
+    }
+
+    public List<ToolDescriptor> getDescriptors(ToolType type) {
+        List<ToolDescriptor> result = new ArrayList<>();
+        for (ToolDescriptor descriptor : snapshot.get().descriptors) {
+            if (descriptor.getType() == type) {
+                result.add(descriptor);
+            }
+        }
+        return result;
+    }
+
+    public long getVersion() {
+        return snapshot.get().version;
+    }
+
+    /**
+     * 注册时解析一次输入 schema, 生成前端展示用的参数列表
+     */
+    private ToolDescriptor describe(ToolDefinition definition, ToolType type, String source) {
+        List<ToolDescriptor.ParameterDescriptor> parameters = new ArrayList<>();
+        try {
+            JsonNode schema = objectMapper.readTree(definition.inputSchema());
+            Set<String> required = new HashSet<>();
+            schema.path("required").forEach(node -> required.add(node.asText()));
+            Iterator<Map.Entry<String, JsonNode>> properties = schema.path("properties").fields();
+            while (properties.hasNext()) {
+                Map.Entry<String, JsonNode> property = properties.next();
+                JsonNode value = property.getValue();
+                parameters.add(new ToolDescriptor.ParameterDescriptor(property.getKey(),
+                        value.path("type").asText("object"),
+                        value.path("description").asText(""),
+                        required.contains(property.getKey())));
+            }
+        } catch (IOException e) {
+            logger.warn("解析工具 schema 失败: tool={}, error={}", definition.name(), e.getMessage());
+        }
+        return new ToolDescriptor(definition.name(), definition.description(), type, source, true, parameters);
+    }
+
+    /**
+     * 注册表快照 (不可变)
+     */
+    private static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(Map.of(), 0);
+
+        private final Map<String, ToolEntry> tools;
+        private final List<ToolCallback> enabledCallbacks;
+        private final List<ToolDescriptor> descriptors;
+        private final long version;
+
+        Snapshot(Map<String, ToolEntry> tools, long version) {
+            this.tools = Collections.unmodifiableMap(new LinkedHashMap<>(tools));
+            List<ToolCallback> enabled = new ArrayList<>();
+            List<ToolDescriptor> all = new ArrayList<>();
+            for (ToolEntry entry : tools.values()) {
+                all.add(entry.descriptor);
+                if (entry.descriptor.isEnabled()) {
+                    enabled.add(entry.callback);
+                }
+            }
+            this.enabledCallbacks = List.copyOf(enabled);
+            this.descriptors = List.copyOf(all);
+            this.version = version;
+        }
+    }
+
+    private static final class ToolEntry {
+        private final ToolCallback callback;
+        private final ToolDescriptor descriptor;
+
+        ToolEntry(ToolCallback callback, ToolDescriptor descriptor) {
+            this.callback = callback;
+            this.descriptor = descriptor;
+        }
+
+        ToolEntry withEnabled(boolean enabled) {
+            return descriptor.isEnabled() == enabled ? this : new ToolEntry(callback, descriptor.withEnabled(enabled));
+        }
+    }
+
+    /**
+     * 工具描述 (不可变, /api/tools 返回)
+     */
+    public static final class ToolDescriptor {
+        private final String name;
+        private final String description;
+        private final ToolType type;
+        private final String source;
+        private final boolean enabled;
+        private final List<ParameterDescriptor> parameters;
+
+        ToolDescriptor(String name, String description, ToolType type, String source, boolean enabled,
+                       List<ParameterDescriptor> parameters) {
+            this.name = name;
+            this.description = description;
+            this.type = type;
+            this.source = source;
+            this.enabled = enabled;
+            this.parameters = List.copyOf(parameters);
+        }
+
+        ToolDescriptor withEnabled(boolean enabled) {
+            return new ToolDescriptor(name, description, type, source, enabled, parameters);
+        }
+
+        public String getName() { return name; }
+        public String getDisplayName() { return name; }
+        public String getDescription() { return description; }
+        public ToolType getType() { return type; }
+        public String getSource() { return source; }
+        public boolean isEnabled() { return enabled; }
+        public List<ParameterDescriptor> getParameters() { return parameters; }
+
+        public static final class ParameterDescriptor {
+            private final String name;
+            private final String type;
+            private final String description;
+            private final boolean required;
+
+            ParameterDescriptor(String name, String type, String description, boolean required) {
+                this.name = name;
+                this.type = type;
+                this.description = description;
+                this.required = required;
+            }
+
+            public String getName() { return name; }
+            public String getType() { return type; }
+            public String getDescription() { return description; }
+            public boolean isRequired() { return required; }
+        }
+    }
+}
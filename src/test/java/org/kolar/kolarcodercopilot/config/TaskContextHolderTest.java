@@ -0,0 +1,101 @@
+package org.kolar.kolarcodercopilot.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * 任务上下文传播: 线程间 wrap 与 Reactor Context
+ */
+class TaskContextHolderTest {
+
+    @AfterEach
+    void clear() {
+        TaskContextHolder.clearCurrentTaskId();
+    }
+
+    @Test
+    void attachAndRestoreSwapSingleReference() {
+        TaskContext outer = TaskContext.forTask("outer");
+        TaskContext inner = outer.withSpanId("span-1");
+
+        assertNull(TaskContextHolder.attach(outer));
+        TaskContext previous = TaskContextHolder.attach(inner);
+        assertSame(outer, previous);
+        assertSame(inner, TaskContextHolder.current());
+        assertEquals(outer.getTraceId(), TaskContextHolder.current().getTraceId());
+
+        TaskContextHolder.restore(previous);
+        assertSame(outer, TaskContextHolder.current());
+        TaskContextHolder.restore(null);
+        assertSame(TaskContext.EMPTY, TaskContextHolder.current());
+    }
+
+    @Test
+    void wrappedExecutorCarriesSubmitterContextAndRestoresWorker() throws Exception {
+        ExecutorService worker = Executors.newSingleThreadExecutor();
+        try {
+            TaskContext workerContext = TaskContext.forTask("worker");
+            worker.submit(() -> TaskContextHolder.attach(workerContext)).get(5, TimeUnit.SECONDS);
+
+            TaskContext submitted = TaskContext.forTask("submitted");
+            TaskContextHolder.attach(submitted);
+            Executor wrapped = TaskContextHolder.wrap(worker);
+            List<TaskContext> seen = new CopyOnWriteArrayList<>();
+            wrapped.execute(() -> seen.add(TaskContextHolder.current()));
+            // 单线程按序执行: 包装的任务结束后工作线程恢复为它原有的上下文
+            Future<TaskContext> after = worker.submit(TaskContextHolder::current);
+
+            assertSame(workerContext, after.get(5, TimeUnit.SECONDS));
+            assertEquals(List.of(submitted), seen);
+        } finally {
+            worker.shutdownNow();
+        }
+    }
+
+    @Test
+    void reactorSignalsFromOtherThreadsSeeSubscriberContext() {
+        TaskContext context = TaskContext.forTask("stream-task");
+        TaskContextHolder.attach(context);
+        List<String> seen = new CopyOnWriteArrayList<>();
+
+        // 模拟 netty 线程发出的分片: 发出信号的线程上没有任务上下文
+        Flux.just("a", "b")
+                .publishOn(Schedulers.newSingle("netty-like"))
+                .doOnNext(chunk -> assertNull(TaskContextHolder.getCurrentTaskId()))
+                .doOnEach(TaskContextHolder.withReactorContext(chunk -> seen.add(TaskContextHolder.getCurrentTaskId())))
+                .doOnNext(chunk -> assertNull(TaskContextHolder.getCurrentTaskId()))
+                .contextWrite(TaskContextHolder.toReactorContext())
+                .blockLast();
+
+        assertEquals(List.of("stream-task", "stream-task"), seen);
+    }
+
+    @Test
+    void missingReactorContextKeepsThreadValue() {
+        TaskContext context = TaskContext.forTask("thread-task");
+        TaskContextHolder.attach(context);
+        List<String> seen = new CopyOnWriteArrayList<>();
+
+        Flux.just("a")
+                .doOnEach(TaskContextHolder.withReactorContext(chunk -> seen.add(TaskContextHolder.getCurrentTaskId())))
+                .blockLast();
+
+        assertEquals(List.of("thread-task"), seen);
+        assertSame(TaskContext.EMPTY, TaskContextHolder.fromReactorContext(Context.empty()));
+    }
+}
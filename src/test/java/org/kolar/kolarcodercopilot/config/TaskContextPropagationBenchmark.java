@@ -0,0 +1,89 @@
+package org.kolar.kolarcodercopilot.config;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import reactor.util.context.Context;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 任务上下文每次跨越边界 (hop) 的开销
+ * direct 为不传播上下文的基线, 其余项与基线的差即传播开销
+ * 运行: 执行 main 方法 (mvn test-compile 后在 IDE 中运行)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskContextPropagationBenchmark {
+
+    private final Executor sameThread = Runnable::run;
+    private Executor wrappedSameThread;
+    private TaskContext context;
+    private Blackhole blackhole;
+    private Runnable task;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        this.context = TaskContext.forTask("benchmark-task").withTimeout(60_000);
+        this.wrappedSameThread = TaskContextHolder.wrap(sameThread);
+        this.task = () -> this.blackhole.consume(TaskContextHolder.current());
+        TaskContextHolder.attach(context);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        TaskContextHolder.clearCurrentTaskId();
+    }
+
+    @Benchmark
+    public void direct() {
+        sameThread.execute(task);
+    }
+
+    @Benchmark
+    public void wrappedExecutorHop() {
+        wrappedSameThread.execute(task);
+    }
+
+    @Benchmark
+    public void wrapRunnable() {
+        TaskContextHolder.wrap(task).run();
+    }
+
+    @Benchmark
+    public TaskContext attachRestore() {
+        TaskContext previous = TaskContextHolder.attach(context);
+        TaskContextHolder.restore(previous);
+        return previous;
+    }
+
+    @Benchmark
+    public TaskContext reactorContextRoundTrip() {
+        Context reactorContext = TaskContextHolder.toReactorContext().apply(Context.empty());
+        return TaskContextHolder.fromReactorContext(reactorContext);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(TaskContextPropagationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
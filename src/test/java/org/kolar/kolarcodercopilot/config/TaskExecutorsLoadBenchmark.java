@@ -0,0 +1,110 @@
+package org.kolar.kolarcodercopilot.config;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 两种执行模式下 N 个并发阻塞任务 (模拟模型/工具 IO) 的吞吐与内存占用
+ * 得分为完成一批任务的耗时; 辅助计数 peakThreads 为批次执行中的平台线程数峰值 (虚拟线程不计入, 只计其载体线程),
+ * peakHeapMb 为堆占用峰值 (虚拟线程的栈保存在堆上); 分配速率可加 -prof gc 查看
+ * 平台模式的等待队列按批次大小配置, 只比较执行, 不触发拒绝
+ * 运行: 执行 main 方法 (mvn test-compile 后在 IDE 中运行, 虚拟线程需要 JDK 21+, 否则回退为平台线程池)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskExecutorsLoadBenchmark {
+
+    private static final long BLOCK_MILLIS = 20;
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    public AppProperties.ExecutionMode mode;
+
+    @Param({"1000", "10000"})
+    public int tasks;
+
+    private TaskExecutors executors;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        AppProperties properties = new AppProperties();
+        properties.getExecution().setMode(mode);
+        properties.getExecution().setPlatformQueueCapacity(tasks);
+        executors = new TaskExecutors(properties);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executors.shutdown();
+    }
+
+    @Benchmark
+    public void blockingTasks(Footprint footprint) throws Exception {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[tasks];
+        for (int i = 0; i < tasks; i++) {
+            futures[i] = executors.runAsync(() -> {
+                try {
+                    Thread.sleep(BLOCK_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        // 全部提交后任务仍在阻塞中, 此时采样
+        footprint.sample();
+        CompletableFuture.allOf(futures).get(5, TimeUnit.MINUTES);
+    }
+
+    /**
+     * 每轮迭代的线程数与堆占用峰值
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        private final MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+
+        public long peakThreads;
+        public long peakHeapMb;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            peakThreads = 0;
+            peakHeapMb = 0;
+        }
+
+        void sample() {
+            peakThreads = Math.max(peakThreads, threadMXBean.getThreadCount());
+            peakHeapMb = Math.max(peakHeapMb, memoryMXBean.getHeapMemoryUsage().getUsed() >> 20);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(TaskExecutorsLoadBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,164 @@
+package org.kolar.kolarcodercopilot.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 任务执行器: 两种执行模式下的阻塞任务吞吐, 平台线程池的有界队列与上下文传播
+ * 更大批次下的吞吐与内存对比见 {@link TaskExecutorsLoadBenchmark}
+ */
+class TaskExecutorsTest {
+
+    private static final int POOL_SIZE = 4;
+    private static final int TASKS = 64;
+    private static final long BLOCK_MILLIS = 50;
+
+    private final List<TaskExecutors> created = new ArrayList<>();
+
+    @AfterEach
+    void shutdown() {
+        created.forEach(TaskExecutors::shutdown);
+    }
+
+    @Test
+    void platformModeCompletesMoreBlockingTasksThanThreads() throws Exception {
+        TaskExecutors executors = create(AppProperties.ExecutionMode.PLATFORM);
+
+        long elapsed = runBlockingTasks(executors);
+
+        // 平台线程池按 POOL_SIZE 分批执行, 耗时不低于 TASKS / POOL_SIZE 批
+        assertTrue(elapsed >= TASKS / POOL_SIZE * BLOCK_MILLIS, "elapsed=" + elapsed);
+        // 线程数不随任务数增长, 其余任务在队列中等待
+        assertEquals(POOL_SIZE, ((ThreadPoolExecutor) executors.getExecutor()).getLargestPoolSize());
+    }
+
+    @Test
+    void platformModeRejectsWhenPoolAndQueueAreFull() {
+        TaskExecutors executors = create(AppProperties.ExecutionMode.PLATFORM, 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // 一个占用线程, 一个在队列中等待
+            executors.runAsync(() -> await(release));
+            executors.runAsync(() -> await(release));
+
+            assertThrows(RejectedExecutionException.class, () -> executors.runAsync(() -> { }));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void periodicTaskSurvivesAFullExecutor() throws Exception {
+        TaskExecutors executors = create(AppProperties.ExecutionMode.PLATFORM, 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        ScheduledFuture<?> periodic;
+        try {
+            executors.runAsync(() -> await(release));
+            executors.runAsync(() -> await(release));
+
+            periodic = executors.scheduleAtFixedRate(runs::incrementAndGet, 0, 10, TimeUnit.MILLISECONDS);
+            Thread.sleep(100);
+            // 满载时跳过本次, 周期任务本身不被终止
+            assertEquals(0, runs.get());
+            assertFalse(periodic.isDone());
+        } finally {
+            release.countDown();
+        }
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (runs.get() == 0) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待超时");
+            Thread.sleep(10);
+        }
+        periodic.cancel(false);
+    }
+
+    @Test
+    void virtualModeIsNotBoundByPoolSize() throws Exception {
+        TaskExecutors executors = create(AppProperties.ExecutionMode.VIRTUAL);
+        assumeTrue(executors.isVirtual(), "虚拟线程需要 JDK 21+");
+
+        long platformElapsed = runBlockingTasks(create(AppProperties.ExecutionMode.PLATFORM));
+        long virtualElapsed = runBlockingTasks(executors);
+
+        assertTrue(virtualElapsed < platformElapsed,
+                "virtual=" + virtualElapsed + "ms, platform=" + platformElapsed + "ms");
+    }
+
+    @Test
+    void propagatesTaskContextToExecutorAndScheduledTasks() throws Exception {
+        TaskExecutors executors = create(AppProperties.ExecutionMode.PLATFORM);
+        TaskContext context = TaskContext.forTask("task-1");
+        TaskContext previous = TaskContextHolder.attach(context);
+        try {
+            CompletableFuture<TaskContext> async = executors.supplyAsync(TaskContextHolder::current);
+            CompletableFuture<TaskContext> scheduled = new CompletableFuture<>();
+            executors.schedule(() -> scheduled.complete(TaskContextHolder.current()), 10, TimeUnit.MILLISECONDS);
+
+            assertEquals(context, async.get(5, TimeUnit.SECONDS));
+            assertEquals(context, scheduled.get(5, TimeUnit.SECONDS));
+        } finally {
+            TaskContextHolder.restore(previous);
+        }
+        // 执行线程在任务结束后还原, 不泄漏到后续任务
+        assertEquals(TaskContext.EMPTY, executors.supplyAsync(TaskContextHolder::current).get(5, TimeUnit.SECONDS));
+    }
+
+    private TaskExecutors create(AppProperties.ExecutionMode mode) {
+        return create(mode, POOL_SIZE, TASKS);
+    }
+
+    private TaskExecutors create(AppProperties.ExecutionMode mode, int poolSize, int queueCapacity) {
+        AppProperties properties = new AppProperties();
+        properties.getExecution().setMode(mode);
+        properties.getExecution().setPlatformPoolSize(poolSize);
+        properties.getExecution().setPlatformQueueCapacity(queueCapacity);
+        TaskExecutors executors = new TaskExecutors(properties);
+        created.add(executors);
+        return executors;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 提交 TASKS 个阻塞任务 (模拟模型/工具 IO), 返回全部完成的耗时
+     */
+    private static long runBlockingTasks(TaskExecutors executors) throws Exception {
+        long start = System.nanoTime();
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[TASKS];
+        for (int i = 0; i < TASKS; i++) {
+            futures[i] = executors.runAsync(() -> {
+                try {
+                    Thread.sleep(BLOCK_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        CompletableFuture.allOf(futures).get(30, TimeUnit.SECONDS);
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,63 @@
+package org.kolar.kolarcodercopilot.config;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.model.ToolContext;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 工具参数解析: 任务日志中的参数记录 / 文件路径提取 / 截断
+ */
+class ToolArgumentsTest {
+
+    @Test
+    void argumentsAreRecordedInCallOrder() {
+        ArrayNode arguments = ToolArguments.toJson(new Object[] {"/work/App.java", 3, List.of("a", "b"), null,
+                new ToolContext(Map.of("taskId", "t1"))});
+
+        assertEquals("[\"/work/App.java\",3,[\"a\",\"b\"],null,\"<toolContext>\"]", ToolArguments.format(arguments));
+        assertNull(ToolArguments.format(ToolArguments.toJson(new Object[0])));
+        assertNull(ToolArguments.format(ToolArguments.toJson(null)));
+    }
+
+    @Test
+    void pathIsExtractedFromStringOrParameterObject() {
+        assertEquals("/work/App.java",
+                ToolArguments.extractPath(ToolArguments.toJson(new Object[] {"hello", "/work/App.java"})));
+        assertEquals("C:\\work\\App.java",
+                ToolArguments.extractPath(ToolArguments.toJson(new Object[] {"C:\\work\\App.java"})));
+        assertEquals("/work/project",
+                ToolArguments.extractPath(ToolArguments.toJson(new Object[] {new EditParams("/work/project", "重命名")})));
+        // 含换行的文本内容不视为路径
+        assertNull(ToolArguments.extractPath(ToolArguments.toJson(new Object[] {"a/b\nc/d", 1})));
+    }
+
+    @Test
+    void longArgumentsAreTruncated() {
+        String content = "x".repeat(ToolArguments.MAX_PARAMETERS_CHARS * 2);
+        String formatted = ToolArguments.format(ToolArguments.toJson(new Object[] {"/work/big.txt", content}));
+
+        assertTrue(formatted.startsWith("[\"/work/big.txt\",\"xxx"), formatted.substring(0, 40));
+        assertTrue(formatted.endsWith("...(truncated)"));
+        assertEquals(ToolArguments.MAX_PARAMETERS_CHARS + "...(truncated)".length(), formatted.length());
+    }
+
+    public static class EditParams {
+        private final String projectPath;
+        private final String description;
+
+        EditParams(String projectPath, String description) {
+            this.projectPath = projectPath;
+            this.description = description;
+        }
+
+        public String getProjectPath() { return projectPath; }
+        public String getDescription() { return description; }
+    }
+}
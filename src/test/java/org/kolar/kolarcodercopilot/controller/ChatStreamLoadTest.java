@@ -0,0 +1,176 @@
+package org.kolar.kolarcodercopilot.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kolar.kolarcodercopilot.config.AppProperties;
+import org.kolar.kolarcodercopilot.config.TaskExecutors;
+import org.kolar.kolarcodercopilot.dto.ChatRequestDto;
+import org.kolar.kolarcodercopilot.service.ChatHistoryStore;
+import org.kolar.kolarcodercopilot.tools.ToolRegistry;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.Flux;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * /api/chat/stream 并发负载: 大量并发流全部完成且向模型的需求有界, 客户端断开时取消上游模型流
+ * 模型流为按固定间隔输出 token 的模拟流
+ */
+class ChatStreamLoadTest {
+
+    private static final int STREAMS = 200;
+    private static final int TOKENS = 50;
+    private static final int PREFETCH = 8;
+
+    @TempDir
+    Path storageDir;
+
+    private TaskExecutors taskExecutors;
+    private ChatHistoryStore chatHistoryStore;
+    private ChatController controller;
+
+    // 模拟模型流的状态
+    private final AtomicInteger activeModelStreams = new AtomicInteger();
+    private final AtomicInteger cancelledModelStreams = new AtomicInteger();
+    private final AtomicLong emittedTokens = new AtomicLong();
+    private final AtomicLong maxRequest = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        AppProperties properties = new AppProperties();
+        properties.getSession().setStorageDirectory(storageDir.toString());
+        properties.getSession().setMaxHotSessions(STREAMS * 2);
+        properties.getStreaming().setPrefetch(PREFETCH);
+        taskExecutors = new TaskExecutors(properties);
+        chatHistoryStore = new ChatHistoryStore(properties, taskExecutors);
+
+        ChatClient chatClient = mock(ChatClient.class, RETURNS_DEEP_STUBS);
+        when(chatClient.prompt().messages(anyList()).toolCallbacks(anyList()).stream().content())
+                .thenAnswer(invocation -> modelStream());
+        controller = new ChatController(chatClient, null, null, taskExecutors, chatHistoryStore, properties,
+                new ToolRegistry(properties));
+    }
+
+    @AfterEach
+    void tearDown() {
+        chatHistoryStore.stopSweeper();
+        taskExecutors.shutdown();
+    }
+
+    @Test
+    void concurrentStreamsCompleteWithBoundedDemand() {
+        List<List<String>> results = Flux.range(0, STREAMS)
+                .flatMap(i -> controller.streamMessage(new ChatRequestDto("hello " + i, "s" + i))
+                        .map(ServerSentEvent::data)
+                        .collectList(), STREAMS)
+                .collectList()
+                .block(Duration.ofSeconds(60));
+
+        assertEquals(STREAMS, results.size());
+        for (List<String> events : results) {
+            assertEquals(TOKENS + 1, events.size());
+            assertEquals("[complete]", events.get(TOKENS));
+        }
+        // limitRate: 每个流向模型的单次请求不超过 prefetch
+        assertTrue(maxRequest.get() <= PREFETCH, "maxRequest=" + maxRequest.get());
+        assertEquals(0, activeModelStreams.get());
+        assertEquals(0, cancelledModelStreams.get());
+        for (int i = 0; i < STREAMS; i++) {
+            assertEquals(List.of("hello " + i, fullReply()), texts(chatHistoryStore.getHistory("s" + i)));
+        }
+    }
+
+    @Test
+    void disconnectedClientsCancelTheModelStream() {
+        int received = 5;
+        List<List<String>> results = Flux.range(0, STREAMS)
+                .flatMap(i -> controller.streamMessage(new ChatRequestDto("hello " + i, "s" + i))
+                        .map(ServerSentEvent::data)
+                        // 客户端收到几条后断开
+                        .take(received)
+                        .collectList(), STREAMS)
+                .collectList()
+                .block(Duration.ofSeconds(60));
+
+        assertEquals(STREAMS, results.size());
+        results.forEach(events -> assertEquals(received, events.size()));
+        assertEquals(STREAMS, cancelledModelStreams.get());
+        assertTrue(emittedTokens.get() < (long) STREAMS * TOKENS, "emitted=" + emittedTokens.get());
+        awaitTrue(() -> activeModelStreams.get() == 0);
+
+        // 部分回复异步写入历史
+        String partialReply = reply(received);
+        awaitTrue(() -> {
+            for (int i = 0; i < STREAMS; i++) {
+                if (chatHistoryStore.getHistory("s" + i).size() < 2) {
+                    return false;
+                }
+            }
+            return true;
+        });
+        for (int i = 0; i < STREAMS; i++) {
+            assertEquals(List.of("hello " + i, partialReply), texts(chatHistoryStore.getHistory("s" + i)));
+        }
+    }
+
+    private Flux<String> modelStream() {
+        return Flux.range(0, TOKENS)
+                .delayElements(Duration.ofMillis(1))
+                .map(ChatStreamLoadTest::token)
+                .doOnSubscribe(subscription -> activeModelStreams.incrementAndGet())
+                .doOnRequest(n -> maxRequest.accumulateAndGet(n, Math::max))
+                .doOnNext(token -> emittedTokens.incrementAndGet())
+                .doOnCancel(cancelledModelStreams::incrementAndGet)
+                .doFinally(signal -> activeModelStreams.decrementAndGet());
+    }
+
+    private static String token(int index) {
+        return "t" + index + " ";
+    }
+
+    private static String fullReply() {
+        return reply(TOKENS);
+    }
+
+    private static String reply(int tokens) {
+        StringBuilder reply = new StringBuilder();
+        for (int i = 0; i < tokens; i++) {
+            reply.append(token(i));
+        }
+        return reply.toString();
+    }
+
+    private static List<String> texts(List<Message> messages) {
+        return messages.stream().map(Message::getText).collect(Collectors.toList());
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待超时");
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package org.kolar.kolarcodercopilot.schema;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.networknt.schema.JsonSchemaFactory;
+import com.networknt.schema.SpecVersion;
+import com.networknt.schema.ValidationMessage;
+import org.kolar.kolarcodercopilot.schema.ValidatorCompilerTest.EditParams;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每次工具调用的参数校验开销
+ * recompileEachCall 为改动前的写法: 每次把 schema 序列化为字符串重新编译, 参数经字符串往返再校验;
+ * cachedSchema 为按实例缓存的 networknt 校验, specialized 为预编译的专用校验器
+ * 运行: 执行 main 方法 (mvn test-compile 后在 IDE 中运行)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SchemaValidationBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final JsonSchemaFactory schemaFactory = JsonSchemaFactory.getInstance(SpecVersion.VersionFlag.V7);
+    private final SchemaValidator cached = new SchemaValidator();
+    private final SchemaValidator specialized = new SchemaValidator();
+    private JsonSchema schema;
+    private EditParams params;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        schema = ValidatorCompilerTest.editSchema();
+        params = EditParams.valid();
+        specialized.precompile(schema, EditParams.class);
+        cached.validate(schema, params);
+    }
+
+    @Benchmark
+    public Set<ValidationMessage> recompileEachCall() throws Exception {
+        com.networknt.schema.JsonSchema compiled = schemaFactory.getSchema(objectMapper.writeValueAsString(schema));
+        return compiled.validate(objectMapper.readTree(objectMapper.writeValueAsString(params)));
+    }
+
+    @Benchmark
+    public String cachedSchema() {
+        return cached.validate(schema, params);
+    }
+
+    @Benchmark
+    public String specialized() {
+        return specialized.validate(schema, params);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(SchemaValidationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
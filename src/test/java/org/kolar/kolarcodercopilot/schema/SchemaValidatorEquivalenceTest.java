@@ -0,0 +1,98 @@
+package org.kolar.kolarcodercopilot.schema;
+
+import org.junit.jupiter.api.Test;
+import org.kolar.kolarcodercopilot.schema.ValidatorCompilerTest.EditParams;
+import org.kolar.kolarcodercopilot.schema.ValidatorCompilerTest.SparseParams;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * 专用校验器与 networknt 通用校验器对同一输入的结果一致
+ */
+class SchemaValidatorEquivalenceTest {
+
+    private final JsonSchema editSchema = ValidatorCompilerTest.editSchema();
+    private final JsonSchema sparseSchema = JsonSchema.object()
+            .addProperty("name", JsonSchema.String("name"))
+            .addProperty("note", JsonSchema.String("note").pattern("^[a-z]+$"))
+            .required("name");
+
+    // 未预编译的实例只走 networknt
+    private final SchemaValidator generic = new SchemaValidator();
+    private final SchemaValidator specialized = new SchemaValidator();
+
+    SchemaValidatorEquivalenceTest() {
+        specialized.precompile(editSchema, EditParams.class);
+        specialized.precompile(sparseSchema, SparseParams.class);
+    }
+
+    @Test
+    void editParamsMatchGenericValidator() {
+        assertEquivalent(params -> { });
+        assertEquivalent(params -> params.setFilePath(null));
+        assertEquivalent(params -> params.setFilePath("relative/App.java"));
+        assertEquivalent(params -> params.setMode("delete"));
+        assertEquivalent(params -> params.setMode(null));
+        assertEquivalent(params -> params.setLines(0));
+        assertEquivalent(params -> params.setLines(101));
+        assertEquivalent(params -> params.setLines(null));
+        assertEquivalent(params -> params.setRatio(1.0 / 4));
+        assertEquivalent(params -> params.setRatio(null));
+        assertEquivalent(params -> params.setTags(Arrays.asList("a", null)));
+        assertEquivalent(params -> params.setTags(Arrays.asList("a", 2, true)));
+        assertEquivalent(params -> params.setTags(null));
+        assertEquivalent(params -> {
+            params.setFilePath("relative");
+            params.setLines(-5);
+            params.setMode("other");
+        });
+    }
+
+    @Test
+    void omittedNullsMatchGenericValidator() {
+        assertSparseEquivalent(new SparseParams("a", null));
+        assertSparseEquivalent(new SparseParams(null, null));
+        assertSparseEquivalent(new SparseParams(null, "Not-Lower"));
+        assertSparseEquivalent(new SparseParams("a", "lower"));
+    }
+
+    @Test
+    void nonFiniteNumbersAreRejectedByBoth() {
+        for (double value : new double[] {Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY}) {
+            EditParams params = EditParams.valid();
+            params.setRatio(value);
+            // networknt 无法把非有限值转为 BigDecimal 比较枚举, 只比较是否通过
+            assertNotNull(generic.validate(editSchema, params), "generic " + value);
+            assertNotNull(specialized.validate(editSchema, params), "specialized " + value);
+        }
+    }
+
+    private void assertEquivalent(Consumer<EditParams> mutation) {
+        EditParams params = EditParams.valid();
+        mutation.accept(params);
+        assertEquals(normalize(generic.validate(editSchema, params)), normalize(specialized.validate(editSchema, params)));
+    }
+
+    private void assertSparseEquivalent(SparseParams params) {
+        assertEquals(normalize(generic.validate(sparseSchema, params)), normalize(specialized.validate(sparseSchema, params)));
+    }
+
+    /**
+     * 错误信息集合 (顺序无关); 枚举列表中数值的写法两边不同, 只比较到关键字
+     */
+    private static Set<String> normalize(String errors) {
+        Set<String> messages = new TreeSet<>();
+        if (errors != null) {
+            for (String message : errors.split(";")) {
+                messages.add(message.replaceAll("enumeration .*$", "enumeration"));
+            }
+        }
+        return messages;
+    }
+}
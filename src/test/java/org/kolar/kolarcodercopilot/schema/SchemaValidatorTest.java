@@ -0,0 +1,91 @@
+package org.kolar.kolarcodercopilot.schema;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 通用校验器: 编译结果按 JsonSchema 实例缓存 / JsonNode 输入 / 并发校验
+ */
+class SchemaValidatorTest {
+
+    private final SchemaValidator validator = new SchemaValidator();
+
+    @Test
+    void compiledSchemaIsCachedPerInstance() {
+        JsonSchema schema = pathSchema();
+        assertNull(validator.validate(schema, Map.of("path", "/a")));
+
+        // 缓存按实例: 首次校验后修改 schema 不会重新编译 (工具参数 schema 构造后不再修改)
+        schema.required("path", "limit");
+        assertNull(validator.validate(schema, Map.of("path", "/a")));
+
+        JsonSchema rebuilt = pathSchema().required("path", "limit");
+        String errors = validator.validate(rebuilt, Map.of("path", "/a"));
+        assertNotNull(errors);
+        assertTrue(errors.contains("limit"), errors);
+    }
+
+    @Test
+    void jsonNodeInputMatchesObjectInput() {
+        JsonSchema schema = pathSchema();
+        Map<String, Object> invalid = Map.of("path", "relative", "limit", 0);
+
+        String fromObject = validator.validate(schema, invalid);
+        String fromNode = validator.validate(schema, new ObjectMapper().valueToTree(invalid));
+
+        assertNotNull(fromObject);
+        assertEquals(messages(fromObject), messages(fromNode));
+        assertNull(validator.validate(schema, new ObjectMapper().valueToTree(Map.of("path", "/a", "limit", 5))));
+    }
+
+    @Test
+    void concurrentValidationSharesOneCompiledSchema() throws Exception {
+        JsonSchema schema = pathSchema();
+        String expected = validator.validate(schema, Map.of("path", "relative"));
+        assertNotNull(expected);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                boolean valid = i % 2 == 0;
+                results.add(executor.submit(() -> validator.validate(schema, Map.of("path", valid ? "/a" : "relative"))));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                String errors = results.get(i).get(10, TimeUnit.SECONDS);
+                if (i % 2 == 0) {
+                    assertNull(errors);
+                } else {
+                    assertEquals(expected, errors);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static JsonSchema pathSchema() {
+        return JsonSchema.object()
+                .addProperty("path", JsonSchema.String("路径").pattern("^/"))
+                .addProperty("limit", JsonSchema.integer("条数").minimum(1))
+                .required("path");
+    }
+
+    private static Set<String> messages(String errors) {
+        return Set.of(errors.split(";"));
+    }
+}
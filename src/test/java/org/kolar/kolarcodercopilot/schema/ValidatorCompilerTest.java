@@ -0,0 +1,156 @@
+package org.kolar.kolarcodercopilot.schema;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 专用校验器编译: 支持范围, null 的序列化规则, 非有限数值
+ */
+class ValidatorCompilerTest {
+
+    private final ValidatorCompiler compiler = new ValidatorCompiler(new ObjectMapper());
+
+    @Test
+    void compilesFlatSchemaWithSimpleConstraints() {
+        CompiledValidator validator = compiler.compile(editSchema(), EditParams.class);
+
+        assertNotNull(validator);
+        assertEquals(EditParams.class, validator.getParameterType());
+        assertEquals(5, validator.getPropertyCount());
+        assertNull(validator.validate(EditParams.valid()));
+    }
+
+    @Test
+    void fallsBackForUnsupportedSchemas() {
+        JsonSchema nested = JsonSchema.object()
+                .addProperty("filePath", JsonSchema.object().addProperty("inner", JsonSchema.String("inner")));
+        JsonSchema badRegex = JsonSchema.object().addProperty("filePath", JsonSchema.String("path").pattern("(?<"));
+        JsonSchema unknownProperty = JsonSchema.object().addProperty("missing", JsonSchema.String("missing"));
+
+        assertNull(compiler.compile(nested, EditParams.class));
+        assertNull(compiler.compile(badRegex, EditParams.class));
+        assertNull(compiler.compile(unknownProperty, EditParams.class));
+        // NON_EMPTY 会省略空字符串, 序列化结果取决于取值, 交给通用校验器
+        assertNull(compiler.compile(JsonSchema.object().addProperty("name", JsonSchema.String("name")), EmptyOmittingParams.class));
+    }
+
+    @Test
+    void nullIsJsonNullUnlessJacksonOmitsIt() {
+        CompiledValidator always = compiler.compile(editSchema(), EditParams.class);
+        EditParams params = EditParams.valid();
+        params.setMode(null);
+        params.setLines(null);
+
+        // 默认包含规则下 null 写为 JSON null: 可选属性同样需要满足 type
+        assertEquals(Set.of("$.mode: null found, string expected",
+                        "$.mode: does not have a value in the enumeration [replace, append]",
+                        "$.lines: null found, integer expected"),
+                Set.of(always.validate(params).split(";")));
+
+        JsonSchema sparseSchema = JsonSchema.object()
+                .addProperty("name", JsonSchema.String("name"))
+                .addProperty("note", JsonSchema.String("note"))
+                .required("name");
+        CompiledValidator omitting = compiler.compile(sparseSchema, SparseParams.class);
+        assertNotNull(omitting);
+        // NON_NULL: null 属性不输出, 即未提供
+        assertNull(omitting.validate(new SparseParams("a", null)));
+        assertEquals("$.name: is missing but it is required", omitting.validate(new SparseParams(null, "n")));
+    }
+
+    @Test
+    void nonFiniteNumbersDoNotThrow() {
+        CompiledValidator validator = compiler.compile(editSchema(), EditParams.class);
+        EditParams params = EditParams.valid();
+
+        params.setRatio(Double.NaN);
+        assertEquals("$.ratio: does not have a value in the enumeration [0.5, 1]", validator.validate(params));
+        params.setRatio(Double.POSITIVE_INFINITY);
+        assertEquals("$.ratio: does not have a value in the enumeration [0.5, 1]", validator.validate(params));
+    }
+
+    @Test
+    void nullArrayItemsAreReported() {
+        CompiledValidator validator = compiler.compile(editSchema(), EditParams.class);
+        EditParams params = EditParams.valid();
+        params.setTags(Arrays.asList("a", null, 3));
+
+        assertEquals(Set.of("$.tags[1]: null found, string expected", "$.tags[2]: integer found, string expected"),
+                Set.of(validator.validate(params).split(";")));
+    }
+
+    static JsonSchema editSchema() {
+        return JsonSchema.object()
+                .addProperty("filePath", JsonSchema.String("文件路径").pattern("^/"))
+                .addProperty("mode", JsonSchema.String("编辑方式").enumValues("replace", "append"))
+                .addProperty("lines", JsonSchema.integer("行数").minimum(1).maximum(100))
+                .addProperty("ratio", JsonSchema.Number("比例").enumValues(0.5, 1))
+                .addProperty("tags", JsonSchema.array(JsonSchema.String("标签")))
+                .required("filePath");
+    }
+
+    public static class EditParams {
+        private String filePath;
+        private String mode;
+        private Integer lines;
+        private Double ratio;
+        private List<Object> tags;
+
+        static EditParams valid() {
+            EditParams params = new EditParams();
+            params.setFilePath("/src/App.java");
+            params.setMode("replace");
+            params.setLines(10);
+            params.setRatio(0.5);
+            params.setTags(List.of("a", "b"));
+            return params;
+        }
+
+        public String getFilePath() { return filePath; }
+        public void setFilePath(String filePath) { this.filePath = filePath; }
+
+        public String getMode() { return mode; }
+        public void setMode(String mode) { this.mode = mode; }
+
+        public Integer getLines() { return lines; }
+        public void setLines(Integer lines) { this.lines = lines; }
+
+        public Double getRatio() { return ratio; }
+        public void setRatio(Double ratio) { this.ratio = ratio; }
+
+        public List<Object> getTags() { return tags; }
+        public void setTags(List<Object> tags) { this.tags = tags; }
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class SparseParams {
+        private final String name;
+        private final String note;
+
+        SparseParams(String name, String note) {
+            this.name = name;
+            this.note = note;
+        }
+
+        public String getName() { return name; }
+
+        public String getNote() { return note; }
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    public static class EmptyOmittingParams {
+        private String name;
+
+        public String getName() { return name; }
+        public void setName(String name) { this.name = name; }
+    }
+}
@@ -0,0 +1,211 @@
+package org.kolar.kolarcodercopilot.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kolar.kolarcodercopilot.config.AppProperties;
+import org.kolar.kolarcodercopilot.config.TaskExecutors;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 会话历史: 移出内存/落盘/重新加载, 并发追加, 周期清理与保留期
+ */
+class ChatHistoryStoreTest {
+
+    @TempDir
+    Path storageDir;
+
+    private TaskExecutors taskExecutors;
+
+    @AfterEach
+    void shutdown() {
+        if (taskExecutors != null) {
+            taskExecutors.shutdown();
+        }
+    }
+
+    @Test
+    void evictedSessionIsReloadedFromDisk() {
+        ChatHistoryStore store = create(1, 30);
+        store.append("s1", new UserMessage("hello"), new AssistantMessage("hi"));
+
+        // 容量为 1, 访问 s2 会把 s1 落盘
+        store.append("s2", new UserMessage("other"));
+        assertEquals(1, store.getHotSessionCount());
+
+        assertEquals(List.of("hello", "hi"), texts(store.getHistory("s1")));
+        assertEquals(List.of("other"), texts(store.getHistory("s2")));
+    }
+
+    @Test
+    void missingSessionIdIsRejected() {
+        ChatHistoryStore store = create(10, 30);
+
+        // 不回退到共享的默认会话
+        assertThrows(IllegalArgumentException.class, () -> store.append(null, new UserMessage("hello")));
+        assertThrows(IllegalArgumentException.class, () -> store.getHistory(" "));
+        assertEquals(0, store.getHotSessionCount());
+    }
+
+    @Test
+    void concurrentAppendsAcrossEvictionsAreNotLost() throws Exception {
+        ChatHistoryStore store = create(1, 30);
+        int threads = 8;
+        int perThread = 200;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String sessionId = "session-" + (t % 3);
+            String writer = "w" + t;
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    store.append(sessionId, new UserMessage(writer + ":" + i));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        int total = 0;
+        for (int s = 0; s < 3; s++) {
+            List<String> history = texts(store.getHistory("session-" + s));
+            total += history.size();
+            // 每个写入方的消息保持顺序
+            for (int t = s; t < threads; t += 3) {
+                String prefix = "w" + t + ":";
+                List<String> own = history.stream().filter(text -> text.startsWith(prefix)).collect(Collectors.toList());
+                assertEquals(perThread, own.size(), "session-" + s + " writer " + t);
+                for (int i = 0; i < perThread; i++) {
+                    assertEquals(prefix + i, own.get(i));
+                }
+            }
+        }
+        assertEquals(threads * perThread, total);
+    }
+
+    @Test
+    void sweepSpillsIdleSessionsWithoutFurtherAccess() throws Exception {
+        ChatHistoryStore store = create(100, 0);
+        store.append("idle", new UserMessage("keep me"));
+        Thread.sleep(5);
+
+        store.sweep();
+
+        assertEquals(0, store.getHotSessionCount());
+        assertEquals(1, listFiles().size());
+        assertEquals(List.of("keep me"), texts(store.getHistory("idle")));
+    }
+
+    @Test
+    void sweepDeletesColdFilesPastRetention() throws Exception {
+        ChatHistoryStore store = create(1, 30);
+        store.append("old", new UserMessage("stale"));
+        store.append("new", new UserMessage("fresh"));
+        List<Path> files = listFiles();
+        assertEquals(1, files.size());
+        Files.setLastModifiedTime(files.get(0), FileTime.fromMillis(System.currentTimeMillis() - 31L * 86_400_000L));
+
+        store.sweep();
+
+        assertTrue(listFiles().isEmpty());
+        assertTrue(store.getHistory("old").isEmpty());
+    }
+
+    @Test
+    void hotSessionWhoseFileExpiredIsRewrittenInFull() throws Exception {
+        ChatHistoryStore store = create(1, 30);
+        store.append("s1", new UserMessage("first"));
+        store.append("s2", new UserMessage("evict s1"));
+        // s1 重新加载进内存 (persistedCount = 1), 随后其文件过期被删除
+        store.append("s1", new UserMessage("second"));
+        Path file = listFiles().get(0);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(0));
+        store.sweep();
+        assertFalse(Files.exists(file));
+
+        store.append("s2", new UserMessage("evict s1 again"));
+
+        assertEquals(List.of("first", "second"), texts(store.getHistory("s1")));
+    }
+
+    @Test
+    void compactionKeepsMostRecentMessagesOnDisk() {
+        AppProperties properties = properties(1, 30);
+        properties.getSession().setMaxMessagesPerSession(4);
+        properties.getSession().setCompactToMessages(2);
+        ChatHistoryStore store = new ChatHistoryStore(properties, taskExecutors(properties));
+        store.append("s1", new UserMessage("1"), new UserMessage("2"), new UserMessage("3"));
+        store.append("s2", new UserMessage("evict"));
+        store.append("s1", new UserMessage("4"), new UserMessage("5"));
+        store.append("s2", new UserMessage("evict again"));
+
+        assertEquals(List.of("4", "5"), texts(store.getHistory("s1")));
+    }
+
+    @Test
+    void clearRemovesMemoryAndDisk() {
+        ChatHistoryStore store = create(1, 30);
+        store.append("s1", new UserMessage("gone"));
+        store.append("s2", new UserMessage("evict"));
+
+        store.clear("s1");
+
+        assertTrue(store.getHistory("s1").isEmpty());
+    }
+
+    private ChatHistoryStore create(int maxHotSessions, long idleTtlMinutes) {
+        AppProperties properties = properties(maxHotSessions, idleTtlMinutes);
+        return new ChatHistoryStore(properties, taskExecutors(properties));
+    }
+
+    private AppProperties properties(int maxHotSessions, long idleTtlMinutes) {
+        AppProperties properties = new AppProperties();
+        properties.getSession().setMaxHotSessions(maxHotSessions);
+        properties.getSession().setIdleTtlMinutes(idleTtlMinutes);
+        properties.getSession().setMaxMessagesPerSession(100_000);
+        properties.getSession().setCompactToMessages(100_000);
+        properties.getSession().setStorageDirectory(storageDir.toString());
+        return properties;
+    }
+
+    private TaskExecutors taskExecutors(AppProperties properties) {
+        taskExecutors = new TaskExecutors(properties);
+        return taskExecutors;
+    }
+
+    private List<Path> listFiles() throws Exception {
+        try (Stream<Path> files = Files.list(storageDir)) {
+            return files.filter(file -> file.toString().endsWith(".jsonl.gz")).collect(Collectors.toList());
+        }
+    }
+
+    private static List<String> texts(List<Message> messages) {
+        return messages.stream().map(Message::getText).collect(Collectors.toList());
+    }
+}
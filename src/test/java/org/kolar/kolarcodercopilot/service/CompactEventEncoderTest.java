@@ -0,0 +1,118 @@
+package org.kolar.kolarcodercopilot.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 紧凑事件编码: 按编码表还原字段 / 未知类型与状态原样输出 / 创建时记录的毫秒时间戳
+ */
+class CompactEventEncoderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final CompactEventEncoder encoder = new CompactEventEncoder(new EventSerializer());
+
+    @Test
+    void analysisEventRoundTripsThroughTheCodeTable() throws Exception {
+        AnalysisEvent event = new AnalysisEvent();
+        event.setType("Analysis Step");
+        event.setTaskId("task-1");
+        event.setMessage("正在读取文件");
+        event.setStepName("read_file");
+        event.setStatus("RUNNING");
+        event.setDescription("读取文件内容");
+        event.setDetails("{\"lines\":120}");
+        event.setExecuteTime(42L);
+        event.setIcon("📖");
+        event.stampNow();
+
+        JsonNode compact = objectMapper.readTree(encoder.encode(event));
+
+        assertEquals("Analysis Step", decode("types", compact.get("t")));
+        assertEquals("RUNNING", decode("statuses", compact.get("s")));
+        assertEquals("task-1", compact.get("k").asText());
+        assertEquals("正在读取文件", compact.get("m").asText());
+        assertEquals((long) event.getEpochMillis(), compact.get("ts").asLong());
+        assertEquals("read_file", compact.get("sn").asText());
+        assertEquals("读取文件内容", compact.get("d").asText());
+        assertEquals("{\"lines\":120}", compact.get("x").asText());
+        assertEquals(42L, compact.get("e").asLong());
+        // 图标由客户端按步骤名渲染, 不输出
+        assertEquals(9, compact.size());
+    }
+
+    @Test
+    void everyKnownTypeAndStatusIsEncodedAsItsIndex() throws Exception {
+        Map<String, Object> table = encoder.getCodeTable();
+        List<?> types = (List<?>) table.get("types");
+        List<?> statuses = (List<?>) table.get("statuses");
+
+        for (int i = 0; i < types.size(); i++) {
+            AnalysisEvent event = new AnalysisEvent();
+            event.setType((String) types.get(i));
+            event.setStatus((String) statuses.get(i % statuses.size()));
+            JsonNode compact = objectMapper.readTree(encoder.encode(event));
+
+            assertTrue(compact.get("t").isInt());
+            assertEquals(i, compact.get("t").asInt());
+            assertEquals(i % statuses.size(), compact.get("s").asInt());
+        }
+    }
+
+    @Test
+    void unknownValuesFallBackToStrings() throws Exception {
+        AnalysisEvent event = new AnalysisEvent();
+        event.setType("CUSTOM_EVENT");
+        event.setStatus("PAUSED");
+
+        JsonNode compact = objectMapper.readTree(encoder.encode(event));
+
+        assertTrue(compact.get("t").isTextual());
+        assertEquals("CUSTOM_EVENT", compact.get("t").asText());
+        assertEquals("PAUSED", compact.get("s").asText());
+        // 未设置的字段不输出
+        assertFalse(compact.has("k"));
+        assertFalse(compact.has("ts"));
+    }
+
+    @Test
+    void tokenDeltaCarriesTurnAndTimestamp() throws Exception {
+        TokenDeltaEvent event = new TokenDeltaEvent();
+        event.setType("TOKEN_DELTA");
+        event.setTaskId("task-1");
+        event.setTurn(3);
+        event.setMessage("hello ");
+        event.stampNow();
+
+        JsonNode compact = objectMapper.readTree(encoder.encode(event));
+
+        assertEquals("TOKEN_DELTA", decode("types", compact.get("t")));
+        assertEquals(3, compact.get("u").asInt());
+        assertEquals("hello ", compact.get("m").asText());
+        // 毫秒精度, 与格式化的秒级时间戳取自同一时刻
+        assertEquals((long) event.getEpochMillis(), compact.get("ts").asLong());
+        assertEquals(EventTimestamps.format(event.getEpochMillis()), event.getTimestamp());
+    }
+
+    @Test
+    void nonLogEventsUseThePlainSerializer() throws Exception {
+        Map<String, Object> payload = Map.of("type", "Analysis Step");
+
+        JsonNode encoded = objectMapper.readTree(encoder.encode(payload));
+
+        assertEquals("Analysis Step", encoded.get("type").asText());
+        assertFalse(encoded.has("t"));
+    }
+
+    private String decode(String table, JsonNode code) {
+        List<?> codes = (List<?>) encoder.getCodeTable().get(table);
+        return code.isInt() ? (String) codes.get(code.asInt()) : code.asText();
+    }
+}
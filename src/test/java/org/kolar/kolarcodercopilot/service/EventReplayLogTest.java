@@ -0,0 +1,144 @@
+package org.kolar.kolarcodercopilot.service;
+
+import org.junit.jupiter.api.Test;
+import org.kolar.kolarcodercopilot.config.AppProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 回放日志: 按发布方id补齐 / 重复投递 / 单任务与全局上限 / 回放与实时分发不漏不重
+ */
+class EventReplayLogTest {
+
+    private final AppProperties properties = new AppProperties();
+
+    @Test
+    void replaysEventsAfterLastEventId() {
+        EventReplayLog log = new EventReplayLog(properties);
+        log.append("t1", 10, "a", () -> { });
+        log.append("t1", 20, "b", () -> { });
+        log.append("t2", 15, "other", () -> { });
+        log.append("t1", 30, "c", () -> { });
+
+        assertEquals(List.of("a", "b", "c"), replay(log, "t1", null));
+        // 按发布方分配的id补齐, 与本节点何时收到无关
+        assertEquals(List.of("b", "c"), replay(log, "t1", 10L));
+        assertEquals(List.of("c"), replay(log, "t1", 25L));
+        assertEquals(List.of(), replay(log, "t1", 30L));
+    }
+
+    @Test
+    void duplicateOrStaleIdsAreIgnored() {
+        EventReplayLog log = new EventReplayLog(properties);
+        List<String> dispatched = new ArrayList<>();
+        assertTrue(log.append("t1", 1, "a", () -> dispatched.add("a")));
+        assertTrue(log.append("t1", 2, "b", () -> dispatched.add("b")));
+        assertFalse(log.append("t1", 2, "b", () -> dispatched.add("b")));
+        assertFalse(log.append("t1", 1, "a", () -> dispatched.add("a")));
+
+        assertEquals(List.of("a", "b"), dispatched);
+        assertEquals(List.of("a", "b"), replay(log, "t1", null));
+    }
+
+    @Test
+    void perTaskLimitKeepsNewestEvents() {
+        properties.getSse().setReplayMaxEventsPerTask(2);
+        EventReplayLog log = new EventReplayLog(properties);
+        long id = 0;
+        for (String event : List.of("a", "b", "c", "d")) {
+            log.append("t1", ++id, event, () -> { });
+        }
+
+        assertEquals(List.of("c", "d"), replay(log, "t1", null));
+        assertEquals(2L, log.getMetrics().get("replayEvents"));
+    }
+
+    @Test
+    void totalLimitEvictsFromLeastRecentlyWrittenTask() {
+        properties.getSse().setReplayMaxTotalEvents(3);
+        EventReplayLog log = new EventReplayLog(properties);
+        log.append("old", 1, "o1", () -> { });
+        log.append("old", 2, "o2", () -> { });
+        log.append("new", 1, "n1", () -> { });
+        log.append("new", 2, "n2", () -> { });
+
+        assertEquals(List.of("o2"), replay(log, "old", null));
+        assertEquals(List.of("n1", "n2"), replay(log, "new", null));
+        Map<String, Object> metrics = log.getMetrics();
+        assertEquals(3L, metrics.get("replayEvents"));
+        assertEquals(1L, metrics.get("replayEvicted"));
+    }
+
+    @Test
+    void removeDropsTaskEvents() {
+        EventReplayLog log = new EventReplayLog(properties);
+        log.append("t1", 1, "a", () -> { });
+        log.remove("t1");
+
+        assertEquals(List.of(), replay(log, "t1", null));
+        assertEquals(0L, log.getMetrics().get("replayEvents"));
+        // 重建后的任务日志继续接收发布方的后续id
+        assertTrue(log.append("t1", 2, "b", () -> { }));
+    }
+
+    @Test
+    void subscriberSeesEveryEventExactlyOnceWhileAppending() throws Exception {
+        int total = 2000;
+        // 上限足够保留全部事件, 订阅时回放从第一条开始
+        properties.getSse().setReplayMaxEventsPerTask(total);
+        EventReplayLog log = new EventReplayLog(properties);
+        List<Long> received = new CopyOnWriteArrayList<>();
+        List<Long> subscribers = new CopyOnWriteArrayList<>();
+        CountDownLatch started = new CountDownLatch(1);
+
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        try {
+            writer.submit(() -> {
+                for (int i = 1; i <= total; i++) {
+                    if (i == total / 10) {
+                        started.countDown();
+                    }
+                    long id = i;
+                    // 实时分发: 只有注册后的订阅者才会收到
+                    log.append("t1", id, id, () -> {
+                        if (!subscribers.isEmpty()) {
+                            received.add(id);
+                        }
+                    });
+                }
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            // 写入过程中订阅: 回放已有事件后注册
+            log.subscribe("t1", null, missed -> {
+                missed.forEach(entry -> received.add(entry.getId()));
+                subscribers.add(1L);
+            });
+            writer.shutdown();
+            assertTrue(writer.awaitTermination(10, TimeUnit.SECONDS));
+        } finally {
+            writer.shutdownNow();
+        }
+
+        assertEquals(total, received.size());
+        for (int i = 1; i < received.size(); i++) {
+            assertTrue(received.get(i) > received.get(i - 1), "乱序或重复: " + received.get(i));
+        }
+    }
+
+    private static List<Object> replay(EventReplayLog log, String taskId, Long lastEventId) {
+        List<Object> events = new ArrayList<>();
+        log.subscribe(taskId, lastEventId, missed -> missed.forEach(entry -> events.add(entry.getEvent())));
+        return events;
+    }
+}
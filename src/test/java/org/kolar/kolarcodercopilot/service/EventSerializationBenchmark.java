@@ -0,0 +1,91 @@
+package org.kolar.kolarcodercopilot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SSE事件序列化吞吐 (单线程, 即每核每秒事件数)
+ * stringEncoding 为改动前的写法: 每次 writeValueAsString 后再按UTF-8编码;
+ * pooledSerializer 为 EventSerializer 的池化缓冲直接输出字节, compactEncoding 为紧凑编码;
+ * 时间戳两项对比逐事件格式化与按秒缓存
+ * 运行: 执行 main 方法 (mvn test-compile 后在 IDE 中运行)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(1)
+@Fork(1)
+public class EventSerializationBenchmark {
+
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final EventSerializer eventSerializer = new EventSerializer();
+    private final CompactEventEncoder compactEncoder = new CompactEventEncoder(eventSerializer);
+    private AnalysisEvent event;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        event = new AnalysisEvent();
+        event.setType("Analysis Step");
+        event.setTaskId("3f2b8c1e-5d4a-4e7b-9c1f-2a6d8e0b4f71");
+        event.setMessage("正在读取文件: src/main/java/org/example/App.java");
+        event.stampNow();
+        event.setStepName("read_file");
+        event.setStatus("RUNNING");
+        event.setDescription("读取文件内容");
+        event.setDetails("{\"filePath\":\"src/main/java/org/example/App.java\",\"lines\":120}");
+        event.setExecuteTime(42L);
+    }
+
+    @Benchmark
+    public byte[] stringEncoding() throws Exception {
+        return objectMapper.writeValueAsString(event).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] pooledSerializer() throws Exception {
+        return eventSerializer.serialize(event);
+    }
+
+    @Benchmark
+    public byte[] compactEncoding() throws Exception {
+        return compactEncoder.encode(event);
+    }
+
+    @Benchmark
+    public String formattedTimestamp() {
+        return LocalDateTime.now().format(FORMATTER);
+    }
+
+    @Benchmark
+    public String cachedTimestamp() {
+        return EventTimestamps.now();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(EventSerializationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,129 @@
+package org.kolar.kolarcodercopilot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 延迟直方图: 分桶 / 分位数精度 / 并发记录 / 滑动窗口过期
+ */
+class LatencyHistogramTest {
+
+    @Test
+    void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(100, snapshot.getCount());
+        assertEquals(50, snapshot.percentile(50));
+        assertEquals(90, snapshot.percentile(90));
+        assertEquals(99, snapshot.percentile(99));
+        assertEquals(100, snapshot.percentile(100));
+        assertEquals(50, snapshot.getMeanMicros());
+        assertEquals(100, snapshot.getMaxMicros());
+    }
+
+    @Test
+    void bucketBoundariesAreContiguous() {
+        // 每个桶的最大值加一恰好落入下一个桶
+        for (int index = 0; index < LatencyHistogram.indexFor(LatencyHistogram.MAX_TRACKABLE_MICROS); index++) {
+            long highest = LatencyHistogram.highestValueAt(index);
+            assertEquals(index, LatencyHistogram.indexFor(highest), "index " + index);
+            assertEquals(index + 1, LatencyHistogram.indexFor(highest + 1), "index " + index);
+        }
+    }
+
+    @Test
+    void percentilesStayWithinRelativeErrorBound() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(42);
+        long[] values = new long[100_000];
+        for (int i = 0; i < values.length; i++) {
+            // 对数分布, 覆盖微秒到分钟
+            values[i] = (long) Math.exp(random.nextDouble() * Math.log(60_000_000));
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        for (double percentile : new double[] {50, 90, 99, 99.9}) {
+            long exact = values[(int) Math.ceil(values.length * percentile / 100) - 1];
+            long estimate = snapshot.percentile(percentile);
+            // 取桶内最大值, 只会偏大, 且不超过 1/64
+            assertTrue(estimate >= exact && estimate - exact <= exact / 64,
+                    "p" + percentile + ": exact=" + exact + ", estimate=" + estimate);
+        }
+        assertEquals(values[values.length - 1], snapshot.percentile(100));
+    }
+
+    @Test
+    void outOfRangeValuesAreClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(2, snapshot.getCount());
+        assertEquals(0, snapshot.percentile(50));
+        assertEquals(LatencyHistogram.MAX_TRACKABLE_MICROS, snapshot.getMaxMicros());
+        assertEquals(LatencyHistogram.MAX_TRACKABLE_MICROS, snapshot.percentile(100));
+        assertEquals(0, new LatencyHistogram().snapshot().percentile(99));
+    }
+
+    @Test
+    void concurrentRecordsAreNotLost() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        int threads = 8;
+        int perThread = 50_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 1; i <= perThread; i++) {
+                        histogram.record(i);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals((long) threads * perThread, snapshot.getCount());
+        assertEquals((long) threads * perThread * (perThread + 1) / 2, snapshot.getTotalMicros());
+        assertEquals(perThread, snapshot.getMaxMicros());
+    }
+
+    @Test
+    void slidingWindowDropsExpiredSlots() throws Exception {
+        SlidingWindowHistogram window = new SlidingWindowHistogram(1, 2);
+        window.record(1_000);
+        assertEquals(1, window.snapshot().getCount());
+
+        // 超过整个窗口后旧槽位不再计入快照
+        Thread.sleep(1_100);
+        assertEquals(0, window.snapshot().getCount());
+
+        window.record(10);
+        LatencyHistogram.Snapshot snapshot = window.snapshot();
+        assertEquals(1, snapshot.getCount());
+        assertEquals(10, snapshot.getMaxMicros());
+    }
+}
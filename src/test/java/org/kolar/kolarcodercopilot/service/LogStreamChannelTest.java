@@ -0,0 +1,207 @@
+package org.kolar.kolarcodercopilot.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.kolar.kolarcodercopilot.config.AppProperties;
+import org.kolar.kolarcodercopilot.config.SseExecutors;
+import org.kolar.kolarcodercopilot.config.TaskExecutors;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 多路复用通道: 建立通道 / 订阅与取消订阅 / 订阅时补发 / 事件按 taskId 区分 / 重连沿用订阅
+ */
+class LogStreamChannelTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private SseExecutors sseExecutors;
+    private TaskExecutors taskExecutors;
+    private LogStreamService service;
+
+    @BeforeEach
+    void setUp() {
+        AppProperties properties = new AppProperties();
+        // 逐条立即发送, 便于按顺序断言 (增量文本事件不参与合并)
+        properties.getSse().setBatchWindowMillis(0);
+        sseExecutors = new SseExecutors(properties);
+        taskExecutors = new TaskExecutors(properties);
+        StageMetrics stageMetrics = new StageMetrics(properties, new TaskStateStore(properties, taskExecutors));
+        EventSerializer eventSerializer = new EventSerializer();
+        service = new LogStreamService(sseExecutors, properties, new EventReplayLog(properties),
+                new CompactEventEncoder(eventSerializer), eventSerializer, new InProcessEventBus(), stageMetrics) {
+            @Override
+            SseEmitter newEmitter() {
+                return new RecordingEmitter();
+            }
+        };
+        service.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.stop();
+        sseExecutors.shutdown();
+        taskExecutors.shutdown();
+    }
+
+    @Test
+    void openChannelAnnouncesGeneratedClientId() throws Exception {
+        RecordingEmitter emitter = (RecordingEmitter) service.openChannel(null, null, EventEncoding.JSON);
+
+        JsonNode established = emitter.awaitEvents(1).get(0).payload;
+        assertEquals("CHANNEL_ESTABLISHED", established.get("type").asText());
+        assertFalse(established.get("message").asText().isBlank());
+        // 通道建立事件不进入回放日志, 没有事件id
+        assertEquals(0L, emitter.awaitEvents(1).get(0).id);
+    }
+
+    @Test
+    void subscribedTasksShareOneConnectionTaggedByTaskId() throws Exception {
+        RecordingEmitter emitter = (RecordingEmitter) service.openChannel("client-1", null, EventEncoding.JSON);
+        assertTrue(service.subscribe("client-1", "task-a", null));
+        assertTrue(service.subscribe("client-1", "task-b", null));
+
+        service.pushTokenDelta("task-a", 1, "a-1");
+        service.pushTokenDelta("task-c", 1, "c-1");
+        service.pushTokenDelta("task-b", 1, "b-1");
+
+        List<RecordedEvent> events = emitter.awaitEvents(3);
+        assertEquals(List.of("task-a:a-1", "task-b:b-1"), taggedMessages(events.subList(1, events.size())));
+        // 事件id按发布顺序递增
+        assertTrue(events.get(2).id > events.get(1).id);
+    }
+
+    @Test
+    void subscribeReplaysEventsAfterLastEventId() throws Exception {
+        service.pushTokenDelta("task-a", 1, "a-1");
+        service.pushTokenDelta("task-a", 1, "a-2");
+
+        RecordingEmitter first = (RecordingEmitter) service.openChannel("client-1", null, EventEncoding.JSON);
+        assertTrue(service.subscribe("client-1", "task-a", null));
+        List<RecordedEvent> replayed = first.awaitEvents(3);
+        assertEquals(List.of("task-a:a-1", "task-a:a-2"), taggedMessages(replayed.subList(1, 3)));
+
+        // 另一客户端从第一个事件之后开始订阅
+        RecordingEmitter second = (RecordingEmitter) service.openChannel("client-2", null, EventEncoding.JSON);
+        assertTrue(service.subscribe("client-2", "task-a", replayed.get(1).id));
+        List<RecordedEvent> partial = second.awaitEvents(2);
+        assertEquals(List.of("task-a:a-2"), taggedMessages(partial.subList(1, 2)));
+    }
+
+    @Test
+    void unsubscribeStopsDeliveryForThatTaskOnly() throws Exception {
+        RecordingEmitter emitter = (RecordingEmitter) service.openChannel("client-1", null, EventEncoding.JSON);
+        service.subscribe("client-1", "task-a", null);
+        service.subscribe("client-1", "task-b", null);
+
+        assertTrue(service.unsubscribe("client-1", "task-a"));
+        assertFalse(service.unsubscribe("client-1", "task-a"));
+        service.pushTokenDelta("task-a", 1, "a-1");
+        service.pushTokenDelta("task-b", 1, "b-1");
+
+        List<RecordedEvent> events = emitter.awaitEvents(2);
+        assertEquals(List.of("task-b:b-1"), taggedMessages(events.subList(1, events.size())));
+        // 未建立的通道不能订阅
+        assertFalse(service.subscribe("unknown-client", "task-a", null));
+    }
+
+    @Test
+    void reconnectKeepsSubscriptionsAndReplaysMissedEvents() throws Exception {
+        RecordingEmitter first = (RecordingEmitter) service.openChannel("client-1", null, EventEncoding.JSON);
+        service.subscribe("client-1", "task-a", null);
+        service.pushTokenDelta("task-a", 1, "a-1");
+        long lastEventId = first.awaitEvents(2).get(1).id;
+        service.pushTokenDelta("task-a", 1, "a-2");
+
+        // 同一 clientId 重连, 不重新订阅
+        RecordingEmitter second = (RecordingEmitter) service.openChannel("client-1", lastEventId, EventEncoding.JSON);
+        service.pushTokenDelta("task-a", 1, "a-3");
+
+        List<RecordedEvent> events = second.awaitEvents(3);
+        assertEquals("CHANNEL_ESTABLISHED", events.get(0).payload.get("type").asText());
+        assertEquals(List.of("task-a:a-2", "task-a:a-3"), taggedMessages(events.subList(1, events.size())));
+        assertTrue(first.completed);
+    }
+
+    private static List<String> taggedMessages(List<RecordedEvent> events) {
+        return events.stream()
+                .map(event -> event.payload.get("taskId").asText() + ":" + event.payload.get("message").asText())
+                .collect(Collectors.toList());
+    }
+
+    private static final class RecordedEvent {
+        private final long id;
+        private final JsonNode payload;
+
+        RecordedEvent(long id, JsonNode payload) {
+            this.id = id;
+            this.payload = payload;
+        }
+    }
+
+    /**
+     * 记录每个SSE事件的id与JSON负载
+     */
+    private class RecordingEmitter extends SseEmitter {
+        private final List<RecordedEvent> events = new CopyOnWriteArrayList<>();
+        private volatile boolean completed;
+
+        RecordingEmitter() {
+            super(0L);
+        }
+
+        @Override
+        public void send(Set<ResponseBodyEmitter.DataWithMediaType> items) throws IOException {
+            long id = 0;
+            for (ResponseBodyEmitter.DataWithMediaType item : items) {
+                if (MediaType.APPLICATION_JSON.equals(item.getMediaType())) {
+                    String json = new String((byte[]) item.getData(), StandardCharsets.UTF_8);
+                    events.add(new RecordedEvent(id, objectMapper.readTree(json)));
+                    id = 0;
+                } else {
+                    for (String line : String.valueOf(item.getData()).split("\n")) {
+                        if (line.startsWith("id:")) {
+                            id = Long.parseLong(line.substring(3).trim());
+                        }
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+
+        List<RecordedEvent> awaitEvents(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (System.currentTimeMillis() < deadline) {
+                if (events.size() >= count) {
+                    // 多出的事件说明投递了不该投递的任务
+                    Thread.sleep(50);
+                    assertEquals(count, events.size(), "events=" + events.size());
+                    return new ArrayList<>(events);
+                }
+                Thread.sleep(5);
+            }
+            throw new AssertionError("timed out waiting for " + count + " events, got " + events.size());
+        }
+    }
+}
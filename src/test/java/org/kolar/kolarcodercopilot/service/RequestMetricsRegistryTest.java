@@ -0,0 +1,131 @@
+package org.kolar.kolarcodercopilot.service;
+
+import org.junit.jupiter.api.Test;
+import org.kolar.kolarcodercopilot.config.AppProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 请求指标: 进行中请求 / 状态码分类 / 未匹配路由 / Prometheus 输出
+ */
+class RequestMetricsRegistryTest {
+
+    private static final String STREAM_ROUTE = "GET /api/logs/stream/{taskId}";
+
+    private final RequestMetricsRegistry registry = new RequestMetricsRegistry(new AppProperties());
+
+    @Test
+    void inFlightTracksStartedAndCompletedRequests() {
+        registry.requestStarted();
+        RequestMetricsRegistry.RouteMetrics stream = registry.routeStarted(STREAM_ROUTE);
+        registry.requestStarted();
+
+        assertEquals(2L, registry.getMetrics().get("inFlight"));
+        assertEquals(1L, route(STREAM_ROUTE).get("inFlight"));
+
+        registry.requestCompleted(stream, 5_000_000, 200);
+        assertEquals(1L, registry.getMetrics().get("inFlight"));
+        assertEquals(0L, route(STREAM_ROUTE).get("inFlight"));
+    }
+
+    @Test
+    void statusCodesAreClassifiedPerRoute() {
+        complete(STREAM_ROUTE, 200);
+        complete(STREAM_ROUTE, 404);
+        complete(STREAM_ROUTE, 503);
+        complete("POST /api/tasks", 201);
+
+        Map<String, Object> stream = route(STREAM_ROUTE);
+        assertEquals(3L, stream.get("requests"));
+        assertEquals(1L, stream.get("clientErrors"));
+        assertEquals(1L, stream.get("serverErrors"));
+        assertEquals(1L, route("POST /api/tasks").get("requests"));
+    }
+
+    @Test
+    void requestsWithoutRouteAreRecordedAsUnmatched() {
+        registry.requestStarted();
+        registry.requestCompleted(null, 1_000_000, 404);
+
+        Map<String, Object> unmatched = route(RequestMetricsRegistry.UNMATCHED_ROUTE);
+        assertEquals(1L, unmatched.get("requests"));
+        assertEquals(1L, unmatched.get("clientErrors"));
+        assertEquals(0L, registry.getMetrics().get("inFlight"));
+    }
+
+    @Test
+    void latencyIsRecordedInHistograms() {
+        RequestMetricsRegistry.RouteMetrics metrics = registry.routeStarted(STREAM_ROUTE);
+        registry.requestStarted();
+        registry.requestCompleted(metrics, 40_000_000, 200);
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> latency = (Map<String, Object>) route(STREAM_ROUTE).get("latencyMillis");
+        assertEquals(1L, latency.get("count"));
+        assertEquals(40.0, (Double) latency.get("max"), 0.001);
+        // 分位数取桶内最大值, 误差不超过 1/64
+        assertEquals(40.0, (Double) latency.get("p99"), 40.0 / 64);
+    }
+
+    @Test
+    void prometheusOutputUsesRouteLabels() {
+        complete(STREAM_ROUTE, 200);
+        complete(STREAM_ROUTE, 500);
+
+        PrometheusTextWriter writer = new PrometheusTextWriter();
+        registry.writePrometheus(writer);
+        String text = writer.toString();
+
+        assertTrue(text.contains("copilot_http_requests_total{route=\"" + STREAM_ROUTE + "\",status=\"ok\"} 1\n"), text);
+        assertTrue(text.contains("copilot_http_requests_total{route=\"" + STREAM_ROUTE + "\",status=\"5xx\"} 1\n"), text);
+        assertTrue(text.contains("copilot_http_request_duration_seconds_count{route=\"" + STREAM_ROUTE + "\"} 2\n"), text);
+        assertTrue(text.contains("copilot_http_in_flight_requests 0\n"), text);
+    }
+
+    @Test
+    void concurrentRequestsAreCountedExactly() throws Exception {
+        int threads = 8;
+        int perThread = 10_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        complete(STREAM_ROUTE, i % 10 == 0 ? 500 : 200);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Map<String, Object> stream = route(STREAM_ROUTE);
+        assertEquals((long) threads * perThread, stream.get("requests"));
+        assertEquals((long) threads * perThread / 10, stream.get("serverErrors"));
+        assertEquals(0L, stream.get("inFlight"));
+        assertEquals(0L, registry.getMetrics().get("inFlight"));
+    }
+
+    private void complete(String route, int status) {
+        registry.requestStarted();
+        registry.requestCompleted(registry.routeStarted(route), 1_000_000, status);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> route(String route) {
+        return (Map<String, Object>) ((Map<String, Object>) registry.getMetrics().get("routes")).get(route);
+    }
+}
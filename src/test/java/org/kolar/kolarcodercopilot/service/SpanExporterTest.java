@@ -0,0 +1,180 @@
+package org.kolar.kolarcodercopilot.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kolar.kolarcodercopilot.config.AppProperties;
+import org.kolar.kolarcodercopilot.config.TaskContext;
+import org.kolar.kolarcodercopilot.config.TaskContextHolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * span 导出: OTLP/JSON 格式 / 文件滚动与保留数量
+ */
+class SpanExporterTest {
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<SpanExporter> started = new ArrayList<>();
+
+    @AfterEach
+    void stopAll() {
+        started.forEach(SpanExporter::stop);
+        TaskContextHolder.restore(TaskContext.EMPTY);
+    }
+
+    @Test
+    void writesOtlpJsonBatches() throws Exception {
+        AppProperties properties = properties(32 * 1024 * 1024, 10);
+        SpanExporter exporter = start(properties);
+        Tracer tracer = new Tracer(properties, exporter);
+
+        Tracer.Span root = tracer.start("POST /api/chat/message", Tracer.SpanKind.SERVER);
+        try (Tracer.Span child = tracer.start("model.call", Tracer.SpanKind.CLIENT)) {
+            child.attribute("model", "qwen").attribute("tokens", 42L).attribute("temperature", 0.5)
+                    .attribute("stream", true).error("timeout");
+        }
+        root.close();
+        exporter.stop();
+
+        List<JsonNode> spans = new ArrayList<>();
+        for (String line : readLines()) {
+            JsonNode request = objectMapper.readTree(line);
+            JsonNode resourceSpans = request.get("resourceSpans").get(0);
+            JsonNode resourceAttribute = resourceSpans.get("resource").get("attributes").get(0);
+            assertEquals("service.name", resourceAttribute.get("key").asText());
+            assertEquals("kolar-coder-copilot", resourceAttribute.get("value").get("stringValue").asText());
+            JsonNode scopeSpans = resourceSpans.get("scopeSpans").get(0);
+            assertEquals("kolar-coder-copilot", scopeSpans.get("scope").get("name").asText());
+            scopeSpans.get("spans").forEach(spans::add);
+        }
+        assertEquals(2, spans.size());
+
+        JsonNode child = spans.get(0);
+        JsonNode parent = spans.get(1);
+        assertTrue(child.get("traceId").asText().matches("[0-9a-f]{32}"), child.get("traceId").asText());
+        assertTrue(child.get("spanId").asText().matches("[0-9a-f]{16}"), child.get("spanId").asText());
+        assertEquals(parent.get("traceId").asText(), child.get("traceId").asText());
+        assertEquals(parent.get("spanId").asText(), child.get("parentSpanId").asText());
+        assertFalse(parent.has("parentSpanId"));
+        assertEquals(Tracer.SpanKind.CLIENT.getOtlpValue(), child.get("kind").asInt());
+        assertEquals(Tracer.SpanKind.SERVER.getOtlpValue(), parent.get("kind").asInt());
+        // 64 位整数以字符串表示
+        assertTrue(child.get("startTimeUnixNano").isTextual());
+        assertTrue(Long.parseLong(child.get("endTimeUnixNano").asText())
+                >= Long.parseLong(child.get("startTimeUnixNano").asText()));
+
+        JsonNode attributes = child.get("attributes");
+        assertEquals("qwen", attributes.get(0).get("value").get("stringValue").asText());
+        assertEquals("42", attributes.get(1).get("value").get("intValue").asText());
+        assertEquals(0.5, attributes.get(2).get("value").get("doubleValue").asDouble());
+        assertTrue(attributes.get(3).get("value").get("boolValue").asBoolean());
+
+        assertEquals(2, child.get("status").get("code").asInt());
+        assertEquals("timeout", child.get("status").get("message").asText());
+        assertEquals(1, parent.get("status").get("code").asInt());
+    }
+
+    @Test
+    void rollsFilesAndKeepsOnlyTheNewest() throws Exception {
+        int maxFiles = 3;
+        // 每批写入后即超过上限, 下一批滚动到新文件
+        AppProperties properties = properties(1, maxFiles);
+        properties.getTracing().setBatchSize(1);
+        SpanExporter exporter = start(properties);
+        Tracer tracer = new Tracer(properties, exporter);
+
+        int spans = 10;
+        for (int i = 0; i < spans; i++) {
+            try (Tracer.Span span = tracer.start("span-" + i)) {
+                span.attribute("index", i);
+            }
+            // 逐个导出, 每个 span 单独成批
+            awaitExported(exporter, i + 1);
+        }
+        exporter.stop();
+
+        List<Path> files = traceFiles();
+        assertEquals(maxFiles, files.size(), files.toString());
+        // 保留的是最后写入的几个文件
+        List<String> names = new ArrayList<>();
+        for (Path file : files) {
+            for (String line : Files.readAllLines(file)) {
+                JsonNode span = objectMapper.readTree(line).get("resourceSpans").get(0)
+                        .get("scopeSpans").get(0).get("spans").get(0);
+                names.add(span.get("name").asText());
+            }
+        }
+        assertEquals(List.of("span-7", "span-8", "span-9"), names);
+    }
+
+    @Test
+    void spansAreDroppedWhenNotRunning() {
+        AppProperties properties = properties(32 * 1024 * 1024, 10);
+        SpanExporter exporter = new SpanExporter(properties);
+        Tracer tracer = new Tracer(properties, exporter);
+
+        tracer.start("never-exported").close();
+
+        assertEquals(1L, exporter.getMetrics().get("droppedSpans"));
+        assertEquals(0L, exporter.getMetrics().get("exportedSpans"));
+    }
+
+    private AppProperties properties(long maxFileBytes, int maxFiles) {
+        AppProperties properties = new AppProperties();
+        AppProperties.Tracing tracing = properties.getTracing();
+        tracing.setEnabled(true);
+        tracing.setSampleRatio(1.0);
+        tracing.setDirectory(directory.toString());
+        tracing.setMaxFileBytes(maxFileBytes);
+        tracing.setMaxFiles(maxFiles);
+        tracing.setFlushIntervalMillis(10);
+        return properties;
+    }
+
+    private SpanExporter start(AppProperties properties) {
+        SpanExporter exporter = new SpanExporter(properties);
+        exporter.start();
+        started.add(exporter);
+        return exporter;
+    }
+
+    private List<String> readLines() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (Path file : traceFiles()) {
+            lines.addAll(Files.readAllLines(file));
+        }
+        return lines;
+    }
+
+    private List<Path> traceFiles() throws IOException {
+        try (Stream<Path> stream = Files.list(directory)) {
+            return stream.filter(path -> path.getFileName().toString().endsWith(".jsonl"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static void awaitExported(SpanExporter exporter, long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while ((long) exporter.getMetrics().get("exportedSpans") < expected) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待超时");
+            Thread.sleep(5);
+        }
+    }
+}
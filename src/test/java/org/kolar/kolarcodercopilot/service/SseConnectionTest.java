@@ -0,0 +1,216 @@
+package org.kolar.kolarcodercopilot.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.kolar.kolarcodercopilot.config.AppProperties;
+import org.kolar.kolarcodercopilot.config.SseExecutors;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * SSE连接: 慢消费者策略 / 批量窗口 / 同批合并 / 写任务线程
+ */
+class SseConnectionTest {
+
+    private SseExecutors sseExecutors;
+
+    @AfterEach
+    void shutdown() {
+        if (sseExecutors != null) {
+            sseExecutors.shutdown();
+        }
+    }
+
+    @Test
+    void dropOldestDiscardsOldestBufferedEvent() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter(true);
+        SseConnection connection = connect(emitter, 2, AppProperties.SlowConsumerPolicy.DROP_OLDEST, 0);
+
+        connection.offer(1, event("LOG", "e0"));
+        emitter.awaitBlocked();
+        // 写任务阻塞在 e0 上, 缓冲区容量为 2
+        connection.offer(2, event("LOG", "e1"));
+        connection.offer(3, event("LOG", "e2"));
+        connection.offer(4, event("LOG", "e3"));
+        emitter.release();
+
+        assertEquals(List.of("e0", "e2", "e3"), emitter.awaitPayloads(3));
+        assertEquals(1L, connection.getMetrics().get("dropped"));
+    }
+
+    @Test
+    void disconnectPolicyClosesSlowConsumer() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter(true);
+        SseConnection connection = connect(emitter, 1, AppProperties.SlowConsumerPolicy.DISCONNECT, 0);
+
+        assertTrue(connection.offer(1, event("LOG", "e0")));
+        emitter.awaitBlocked();
+        assertTrue(connection.offer(2, event("LOG", "e1")));
+        assertFalse(connection.offer(3, event("LOG", "e2")));
+        emitter.release();
+
+        assertTrue(connection.isClosed());
+        assertEquals("slow-consumer", connection.getCloseReason());
+        assertTrue(emitter.completedWithError);
+    }
+
+    @Test
+    void coalescePolicyReplacesSupersededProgressEvent() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter(true);
+        SseConnection connection = connect(emitter, 2, AppProperties.SlowConsumerPolicy.COALESCE, 0);
+
+        connection.offer(1, event("LOG", "e0"));
+        emitter.awaitBlocked();
+        connection.offer(2, event("STATUS_UPDATE", "status-1"));
+        connection.offer(3, event("LOG", "e1"));
+        connection.offer(4, event("STATUS_UPDATE", "status-2"));
+        emitter.release();
+
+        assertEquals(List.of("e0", "e1", "status-2"), emitter.awaitPayloads(3));
+        assertEquals(1L, connection.getMetrics().get("coalesced"));
+        assertEquals(0L, connection.getMetrics().get("dropped"));
+    }
+
+    @Test
+    void eventsWithinWindowAreSentAsOneFrame() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter(false);
+        SseConnection connection = connect(emitter, 64, AppProperties.SlowConsumerPolicy.DROP_OLDEST, 200);
+
+        for (int i = 0; i < 5; i++) {
+            connection.offer(i + 1, event("LOG", "e" + i));
+        }
+
+        assertEquals(List.of("e0", "e1", "e2", "e3", "e4"), emitter.awaitPayloads(5));
+        assertEquals(1, emitter.frames.size());
+    }
+
+    @Test
+    void progressEventsInSameBatchKeepOnlyLatest() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter(false);
+        SseConnection connection = connect(emitter, 64, AppProperties.SlowConsumerPolicy.DROP_OLDEST, 200);
+
+        connection.offer(1, event("STATUS_UPDATE", "running 1"));
+        connection.offer(2, event("LOG", "log"));
+        connection.offer(3, event("STATUS_UPDATE", "running 2"));
+
+        assertEquals(List.of("log", "running 2"), emitter.awaitPayloads(2));
+        assertEquals(1L, connection.getMetrics().get("coalesced"));
+    }
+
+    @Test
+    void immediateEventFlushesWithoutWaitingForWindow() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter(false);
+        SseConnection connection = connect(emitter, 64, AppProperties.SlowConsumerPolicy.DROP_OLDEST, 60_000);
+
+        connection.offer(1, event("LOG", "buffered"));
+        connection.offer(2, event("TASK_COMPLETE", "done"));
+
+        assertEquals(List.of("buffered", "done"), emitter.awaitPayloads(2));
+    }
+
+    @Test
+    void writerRunsOnSseExecutorNotTaskPool() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter(false);
+        SseConnection connection = connect(emitter, 64, AppProperties.SlowConsumerPolicy.DROP_OLDEST, 10);
+
+        connection.offer(1, event("LOG", "e0"));
+
+        emitter.awaitPayloads(1);
+        assertTrue(emitter.threads.get(0).startsWith("copilot-sse-"), emitter.threads.get(0));
+    }
+
+    private SseConnection connect(RecordingEmitter emitter, int capacity,
+                                  AppProperties.SlowConsumerPolicy policy, int batchWindowMillis) {
+        AppProperties properties = new AppProperties();
+        AppProperties.Sse config = properties.getSse();
+        config.setBufferCapacity(capacity);
+        config.setSlowConsumerPolicy(policy);
+        config.setBatchWindowMillis(batchWindowMillis);
+        config.setBatchMaxEvents(32);
+        sseExecutors = new SseExecutors(properties);
+        return new SseConnection("task-1", emitter, config,
+                event -> ((LoginEvent) event).getMessage().getBytes(StandardCharsets.UTF_8),
+                sseExecutors, closed -> { });
+    }
+
+    private static LoginEvent event(String type, String message) {
+        LoginEvent event = new LoginEvent();
+        event.setType(type);
+        event.setTaskId("task-1");
+        event.setMessage(message);
+        return event;
+    }
+
+    /**
+     * 记录每次写入的事件负载; blockFirst 为 true 时第一次写入阻塞, 模拟慢速浏览器
+     */
+    private static class RecordingEmitter extends SseEmitter {
+        private final List<List<String>> frames = new CopyOnWriteArrayList<>();
+        private final List<String> threads = new CopyOnWriteArrayList<>();
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private final CountDownLatch released;
+        private volatile boolean completedWithError;
+
+        RecordingEmitter(boolean blockFirst) {
+            super(0L);
+            this.released = new CountDownLatch(blockFirst ? 1 : 0);
+        }
+
+        @Override
+        public void send(Set<ResponseBodyEmitter.DataWithMediaType> items) {
+            List<String> payloads = new ArrayList<>();
+            for (ResponseBodyEmitter.DataWithMediaType item : items) {
+                if (MediaType.APPLICATION_JSON.equals(item.getMediaType())) {
+                    payloads.add(new String((byte[]) item.getData(), StandardCharsets.UTF_8));
+                }
+            }
+            threads.add(Thread.currentThread().getName());
+            blocked.countDown();
+            try {
+                released.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            frames.add(payloads);
+        }
+
+        @Override
+        public void completeWithError(Throwable ex) {
+            completedWithError = true;
+        }
+
+        void awaitBlocked() throws InterruptedException {
+            assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        List<String> awaitPayloads(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (System.currentTimeMillis() < deadline) {
+                List<String> payloads = new ArrayList<>();
+                frames.forEach(payloads::addAll);
+                if (payloads.size() >= count) {
+                    return payloads;
+                }
+                Thread.sleep(5);
+            }
+            throw new AssertionError("timed out waiting for " + count + " events, got " + frames);
+        }
+    }
+}
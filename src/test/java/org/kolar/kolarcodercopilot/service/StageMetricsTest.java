@@ -0,0 +1,54 @@
+package org.kolar.kolarcodercopilot.service;
+
+import org.junit.jupiter.api.Test;
+import org.kolar.kolarcodercopilot.config.AppProperties;
+import org.kolar.kolarcodercopilot.config.TaskExecutors;
+import org.kolar.kolarcodercopilot.model.TaskStage;
+import org.kolar.kolarcodercopilot.model.TaskStatus;
+import org.kolar.kolarcodercopilot.model.TaskTimeline;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 阶段耗时: 模型调用扣除轮次内的工具调用
+ */
+class StageMetricsTest {
+
+    private final AppProperties properties = new AppProperties();
+    private final TaskStateStore taskStateStore = new TaskStateStore(properties, new TaskExecutors(properties));
+    private final StageMetrics stageMetrics = new StageMetrics(properties, taskStateStore);
+
+    @Test
+    void modelCallExcludesToolTimeWithinTurn() throws Exception {
+        TaskStatus status = new TaskStatus("t1");
+        taskStateStore.createTask(status);
+
+        long turnStart = System.nanoTime();
+        long toolMicrosBefore = stageMetrics.totalMicros("t1", TaskStage.TOOL_CALL);
+        Thread.sleep(30);
+        // 模型请求的工具调用, 嵌套在本轮模型调用之内
+        long toolStart = System.nanoTime();
+        Thread.sleep(100);
+        stageMetrics.record("t1", TaskStage.TOOL_CALL, toolStart, "write_file");
+        long toolMicros = stageMetrics.totalMicros("t1", TaskStage.TOOL_CALL) - toolMicrosBefore;
+        stageMetrics.record("t1", TaskStage.MODEL_CALL, turnStart, "第 1 轮", toolMicros);
+        long turnMillis = (System.nanoTime() - turnStart) / 1_000_000;
+
+        Map<TaskStage, TaskTimeline.StageTotal> totals = status.getTimeline().getTotals();
+        double toolMillis = totals.get(TaskStage.TOOL_CALL).getTotalMillis();
+        double modelMillis = totals.get(TaskStage.MODEL_CALL).getTotalMillis();
+        assertTrue(toolMillis >= 100, "tool=" + toolMillis);
+        assertTrue(modelMillis >= 30 && modelMillis < 100, "model=" + modelMillis);
+        // 两个阶段互不重叠, 之和不超过轮次耗时
+        assertTrue(toolMillis + modelMillis <= turnMillis + 1, "sum=" + (toolMillis + modelMillis) + ", turn=" + turnMillis);
+    }
+
+    @Test
+    void unknownTaskHasNoStageTime() {
+        assertEquals(0, stageMetrics.totalMicros("missing", TaskStage.TOOL_CALL));
+        assertEquals(0, stageMetrics.totalMicros(null, TaskStage.TOOL_CALL));
+    }
+}
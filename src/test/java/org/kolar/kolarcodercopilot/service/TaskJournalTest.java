@@ -0,0 +1,160 @@
+package org.kolar.kolarcodercopilot.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kolar.kolarcodercopilot.config.AppProperties;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 任务日志: 组提交 / 重放 / CRC 校验 / 段滚动
+ */
+class TaskJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private final List<TaskJournal> started = new ArrayList<>();
+
+    @AfterEach
+    void stopAll() {
+        started.forEach(TaskJournal::stop);
+    }
+
+    @Test
+    void replayRecoversUnfinishedTaskWithSessionAndTurns() throws Exception {
+        TaskJournal journal = start(16 * 1024 * 1024);
+        journal.taskCreated("t1", "session-a", "build it", List.of(new UserMessage("build it")));
+        journal.turnCompleted("t1", 1, "step one", true, List.of(new AssistantMessage("step one"), new UserMessage("continue")));
+        journal.toolEffect("t1", "write_file", "a.txt");
+        journal.taskCreated("t2", "session-b", "done task", List.of(new UserMessage("done task")));
+        journal.taskFinished("t2", "COMPLETED");
+        journal.stop();
+
+        List<TaskJournal.RecoveredTask> recovered = start(16 * 1024 * 1024).drainRecoveredTasks();
+
+        assertEquals(1, recovered.size());
+        TaskJournal.RecoveredTask task = recovered.get(0);
+        assertEquals("t1", task.getTaskId());
+        assertEquals("session-a", task.getSessionId());
+        assertEquals("build it", task.getInitialMessage());
+        assertEquals(1, task.getCompletedTurns());
+        assertEquals(List.of("build it", "step one", "continue"), texts(task.getHistory()));
+        assertEquals(List.of("step one"), task.getTurnResponses());
+        assertEquals(List.of("write_file: a.txt"), task.getPendingToolEffects());
+    }
+
+    @Test
+    void partialRecordAtSegmentTailIsIgnored() throws Exception {
+        TaskJournal journal = start(16 * 1024 * 1024);
+        journal.taskCreated("t1", "s", "hello", List.of(new UserMessage("hello")));
+        journal.stop();
+        // 模拟崩溃时写了一半的记录: 完整的头部, 不完整的负载
+        Files.write(segments().get(0), new byte[] {0, 0, 0, 100, 1, 2, 3, 4, '{', '"'}, StandardOpenOption.APPEND);
+
+        List<TaskJournal.RecoveredTask> recovered = start(16 * 1024 * 1024).drainRecoveredTasks();
+
+        assertEquals(1, recovered.size());
+        assertTrue(corruptSegments().isEmpty());
+    }
+
+    @Test
+    void corruptFrameStopsReplayAndQuarantinesLaterSegments() throws Exception {
+        TaskJournal first = start(16 * 1024 * 1024);
+        first.taskCreated("t1", "s", "first", List.of(new UserMessage("first")));
+        first.turnCompleted("t1", 1, "turn one", true, List.of(new AssistantMessage("turn one")));
+        first.turnCompleted("t1", 2, "turn two", true, List.of(new AssistantMessage("turn two")));
+        first.stop();
+        // 第二次运行写入新段
+        TaskJournal second = start(16 * 1024 * 1024);
+        second.drainRecoveredTasks();
+        second.turnCompleted("t1", 3, "turn three", false, List.of(new AssistantMessage("turn three")));
+        second.stop();
+        assertEquals(2, segments().size());
+
+        // 破坏第一个段中第二条记录 (turn one) 的负载
+        Path firstSegment = segments().get(0);
+        byte[] bytes = Files.readAllBytes(firstSegment);
+        int secondFrame = 8 + readInt(bytes, 0);
+        bytes[secondFrame + 8 + 2] ^= 0x5A;
+        Files.write(firstSegment, bytes);
+
+        List<TaskJournal.RecoveredTask> recovered = start(16 * 1024 * 1024).drainRecoveredTasks();
+
+        // 只应用损坏之前的记录, 不会跳过 turn one/two 去应用 turn three
+        assertEquals(1, recovered.size());
+        assertEquals(0, recovered.get(0).getCompletedTurns());
+        assertEquals(List.of("first"), texts(recovered.get(0).getHistory()));
+        assertEquals(2, corruptSegments().size());
+    }
+
+    @Test
+    void rollsSegmentsAndDeletesOnesNoLongerReferenced() throws Exception {
+        TaskJournal journal = start(256);
+        journal.taskCreated("old", "s", "old task", List.of(new UserMessage("old task")));
+        for (int turn = 1; turn <= 3; turn++) {
+            journal.turnCompleted("old", turn, "old response " + turn, true, List.of(new AssistantMessage("old " + turn)));
+        }
+        journal.taskFinished("old", "COMPLETED");
+        journal.taskCreated("live", "s", "live task", List.of(new UserMessage("live task")));
+        for (int turn = 1; turn <= 3; turn++) {
+            journal.turnCompleted("live", turn, "response " + turn, true, List.of(new AssistantMessage("response " + turn)));
+        }
+        journal.stop();
+
+        List<TaskJournal.RecoveredTask> recovered = start(256).drainRecoveredTasks();
+
+        assertEquals(1, recovered.size());
+        assertEquals("live", recovered.get(0).getTaskId());
+        assertEquals(3, recovered.get(0).getCompletedTurns());
+        // 只被已结束任务引用的第一个段已删除
+        assertTrue(segments().size() > 1);
+        assertFalse(Files.exists(directory.resolve("segment-00000001.log")));
+    }
+
+    private TaskJournal start(long segmentMaxBytes) throws IOException {
+        AppProperties properties = new AppProperties();
+        properties.getJournal().setDirectory(directory.toString());
+        properties.getJournal().setSegmentMaxBytes(segmentMaxBytes);
+        TaskJournal journal = new TaskJournal(properties);
+        journal.start();
+        started.add(journal);
+        return journal;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".log")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private List<Path> corruptSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".corrupt")).collect(Collectors.toList());
+        }
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xff) << 24) | ((bytes[offset + 1] & 0xff) << 16)
+                | ((bytes[offset + 2] & 0xff) << 8) | (bytes[offset + 3] & 0xff);
+    }
+
+    private static List<String> texts(List<Message> messages) {
+        return messages.stream().map(Message::getText).collect(Collectors.toList());
+    }
+}
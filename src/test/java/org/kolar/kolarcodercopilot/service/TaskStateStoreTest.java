@@ -0,0 +1,195 @@
+package org.kolar.kolarcodercopilot.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kolar.kolarcodercopilot.config.AppProperties;
+import org.kolar.kolarcodercopilot.config.TaskExecutors;
+import org.kolar.kolarcodercopilot.model.TaskStatus;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 任务状态存储: 容量淘汰顺序 / TTL 落盘 / 磁盘读取与保留期 / 空闲时的定期巡检
+ */
+class TaskStateStoreTest {
+
+    @TempDir
+    Path storageDir;
+
+    private final AppProperties properties = new AppProperties();
+    private final TaskExecutors taskExecutors = new TaskExecutors(properties);
+
+    @AfterEach
+    void shutdown() {
+        taskExecutors.shutdown();
+    }
+
+    @Test
+    void runningTasksAreNeverEvicted() {
+        TaskStateStore store = store(2);
+        for (int i = 1; i <= 4; i++) {
+            store.createTask(new TaskStatus("run-" + i));
+        }
+
+        for (int i = 1; i <= 4; i++) {
+            assertNotNull(store.getLiveStatus("run-" + i));
+        }
+        assertEquals(4L, store.getMetrics().get("runningTasks"));
+    }
+
+    @Test
+    void overflowSpillsEarliestFinishedTaskFirst() throws Exception {
+        TaskStateStore store = store(2);
+        store.createTask(status("early"));
+        store.createTask(status("late"));
+        store.putResult("early", result("early response"));
+        Thread.sleep(5);
+        store.putResult("late", result("late response"));
+
+        store.createTask(new TaskStatus("new"));
+
+        assertNull(store.getLiveStatus("early"));
+        assertNotNull(store.getLiveStatus("late"));
+        assertTrue(Files.exists(storageDir.resolve("early.json.gz")));
+        assertEquals(1L, store.getMetrics().get("spilledTasks"));
+        // 只统计仍在内存中的结果: 回复与各轮文本, 每字符按2字节
+        assertEquals((long) ("late response" + "turn 1" + "turn 2").length() * 2, store.getMetrics().get("retainedBytes"));
+    }
+
+    @Test
+    void spilledTaskIsReadBackFromDisk() {
+        TaskStateStore store = store(1);
+        TaskStatus status = status("done");
+        status.setSummary("摘要");
+        status.setSessionId("s1");
+        store.createTask(status);
+        store.putResult("done", result("full response"));
+        store.createTask(new TaskStatus("next"));
+
+        assertNull(store.getLiveStatus("done"));
+        TaskStatus restored = store.getStatus("done");
+        assertEquals("COMPLETED", restored.getStatus());
+        assertEquals("摘要", restored.getSummary());
+        assertEquals("s1", restored.getSessionId());
+        assertEquals(2, restored.getCurrentTurn());
+
+        ContinuousConversationService.ConversationResult restoredResult = store.getResult("done");
+        assertEquals("full response", restoredResult.getFullResponse());
+        assertEquals(List.of("turn 1", "turn 2"), restoredResult.getTurnResponses());
+        // 落盘不含完整消息历史
+        assertTrue(restoredResult.getFinalHistory().isEmpty());
+    }
+
+    @Test
+    void finishedTasksSpillAfterTtl() throws Exception {
+        properties.getTaskStore().setFinishedTtlMinutes(0);
+        TaskStateStore store = store(100);
+        store.createTask(status("failed"));
+        store.markFinished("failed");
+        Thread.sleep(5);
+
+        // 下一次写入时检查 TTL
+        store.createTask(new TaskStatus("next"));
+
+        assertNull(store.getLiveStatus("failed"));
+        assertEquals("COMPLETED", store.getStatus("failed").getStatus());
+        // 无结果的任务不返回结果
+        assertNull(store.getResult("failed"));
+    }
+
+    @Test
+    void diskRecordsExpireAfterRetention() throws Exception {
+        properties.getTaskStore().setRetentionHours(0);
+        TaskStateStore store = store(1);
+        store.createTask(status("old"));
+        store.putResult("old", result("response"));
+        store.createTask(new TaskStatus("next"));
+        Thread.sleep(5);
+
+        assertTrue(Files.exists(storageDir.resolve("old.json.gz")));
+        assertNull(store.getStatus("old"));
+        assertNull(store.getResult("old"));
+    }
+
+    @Test
+    void sweepSpillsAndDeletesWithoutFurtherWrites() throws Exception {
+        TaskStateStore store = store(100);
+        store.createTask(status("idle"));
+        store.putResult("idle", result("response"));
+        assertNotNull(store.getLiveStatus("idle"));
+        // 写入之后才缩短 TTL, 只有巡检能发现过期
+        properties.getTaskStore().setFinishedTtlMinutes(0);
+        Thread.sleep(5);
+
+        // 无任何写入, 巡检完成落盘
+        store.sweep();
+        assertNull(store.getLiveStatus("idle"));
+        assertTrue(Files.exists(storageDir.resolve("idle.json.gz")));
+        assertEquals(0L, store.getMetrics().get("retainedBytes"));
+
+        // 超过保留期的文件在下一次巡检时删除
+        properties.getTaskStore().setRetentionHours(0);
+        Thread.sleep(5);
+        store.sweep();
+        assertFalse(Files.exists(storageDir.resolve("idle.json.gz")));
+        assertEquals(1L, store.getMetrics().get("expiredFiles"));
+    }
+
+    @Test
+    void finishingTwiceKeepsFirstFinishOrder() throws Exception {
+        TaskStateStore store = store(2);
+        store.createTask(status("first"));
+        store.createTask(status("second"));
+        store.markFinished("first");
+        Thread.sleep(5);
+        store.markFinished("second");
+        // 结果晚于失败标记写入, 不改变结束顺序
+        store.putResult("first", result("late result"));
+
+        store.createTask(new TaskStatus("third"));
+
+        assertNull(store.getLiveStatus("first"));
+        assertNotNull(store.getLiveStatus("second"));
+        assertEquals("late result", store.getResult("first").getFullResponse());
+    }
+
+    @Test
+    void unsafeTaskIdsAreNotWrittenToDisk() {
+        TaskStateStore store = store(1);
+        store.createTask(status("../escape"));
+        store.putResult("../escape", result("response"));
+        TaskStatus next = new TaskStatus("next");
+        store.createTask(next);
+
+        assertNull(store.getStatus("../escape"));
+        assertSame(next, store.getStatus("next"));
+        assertFalse(Files.exists(storageDir.resolveSibling("escape.json.gz")));
+    }
+
+    private TaskStateStore store(int maxLiveTasks) {
+        properties.getTaskStore().setMaxLiveTasks(maxLiveTasks);
+        properties.getTaskStore().setStorageDirectory(storageDir.toString());
+        return new TaskStateStore(properties, taskExecutors);
+    }
+
+    private static TaskStatus status(String taskId) {
+        TaskStatus status = new TaskStatus(taskId);
+        status.setStatus("COMPLETED");
+        return status;
+    }
+
+    private static ContinuousConversationService.ConversationResult result(String response) {
+        return new ContinuousConversationService.ConversationResult(response, List.of("turn 1", "turn 2"),
+                List.of(), 2, false, "completed", 100);
+    }
+}
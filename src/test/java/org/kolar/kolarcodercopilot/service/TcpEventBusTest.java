@@ -0,0 +1,192 @@
+package org.kolar.kolarcodercopilot.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.kolar.kolarcodercopilot.config.AppProperties;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 经内嵌代理的事件总线: 多节点广播 / 同一任务按发布顺序送达 / 事件id随帧传递 / 断开期间积压与队列满
+ */
+class TcpEventBusTest {
+
+    private final List<AutoCloseable> resources = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (AutoCloseable resource : resources) {
+            resource.close();
+        }
+    }
+
+    @Test
+    void eventsFanOutToEveryNodeInPublishOrder() throws Exception {
+        AppProperties.EventBus config = config(0);
+        EmbeddedEventBroker broker = startBroker(config);
+        config.setBrokerPort(broker.getPort());
+        TcpEventBus nodeA = startBus(config);
+        TcpEventBus nodeB = startBus(config);
+        Recorder onA = new Recorder(nodeA);
+        Recorder onB = new Recorder(nodeB);
+        awaitTrue(() -> connected(nodeA) && connected(nodeB)
+                && ((Number) broker.getMetrics().get("peers")).intValue() == 2);
+
+        int perTask = 500;
+        ExecutorService publishers = Executors.newFixedThreadPool(2);
+        try {
+            // 两个任务分别在两个节点上执行, 并发发布
+            Future<?> taskA = publishers.submit(() -> publish(nodeA, "task-a", perTask));
+            Future<?> taskB = publishers.submit(() -> publish(nodeB, "task-b", perTask));
+            taskA.get(10, TimeUnit.SECONDS);
+            taskB.get(10, TimeUnit.SECONDS);
+        } finally {
+            publishers.shutdownNow();
+        }
+        awaitTrue(() -> onA.count() == 2 * perTask && onB.count() == 2 * perTask);
+
+        for (Recorder recorder : List.of(onA, onB)) {
+            for (String taskId : List.of("task-a", "task-b")) {
+                List<Long> ids = recorder.ids(taskId);
+                assertEquals(perTask, ids.size());
+                for (int i = 0; i < perTask; i++) {
+                    // 发布节点分配的id原样到达每个节点, 且保持发布顺序
+                    assertEquals(i + 1L, (long) ids.get(i), taskId);
+                }
+            }
+        }
+        assertEquals(onA.messages("task-b"), onB.messages("task-b"));
+    }
+
+    @Test
+    void eventsPublishedWhileDisconnectedAreSentInOrderAfterReconnect() throws Exception {
+        int port = freePort();
+        AppProperties.EventBus config = config(port);
+        TcpEventBus node = startBus(config);
+        Recorder recorder = new Recorder(node);
+
+        publish(node, "task", 20);
+        // 未连接时不在本节点抢先分发
+        Thread.sleep(100);
+        assertEquals(0, recorder.count());
+
+        startBroker(config);
+        awaitTrue(() -> recorder.count() == 20);
+        List<Long> ids = recorder.ids("task");
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(i + 1L, (long) ids.get(i));
+        }
+        assertEquals(0L, node.getMetrics().get("rejected"));
+    }
+
+    @Test
+    void fullOutboundQueueFailsLoudly() throws Exception {
+        AppProperties.EventBus config = config(freePort());
+        config.setQueueCapacity(2);
+        config.setPublishTimeoutMillis(10);
+        TcpEventBus node = startBus(config);
+        Recorder recorder = new Recorder(node);
+
+        node.publish("task", 1, Map.of("n", 1));
+        node.publish("task", 2, Map.of("n", 2));
+        assertThrows(IllegalStateException.class, () -> node.publish("task", 3, Map.of("n", 3)));
+
+        assertEquals(1L, node.getMetrics().get("rejected"));
+        assertEquals(0, recorder.count());
+    }
+
+    private static void publish(TcpEventBus bus, String taskId, int count) {
+        for (int i = 1; i <= count; i++) {
+            AnalysisEvent event = new AnalysisEvent();
+            event.setType("LOG");
+            event.setTaskId(taskId);
+            event.setMessage("event " + i);
+            bus.publish(taskId, i, event);
+        }
+    }
+
+    private AppProperties.EventBus config(int port) {
+        AppProperties.EventBus config = new AppProperties().getEventBus();
+        config.setMode(AppProperties.EventBusMode.TCP);
+        config.setBrokerHost("127.0.0.1");
+        config.setBrokerPort(port);
+        config.setReconnectDelayMillis(50);
+        return config;
+    }
+
+    private EmbeddedEventBroker startBroker(AppProperties.EventBus config) throws IOException {
+        EmbeddedEventBroker broker = new EmbeddedEventBroker(config);
+        broker.start();
+        resources.add(broker);
+        return broker;
+    }
+
+    private TcpEventBus startBus(AppProperties.EventBus config) {
+        TcpEventBus bus = new TcpEventBus(config);
+        bus.start();
+        // 先于代理关闭
+        resources.add(0, bus);
+        return bus;
+    }
+
+    private static boolean connected(TcpEventBus bus) {
+        return Boolean.TRUE.equals(bus.getMetrics().get("connected"));
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待超时");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * 记录某个节点收到的事件
+     */
+    private static class Recorder {
+        private final Map<String, List<Long>> ids = new ConcurrentHashMap<>();
+        private final Map<String, List<String>> messages = new ConcurrentHashMap<>();
+
+        Recorder(EventBus bus) {
+            bus.subscribe((taskId, eventId, event) -> {
+                ids.computeIfAbsent(taskId, key -> new CopyOnWriteArrayList<>()).add(eventId);
+                messages.computeIfAbsent(taskId, key -> new CopyOnWriteArrayList<>())
+                        .add(((AnalysisEvent) event).getMessage());
+            });
+        }
+
+        int count() {
+            return ids.values().stream().mapToInt(List::size).sum();
+        }
+
+        List<Long> ids(String taskId) {
+            return ids.getOrDefault(taskId, List.of());
+        }
+
+        List<String> messages(String taskId) {
+            return messages.getOrDefault(taskId, List.of());
+        }
+    }
+}
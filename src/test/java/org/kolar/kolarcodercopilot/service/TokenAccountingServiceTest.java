@@ -0,0 +1,68 @@
+package org.kolar.kolarcodercopilot.service;
+
+import org.junit.jupiter.api.Test;
+import org.kolar.kolarcodercopilot.config.AppProperties;
+import org.kolar.kolarcodercopilot.config.TaskExecutors;
+import org.kolar.kolarcodercopilot.model.TaskStatus;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Token 用量: 会话预算不受 LRU 淘汰影响
+ */
+class TokenAccountingServiceTest {
+
+    private final AppProperties properties = new AppProperties();
+    private final TaskStateStore taskStateStore = new TaskStateStore(properties, new TaskExecutors(properties));
+
+    @Test
+    void budgetedSessionSurvivesEvictionOfOtherSessions() {
+        properties.getTokens().setMaxTrackedKeys(1);
+        properties.getTokens().setSessionBudgets(Map.of("budgeted", 100L));
+        TokenAccountingService accounting = new TokenAccountingService(properties, taskStateStore);
+
+        accounting.record(task("t-budgeted", "budgeted"), TokenAccountingService.CONVERSATION_SOURCE,
+                new DefaultUsage(100, 20), List.of(), "done");
+        assertTrue(accounting.isOverBudget("budgeted"));
+
+        // 其他会话的调用把 LRU 挤满
+        for (int i = 1; i <= 3; i++) {
+            accounting.record(task("t-" + i, "s" + i), TokenAccountingService.CONVERSATION_SOURCE,
+                    new DefaultUsage(10, 10), List.of(), "done");
+        }
+
+        assertEquals(120, accounting.getSessionTokens("budgeted"));
+        assertTrue(accounting.isOverBudget("budgeted"));
+        // 无预算的会话仍按 LRU 淘汰
+        assertEquals(0, accounting.getSessionTokens("s1"));
+        assertEquals(20, accounting.getSessionTokens("s3"));
+    }
+
+    @Test
+    void defaultBudgetAppliesToEverySession() {
+        properties.getTokens().setMaxTrackedKeys(1);
+        properties.getTokens().setSessionBudget(50);
+        TokenAccountingService accounting = new TokenAccountingService(properties, taskStateStore);
+
+        accounting.record(task("t-a", "a"), TokenAccountingService.CONVERSATION_SOURCE,
+                new DefaultUsage(40, 20), List.of(), "done");
+        accounting.record(task("t-b", "b"), TokenAccountingService.CONVERSATION_SOURCE,
+                new DefaultUsage(10, 10), List.of(), "done");
+
+        assertTrue(accounting.isOverBudget("a"));
+        assertFalse(accounting.isOverBudget("b"));
+    }
+
+    private String task(String taskId, String sessionId) {
+        TaskStatus status = new TaskStatus(taskId);
+        status.setSessionId(sessionId);
+        taskStateStore.createTask(status);
+        return taskId;
+    }
+}
@@ -0,0 +1,152 @@
+package org.kolar.kolarcodercopilot.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.kolar.kolarcodercopilot.config.AppProperties;
+import org.kolar.kolarcodercopilot.config.TaskContext;
+import org.kolar.kolarcodercopilot.config.TaskContextHolder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 追踪: 跨线程的父子关系 / 同一 trace 采样结果一致 / 关闭后还原线程上下文
+ */
+class TracerTest {
+
+    private final List<Tracer.Span> exported = Collections.synchronizedList(new ArrayList<>());
+
+    @AfterEach
+    void clearContext() {
+        TaskContextHolder.restore(TaskContext.EMPTY);
+    }
+
+    @Test
+    void childSpanOnAnotherThreadLinksToParent() throws Exception {
+        Tracer tracer = tracer(1.0);
+
+        Tracer.Span root = tracer.start("task");
+        // 任务上下文随包装的任务跨线程传递, 另一线程上的 span 以 root 为父
+        Thread hop = new Thread(TaskContextHolder.wrap(() -> {
+            try (Tracer.Span child = tracer.start("tool", Tracer.SpanKind.CLIENT)) {
+                child.attribute("tool.name", "read_file");
+            }
+        }));
+        hop.start();
+        hop.join(5_000);
+        root.close();
+
+        assertEquals(2, exported.size());
+        Tracer.Span child = exported.get(0);
+        assertEquals("tool", child.getName());
+        assertEquals(root.getTraceId(), child.getTraceId());
+        assertEquals(root.getSpanId(), child.getParentSpanId());
+        assertNull(root.getParentSpanId());
+        assertEquals(Tracer.SpanKind.CLIENT, child.getKind());
+        assertTrue(child.getEndEpochNanos() >= child.getStartEpochNanos());
+    }
+
+    @Test
+    void closingRestoresPreviousContext() {
+        Tracer tracer = tracer(1.0);
+        TaskContext before = TaskContextHolder.current();
+
+        try (Tracer.Span root = tracer.start("task")) {
+            assertEquals(root.getSpanId(), TaskContextHolder.current().getSpanId());
+            try (Tracer.Span child = tracer.start("turn")) {
+                assertEquals(child.getSpanId(), TaskContextHolder.current().getSpanId());
+            }
+            assertEquals(root.getSpanId(), TaskContextHolder.current().getSpanId());
+        }
+        assertEquals(before, TaskContextHolder.current());
+    }
+
+    @Test
+    void everySpanInATraceGetsTheSameSamplingDecision() throws Exception {
+        Tracer tracer = tracer(0.5);
+        int traces = 200;
+        Map<String, Integer> spansPerTrace = new HashMap<>();
+
+        for (int i = 0; i < traces; i++) {
+            Tracer.Span root = tracer.start("task");
+            Tracer.Span turn = tracer.start("turn");
+            Thread hop = new Thread(TaskContextHolder.wrap(() -> tracer.start("tool").close()));
+            hop.start();
+            hop.join(5_000);
+            turn.close();
+            root.close();
+            assertEquals(root.isRecording(), turn.isRecording());
+            assertEquals(TaskContext.EMPTY, TaskContextHolder.current());
+        }
+        for (Tracer.Span span : exported) {
+            spansPerTrace.merge(span.getTraceId(), 1, Integer::sum);
+        }
+
+        // 采样的 trace 三个 span 全部导出, 未采样的一个都不导出
+        spansPerTrace.values().forEach(count -> assertEquals(3, (int) count));
+        assertFalse(spansPerTrace.isEmpty());
+        assertTrue(spansPerTrace.size() < traces, "sampled=" + spansPerTrace.size());
+    }
+
+    @Test
+    void disabledTracerReturnsNoopSpans() {
+        AppProperties properties = new AppProperties();
+        properties.getTracing().setEnabled(false);
+        Tracer tracer = new Tracer(properties, new CapturingExporter(properties));
+
+        try (Tracer.Span span = tracer.start("task")) {
+            assertFalse(span.isRecording());
+            span.attribute("ignored", 1).error("ignored");
+            assertNull(span.getAttributes());
+        }
+        assertTrue(exported.isEmpty());
+        assertEquals(TaskContext.EMPTY, TaskContextHolder.current());
+    }
+
+    @Test
+    void attributesAndErrorsAreRecorded() {
+        Tracer tracer = tracer(1.0);
+
+        try (Tracer.Span span = tracer.start("model")) {
+            span.attribute("tokens", 42).attribute("skipped", null).error(new IllegalStateException("boom"));
+        }
+
+        Tracer.Span span = exported.get(0);
+        assertNotNull(span.getAttributes());
+        assertEquals(42, span.getAttributes().get("tokens"));
+        assertFalse(span.getAttributes().containsKey("skipped"));
+        assertEquals(IllegalStateException.class.getName(), span.getAttributes().get("exception.type"));
+        assertTrue(span.isError());
+        assertEquals("boom", span.getErrorMessage());
+    }
+
+    private Tracer tracer(double sampleRatio) {
+        AppProperties properties = new AppProperties();
+        properties.getTracing().setEnabled(true);
+        properties.getTracing().setSampleRatio(sampleRatio);
+        return new Tracer(properties, new CapturingExporter(properties));
+    }
+
+    /**
+     * 只收集结束的 span, 不写文件
+     */
+    private class CapturingExporter extends SpanExporter {
+        CapturingExporter(AppProperties properties) {
+            super(properties);
+        }
+
+        @Override
+        void export(Tracer.Span span) {
+            exported.add(span);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.kolar.kolarcodercopilot.tools;
+
+import org.kolar.kolarcodercopilot.config.ToolCallLoggingAspect;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.ai.support.ToolCallbacks;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每次工具调用的分发开销 (不含工具本身的执行)
+ * direct 为直接调用方法的基线; reflective 为 Spring AI 默认的 MethodToolCallback (每次反射调用并按 Map 转换参数);
+ * methodHandle 为 ToolDispatcher 的预绑定回调, 两者与基线的差即分发开销
+ * 切面为直通实现, 只比较分发本身
+ * 运行: 执行 main 方法 (mvn test-compile 后在 IDE 中运行)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ToolDispatchBenchmark {
+
+    private static final String INPUT = "{\"filePath\":\"/src/App.java\",\"startLine\":10,\"endLine\":40,"
+            + "\"keywords\":[\"class\",\"import\"]}";
+
+    private final BenchmarkTools tools = new BenchmarkTools();
+    private ToolCallback reflective;
+    private ToolCallback methodHandle;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        reflective = find(ToolCallbacks.from(tools));
+        methodHandle = find(new ToolDispatcher(new PassThroughAspect()).createCallbacks(tools));
+    }
+
+    @Benchmark
+    public String direct() {
+        return tools.readLines("/src/App.java", 10, 40, List.of("class", "import"));
+    }
+
+    @Benchmark
+    public String reflective() {
+        return reflective.call(INPUT);
+    }
+
+    @Benchmark
+    public String methodHandle() {
+        return methodHandle.call(INPUT);
+    }
+
+    private static ToolCallback find(ToolCallback[] callbacks) {
+        return Arrays.stream(callbacks)
+                .filter(callback -> callback.getToolDefinition().name().equals("readLines"))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(ToolDispatchBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+    /**
+     * 不记录日志/指标的切面
+     */
+    private static class PassThroughAspect extends ToolCallLoggingAspect {
+        @Override
+        public Object aroundToolCall(String className, String methodName, Object[] args,
+                                     ToolInvocation invocation) throws Throwable {
+            return invocation.proceed();
+        }
+    }
+
+    public static class BenchmarkTools {
+        @Tool(description = "读取文件中的行")
+        public String readLines(@ToolParam(description = "文件路径") String filePath,
+                                @ToolParam(description = "起始行") int startLine,
+                                @ToolParam(description = "结束行") int endLine,
+                                @ToolParam(description = "关键字") List<String> keywords) {
+            return filePath + ":" + startLine + "-" + endLine + ":" + keywords.size();
+        }
+    }
+}
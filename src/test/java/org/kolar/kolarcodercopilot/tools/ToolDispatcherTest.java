@@ -0,0 +1,206 @@
+package org.kolar.kolarcodercopilot.tools;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.kolar.kolarcodercopilot.config.TaskContext;
+import org.kolar.kolarcodercopilot.config.TaskContextHolder;
+import org.kolar.kolarcodercopilot.config.ToolCallLoggingAspect;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.ai.tool.execution.ToolExecutionException;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 工具分发器: 参数转换 / 结果转换 / 异常包装 / 任务上下文绑定
+ */
+class ToolDispatcherTest {
+
+    private final RecordingAspect aspect = new RecordingAspect();
+    private final ToolDispatcher dispatcher = new ToolDispatcher(aspect);
+    private final ExecutorService elastic = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    void tearDown() {
+        elastic.shutdownNow();
+        TaskContextHolder.clearCurrentTaskId();
+    }
+
+    @Test
+    void simpleTypesAreConvertedFromJson() {
+        ToolCallback callback = callback("describe");
+
+        // 字符串参数接受任意 JSON 值, 数值与布尔参数接受字符串写法
+        String output = callback.call("{\"text\":42,\"count\":\"7\",\"size\":9000000000,\"ratio\":0.25,\"flag\":\"true\"}");
+
+        assertEquals("\"42|7|9000000000|0.25|true\"", output);
+    }
+
+    @Test
+    void missingArgumentsUseTypeDefaults() {
+        ToolCallback callback = callback("describe");
+
+        assertEquals("\"null|0|0|0.0|false\"", callback.call("{}"));
+        assertEquals("\"null|0|0|0.0|false\"", callback.call("{\"text\":null,\"count\":null}"));
+        assertEquals("\"null|0|0|0.0|false\"", callback.call(""));
+    }
+
+    @Test
+    void genericAndObjectParametersUseJackson() {
+        ToolCallback callback = callback("sum");
+
+        // 未知属性忽略, 与 Spring AI 默认的 MethodToolCallback 一致
+        String output = callback.call("{\"values\":[1,2,3],\"options\":{\"name\":\"x\",\"repeat\":2,\"unknown\":true}}");
+
+        assertEquals("\"x:12\"", output);
+    }
+
+    @Test
+    void toolContextParameterReceivesCallContext() {
+        ToolCallback callback = callback("withContext");
+
+        String output = callback.call("{\"label\":\"a\"}", new ToolContext(Map.of("workspace", "/tmp/ws")));
+
+        assertEquals("\"a@/tmp/ws\"", output);
+    }
+
+    @Test
+    void voidResultAndFailuresAreConverted() {
+        assertEquals("\"Done\"", callback("noop").call("{}"));
+
+        ToolExecutionException thrown = assertThrows(ToolExecutionException.class, () -> callback("fail").call("{}"));
+        assertTrue(thrown.getCause() instanceof IllegalStateException, String.valueOf(thrown.getCause()));
+        assertEquals("fail", thrown.getToolDefinition().name());
+
+        // 参数解析失败同样包装为工具异常, 不调用工具方法
+        int invocations = aspect.taskIds.size();
+        ToolExecutionException malformed = assertThrows(ToolExecutionException.class, () -> callback("fail").call("{oops"));
+        assertEquals("fail", malformed.getToolDefinition().name());
+        assertEquals(invocations, aspect.taskIds.size());
+    }
+
+    @Test
+    void dispatchOverheadIsCounted() {
+        ToolCallback callback = callback("noop");
+        callback.call("{}");
+        callback.call("{}");
+
+        Map<String, Object> metrics = dispatcher.getMetrics();
+        assertEquals(2L, metrics.get("dispatches"));
+        assertTrue((Double) metrics.get("maxOverheadMicros") > 0, metrics.toString());
+    }
+
+    @Test
+    void streamedToolCallIsAttributedToItsTask() throws Exception {
+        ToolCallback callback = callback("whoAmI");
+        // 对话轮次线程: 构建请求时捕获任务上下文
+        TaskContext turnContext = TaskContext.forTask("stream-task");
+        TaskContextHolder.attach(turnContext);
+        Map<String, Object> toolContext = TaskContextHolder.toToolContext();
+        TaskContextHolder.clearCurrentTaskId();
+
+        // 流式调用的工具在另一个没有任务上下文的线程上执行 (boundedElastic)
+        String output = elastic.submit(() -> callback.call("{\"label\":\"a\"}", new ToolContext(toolContext)))
+                .get(5, TimeUnit.SECONDS);
+        TaskContext afterCall = elastic.submit(TaskContextHolder::current).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("stream-task"), aspect.taskIds);
+        assertTrue(output.contains("a:stream-task"), output);
+        // 执行线程在调用结束后还原, 不泄漏到后续任务
+        assertSame(TaskContext.EMPTY, afterCall);
+    }
+
+    @Test
+    void callWithoutToolContextKeepsThreadContext() throws Exception {
+        ToolCallback callback = callback("whoAmI");
+        TaskContextHolder.attach(TaskContext.forTask("blocking-task"));
+
+        String output = callback.call("{\"label\":\"b\"}");
+
+        assertEquals(List.of("blocking-task"), aspect.taskIds);
+        assertTrue(output.contains("b:blocking-task"), output);
+        assertEquals("blocking-task", TaskContextHolder.getCurrentTaskId());
+    }
+
+    private ToolCallback callback(String name) {
+        return Arrays.stream(dispatcher.createCallbacks(new SampleTools()))
+                .filter(callback -> callback.getToolDefinition().name().equals(name))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    /**
+     * 记录工具调用时线程上的任务id, 与切面中 getCurrentTaskId() 的取值一致
+     */
+    private static class RecordingAspect extends ToolCallLoggingAspect {
+        private final List<String> taskIds = new CopyOnWriteArrayList<>();
+
+        @Override
+        public Object aroundToolCall(String className, String methodName, Object[] args,
+                                     ToolInvocation invocation) throws Throwable {
+            taskIds.add(TaskContextHolder.getCurrentTaskId());
+            return invocation.proceed();
+        }
+    }
+
+    static class SampleTools {
+        @Tool(description = "拼接各类型参数")
+        public String describe(@ToolParam(description = "文本") String text,
+                               @ToolParam(description = "次数") int count,
+                               @ToolParam(description = "大小") long size,
+                               @ToolParam(description = "比例") double ratio,
+                               @ToolParam(description = "开关") boolean flag) {
+            return text + "|" + count + "|" + size + "|" + ratio + "|" + flag;
+        }
+
+        @Tool(description = "求和后乘以重复次数")
+        public String sum(@ToolParam(description = "数值") List<Integer> values,
+                          @ToolParam(description = "选项") Options options) {
+            int total = values.stream().mapToInt(Integer::intValue).sum();
+            return options.getName() + ":" + total * options.getRepeat();
+        }
+
+        @Tool(description = "读取调用上下文")
+        public String withContext(@ToolParam(description = "标签") String label, ToolContext toolContext) {
+            return label + "@" + toolContext.getContext().get("workspace");
+        }
+
+        @Tool(description = "无返回值")
+        public void noop() {
+        }
+
+        @Tool(description = "总是失败")
+        public String fail() {
+            throw new IllegalStateException("boom");
+        }
+
+        @Tool(description = "返回标签与当前任务id")
+        public String whoAmI(@ToolParam(description = "标签") String label) {
+            return label + ":" + TaskContextHolder.getCurrentTaskId();
+        }
+    }
+
+    public static class Options {
+        private String name;
+        private int repeat;
+
+        public String getName() { return name; }
+        public void setName(String name) { this.name = name; }
+
+        public int getRepeat() { return repeat; }
+        public void setRepeat(int repeat) { this.repeat = repeat; }
+    }
+}
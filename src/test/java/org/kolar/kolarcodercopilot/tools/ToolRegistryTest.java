@@ -0,0 +1,154 @@
+package org.kolar.kolarcodercopilot.tools;
+
+import org.junit.jupiter.api.Test;
+import org.kolar.kolarcodercopilot.config.AppProperties;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 工具注册表: 启用/禁用 / 重新注册保留状态 / 快照不可变 / 并发切换
+ */
+class ToolRegistryTest {
+
+    private static final String SCHEMA = "{\"type\":\"object\",\"properties\":{"
+            + "\"path\":{\"type\":\"string\",\"description\":\"文件路径\"},"
+            + "\"limit\":{\"type\":\"integer\"}},\"required\":[\"path\"]}";
+
+    private final AppProperties properties = new AppProperties();
+
+    @Test
+    void toggleUpdatesEnabledCallbacksAndVersion() {
+        ToolRegistry registry = new ToolRegistry(properties);
+        ToolCallback read = tool("read_file");
+        ToolCallback write = tool("write_file");
+        registry.register(ToolRegistry.ToolType.SYSTEM, "FileTools", read, write);
+        long registered = registry.getVersion();
+
+        ToolRegistry.ToolDescriptor disabled = registry.setEnabled("write_file", false);
+
+        assertFalse(disabled.isEnabled());
+        assertEquals(List.of(read), registry.getEnabledCallbacks());
+        assertEquals(registered + 1, registry.getVersion());
+        // 状态未变化时不生成新快照
+        registry.setEnabled("write_file", false);
+        assertEquals(registered + 1, registry.getVersion());
+
+        assertTrue(registry.setEnabled("write_file", true).isEnabled());
+        assertEquals(List.of(read, write), registry.getEnabledCallbacks());
+        assertNull(registry.setEnabled("missing", false));
+    }
+
+    @Test
+    void startupDisabledToolsAndReRegistrationKeepState() {
+        properties.getTools().setDisabled(List.of("run_command"));
+        ToolRegistry registry = new ToolRegistry(properties);
+        registry.register(ToolRegistry.ToolType.SYSTEM, "ShellTools", tool("run_command"));
+        assertEquals(List.of(), registry.getEnabledCallbacks());
+
+        registry.register(ToolRegistry.ToolType.MCP, "fs", tool("list_dir"));
+        registry.setEnabled("list_dir", false);
+        // MCP 服务器重连后重新注册, 保留运行时的禁用状态
+        ToolCallback reconnected = tool("list_dir");
+        registry.register(ToolRegistry.ToolType.MCP, "fs", reconnected);
+
+        assertEquals(List.of(), registry.getEnabledCallbacks());
+        registry.setEnabled("list_dir", true);
+        assertSame(reconnected, registry.getEnabledCallbacks().get(0));
+        assertEquals(1, registry.getDescriptors(ToolRegistry.ToolType.MCP).size());
+        assertEquals(2, registry.getDescriptors().size());
+    }
+
+    @Test
+    void descriptorsParseSchemaOnce() {
+        ToolRegistry registry = new ToolRegistry(properties);
+        registry.register(ToolRegistry.ToolType.SYSTEM, "FileTools", tool("read_file"));
+
+        ToolRegistry.ToolDescriptor descriptor = registry.getDescriptors().get(0);
+        assertEquals("read_file", descriptor.getName());
+        assertEquals("FileTools", descriptor.getSource());
+        List<ToolRegistry.ToolDescriptor.ParameterDescriptor> parameters = descriptor.getParameters();
+        assertEquals(2, parameters.size());
+        assertEquals("path", parameters.get(0).getName());
+        assertEquals("string", parameters.get(0).getType());
+        assertEquals("文件路径", parameters.get(0).getDescription());
+        assertTrue(parameters.get(0).isRequired());
+        assertFalse(parameters.get(1).isRequired());
+    }
+
+    @Test
+    void readersKeepTheirSnapshot() {
+        ToolRegistry registry = new ToolRegistry(properties);
+        registry.register(ToolRegistry.ToolType.SYSTEM, "FileTools", tool("read_file"), tool("write_file"));
+        List<ToolCallback> inFlight = registry.getEnabledCallbacks();
+
+        registry.setEnabled("read_file", false);
+
+        // 进行中的模型调用持有旧快照, 不受切换影响
+        assertEquals(2, inFlight.size());
+        assertEquals(1, registry.getEnabledCallbacks().size());
+        assertThrows(UnsupportedOperationException.class, () -> inFlight.remove(0));
+    }
+
+    @Test
+    void concurrentTogglesAreNotLost() throws Exception {
+        ToolRegistry registry = new ToolRegistry(properties);
+        int toolCount = 16;
+        ToolCallback[] callbacks = new ToolCallback[toolCount];
+        for (int i = 0; i < toolCount; i++) {
+            callbacks[i] = tool("tool_" + i);
+        }
+        registry.register(ToolRegistry.ToolType.SYSTEM, "Many", callbacks);
+        long registered = registry.getVersion();
+
+        // 每个线程禁用不同的工具, CAS 重试保证每次修改都落在最新快照上
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < toolCount; i++) {
+                String name = "tool_" + i;
+                futures.add(executor.submit(() -> registry.setEnabled(name, false)));
+            }
+            for (Future<?> future : futures) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(List.of(), registry.getEnabledCallbacks());
+        assertEquals(registered + toolCount, registry.getVersion());
+    }
+
+    private static ToolCallback tool(String name) {
+        ToolDefinition definition = ToolDefinition.builder()
+                .name(name)
+                .description(name)
+                .inputSchema(SCHEMA)
+                .build();
+        return new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return definition;
+            }
+
+            @Override
+            public String call(String toolInput) {
+                return "\"" + name + "\"";
+            }
+        };
+    }
+}
@@ -0,0 +1,23 @@
+/**
+ * 聊天会话标识
+ * 每个浏览器首次使用时生成并保存在 localStorage, 所有聊天请求都携带该 id,
+ * 服务端按会话隔离历史与 token 预算
+ */
+
+const STORAGE_KEY = 'kolar.chatSessionId'
+
+const generateId = (): string => {
+  if (typeof crypto !== 'undefined' && typeof crypto.randomUUID === 'function') {
+    return crypto.randomUUID()
+  }
+  return `${Date.now().toString(36)}-${Math.random().toString(36).slice(2)}${Math.random().toString(36).slice(2)}`
+}
+
+export const getChatSessionId = (): string => {
+  let sessionId = localStorage.getItem(STORAGE_KEY)
+  if (!sessionId) {
+    sessionId = generateId()
+    localStorage.setItem(STORAGE_KEY, sessionId)
+  }
+  return sessionId
+}
@@ -15,6 +15,8 @@ export interface SSEEvent {
   stepName?: string
   description?: string
   details?: string
+  // 对话增量文本所属轮次 (TOKEN_DELTA)
+  turn?: number
 }
 
 export interface SSECallbacks {
@@ -27,6 +29,8 @@ export interface SSECallbacks {
 class SSEManager {
   private activeConnections = new Map<string, EventSource>()
   private callbacks = new Map<string, SSECallbacks>()
+  // 每个任务已收到的最后一个事件id, 手动重连时用于补发遗漏事件
+  private lastEventIds = new Map<string, string>()
 
   /**
    * 建立SSE连接
@@ -42,8 +46,12 @@ class SSEManager {
     // 保存回调函数
     this.callbacks.set(taskId, callbacks)
 
-    // 建立EventSource连接
-    const eventSource = new EventSource(`/api/logs/stream/${taskId}`)
+    // 建立EventSource连接 (浏览器自动重连会携带 Last-Event-ID 请求头)
+    const lastEventId = this.lastEventIds.get(taskId)
+    const url = lastEventId
+      ? `/api/logs/stream/${taskId}?lastEventId=${encodeURIComponent(lastEventId)}`
+      : `/api/logs/stream/${taskId}`
+    const eventSource = new EventSource(url)
 
     eventSource.onopen = () => {
       console.log('✅ SSE连接建立成功:', taskId)
@@ -62,6 +70,9 @@ class SSEManager {
 
     // 监听特定的 "log" 事件
     eventSource.addEventListener('log', (event) => {
+      if (event.lastEventId) {
+        this.lastEventIds.set(taskId, event.lastEventId)
+      }
       try {
         const logEvent: SSEEvent = JSON.parse(event.data)
         console.log('📨 收到log事件:', logEvent)
@@ -135,6 +146,7 @@ class SSEManager {
       callbacks.onClose?.()
       this.callbacks.delete(taskId)
     }
+    this.lastEventIds.delete(taskId)
   }
 
   /**
@@ -142,7 +154,13 @@ class SSEManager {
    */
   private handleConnectionError(taskId: string) {
     console.log('处理连接错误:', taskId)
-    
+
+    // 连接已被关闭时移除, 以便下面的手动重连携带 lastEventId 补发遗漏事件
+    const eventSource = this.activeConnections.get(taskId)
+    if (eventSource && eventSource.readyState === EventSource.CLOSED) {
+      this.activeConnections.delete(taskId)
+    }
+
     // 可以实现重连逻辑
     setTimeout(() => {
       if (!this.activeConnections.has(taskId)) {